@@ -1,5 +1,7 @@
 package it.polimi.ingsw;
 
+import it.polimi.ingsw.event.NetworkEventTransceiver;
+import it.polimi.ingsw.networking.RMI.RMIConnection;
 import it.polimi.ingsw.utils.Logger;
 import it.polimi.ingsw.view.gui.GuiApplication;
 import it.polimi.ingsw.view.tui.*;
@@ -11,14 +13,41 @@ import it.polimi.ingsw.view.tui.terminal.drawable.app.AppLayoutData;
  * Client application entry point.
  */
 public class Client {
+    /**
+     * The time in milliseconds for which the client tries to resume its session after losing the connection.
+     */
+    private static final long RESUME_TIMEOUT = 30000;
+
     /**
      * Main of the client application.
      * It starts the terminal application to allow the user to choose the interface type and the
      * connection type; then starts another terminal application or the GUI one according to the user choice.
      *
-     * @param args optional arguments for the client program, they are all ignored.
+     * @param args optional arguments for the client program:
+     *             <ul>
+     *                 <li>{@code --rmi-push} lets the server push messages to the client over RMI, instead of
+     *                 having the client poll them</li>
+     *                 <li>{@code --binary-events} sends events in a compact binary encoding to the server, if it
+     *                 supports it, instead of JSON</li>
+     *                 <li>{@code --resume-sessions} reconnects to the server when the connection is lost and
+     *                 resumes the session, if the server supports it</li>
+     *             </ul>
      */
     public static void main(String[] args) {
+        for (String arg : args) {
+            switch (arg) {
+                case "--rmi-push" -> RMIConnection.setClientMode(RMIConnection.Mode.PUSH);
+                case "--binary-events" ->
+                    NetworkEventTransceiver.setDefaultEncoding(NetworkEventTransceiver.Encoding.BINARY);
+                case "--resume-sessions" -> NetworkEventTransceiver.setDefaultResumeTimeout(RESUME_TIMEOUT);
+                default -> {
+                    System.out.println("Unknown option: " + arg);
+                    System.exit(1);
+                    return;
+                }
+            }
+        }
+
         Terminal terminal = Terminal.getInstance();
 
         Logger.setShouldPrint(false);
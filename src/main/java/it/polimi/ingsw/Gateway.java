@@ -0,0 +1,404 @@
+package it.polimi.ingsw;
+
+import com.google.gson.Gson;
+import it.polimi.ingsw.event.NetworkEventTransceiver;
+import it.polimi.ingsw.event.data.EncodingEventData;
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.ResumeSessionEventData;
+import it.polimi.ingsw.event.data.client.LoginEventData;
+import it.polimi.ingsw.event.data.wrapper.SyncEventDataWrapper;
+import it.polimi.ingsw.networking.Connection;
+import it.polimi.ingsw.networking.ConnectionAcceptor;
+import it.polimi.ingsw.networking.ConnectionException;
+import it.polimi.ingsw.networking.DisconnectedException;
+import it.polimi.ingsw.networking.MUX.Multiplexer;
+import it.polimi.ingsw.networking.RMI.RMIConnection;
+import it.polimi.ingsw.networking.TCP.TCPConnection;
+import it.polimi.ingsw.utils.HashedWheelTimer;
+import it.polimi.ingsw.utils.Logger;
+import it.polimi.ingsw.utils.Threads;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Edge gateway application entry point.
+ * The gateway accepts the TCP and RMI connections of the clients in place of the {@link Server}, hence it is the
+ * gateway which handles their sockets, framing and heartbeats. The messages of every client are forwarded, as they
+ * are, on a channel of one of a few persistent {@link Multiplexer multiplexed} links towards the backend servers,
+ * which must have been started with the {@code --mux} option.
+ * <p>
+ * Backend servers don't share their users, games and sessions, hence a client must always reach the same backend
+ * server. The gateway holds the first messages of every client, without forwarding them, until it can choose the
+ * backend server by something stable: the clients which log in are forwarded to the backend server picked by the
+ * hash of their username, and the clients which resume a session (see {@link ResumeSessionEventData}) to the
+ * backend server where the session has been opened. Only clients which send something else first are forwarded
+ * to the backend server with the fewest clients. The held messages are then forwarded, in order, before the
+ * following ones. If the chosen backend server can't be reached, the following ones are tried in order.
+ */
+public class Gateway {
+    /**
+     * Maximum number of messages of a client held while waiting for its login or session resumption: then it is
+     * forwarded to the backend server with the fewest clients.
+     */
+    private static final int MAX_HELD_MESSAGES = 16;
+
+    /**
+     * Time in milliseconds for which the backend server of a session is remembered after its last connection has
+     * been lost. It must be longer than the time for which the backend servers allow to resume a session.
+     */
+    private static final long SESSION_RETENTION = 5 * 60 * 1000;
+
+    /**
+     * Backend server of a session. Every connection of the session gets its own instance, so that a connection
+     * which is lost never forgets the backend server of a following one.
+     */
+    private static final class Route {
+        /**
+         * The link towards the backend server of the session.
+         */
+        private final Link link;
+
+        /**
+         * Constructor of the class.
+         *
+         * @param link is the link towards the backend server of the session.
+         */
+        private Route(Link link) {
+            this.link = link;
+        }
+    }
+
+    /**
+     * Maps the token of every session opened through the gateway to its backend server.
+     */
+    private static final Map<String, Route> SESSIONS = new ConcurrentHashMap<>();
+
+    /**
+     * {@link Gson} object used to read the first messages of the clients, which are always JSON.
+     */
+    private static final Gson GSON = NetworkEventTransceiver.createGson();
+
+    /**
+     * Persistent link towards a backend server, which carries the clients forwarded to it. It is connected again
+     * when a client has to be forwarded after the previous connection has been lost.
+     */
+    private static final class Link {
+        /**
+         * The host of the backend server.
+         */
+        private final String host;
+
+        /**
+         * The port on which the backend server accepts multiplexed TCP connections.
+         */
+        private final int port;
+
+        /**
+         * The multiplexer of the current connection to the backend server, null if it isn't connected.
+         */
+        private Multiplexer multiplexer;
+
+        /**
+         * Constructor of the class.
+         *
+         * @param host is the host of the backend server.
+         * @param port is the port on which the backend server accepts multiplexed TCP connections.
+         */
+        private Link(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * Opens a channel towards the backend server, connecting again to it if the link has been lost.
+         * It is called by the threads which route the clients, never by the one which accepts them, hence
+         * a backend server which can't be reached doesn't delay the clients forwarded elsewhere.
+         *
+         * @return the new channel.
+         * @throws ConnectionException if the backend server can't be reached.
+         * @throws DisconnectedException if the link has been lost while opening the channel.
+         */
+        private synchronized Connection openChannel() throws ConnectionException, DisconnectedException {
+            if (multiplexer != null) {
+                try {
+                    return multiplexer.openChannel();
+                } catch (DisconnectedException e) {
+                    Logger.writeWarning("Lost the link to " + this);
+                }
+            }
+
+            multiplexer = new Multiplexer(new TCPConnection(host, port), null);
+            return multiplexer.openChannel();
+        }
+
+        /**
+         * @return the number of clients forwarded through the link.
+         */
+        private synchronized int getChannelCount() {
+            return multiplexer == null ? 0 : multiplexer.getChannelCount();
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+
+    /**
+     * Main of the gateway application.
+     * It starts the {@link ConnectionAcceptor} which waits for incoming TCP or RMI connections from the clients,
+     * and forwards every client to a backend server, choosing it on a thread of its own.
+     *
+     * @param args the hostname of the gateway, used to set "java.rmi.server.hostname" property, followed by the
+     *             backend servers, in the form {@code host:port} where port is the one on which the backend server
+     *             accepts multiplexed TCP connections. The following arguments are options:
+     *             <ul>
+     *                 <li>{@code --nio} serves TCP connections with a fixed pool of selector threads
+     *                 instead of a thread per connection</li>
+     *                 <li>{@code --rmi-batched} moves RMI messages in batches through a shared pool of threads
+     *                 instead of a thread per message</li>
+     *                 <li>{@code --virtual-threads} runs the reader and writer loops of every connection, and the
+     *                 forwarding loops, on virtual threads, it requires Java 21 or later</li>
+     *                 <li>{@code --base-port=<port>} accepts TCP connections on the given port instead of 8080
+     *                 and RMI connections on the following one</li>
+     *             </ul>
+     */
+    public static void main(String[] args) {
+        ConnectionAcceptor connectionAcceptor;
+        List<Link> links = new ArrayList<>();
+
+        Logger.setShouldPrint(false);
+
+        if (args.length == 0) {
+            System.out.println("You must specify the gateway's hostname, followed by the backend servers");
+            System.exit(1);
+            return;
+        }
+
+        try {
+            ConnectionAcceptor.initialize(args[0]);
+
+            ConnectionAcceptor.TCPMode tcpMode = ConnectionAcceptor.TCPMode.BLOCKING;
+            RMIConnection.Mode rmiMode = RMIConnection.Mode.THREAD_PER_CALL;
+            int basePort = Server.DEFAULT_BASE_PORT;
+
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--nio" -> tcpMode = ConnectionAcceptor.TCPMode.SELECTOR;
+                    case "--rmi-batched" -> rmiMode = RMIConnection.Mode.BATCHED;
+                    case "--virtual-threads" -> {
+                        if (!Threads.isVirtualSupported()) {
+                            System.out.println("Virtual threads require Java 21 or later");
+                            System.exit(1);
+                            return;
+                        }
+
+                        Threads.setMode(Threads.Mode.VIRTUAL);
+                    }
+                    default -> {
+                        if (args[i].startsWith(Server.BASE_PORT_OPTION)) {
+                            basePort = Server.parseBasePort(args[i]);
+
+                            if (basePort > 0) {
+                                continue;
+                            }
+                        } else if (!args[i].startsWith("--")) {
+                            Link link = parseLink(args[i]);
+
+                            if (link != null) {
+                                links.add(link);
+                                continue;
+                            }
+                        }
+
+                        System.out.println("Unknown option: " + args[i]);
+                        System.exit(1);
+                        return;
+                    }
+                }
+            }
+
+            if (links.isEmpty()) {
+                System.out.println("You must specify at least a backend server, in the form host:port");
+                System.exit(1);
+                return;
+            }
+
+            connectionAcceptor = new ConnectionAcceptor(basePort, basePort + 1, tcpMode, rmiMode);
+        } catch (RemoteException | ConnectionException e) {
+            Logger.writeCritical(e.toString());
+
+            System.exit(1);
+            return;
+        }
+
+        Logger.writeMessage("Gateway start");
+
+        while (true) {
+            Connection client = connectionAcceptor.accept();
+            Logger.writeMessage("New connection");
+
+            Threads.start("gateway-route", () -> route(client, links));
+        }
+    }
+
+    /**
+     * Holds the first messages of a client until its backend server can be chosen, then forwards the client to it.
+     *
+     * @param client is the connection of the client.
+     * @param links are the links towards the backend servers.
+     */
+    private static void route(Connection client, List<Link> links) {
+        List<byte[]> held = new ArrayList<>();
+        String openedToken = null;
+        String resumedToken = null;
+        int first = -1;
+
+        try {
+            while (first < 0) {
+                byte[] message = client.receiveBytes();
+                held.add(message);
+
+                EventData event = decode(message);
+                if (held.size() >= MAX_HELD_MESSAGES) {
+                    first = leastLoaded(links);
+                } else if (event instanceof ResumeSessionEventData handshake && handshake.token() != null) {
+                    if (handshake.received() == ResumeSessionEventData.NEW_SESSION) {
+                        openedToken = handshake.token();
+                        continue;
+                    }
+
+                    Route route = SESSIONS.get(handshake.token());
+                    resumedToken = handshake.token();
+                    first = route != null ? links.indexOf(route.link) : leastLoaded(links);
+                } else if (event instanceof SyncEventDataWrapper<?> wrapper
+                    && wrapper.getWrappedData() instanceof LoginEventData login) {
+                    first = Math.floorMod(login.getUsername().toLowerCase().hashCode(), links.size());
+                } else if (event instanceof EncodingEventData) {
+                    continue;
+                } else {
+                    first = leastLoaded(links);
+                }
+            }
+        } catch (DisconnectedException e) {
+            return;
+        }
+
+        for (int i = 0; i < links.size(); i++) {
+            Link link = links.get((first + i) % links.size());
+
+            Connection backend;
+            try {
+                backend = link.openChannel();
+            } catch (ConnectionException | DisconnectedException e) {
+                Logger.writeWarning("Cannot reach the backend server " + link);
+                continue;
+            }
+
+            String token = openedToken != null ? openedToken : resumedToken;
+            Route route = new Route(link);
+            if (token != null) {
+                SESSIONS.put(token, route);
+            }
+
+            try {
+                backend.sendAllBytes(held);
+            } catch (DisconnectedException e) {
+                // The forwarding threads notice the disconnection
+            }
+
+            forward(client, backend, "gateway-upstream", () -> {
+                if (token != null) {
+                    HashedWheelTimer.getInstance().newTimeout(() -> SESSIONS.remove(token, route),
+                        SESSION_RETENTION);
+                }
+            });
+            forward(backend, client, "gateway-downstream", () -> {});
+            return;
+        }
+
+        Logger.writeWarning("No backend server can be reached, the client is disconnected");
+        client.disconnect();
+    }
+
+    /**
+     * Decodes one of the first messages of a client.
+     *
+     * @param message is the received message.
+     * @return the decoded event, null if the message isn't a JSON event.
+     */
+    private static EventData decode(byte[] message) {
+        try {
+            return GSON.fromJson(new InputStreamReader(new ByteArrayInputStream(message), StandardCharsets.UTF_8),
+                EventData.class);
+        } catch (RuntimeException e) {
+            // Binary or malformed messages can make the type adapters fail in other ways than JsonParseException
+            return null;
+        }
+    }
+
+    /**
+     * Parses a backend server.
+     *
+     * @param backend is the backend server, in the form {@code host:port}.
+     * @return the link towards the backend server, null if it isn't in the right form.
+     */
+    private static Link parseLink(String backend) {
+        int separator = backend.lastIndexOf(':');
+        if (separator <= 0) {
+            return null;
+        }
+
+        try {
+            return new Link(backend.substring(0, separator), Integer.parseInt(backend.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param links are the links towards the backend servers.
+     * @return the index of the backend server with the fewest clients.
+     */
+    private static int leastLoaded(List<Link> links) {
+        int leastLoaded = 0;
+
+        for (int i = 1; i < links.size(); i++) {
+            if (links.get(i).getChannelCount() < links.get(leastLoaded).getChannelCount()) {
+                leastLoaded = i;
+            }
+        }
+
+        return leastLoaded;
+    }
+
+    /**
+     * Starts a thread which forwards, as they are, all the messages received on a connection to another one.
+     * When either connection breaks, both of them are disconnected.
+     *
+     * @param from is the connection from which messages are received.
+     * @param to is the connection on which messages are forwarded.
+     * @param name is the name of the thread.
+     * @param onClose is run once both the connections have been disconnected.
+     */
+    private static void forward(Connection from, Connection to, String name, Runnable onClose) {
+        Threads.start(name, () -> {
+            try {
+                while (true) {
+                    to.sendBytes(from.receiveBytes());
+                }
+            } catch (DisconnectedException e) {
+                from.disconnect();
+                to.disconnect();
+                onClose.run();
+            }
+        });
+    }
+}
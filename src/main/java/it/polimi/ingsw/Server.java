@@ -1,12 +1,16 @@
 package it.polimi.ingsw;
 
+import it.polimi.ingsw.controller.db.DBManager;
+import it.polimi.ingsw.controller.db.GamePersister;
 import it.polimi.ingsw.controller.servercontroller.MenuController;
 import it.polimi.ingsw.controller.VirtualView;
 import it.polimi.ingsw.event.NetworkEventTransceiver;
 import it.polimi.ingsw.networking.Connection;
 import it.polimi.ingsw.networking.ConnectionAcceptor;
 import it.polimi.ingsw.networking.ConnectionException;
+import it.polimi.ingsw.networking.RMI.RMIConnection;
 import it.polimi.ingsw.utils.Logger;
+import it.polimi.ingsw.utils.Threads;
 
 import java.rmi.RemoteException;
 
@@ -14,6 +18,22 @@ import java.rmi.RemoteException;
  * Server application entry point.
  */
 public class Server {
+    /**
+     * The time in milliseconds for which a session whose connection has been lost waits to be resumed.
+     */
+    private static final long RESUME_TIMEOUT = 30000;
+
+    /**
+     * The port on which TCP connections are accepted by default. RMI connections are accepted on the following
+     * port and multiplexed TCP connections on the one after it.
+     */
+    static final int DEFAULT_BASE_PORT = 8080;
+
+    /**
+     * Prefix of the option which selects the port on which TCP connections are accepted.
+     */
+    static final String BASE_PORT_OPTION = "--base-port=";
+
     /**
      * Main of the server application.
      * It initializes the {@link MenuController}.
@@ -21,10 +41,34 @@ public class Server {
      * For every incoming connection initializes a corresponding {@link VirtualView} and sets its {@link MenuController}.
      *
      * @param args allow to optionally specify the hostname of the server used to set "java.rmi.server.hostname" property.
-     *             It is sufficient to enter an IP or hostname as the only argument.
+     *             It is sufficient to enter an IP or hostname as the first argument.
+     *             The following arguments are options:
+     *             <ul>
+     *                 <li>{@code --nio} serves TCP connections with a fixed pool of selector threads
+     *                 instead of a thread per connection</li>
+     *                 <li>{@code --rmi-batched} moves RMI messages in batches through a shared pool of threads
+     *                 instead of a thread per message</li>
+     *                 <li>{@code --virtual-threads} runs the reader and writer loops of every connection on virtual
+     *                 threads, it requires Java 21 or later</li>
+     *                 <li>{@code --binary-events} sends events in a compact binary encoding to the clients which
+     *                 support it, instead of JSON</li>
+     *                 <li>{@code --resume-sessions} lets the clients which support it resume their session after
+     *                 losing the connection, receiving only the events they have missed</li>
+     *                 <li>{@code --mux} accepts, on port 8082, TCP connections which carry the sessions of many
+     *                 clients at once, see {@link it.polimi.ingsw.networking.MUX.Multiplexer}; they are used by
+     *                 {@link Gateway}</li>
+     *                 <li>{@code --atomic-saves} writes every save to a temporary file which is synced and renamed
+     *                 over the saved one, so that saves survive a crash of the host, see
+     *                 {@link DBManager.Durability#ATOMIC_RENAME}</li>
+     *                 <li>{@code --group-commit} makes saves survive a crash like {@code --atomic-saves}, sharing the
+     *                 syncs among all the saves performed within a few milliseconds, see
+     *                 {@link DBManager.Durability#GROUP_COMMIT}</li>
+     *                 <li>{@code --base-port=<port>} accepts TCP connections on the given port instead of 8080,
+     *                 RMI connections on the following one and multiplexed TCP connections on the one after it;
+     *                 it allows to run many servers on the same host</li>
+     *             </ul>
      */
     public static void main(String[] args) {
-        MenuController menuController = MenuController.getInstance();
         ConnectionAcceptor connectionAcceptor;
 
         Logger.setShouldPrint(false);
@@ -39,7 +83,55 @@ public class Server {
                 System.exit(1);
                 return;
             }
-            connectionAcceptor = new ConnectionAcceptor(8080, 8081);
+            ConnectionAcceptor.TCPMode tcpMode = ConnectionAcceptor.TCPMode.BLOCKING;
+            RMIConnection.Mode rmiMode = RMIConnection.Mode.THREAD_PER_CALL;
+            boolean multiplexed = false;
+            int basePort = DEFAULT_BASE_PORT;
+
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--nio" -> tcpMode = ConnectionAcceptor.TCPMode.SELECTOR;
+                    case "--rmi-batched" -> rmiMode = RMIConnection.Mode.BATCHED;
+                    case "--binary-events" ->
+                        NetworkEventTransceiver.setDefaultEncoding(NetworkEventTransceiver.Encoding.BINARY);
+                    case "--resume-sessions" -> NetworkEventTransceiver.setDefaultResumeTimeout(RESUME_TIMEOUT);
+                    case "--mux" -> multiplexed = true;
+                    case "--atomic-saves" -> DBManager.setDurability(DBManager.Durability.ATOMIC_RENAME);
+                    case "--group-commit" -> DBManager.setDurability(DBManager.Durability.GROUP_COMMIT);
+                    case "--virtual-threads" -> {
+                        if (!Threads.isVirtualSupported()) {
+                            System.out.println("Virtual threads require Java 21 or later");
+                            System.exit(1);
+                            return;
+                        }
+
+                        Threads.setMode(Threads.Mode.VIRTUAL);
+                    }
+                    default -> {
+                        if (args[i].startsWith(BASE_PORT_OPTION)) {
+                            basePort = parseBasePort(args[i]);
+
+                            if (basePort > 0) {
+                                continue;
+                            }
+                        }
+
+                        System.out.println("Unknown option: " + args[i]);
+                        System.exit(1);
+                        return;
+                    }
+                }
+            }
+
+            // The games and the users are loaded only once the options are known, so that they are handled
+            // with the selected durability and threads
+            MenuController.getInstance();
+
+            connectionAcceptor = new ConnectionAcceptor(basePort, basePort + 1, tcpMode, rmiMode);
+
+            if (multiplexed) {
+                connectionAcceptor.acceptMultiplexed(basePort + 2);
+            }
         } catch (RemoteException | ConnectionException e) {
             Logger.writeCritical(e.toString());
 
@@ -47,6 +139,12 @@ public class Server {
             return;
         }
 
+        // The changes of the games which are still waiting to be written are flushed when the server is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            GamePersister.getInstance().flush();
+            Logger.writeMessage("Games persisted, maximum lag: " + GamePersister.getInstance().getMaxLag() + " ms");
+        }, "game-persister-flush"));
+
         Logger.writeMessage("Server start");
 
         while (true) {
@@ -58,4 +156,21 @@ public class Server {
             new VirtualView(transceiver);
         }
     }
+
+    /**
+     * Parses the option which selects the port on which TCP connections are accepted.
+     *
+     * @param option is the option, which starts with {@link Server#BASE_PORT_OPTION}.
+     * @return the selected port, -1 if the option doesn't contain a valid port. The two following ports must be
+     * valid too, since they are used for RMI and multiplexed TCP connections.
+     */
+    static int parseBasePort(String option) {
+        try {
+            int basePort = Integer.parseInt(option.substring(BASE_PORT_OPTION.length()));
+
+            return basePort >= 1024 && basePort + 2 <= 49151 ? basePort : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 }
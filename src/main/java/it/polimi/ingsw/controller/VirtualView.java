@@ -3,6 +3,7 @@ package it.polimi.ingsw.controller;
 import it.polimi.ingsw.controller.servercontroller.GameController;
 import it.polimi.ingsw.controller.servercontroller.MenuController;
 import it.polimi.ingsw.event.EventTransceiver;
+import it.polimi.ingsw.event.PreEncodedEvent;
 import it.polimi.ingsw.event.data.EventData;
 import it.polimi.ingsw.event.data.VoidEventData;
 import it.polimi.ingsw.event.data.client.LoginEventData;
@@ -516,4 +517,11 @@ public class VirtualView implements EventTransmitter {
 
         this.transceiver.broadcast(data);
     }
+
+    @Override
+    public void broadcast(PreEncodedEvent event) {
+        Logger.writeMessage("[%s] player receive %s".formatted(username, event.getEventData().getId()));
+
+        this.transceiver.broadcast(event);
+    }
 }
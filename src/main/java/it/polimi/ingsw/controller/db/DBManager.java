@@ -16,18 +16,71 @@ import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 /**
  * Allows to save {@link Identifiable}s of a specific type to disk and retrieve them back.
- * They are saved as JSON files in a specified folder
+ * They are saved as JSON files in a specified folder, with the {@link Durability} selected by
+ * {@link DBManager#setDurability(Durability)}.
  *
  * @param <T> is the type of the {@link Identifiable}.
  *
  * @author Cristiano Migali
  */
 public class DBManager<T extends Identifiable> {
+    /**
+     * Guarantees given by {@link DBManager#save(Identifiable)} about the saved {@link Identifiable}s surviving
+     * a crash of the host.
+     */
+    public enum Durability {
+        /**
+         * The file is truncated and rewritten in place, without waiting for the storage device: the save is as fast
+         * as possible, but a crash can lose the last saves or leave a file half written.
+         */
+        NO_SYNC,
+
+        /**
+         * The content is written to a temporary file, which is synced and renamed over the saved one, then the
+         * folder is synced: a crash leaves either the previous or the new content, and the save survives once it
+         * has returned. Every save waits for its own syncs.
+         */
+        ATOMIC_RENAME,
+
+        /**
+         * Like {@link Durability#ATOMIC_RENAME}, but the syncs and the renames are performed by the
+         * {@link GroupCommitter} for all the saves submitted within a few milliseconds, by every DBManager,
+         * which wait together.
+         */
+        GROUP_COMMIT
+    }
+
+    /**
+     * Durability of the saves performed by every DBManager.
+     */
+    private static volatile Durability durability = Durability.NO_SYNC;
+
+    /**
+     * Allows to change the durability of the saves performed by every DBManager, {@link Durability#NO_SYNC} by
+     * default. It should be set before anything is saved.
+     *
+     * @param durability is the durability to be set.
+     */
+    public static void setDurability(Durability durability) {
+        DBManager.durability = durability;
+    }
+
+    /**
+     * @return the durability of the saves performed by every DBManager.
+     */
+    public static Durability getDurability() {
+        return durability;
+    }
+
     /**
      * Name of the root of the DB folder.
      */
@@ -58,6 +111,13 @@ public class DBManager<T extends Identifiable> {
         ROOT_FOLDER_NAME = rootFolderName;
     }
 
+    /**
+     * @return the path to the root folder of the DB.
+     */
+    static Path getRootFolderPath() {
+        return Paths.get(ROOT_FOLDER_NAME);
+    }
+
     /**
      * @return the path to the folder where the {@link Identifiable}s saved and retrieved by this DBManager
      * are stored.
@@ -79,6 +139,42 @@ public class DBManager<T extends Identifiable> {
         return Paths.get(ROOT_FOLDER_NAME, folderName, name.toLowerCase() + JSON_EXTENSION);
     }
 
+    /**
+     * It is the extension of the temporary files where the {@link Identifiable}s are written before being renamed
+     * over the saved ones.
+     */
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    /**
+     * Counter used to give a different name to every temporary file.
+     */
+    private static final AtomicLong temporaryFilesCount = new AtomicLong();
+
+    /**
+     * @param name is the name of the {@link Identifiable} which is being saved.
+     * @return the {@link Path} to a new temporary file, in the same folder of the saved {@link Identifiable}.
+     */
+    private Path getTemporaryFilePath(String name) {
+        return Paths.get(ROOT_FOLDER_NAME, folderName, name.toLowerCase() + JSON_EXTENSION + "."
+            + temporaryFilesCount.incrementAndGet() + TEMPORARY_EXTENSION);
+    }
+
+    /**
+     * It is the extension of the files which log the changes of a saved {@link Identifiable} after it has been
+     * saved.
+     */
+    private static final String LOG_EXTENSION = ".log";
+
+    /**
+     * @param name is the name of the {@link Identifiable} for which we want to retrieve the corresponding log
+     *             file path.
+     * @return the {@link Path} to the file where the changes of the {@link Identifiable} with the given name are
+     * logged after it has been saved.
+     */
+    Path getLogFilePath(String name) {
+        return Paths.get(ROOT_FOLDER_NAME, folderName, name.toLowerCase() + LOG_EXTENSION);
+    }
+
     /**
      * Constructor of the class.
      *
@@ -90,6 +186,10 @@ public class DBManager<T extends Identifiable> {
         this.folderName = folderName;
         this.type = type;
 
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+
         gson = new GsonBuilder().setPrettyPrinting()
             .registerTypeAdapter(PersonalGoal.class, new PersonalGoalTypeAdapter())
             .registerTypeAdapter(CommonGoal.class, new CommonGoalTypeAdapter())
@@ -98,10 +198,34 @@ public class DBManager<T extends Identifiable> {
     }
 
     /**
-     * Lock object used to synchronize the save, load and delete operations of {@link Identifiable}s managed
-     * by this DBManager.
+     * Number of locks among which the {@link Identifiable}s managed by this DBManager are spread.
      */
-    private final Object lock = new Object();
+    private static final int STRIPES = 32;
+
+    /**
+     * Lock objects used to synchronize the save, load and delete operations of {@link Identifiable}s managed
+     * by this DBManager. The operations on an {@link Identifiable} hold the lock chosen by its name, hence
+     * the operations on {@link Identifiable}s with different names are performed in parallel, unless their names
+     * share the lock.
+     */
+    private final Object[] stripes = new Object[STRIPES];
+
+    /**
+     * Lock which protects the folder of the {@link Identifiable}s managed by this DBManager. Operations on a
+     * single {@link Identifiable} hold it for reading, together with its lock among the
+     * {@link DBManager#stripes}, while the operations which list the folder hold it for writing, so that they see
+     * no {@link Identifiable} which is being written.
+     */
+    private final ReadWriteLock directoryLock = new ReentrantReadWriteLock();
+
+    /**
+     * @param name is the name of an {@link Identifiable}.
+     * @return the lock object among the {@link DBManager#stripes} which synchronizes the operations on the
+     * {@link Identifiable} with the given name.
+     */
+    Object getStripe(String name) {
+        return stripes[Math.floorMod(name.toLowerCase().hashCode(), STRIPES)];
+    }
 
     /**
      * Loads the {@link Identifiable} with the given name from disk.
@@ -111,28 +235,33 @@ public class DBManager<T extends Identifiable> {
      * @throws IdentifiableNotFoundException if there is no {@link Identifiable} with the given name saved on the disk.
      */
     public T load(String name) throws IdentifiableNotFoundException {
-        synchronized (lock) {
-            File identifiableFile = getIdentifiableFilePath(name).toFile();
+        directoryLock.readLock().lock();
+        try {
+            synchronized (getStripe(name)) {
+                File identifiableFile = getIdentifiableFilePath(name).toFile();
 
-            if (!identifiableFile.exists()) {
-                throw new IdentifiableNotFoundException(name, folderName.substring(0, folderName.length() - 1));
-            }
+                if (!identifiableFile.exists()) {
+                    throw new IdentifiableNotFoundException(name, folderName.substring(0, folderName.length() - 1));
+                }
 
-            if (identifiableFile.isDirectory()) {
-                throw new IllegalStateException("An identifiable file is actually a directory");
-            }
+                if (identifiableFile.isDirectory()) {
+                    throw new IllegalStateException("An identifiable file is actually a directory");
+                }
 
-            StringBuilder identifiableJSON = new StringBuilder();
-            try (Scanner identifiableFileScanner = new Scanner(identifiableFile)) {
-                while (identifiableFileScanner.hasNextLine()) {
-                    identifiableJSON.append(identifiableFileScanner.nextLine());
+                StringBuilder identifiableJSON = new StringBuilder();
+                try (Scanner identifiableFileScanner = new Scanner(identifiableFile)) {
+                    while (identifiableFileScanner.hasNextLine()) {
+                        identifiableJSON.append(identifiableFileScanner.nextLine());
+                    }
+                } catch (FileNotFoundException e) {
+                    throw new IllegalStateException("Got: " + e + " while trying to read " + name + "'s data in the "
+                        + folderName + " db");
                 }
-            } catch (FileNotFoundException e) {
-                throw new IllegalStateException("Got: " + e + " while trying to read " + name + "'s data in the "
-                    + folderName + " db");
-            }
 
-            return (T) gson.fromJson(identifiableJSON.toString(), type);
+                return (T) gson.fromJson(identifiableJSON.toString(), type);
+            }
+        } finally {
+            directoryLock.readLock().unlock();
         }
     }
 
@@ -142,19 +271,111 @@ public class DBManager<T extends Identifiable> {
      * @param identifiable is the {@link Identifiable} to be saved on disk.
      */
     public void save(T identifiable) {
-        synchronized (lock) {
-            try {
-                Files.createDirectories(getFolderPath());
-            } catch (IOException e) {
-                throw new IllegalStateException("Got: " + e + " while trying to create a db folder for " + folderName);
-            }
+        write(identifiable.getName(), toJson(identifiable));
+    }
+
+    /**
+     * @param identifiable is the {@link Identifiable} to be serialized.
+     * @return the JSON representation of the {@link Identifiable}, as it is saved on disk.
+     */
+    String toJson(T identifiable) {
+        return gson.toJson(identifiable);
+    }
+
+    /**
+     * Writes to disk the JSON representation of an {@link Identifiable}, replacing the saved one, with the
+     * selected {@link Durability}.
+     *
+     * @param name is the name of the {@link Identifiable}.
+     * @param json is the JSON representation of the {@link Identifiable}.
+     */
+    void write(String name, String json) {
+        awaitWrite(name, writeDeferred(name, json));
+    }
+
+    /**
+     * Writes to disk the JSON representation of an {@link Identifiable}, without waiting for the
+     * {@link GroupCommitter} in {@link Durability#GROUP_COMMIT} mode. This allows to submit many writes to the same
+     * group before waiting for them with {@link DBManager#awaitWrite(String, GroupCommitter.Commit)}.
+     *
+     * @param name is the name of the {@link Identifiable}.
+     * @param json is the JSON representation of the {@link Identifiable}.
+     * @return the commit to be waited, null if the write is already complete.
+     */
+    GroupCommitter.Commit writeDeferred(String name, String json) {
+        directoryLock.readLock().lock();
+        try {
+            synchronized (getStripe(name)) {
+                try {
+                    Files.createDirectories(getFolderPath());
+                } catch (IOException e) {
+                    throw new IllegalStateException("Got: " + e + " while trying to create a db folder for "
+                        + folderName);
+                }
+
+                Path identifiableFilePath = getIdentifiableFilePath(name);
+
+                try {
+                    switch (durability) {
+                        case NO_SYNC -> writeFile(identifiableFilePath, json);
+                        case ATOMIC_RENAME -> {
+                            Path temporaryFilePath = getTemporaryFilePath(name);
+                            writeFile(temporaryFilePath, json);
+
+                            GroupCommitter.force(temporaryFilePath);
+                            Files.move(temporaryFilePath, identifiableFilePath, StandardCopyOption.ATOMIC_MOVE,
+                                StandardCopyOption.REPLACE_EXISTING);
+                            GroupCommitter.forceFolder(getFolderPath());
+                        }
+                        case GROUP_COMMIT -> {
+                            Path temporaryFilePath = getTemporaryFilePath(name);
+                            writeFile(temporaryFilePath, json);
 
-            try (FileWriter writer = new FileWriter(getIdentifiableFilePath(identifiable.getName()).toFile())) {
-                writer.write(gson.toJson(identifiable));
-            } catch (IOException e) {
-                throw new IllegalStateException("Got: " + e + " while trying to save " + identifiable.getName()
-                    + "'s data in the " + folderName + " db");
+                            // Submitting while holding the lock keeps the writes of the same file in order
+                            return GroupCommitter.getInstance().submit(temporaryFilePath, identifiableFilePath);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Got: " + e + " while trying to save " + name
+                        + "'s data in the " + folderName + " db");
+                }
+
+                return null;
             }
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until a write performed with {@link DBManager#writeDeferred(String, String)} is complete.
+     *
+     * @param name is the name of the written {@link Identifiable}.
+     * @param commit is the commit returned by the write, it can be null.
+     */
+    void awaitWrite(String name, GroupCommitter.Commit commit) {
+        if (commit == null) {
+            return;
+        }
+
+        try {
+            GroupCommitter.getInstance().await(commit);
+        } catch (IOException e) {
+            throw new IllegalStateException("Got: " + e + " while trying to save " + name
+                + "'s data in the " + folderName + " db");
+        }
+    }
+
+    /**
+     * Replaces the content of a file.
+     *
+     * @param path is the path of the file.
+     * @param content is the content to be written.
+     * @throws IOException if an I/O error occurs while writing the file.
+     */
+    private static void writeFile(Path path, String content) throws IOException {
+        try (FileWriter writer = new FileWriter(path.toFile())) {
+            writer.write(content);
         }
     }
 
@@ -164,8 +385,27 @@ public class DBManager<T extends Identifiable> {
      * @param identifiable is the {@link Identifiable} to be deleted from disk-
      */
     public void delete(T identifiable) {
-        synchronized (lock) {
-            getIdentifiableFilePath(identifiable.getName()).toFile().delete();
+        deleteByName(identifiable.getName());
+    }
+
+    /**
+     * Deletes the {@link Identifiable} with the given name from disk.
+     *
+     * @param name is the name of the {@link Identifiable} to be deleted from disk.
+     */
+    void deleteByName(String name) {
+        directoryLock.readLock().lock();
+        try {
+            synchronized (getStripe(name)) {
+                if (durability == Durability.GROUP_COMMIT) {
+                    // A write still waiting for its group would bring the file back
+                    GroupCommitter.getInstance().flush();
+                }
+
+                getIdentifiableFilePath(name).toFile().delete();
+            }
+        } finally {
+            directoryLock.readLock().unlock();
         }
     }
 
@@ -175,8 +415,13 @@ public class DBManager<T extends Identifiable> {
      * which is saved on disk.
      */
     public boolean nameAlreadyInUse(String name) {
-        synchronized (lock) {
-            return getIdentifiableFilePath(name).toFile().exists();
+        directoryLock.readLock().lock();
+        try {
+            synchronized (getStripe(name)) {
+                return getIdentifiableFilePath(name).toFile().exists();
+            }
+        } finally {
+            directoryLock.readLock().unlock();
         }
     }
 
@@ -184,12 +429,17 @@ public class DBManager<T extends Identifiable> {
      * @return the set of all the names of {@link Identifiable}s saved on disk, managed by this DBMangaer.
      */
     private Set<String> getSavedIdentifiablesNames() {
-        synchronized (lock) {
+        directoryLock.writeLock().lock();
+        try {
             return Optional.ofNullable(getFolderPath().toFile().list()).map(
-                    fileNames -> Arrays.stream(fileNames).map(fileName ->
+                    fileNames -> Arrays.stream(fileNames)
+                            .filter(fileName -> fileName.endsWith(JSON_EXTENSION))
+                            .map(fileName ->
                             fileName.substring(0, fileName.length() - JSON_EXTENSION.length()))
                             .collect(Collectors.toSet())
                 ).orElse(Set.of());
+        } finally {
+            directoryLock.writeLock().unlock();
         }
     }
 
@@ -199,7 +449,8 @@ public class DBManager<T extends Identifiable> {
      * @author Giacomo Groppi
      */
     public List<T> loadAllInFolder() {
-        synchronized (lock) {
+        directoryLock.writeLock().lock();
+        try {
             Set<String> positions = this.getSavedIdentifiablesNames();
             List<T> res = new ArrayList<>();
 
@@ -212,6 +463,8 @@ public class DBManager<T extends Identifiable> {
             }
 
             return res;
+        } finally {
+            directoryLock.writeLock().unlock();
         }
     }
 
@@ -0,0 +1,198 @@
+package it.polimi.ingsw.controller.db;
+
+import it.polimi.ingsw.model.game.Game;
+import it.polimi.ingsw.model.game.GameMove;
+import it.polimi.ingsw.utils.Coordinate;
+import it.polimi.ingsw.utils.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only log of the {@link GameMove moves} of a started {@link Game}, which makes the persistence of a move a
+ * small sequential append instead of a rewrite of the whole game.
+ * The game is recovered from its last snapshot, saved by the games {@link DBManager}, replaying the moves logged
+ * after it. A snapshot is taken, and the log is truncated, whenever the board is refilled, since the refill can't
+ * be replayed, and after {@link GameLog#COMPACTION_THRESHOLD} logged moves, to keep the recovery short.
+ * <p>
+ * Every move is a line of text with its sequence number, its type and its arguments separated by spaces, e.g.
+ * {@code 12 SELECT 3 4}. A line which hasn't been terminated, because the server has crashed while writing it,
+ * is ignored on recovery. The snapshot records the number of moves performed on the game, hence the moves logged
+ * before it are skipped if the server has crashed before truncating the log.
+ * <p>
+ * Moves and snapshots are only handed to the {@link GamePersister}, which writes them in background: the game
+ * never waits for the storage.
+ *
+ * @see GameMove
+ * @see DBManager
+ * @see GamePersister
+ */
+public class GameLog {
+    /**
+     * Number of moves logged after which a snapshot of the game is taken.
+     */
+    public static final int COMPACTION_THRESHOLD = 64;
+
+    /**
+     * The logged game.
+     */
+    private final Game game;
+
+    /**
+     * Number of moves logged after the last snapshot.
+     */
+    private int loggedMoves;
+
+    /**
+     * It is true iff the game has been deleted: nothing is written anymore.
+     */
+    private boolean deleted;
+
+    /**
+     * Constructor of the class. Moves are appended to the existing log of the game, if any.
+     *
+     * @param game is the game whose moves are logged.
+     */
+    public GameLog(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Appends a move to the log. If the move is a {@link GameMove.Type#REFILL}, or enough moves have been logged,
+     * a snapshot is taken instead.
+     *
+     * @param move is the move to be logged.
+     */
+    public synchronized void append(GameMove move) {
+        if (deleted) {
+            return;
+        }
+
+        if (move.type() == GameMove.Type.REFILL || loggedMoves >= COMPACTION_THRESHOLD) {
+            snapshot();
+            return;
+        }
+
+        GamePersister.getInstance().append(game.getName(), encode(move));
+        loggedMoves++;
+    }
+
+    /**
+     * Takes a snapshot of the game, which truncates the log once it has been written. The game is serialized by
+     * the calling thread, which must hold the lock on the game.
+     */
+    public synchronized void snapshot() {
+        if (deleted) {
+            return;
+        }
+
+        GamePersister.getInstance().snapshot(game.getName(), DBManager.getGamesDBManager().toJson(game));
+        loggedMoves = 0;
+    }
+
+    /**
+     * Deletes both the snapshot and the log of the game. Nothing is logged afterwards.
+     */
+    public synchronized void delete() {
+        deleted = true;
+
+        GamePersister.getInstance().delete(game.getName());
+    }
+
+    /**
+     * Brings a game loaded from its snapshot to the state it had when the last move has been logged, replaying
+     * the moves logged after the snapshot. Replay stops at the first move which can't be performed.
+     *
+     * @param game is the game loaded from its snapshot.
+     * @return the number of moves which have been replayed.
+     */
+    public static int recover(Game game) {
+        List<String> lines;
+        try {
+            lines = readTerminatedLines(DBManager.getGamesDBManager().getLogFilePath(game.getName()));
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            throw new IllegalStateException("Got: " + e + " while trying to read the log of " + game.getName());
+        }
+
+        long before = game.getMoveCount();
+
+        for (String line : lines) {
+            GameMove move = decode(line);
+
+            if (move == null || !game.replay(move)) {
+                Logger.writeWarning("The log of %s can't be replayed after move %d"
+                    .formatted(game.getName(), game.getMoveCount()));
+                break;
+            }
+        }
+
+        return (int) (game.getMoveCount() - before);
+    }
+
+    /**
+     * @param path is the path of a log file.
+     * @return the lines of the file which are terminated by a line feed.
+     * @throws IOException if an I/O error occurs while reading the file.
+     */
+    private static List<String> readTerminatedLines(Path path) throws IOException {
+        String content = Files.readString(path, StandardCharsets.UTF_8);
+        List<String> lines = new ArrayList<>();
+
+        int start = 0;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            lines.add(content.substring(start, end));
+            start = end + 1;
+        }
+
+        return lines;
+    }
+
+    /**
+     * Encodes a move as a line of the log, without the line terminator.
+     *
+     * @param move is the move to be encoded.
+     * @return the encoded move.
+     */
+    static String encode(GameMove move) {
+        String line = move.sequence() + " " + move.type();
+
+        return switch (move.type()) {
+            case SELECT, DESELECT -> line + " " + move.coordinate().getRow() + " " + move.coordinate().getCol();
+            case INSERT, TURN -> line + " " + move.value();
+            case REFILL -> line;
+        };
+    }
+
+    /**
+     * Decodes a line of the log.
+     *
+     * @param line is the line to be decoded, without the line terminator.
+     * @return the decoded move, null if the line is malformed.
+     */
+    static GameMove decode(String line) {
+        String[] fields = line.split(" ");
+
+        try {
+            long sequence = Long.parseLong(fields[0]);
+            GameMove.Type type = GameMove.Type.valueOf(fields[1]);
+
+            return switch (type) {
+                case SELECT, DESELECT -> fields.length != 4 ? null : new GameMove(sequence, type,
+                    new Coordinate(Integer.parseInt(fields[2]), Integer.parseInt(fields[3])), 0);
+                case INSERT, TURN -> fields.length != 3 ? null :
+                    new GameMove(sequence, type, null, Integer.parseInt(fields[2]));
+                case REFILL -> fields.length != 2 ? null : new GameMove(sequence, type, null, 0);
+            };
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package it.polimi.ingsw.controller.db;
+
+import it.polimi.ingsw.model.game.Game;
+import it.polimi.ingsw.utils.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Background stage which writes the snapshots and the logged moves of the {@link Game}s to disk, so that the
+ * threads which play the games never wait for the storage.
+ * Snapshots are submitted as their JSON representation, taken while holding the lock on the game, hence they are
+ * immutable. Changes submitted for a game while the previous ones are still waiting are coalesced: only the last
+ * snapshot is written, together with the moves logged after it, since it already contains the previous ones.
+ * <p>
+ * A single "game-persister" thread performs the writes, taking all the dirty games at once, hence the changes of
+ * the same game are never reordered. {@link GamePersister#flush()} waits until everything submitted
+ * has been written, and it should be invoked before the process exits.
+ *
+ * @see GameLog
+ */
+public class GamePersister {
+    /**
+     * Changes of a game which haven't been written yet.
+     */
+    private static final class PendingWrite {
+        /**
+         * It is true iff the files of the game have to be deleted before anything else is written.
+         */
+        private boolean delete;
+
+        /**
+         * JSON representation of the snapshot to be written, null if there isn't one.
+         */
+        private String snapshot;
+
+        /**
+         * Lines to be appended to the log of the game, after the snapshot if there is one.
+         */
+        private final List<String> lines = new ArrayList<>();
+
+        /**
+         * Time in milliseconds at which the oldest of the changes has been submitted.
+         */
+        private final long dirtySince = System.currentTimeMillis();
+    }
+
+    /**
+     * Instance shared by the whole process, used to implement a singleton pattern.
+     */
+    private static final GamePersister INSTANCE = new GamePersister();
+
+    /**
+     * @return the instance of the GamePersister shared by the whole process.
+     */
+    public static GamePersister getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lock which protects the pending changes and the statistics.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * {@link Condition Condition} signalled when a game becomes dirty.
+     */
+    private final Condition dirty = lock.newCondition();
+
+    /**
+     * {@link Condition Condition} signalled when the changes of a game have been written.
+     */
+    private final Condition written = lock.newCondition();
+
+    /**
+     * Changes which haven't been written yet, indexed by the name of their game in lower case, in the order in
+     * which the games have become dirty.
+     */
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+
+    /**
+     * Number of games whose changes are being written by the "game-persister" thread.
+     */
+    private int writingGames;
+
+    /**
+     * Time in milliseconds at which the changes being written have been submitted, 0 if nothing is being written.
+     */
+    private long writingDirtySince;
+
+    /**
+     * Number of snapshots written to disk.
+     */
+    private long writtenSnapshots;
+
+    /**
+     * Number of snapshots which have been replaced by a following one before being written.
+     */
+    private long coalescedSnapshots;
+
+    /**
+     * Maximum time in milliseconds which has elapsed between the submission of a change and its write.
+     */
+    private long maxLag;
+
+    /**
+     * Constructor of the class. It starts the "game-persister" thread.
+     */
+    private GamePersister() {
+        Thread thread = new Thread(this::run, "game-persister");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Submits a snapshot of a game, which replaces any snapshot and logged move of the game still waiting.
+     *
+     * @param name is the name of the game.
+     * @param json is the JSON representation of the game.
+     */
+    void snapshot(String name, String json) {
+        lock.lock();
+        try {
+            PendingWrite write = pendingWrite(name);
+
+            if (write.snapshot != null) {
+                coalescedSnapshots++;
+            }
+
+            write.snapshot = json;
+            write.lines.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Submits a line to be appended to the log of a game.
+     *
+     * @param name is the name of the game.
+     * @param line is the line, without the line terminator.
+     */
+    void append(String name, String line) {
+        lock.lock();
+        try {
+            pendingWrite(name).lines.add(line);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Submits the deletion of the snapshot and of the log of a game, discarding any change still waiting.
+     *
+     * @param name is the name of the game.
+     */
+    void delete(String name) {
+        lock.lock();
+        try {
+            PendingWrite write = pendingWrite(name);
+
+            write.delete = true;
+            write.snapshot = null;
+            write.lines.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all the submitted changes have been written. Changes submitted while waiting are waited too.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            while (!pending.isEmpty() || writingGames > 0) {
+                written.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the time in milliseconds since the oldest change which hasn't been written yet has been submitted,
+     * 0 if everything has been written.
+     */
+    public long getLag() {
+        lock.lock();
+        try {
+            long oldest = writingGames > 0 ? writingDirtySince : Long.MAX_VALUE;
+            for (PendingWrite write : pending.values()) {
+                oldest = Math.min(oldest, write.dirtySince);
+            }
+
+            return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the maximum time in milliseconds which has elapsed between the submission of a change and its write.
+     */
+    public long getMaxLag() {
+        lock.lock();
+        try {
+            return maxLag;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of games whose changes haven't been written yet.
+     */
+    public int getPendingGames() {
+        lock.lock();
+        try {
+            return pending.size() + writingGames;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of snapshots written to disk.
+     */
+    public long getWrittenSnapshots() {
+        lock.lock();
+        try {
+            return writtenSnapshots;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of snapshots which have been replaced by a following one before being written.
+     */
+    public long getCoalescedSnapshots() {
+        lock.lock();
+        try {
+            return coalescedSnapshots;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param name is the name of a game.
+     * @return the changes of the game which haven't been written yet, marking the game as dirty if it wasn't.
+     * It must be invoked while holding the {@link GamePersister#lock}.
+     */
+    private PendingWrite pendingWrite(String name) {
+        return pending.computeIfAbsent(name.toLowerCase(), key -> {
+            dirty.signalAll();
+            return new PendingWrite();
+        });
+    }
+
+    /**
+     * Writes the changes of the dirty games, forever. It is run by the "game-persister" thread.
+     * All the games which are dirty are taken at once, so that, in {@link DBManager.Durability#GROUP_COMMIT} mode,
+     * their snapshots are committed in the same group.
+     */
+    private void run() {
+        while (true) {
+            Map<String, PendingWrite> taken;
+
+            lock.lock();
+            try {
+                writingGames = 0;
+                writingDirtySince = 0;
+                written.signalAll();
+
+                while (pending.isEmpty()) {
+                    dirty.awaitUninterruptibly();
+                }
+
+                taken = new LinkedHashMap<>(pending);
+                pending.clear();
+
+                writingGames = taken.size();
+                // The games are taken in the order in which they have become dirty
+                writingDirtySince = taken.values().iterator().next().dirtySince;
+            } finally {
+                lock.unlock();
+            }
+
+            // A game which can't be written mustn't stop the thread, otherwise no game would be written anymore
+            // and flush() would wait forever
+            try {
+                write(taken);
+            } catch (RuntimeException e) {
+                Logger.writeCritical("Got: " + e + " while trying to persist the games");
+            }
+
+            lock.lock();
+            try {
+                for (PendingWrite write : taken.values()) {
+                    maxLag = Math.max(maxLag, System.currentTimeMillis() - write.dirtySince);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the changes of some games. For every game, first its files are deleted, then the snapshot is written,
+     * which truncates the log once it is durable, then the lines of the log are appended. Unless the durability is
+     * {@link DBManager.Durability#NO_SYNC}, the appended logs are synced at the end, all together: in
+     * {@link DBManager.Durability#GROUP_COMMIT} mode they are committed in the same group.
+     *
+     * @param taken are the changes to be written, indexed by the name of their game.
+     */
+    private void write(Map<String, PendingWrite> taken) {
+        DBManager<Game> gamesDBManager = DBManager.getGamesDBManager();
+        Map<String, GroupCommitter.Commit> commits = new HashMap<>();
+        Set<String> failed = new HashSet<>();
+        Map<String, Path> appended = new LinkedHashMap<>();
+
+        for (Map.Entry<String, PendingWrite> entry : taken.entrySet()) {
+            String name = entry.getKey();
+            PendingWrite write = entry.getValue();
+
+            try {
+                if (write.delete) {
+                    Files.deleteIfExists(gamesDBManager.getLogFilePath(name));
+                    gamesDBManager.deleteByName(name);
+                }
+
+                if (write.snapshot != null) {
+                    commits.put(name, gamesDBManager.writeDeferred(name, write.snapshot));
+                }
+            } catch (IOException | RuntimeException e) {
+                failed.add(name);
+                Logger.writeCritical("Got: " + e + " while trying to persist " + name);
+            }
+        }
+
+        for (Map.Entry<String, PendingWrite> entry : taken.entrySet()) {
+            String name = entry.getKey();
+            PendingWrite write = entry.getValue();
+
+            if (failed.contains(name)) {
+                continue;
+            }
+
+            try {
+                Path logPath = gamesDBManager.getLogFilePath(name);
+
+                if (write.snapshot != null) {
+                    gamesDBManager.awaitWrite(name, commits.get(name));
+                    // The moves logged before the snapshot would be skipped anyway, since the snapshot counts them
+                    Files.deleteIfExists(logPath);
+
+                    lock.lock();
+                    try {
+                        writtenSnapshots++;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+
+                if (!write.lines.isEmpty()) {
+                    Files.createDirectories(logPath.getParent());
+                    Files.writeString(logPath, String.join("\n", write.lines) + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    appended.put(name, logPath);
+                }
+            } catch (IOException | RuntimeException e) {
+                Logger.writeCritical("Got: " + e + " while trying to persist " + name);
+            }
+        }
+
+        syncLogs(appended);
+    }
+
+    /**
+     * Makes durable the logs which have been appended, according to the selected {@link DBManager.Durability}.
+     * Every log is synced, then every folder which contains them is synced once, since a log may have been
+     * created by the append.
+     *
+     * @param appended are the paths of the appended logs, indexed by the name of their game.
+     */
+    private static void syncLogs(Map<String, Path> appended) {
+        switch (DBManager.getDurability()) {
+            case NO_SYNC -> { }
+            case ATOMIC_RENAME -> {
+                Set<Path> folders = new HashSet<>();
+
+                for (Map.Entry<String, Path> entry : appended.entrySet()) {
+                    try {
+                        GroupCommitter.force(entry.getValue());
+                        folders.add(entry.getValue().toAbsolutePath().getParent());
+                    } catch (IOException | RuntimeException e) {
+                        Logger.writeCritical("Got: " + e + " while trying to sync the log of " + entry.getKey());
+                    }
+                }
+
+                folders.forEach(GroupCommitter::forceFolder);
+            }
+            case GROUP_COMMIT -> {
+                Map<String, GroupCommitter.Commit> syncs = new LinkedHashMap<>();
+                for (Map.Entry<String, Path> entry : appended.entrySet()) {
+                    syncs.put(entry.getKey(), GroupCommitter.getInstance().submitSync(entry.getValue()));
+                }
+
+                for (Map.Entry<String, GroupCommitter.Commit> entry : syncs.entrySet()) {
+                    try {
+                        GroupCommitter.getInstance().await(entry.getValue());
+                    } catch (IOException | RuntimeException e) {
+                        Logger.writeCritical("Got: " + e + " while trying to sync the log of " + entry.getKey());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package it.polimi.ingsw.controller.db;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Makes durable the files written by the {@link DBManager}s in {@link DBManager.Durability#GROUP_COMMIT} mode.
+ * Files are written to a temporary file which is handed to the GroupCommitter: the "group-commit" thread waits
+ * {@link GroupCommitter#WINDOW} milliseconds after the first file of a group has been submitted, then it syncs
+ * all the files submitted in the meantime, renames them over the files they replace and syncs every folder
+ * involved once. The cost of syncing a folder is shared by all the files of the group, a file submitted many times
+ * in the same group is synced only once, and the submitters wait for the group together instead of queueing one
+ * sync after another.
+ * <p>
+ * Files which are appended in place, rather than replaced, can be submitted too through
+ * {@link GroupCommitter#submitSync(Path)}: they are synced with the group, without being renamed.
+ *
+ * @see DBManager
+ */
+class GroupCommitter {
+    /**
+     * Time in milliseconds during which the files submitted after the first one join its group.
+     */
+    static final long WINDOW = 5;
+
+    /**
+     * Write of a file which has to be made durable.
+     */
+    static final class Commit {
+        /**
+         * Temporary file where the content has been written, the same as the target if the file has been written
+         * in place.
+         */
+        private final Path temporary;
+
+        /**
+         * File which is replaced by the temporary one.
+         */
+        private final Path target;
+
+        /**
+         * It is true iff the commit has been completed, either successfully or not.
+         */
+        private boolean done;
+
+        /**
+         * Error which has prevented the commit, null if there isn't one.
+         */
+        private IOException error;
+
+        /**
+         * Constructor of the class.
+         *
+         * @param temporary is the temporary file where the content has been written.
+         * @param target is the file which is replaced by the temporary one.
+         */
+        private Commit(Path temporary, Path target) {
+            this.temporary = temporary;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Instance shared by the whole process, used to implement a singleton pattern.
+     */
+    private static final GroupCommitter INSTANCE = new GroupCommitter();
+
+    /**
+     * @return the instance of the GroupCommitter shared by the whole process.
+     */
+    static GroupCommitter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lock which protects the submitted commits and the statistics.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * {@link Condition Condition} signalled when a commit is submitted.
+     */
+    private final Condition submitted = lock.newCondition();
+
+    /**
+     * {@link Condition Condition} signalled when a group has been committed.
+     */
+    private final Condition committed = lock.newCondition();
+
+    /**
+     * Commits which haven't been taken by the "group-commit" thread yet, in the order in which they have been
+     * submitted.
+     */
+    private final List<Commit> pending = new ArrayList<>();
+
+    /**
+     * Number of commits which have been submitted.
+     */
+    private long submittedFiles;
+
+    /**
+     * Number of groups which have been committed.
+     */
+    private long committedGroups;
+
+    /**
+     * Number of commits which have been completed.
+     */
+    private long committedFiles;
+
+    /**
+     * Constructor of the class. It starts the "group-commit" thread.
+     */
+    private GroupCommitter() {
+        Thread thread = new Thread(this::run, "group-commit");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Submits a temporary file to be synced and renamed over the file it replaces. Files submitted for the same
+     * target are renamed in the order in which they have been submitted.
+     *
+     * @param temporary is the temporary file, in the same folder of the target.
+     * @param target is the file which is replaced by the temporary one.
+     * @return the submitted commit, to be waited with {@link GroupCommitter#await(Commit)}.
+     */
+    Commit submit(Path temporary, Path target) {
+        Commit commit = new Commit(temporary, target);
+
+        lock.lock();
+        try {
+            pending.add(commit);
+            submittedFiles++;
+            submitted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        return commit;
+    }
+
+    /**
+     * Submits a file written in place to be synced, together with its folder, with the next group.
+     *
+     * @param file is the file to be synced.
+     * @return the submitted commit, to be waited with {@link GroupCommitter#await(Commit)}.
+     */
+    Commit submitSync(Path file) {
+        return submit(file, file);
+    }
+
+    /**
+     * Waits until a commit has been completed.
+     *
+     * @param commit is the commit to be waited.
+     * @throws IOException if the commit has failed.
+     */
+    void await(Commit commit) throws IOException {
+        lock.lock();
+        try {
+            while (!commit.done) {
+                committed.awaitUninterruptibly();
+            }
+
+            if (commit.error != null) {
+                throw commit.error;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all the commits submitted so far have been completed.
+     */
+    void flush() {
+        lock.lock();
+        try {
+            // Groups are committed in the order in which their files have been submitted
+            long waited = submittedFiles;
+
+            while (committedFiles < waited) {
+                committed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of groups which have been committed.
+     */
+    long getCommittedGroups() {
+        lock.lock();
+        try {
+            return committedGroups;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of commits which have been completed.
+     */
+    long getCommittedFiles() {
+        lock.lock();
+        try {
+            return committedFiles;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits the submitted files, one group at a time, forever. It is run by the "group-commit" thread.
+     */
+    private void run() {
+        while (true) {
+            List<Commit> group;
+
+            lock.lock();
+            try {
+                while (pending.isEmpty()) {
+                    submitted.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                Thread.sleep(WINDOW);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            lock.lock();
+            try {
+                group = new ArrayList<>(pending);
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+
+            // The submitters are woken up even if the group can't be committed, otherwise they would wait forever
+            try {
+                commit(group);
+            } catch (RuntimeException e) {
+                for (Commit commit : group) {
+                    if (commit.error == null) {
+                        commit.error = new IOException("Got: " + e + " while trying to commit a group", e);
+                    }
+                }
+            }
+
+            lock.lock();
+            try {
+                for (Commit commit : group) {
+                    commit.done = true;
+                }
+
+                committedGroups++;
+                committedFiles += group.size();
+                committed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Commits a group of files: only the last file submitted for every target is synced and renamed, the
+     * previous ones are discarded, then the folders involved are synced. Files written in place are only synced.
+     *
+     * @param group is the group of commits, in the order in which they have been submitted.
+     */
+    private static void commit(List<Commit> group) {
+        Map<Path, Commit> last = new LinkedHashMap<>();
+        for (Commit commit : group) {
+            last.put(commit.target, commit);
+        }
+
+        Set<Path> folders = new LinkedHashSet<>();
+        for (Commit commit : group) {
+            try {
+                boolean inPlace = commit.temporary.equals(commit.target);
+
+                if (last.get(commit.target) != commit) {
+                    if (!inPlace) {
+                        Files.deleteIfExists(commit.temporary);
+                    }
+                    continue;
+                }
+
+                force(commit.temporary);
+                if (!inPlace) {
+                    Files.move(commit.temporary, commit.target, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                }
+                folders.add(commit.target.toAbsolutePath().getParent());
+            } catch (IOException e) {
+                commit.error = e;
+            } catch (RuntimeException e) {
+                commit.error = new IOException(e);
+            }
+        }
+
+        for (Path folder : folders) {
+            forceFolder(folder);
+        }
+    }
+
+    /**
+     * Flushes the content of a file to the storage device.
+     *
+     * @param file is the file to be synced.
+     * @throws IOException if an I/O error occurs while syncing the file.
+     */
+    static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Flushes the entries of a folder to the storage device, so that the files renamed inside it survive a crash.
+     * Some file systems don't allow to sync a folder: nothing is done in that case.
+     *
+     * @param folder is the folder to be synced.
+     */
+    static void forceFolder(Path folder) {
+        try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Folders can't be opened on some platforms, the rename is still atomic there
+        }
+    }
+}
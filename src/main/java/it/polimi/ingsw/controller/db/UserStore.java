@@ -0,0 +1,690 @@
+package it.polimi.ingsw.controller.db;
+
+import com.google.gson.Gson;
+import it.polimi.ingsw.controller.User;
+import it.polimi.ingsw.utils.Logger;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the {@link User}s in a single memory-mapped data file, with a memory-mapped hash index keyed by their name
+ * in lower case, instead of a JSON file for every user. Checking if a name is in use or loading a user costs a
+ * lookup in the index, without opening any file.
+ * <p>
+ * The data file is a header, with a flag telling if the users saved as JSON files have been imported and the offset
+ * of the end of the records, followed by the records, which are only appended: a saved user is a new record and the index points to the last one. Every record is made of the length
+ * and the bytes of the name in lower case, followed by the length and the bytes of the JSON representation of the
+ * user, followed by the CRC-32 of all of them.
+ * The index file is a header, with the number of slots, the number of users and the offset of the end of the records
+ * accounted for by the index, followed by an open addressing table whose slots hold the offset of a record and the
+ * hash of its name. The offset in the header is -1 while the slots are changed, and it is written back only once
+ * the slots have reached the storage device.
+ * <p>
+ * Saves are synced to the storage device unless the {@link DBManager.Durability} is
+ * {@link DBManager.Durability#NO_SYNC}: in that mode a crash of the process loses nothing, since the mapped pages
+ * are written back by the operating system, but a crash of the host can lose the last saves and leave the end of
+ * the data file, or the index, half written. Hence, when the store is opened, the index is trusted only if it
+ * accounts for a part of the records and none of its slots points beyond it: the records after that part are
+ * checked against their CRC and the end of the data file, the ones from the first invalid one onwards are
+ * discarded, and the valid ones are indexed. Otherwise, the whole data file is checked and the index is rebuilt.
+ * Files are mapped whole, hence the data file can't grow beyond 2 GB.
+ *
+ * @see User
+ * @see DBManager
+ */
+public class UserStore {
+    /**
+     * Name of the data file, inside the root folder of the DB.
+     */
+    private static final String DATA_FILE_NAME = "users.dat";
+
+    /**
+     * Name of the index file, inside the root folder of the DB.
+     */
+    private static final String INDEX_FILE_NAME = "users.idx";
+
+    /**
+     * Value of the first 4 bytes of the data file.
+     */
+    private static final int DATA_MAGIC = 0x55534452;
+
+    /**
+     * Value of the first 4 bytes of the index file.
+     */
+    private static final int INDEX_MAGIC = 0x55534958;
+
+    /**
+     * Size in bytes of the header of the data file: the magic number, the flag telling if the users saved as JSON
+     * files have been imported, 4 bytes of padding and the offset of the end of the records.
+     */
+    private static final int DATA_HEADER_SIZE = 16;
+
+    /**
+     * Size in bytes of the header of the index file: the magic number, the number of slots, the number of users
+     * and 4 bytes of padding, followed by the offset of the end of the data file.
+     */
+    private static final int INDEX_HEADER_SIZE = 24;
+
+    /**
+     * Size in bytes of a slot of the index: the offset of the record, 0 if the slot is empty, the hash of the name
+     * and 4 bytes of padding.
+     */
+    private static final int SLOT_SIZE = 16;
+
+    /**
+     * Size in bytes of the fields of a record besides the name and the JSON: their lengths and the CRC.
+     */
+    private static final int RECORD_OVERHEAD = 12;
+
+    /**
+     * Initial size in bytes of the data file.
+     */
+    private static final int INITIAL_DATA_SIZE = 1 << 16;
+
+    /**
+     * Initial number of slots of the index, it must be a power of 2.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /**
+     * Instance shared by the whole process, used to implement a singleton pattern.
+     */
+    private static final UserStore INSTANCE = new UserStore();
+
+    /**
+     * @return the instance of the UserStore shared by the whole process.
+     */
+    public static UserStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lock which protects the files: lookups hold it for reading, saves for writing.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * {@link Gson} object used to serialize and deserialize the users.
+     */
+    private final Gson gson = new Gson();
+
+    /**
+     * It is true iff the files are open.
+     */
+    private volatile boolean open;
+
+    /**
+     * Channel of the data file.
+     */
+    private FileChannel dataChannel;
+
+    /**
+     * Channel of the index file.
+     */
+    private FileChannel indexChannel;
+
+    /**
+     * Mapping of the whole data file.
+     */
+    private MappedByteBuffer data;
+
+    /**
+     * Mapping of the whole index file.
+     */
+    private MappedByteBuffer index;
+
+    /**
+     * Number of slots of the index.
+     */
+    private int capacity;
+
+    /**
+     * Number of users in the index.
+     */
+    private int size;
+
+    /**
+     * Offset of the end of the records in the data file.
+     */
+    private int dataEnd;
+
+    /**
+     * Constructor of the class. Files are opened on first use.
+     */
+    private UserStore() {}
+
+    /**
+     * Loads the {@link User} with the given name.
+     *
+     * @param name is the name of the user, the case is ignored.
+     * @return the user with the given name.
+     * @throws IdentifiableNotFoundException if there is no user with the given name.
+     */
+    public User load(String name) throws IdentifiableNotFoundException {
+        ensureOpen();
+
+        lock.readLock().lock();
+        try {
+            String key = name.toLowerCase();
+            int slot = find(key, hash(key));
+
+            if (slot < 0) {
+                throw new IdentifiableNotFoundException(name, "user");
+            }
+
+            int offset = (int) index.getLong(slotPosition(slot));
+            int keyLength = data.getInt(offset);
+            byte[] json = new byte[data.getInt(offset + 4 + keyLength)];
+            data.get(offset + 8 + keyLength, json);
+
+            return gson.fromJson(new String(json, StandardCharsets.UTF_8), User.class);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param name is the name that we want to check if it is in use or not, the case is ignored.
+     * @return true iff there is a {@link User} with the provided name.
+     */
+    public boolean nameAlreadyInUse(String name) {
+        ensureOpen();
+
+        lock.readLock().lock();
+        try {
+            String key = name.toLowerCase();
+
+            return find(key, hash(key)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves the provided {@link User}, replacing the one with the same name if there is one.
+     *
+     * @param user is the user to be saved.
+     */
+    public void save(User user) {
+        ensureOpen();
+
+        lock.writeLock().lock();
+        try {
+            insert(user);
+            force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Imports the {@link User}s saved as JSON files by {@link DBManager#getUsersDBManager()} which aren't in the
+     * store yet, then records that the import has been completed. The JSON files are left untouched.
+     *
+     * @return the number of imported users.
+     * @see #isFolderImported()
+     */
+    public int importFolder() {
+        List<User> users = DBManager.getUsersDBManager().loadAllInFolder();
+        int imported = 0;
+
+        ensureOpen();
+
+        lock.writeLock().lock();
+        try {
+            for (User user : users) {
+                String key = user.getName().toLowerCase();
+
+                if (find(key, hash(key)) < 0) {
+                    insert(user);
+                    imported++;
+                }
+            }
+
+            // The flag is written once the users have reached the storage device, so that an interrupted import
+            // isn't taken for a completed one
+            force();
+            data.putInt(4, 1);
+            force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return imported;
+    }
+
+    /**
+     * @return true iff an import of the {@link User}s saved as JSON files has been completed.
+     * @see #importFolder()
+     */
+    public boolean isFolderImported() {
+        ensureOpen();
+
+        lock.readLock().lock();
+        try {
+            return data.getInt(4) != 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of {@link User}s in the store.
+     */
+    public int size() {
+        ensureOpen();
+
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the files. They are opened again on the next use, allowing to change the root folder of the DB
+     * in the meantime.
+     */
+    void close() {
+        lock.writeLock().lock();
+        try {
+            if (!open) {
+                return;
+            }
+
+            open = false;
+            data = null;
+            index = null;
+
+            dataChannel.close();
+            indexChannel.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Got: " + e + " while trying to close the users store");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Opens the files if they aren't open.
+     */
+    private void ensureOpen() {
+        if (open) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (open) {
+                return;
+            }
+
+            Path rootFolderPath = DBManager.getRootFolderPath();
+            Files.createDirectories(rootFolderPath);
+
+            dataChannel = FileChannel.open(rootFolderPath.resolve(DATA_FILE_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            indexChannel = FileChannel.open(rootFolderPath.resolve(INDEX_FILE_NAME), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            if (dataChannel.size() < DATA_HEADER_SIZE) {
+                data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_DATA_SIZE);
+                data.putInt(0, DATA_MAGIC);
+                data.putLong(8, DATA_HEADER_SIZE);
+            } else {
+                data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, dataChannel.size());
+
+                if (data.getInt(0) != DATA_MAGIC) {
+                    throw new IllegalStateException("The users data file is corrupted");
+                }
+            }
+            // The end of the records is checked by the scan, it can only be trusted to be inside the file
+            dataEnd = (int) Math.min(Math.max(data.getLong(8), DATA_HEADER_SIZE), data.capacity());
+
+            if (!openIndex()) {
+                rebuildIndex();
+            }
+            force();
+
+            open = true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Got: " + e + " while trying to open the users store");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Maps the index file if it can be trusted: its header must be valid, it must account for a part of the records
+     * and none of its slots may point beyond it. The records after that part are then indexed.
+     * It must be invoked while holding the lock for writing.
+     *
+     * @return true iff the index has been mapped.
+     * @throws IOException if an I/O error occurs while mapping the index file.
+     */
+    private boolean openIndex() throws IOException {
+        long indexSize = indexChannel.size();
+        if (indexSize < INDEX_HEADER_SIZE) {
+            return false;
+        }
+
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize);
+
+        int indexCapacity = index.getInt(4);
+        int indexUsers = index.getInt(8);
+        long indexedEnd = index.getLong(16);
+
+        if (index.getInt(0) != INDEX_MAGIC || indexCapacity < INITIAL_CAPACITY || Integer.bitCount(indexCapacity) != 1
+            || INDEX_HEADER_SIZE + (long) indexCapacity * SLOT_SIZE > indexSize
+            || indexUsers < 0 || indexUsers > indexCapacity
+            || indexedEnd < DATA_HEADER_SIZE || indexedEnd > dataEnd) {
+            return false;
+        }
+
+        // Slots written after the header may have reached the storage device before a crash
+        for (int slot = 0; slot < indexCapacity; slot++) {
+            long offset = index.getLong(slotPosition(slot));
+
+            if (offset != 0 && (offset < DATA_HEADER_SIZE || offset >= indexedEnd)) {
+                return false;
+            }
+        }
+
+        capacity = indexCapacity;
+        size = indexUsers;
+
+        index.putLong(16, -1);
+        indexRecords((int) indexedEnd);
+
+        return true;
+    }
+
+    /**
+     * Rebuilds the index scanning all the records of the data file. It must be invoked while holding the lock for
+     * writing.
+     *
+     * @throws IOException if an I/O error occurs while mapping the index file.
+     */
+    private void rebuildIndex() throws IOException {
+        mapIndex(INITIAL_CAPACITY);
+        size = 0;
+
+        indexRecords(DATA_HEADER_SIZE);
+    }
+
+    /**
+     * Indexes the records of the data file starting from the given one. The scan stops at the first invalid
+     * record: it and the following ones are discarded, moving the end of the records back. It must be invoked while
+     * holding the lock for writing.
+     *
+     * @param offset is the offset of the first record to be indexed.
+     * @throws IOException if an I/O error occurs while mapping the index file.
+     */
+    private void indexRecords(int offset) throws IOException {
+        for (int end; offset < dataEnd && (end = recordEnd(offset)) > 0; offset = end) {
+            int keyLength = data.getInt(offset);
+            byte[] key = new byte[keyLength];
+            data.get(offset + 4, key);
+
+            index(new String(key, StandardCharsets.UTF_8), offset);
+        }
+
+        if (offset != dataEnd) {
+            Logger.writeWarning("Discarded %d bytes of invalid records at the end of the users store"
+                .formatted(dataEnd - offset));
+
+            dataEnd = offset;
+            data.putLong(8, dataEnd);
+        }
+    }
+
+    /**
+     * Checks a record of the data file. It must be invoked while holding the lock.
+     *
+     * @param offset is the offset of the record in the data file.
+     * @return the offset of the end of the record, -1 if the record exceeds the end of the records or it doesn't
+     * match its CRC.
+     */
+    private int recordEnd(int offset) {
+        int available = dataEnd - offset - RECORD_OVERHEAD;
+        if (available < 0) {
+            return -1;
+        }
+
+        int keyLength = data.getInt(offset);
+        if (keyLength < 0 || keyLength > available) {
+            return -1;
+        }
+
+        int jsonLength = data.getInt(offset + 4 + keyLength);
+        if (jsonLength < 0 || jsonLength > available - keyLength) {
+            return -1;
+        }
+
+        int crcOffset = offset + 8 + keyLength + jsonLength;
+        if (data.getInt(crcOffset) != crc(offset, crcOffset - offset)) {
+            return -1;
+        }
+
+        return crcOffset + 4;
+    }
+
+    /**
+     * @param offset is the offset of the first byte in the data file.
+     * @param length is the number of bytes.
+     * @return the CRC-32 of the given bytes of the data file.
+     */
+    private int crc(int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data.slice(offset, length));
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Maps the index file with the given number of slots, all of them empty, and writes its header.
+     * It must be invoked while holding the lock for writing.
+     *
+     * @param capacity is the number of slots, it must be a power of 2.
+     * @throws IOException if an I/O error occurs while mapping the index file.
+     */
+    private void mapIndex(int capacity) throws IOException {
+        long indexSize = INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE;
+        if (indexSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The users index can't grow beyond 2 GB");
+        }
+
+        if (index == null || index.capacity() < indexSize) {
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexSize);
+        }
+
+        // The index doesn't match the data file until it has been completely written
+        index.putInt(0, INDEX_MAGIC);
+        index.putLong(16, -1);
+
+        byte[] empty = new byte[capacity * SLOT_SIZE];
+        index.put(INDEX_HEADER_SIZE, empty);
+
+        this.capacity = capacity;
+        index.putInt(4, capacity);
+    }
+
+    /**
+     * Appends a record for the given {@link User} to the data file and points the index to it.
+     * It must be invoked while holding the lock for writing.
+     *
+     * @param user is the user to be inserted.
+     */
+    private void insert(User user) {
+        String key = user.getName().toLowerCase();
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] json = gson.toJson(user).getBytes(StandardCharsets.UTF_8);
+
+        int offset = dataEnd;
+        long end = (long) offset + RECORD_OVERHEAD + keyBytes.length + json.length;
+
+        try {
+            if (end > data.capacity()) {
+                long dataSize = Math.max(2L * data.capacity(), end);
+                if (dataSize > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("The users data file can't grow beyond 2 GB");
+                }
+
+                data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, dataSize);
+            }
+
+            data.putInt(offset, keyBytes.length);
+            data.put(offset + 4, keyBytes);
+            data.putInt(offset + 4 + keyBytes.length, json.length);
+            data.put(offset + 8 + keyBytes.length, json);
+            data.putInt((int) end - 4, crc(offset, (int) end - 4 - offset));
+
+            dataEnd = (int) end;
+            data.putLong(8, dataEnd);
+
+            // The index accounts for the records again only after the next flush
+            index.putLong(16, -1);
+            index(key, offset);
+        } catch (IOException e) {
+            throw new IllegalStateException("Got: " + e + " while trying to save " + user.getName()
+                + "'s data in the users store");
+        }
+    }
+
+    /**
+     * Points the slot of the given name to a record, doubling the slots of the index if it is too full.
+     * It must be invoked while holding the lock for writing.
+     *
+     * @param key is the name in lower case.
+     * @param offset is the offset of the record in the data file.
+     * @throws IOException if an I/O error occurs while mapping the index file.
+     */
+    private void index(String key, int offset) throws IOException {
+        int hash = hash(key);
+        int slot = find(key, hash);
+
+        if (slot < 0) {
+            slot = -slot - 1;
+            size++;
+            index.putInt(8, size);
+        }
+
+        index.putLong(slotPosition(slot), offset);
+        index.putInt(slotPosition(slot) + 8, hash);
+
+        if (4L * size > 3L * capacity) {
+            long dataEndBefore = index.getLong(16);
+            long[] slots = new long[capacity * 2];
+
+            for (int i = 0; i < capacity; i++) {
+                slots[2 * i] = index.getLong(slotPosition(i));
+                slots[2 * i + 1] = index.getInt(slotPosition(i) + 8);
+            }
+
+            mapIndex(capacity * 2);
+
+            for (int i = 0; i < slots.length; i += 2) {
+                if (slots[i] != 0) {
+                    int free = (int) slots[i + 1] & (capacity - 1);
+                    while (index.getLong(slotPosition(free)) != 0) {
+                        free = (free + 1) & (capacity - 1);
+                    }
+
+                    index.putLong(slotPosition(free), slots[i]);
+                    index.putInt(slotPosition(free) + 8, (int) slots[i + 1]);
+                }
+            }
+
+            index.putInt(8, size);
+            index.putLong(16, dataEndBefore);
+        }
+    }
+
+    /**
+     * Looks up a name in the index. It must be invoked while holding the lock.
+     *
+     * @param key is the name in lower case.
+     * @param hash is the hash of the name.
+     * @return the slot which points to the record of the name if there is one, otherwise -(s + 1), where s is
+     * the empty slot where the name would be inserted.
+     */
+    private int find(String key, int hash) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+
+        for (int slot = hash & (capacity - 1); ; slot = (slot + 1) & (capacity - 1)) {
+            long offset = index.getLong(slotPosition(slot));
+
+            if (offset == 0) {
+                return -slot - 1;
+            }
+
+            if (index.getInt(slotPosition(slot) + 8) == hash && keyMatches((int) offset, keyBytes)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * @param offset is the offset of a record in the data file.
+     * @param keyBytes are the bytes of a name in lower case.
+     * @return true iff the record is about the given name.
+     */
+    private boolean keyMatches(int offset, byte[] keyBytes) {
+        if (data.getInt(offset) != keyBytes.length) {
+            return false;
+        }
+
+        byte[] recordKey = new byte[keyBytes.length];
+        data.get(offset + 4, recordKey);
+
+        return Arrays.equals(recordKey, keyBytes);
+    }
+
+    /**
+     * Flushes the files to the storage device, unless the {@link DBManager.Durability} is
+     * {@link DBManager.Durability#NO_SYNC}, and records in the index the end of the records it accounts for.
+     * The data file is flushed first, so that the index never points to records which haven't reached the device,
+     * and the end of the records is written back after the slots, so that a trusted index is never missing any.
+     * It must be invoked while holding the lock for writing.
+     */
+    private void force() {
+        if (DBManager.getDurability() == DBManager.Durability.NO_SYNC) {
+            index.putLong(16, dataEnd);
+            return;
+        }
+
+        data.force();
+        index.force();
+        index.putLong(16, dataEnd);
+        index.force(0, INDEX_HEADER_SIZE);
+    }
+
+    /**
+     * @param slot is a slot of the index.
+     * @return the position of the slot in the index file.
+     */
+    private static int slotPosition(int slot) {
+        return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * @param key is a name in lower case.
+     * @return the hash of the name, with its bits spread so that similar names end in distant slots.
+     */
+    private static int hash(String key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+
+        return hash ^ (hash >>> 16);
+    }
+}
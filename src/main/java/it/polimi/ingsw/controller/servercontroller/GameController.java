@@ -1,9 +1,10 @@
 package it.polimi.ingsw.controller.servercontroller;
 
 import it.polimi.ingsw.controller.Response;
-import it.polimi.ingsw.controller.db.DBManager;
+import it.polimi.ingsw.controller.db.GameLog;
 import it.polimi.ingsw.event.EventTransceiver;
 import it.polimi.ingsw.event.LocalEventTransceiver;
+import it.polimi.ingsw.event.PreEncodedEvent;
 import it.polimi.ingsw.event.data.EventData;
 import it.polimi.ingsw.event.data.VoidEventData;
 import it.polimi.ingsw.event.data.game.*;
@@ -64,13 +65,9 @@ public class GameController {
     private final ArrayList<Pair<EventTransmitter, String>> clientsInLobby;
 
     /**
-     * Events for which it's possible to avoid saving the game on disk.
+     * Log on which the moves performed on the game are persisted.
      */
-    private static final Set<String> eventIgnored = Set.of(
-            PlayerHasJoinLobbyEventData.ID,
-            PlayerHasDisconnectedEventData.ID,
-            GameOverEventData.ID
-    );
+    private final GameLog gameLog;
 
     /**
      * Uses a LocalEventTransceiver to implement the observer pattern for those who want to
@@ -101,20 +98,23 @@ public class GameController {
         this.clientsInGame = new ArrayList<>();
         this.clientsInLobby = new ArrayList<>();
 
+        // Moves are logged while holding the lock on the game, before the events which describe them are broadcast
+        this.gameLog = new GameLog(game);
+        game.setMoveListener(gameLog::append);
+
         LocalEventTransceiver transceiver = new LocalEventTransceiver();
 
         game.setTransceiver(transceiver);
 
         transceiver.registerListener(event -> {
             synchronized (this) {
-                clientsInGame.forEach(client -> client.getKey().broadcast(event));
-
-                if (this.game.isStarted() && !eventIgnored.contains(event.getId()))
-                    DBManager.getGamesDBManager().save(game);
+                // The event is encoded once for all the clients in the game
+                PreEncodedEvent preEncodedEvent = new PreEncodedEvent(event);
+                clientsInGame.forEach(client -> client.getKey().broadcast(preEncodedEvent));
 
                 if (event.getId().equals(GameOverEventData.ID)) {
                     this.internalTransceiver.broadcast(new GameOverInternalEventData(this));
-                    DBManager.getGamesDBManager().delete(game);
+                    gameLog.delete();
                     clientsInGame.clear();
                 } else if (event.getId().equals(GameHasBeenStoppedEventData.ID)) {
                     this.internalTransceiver.broadcast(new GameHasBeenStoppedInternalEventData(this));
@@ -197,7 +197,8 @@ public class GameController {
      */
     private void forEachInLobby(EventData event) {
         assert event != null;
-        this.clientsInLobby.forEach(p -> p.getKey().broadcast(event));
+        PreEncodedEvent preEncodedEvent = new PreEncodedEvent(event);
+        this.clientsInLobby.forEach(p -> p.getKey().broadcast(preEncodedEvent));
     }
 
     /**
@@ -323,7 +324,8 @@ public class GameController {
             if (!game.isAvailableForJoin(username))
                 return Response.failure("You can't join this game");
 
-            clientsInLobby.forEach(c -> c.getKey().broadcast(new PlayerHasJoinLobbyEventData(username)));
+            PreEncodedEvent playerHasJoinLobby = new PreEncodedEvent(new PlayerHasJoinLobbyEventData(username));
+            clientsInLobby.forEach(c -> c.getKey().broadcast(playerHasJoinLobby));
 
             clientsInLobby.add(Pair.of(newClient, username));
 
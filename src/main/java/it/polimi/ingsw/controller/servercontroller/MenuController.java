@@ -4,7 +4,9 @@ import it.polimi.ingsw.controller.Response;
 import it.polimi.ingsw.controller.ResponseStatus;
 import it.polimi.ingsw.controller.User;
 import it.polimi.ingsw.controller.db.DBManager;
+import it.polimi.ingsw.controller.db.GameLog;
 import it.polimi.ingsw.controller.db.IdentifiableNotFoundException;
+import it.polimi.ingsw.controller.db.UserStore;
 import it.polimi.ingsw.event.data.EventData;
 import it.polimi.ingsw.event.data.VoidEventData;
 import it.polimi.ingsw.event.data.client.UsernameEventData;
@@ -55,6 +57,15 @@ public class MenuController {
     static {
         INSTANCE = new MenuController();
 
+        // Users saved as a JSON file each, before the store was introduced, are moved in it. The import skips the
+        // users already in the store, hence an import interrupted by a crash is completed at the next start, before
+        // anyone can take the names of the users which are missing
+        if (!UserStore.getInstance().isFolderImported()) {
+            int imported = UserStore.getInstance().importFolder();
+
+            Logger.writeMessage("Imported %d users in the store".formatted(imported));
+        }
+
         List<Game> allGame;
 
         allGame = DBManager.getGamesDBManager().loadAllInFolder();
@@ -62,6 +73,7 @@ public class MenuController {
         allGame.stream()
                 .filter(g -> !g.isOver())
                 .forEach(g -> {
+                    GameLog.recover(g);
                     g.forceStop();
                     GameController gameController = new GameController(g);
                     INSTANCE.gameControllerList.add(gameController);
@@ -102,15 +114,15 @@ public class MenuController {
                     return u;
             }
 
-            DBManager<User> userDBManager = DBManager.getUsersDBManager();
+            UserStore userStore = UserStore.getInstance();
 
             try {
-                user = userDBManager.load(username);
+                user = userStore.load(username);
 
                 Logger.writeMessage("[%s] has been loaded".formatted(user.getName()));
             } catch (IdentifiableNotFoundException e) {
                 user = new User(username, password);
-                userDBManager.save(user);
+                userStore.save(user);
 
                 Logger.writeMessage("Created new user: [%s]".formatted(user.getName()));
             }
@@ -0,0 +1,1196 @@
+package it.polimi.ingsw.event;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.model.goal.CommonGoal;
+import it.polimi.ingsw.model.goal.PersonalGoal;
+import it.polimi.ingsw.model.tile.Tile;
+import it.polimi.ingsw.model.tile.TileColor;
+import it.polimi.ingsw.model.tile.TileVersion;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Is a compact binary encoding of {@link EventData}s, alternative to the JSON produced through
+ * {@link EventDataTypeAdapterFactory}.
+ * <p>
+ * Every message starts with {@link BinaryEventCodec#MAGIC}, which can't be the first byte of an event JSON, so that
+ * the receiver can tell the two encodings apart. Then the event follows: instead of its identifier, the event
+ * (and every wrapper around it) is introduced by a numeric tag, which is its index among the sorted identifiers
+ * registered in {@link EventDataTypeAdapterFactory}. Then the fields of the event follow, in a fixed order, without
+ * names: integers and lengths are written as variable length integers, enums as ordinals and tiles as a single number.
+ * Goals, which have dedicated JSON type adapters, are embedded as JSON.
+ * <p>
+ * The schema of every type is computed through reflection the first time the type is encoded or decoded, and then
+ * it is cached: encoding and decoding don't need to look up identifiers or to build intermediate JSON trees.
+ * Since the schema depends only on the classes, both ends of a connection agree on it as long as they run the same
+ * version of the application: they exchange {@link BinaryEventCodec#SCHEMA} before sending binary events, and use
+ * JSON if it differs.
+ */
+final class BinaryEventCodec {
+    /**
+     * First byte of every binary message. It is not a valid first byte for an UTF-8 encoded JSON object.
+     */
+    static final byte MAGIC = (byte) 0xB1;
+
+    /**
+     * Encodes and decodes a value of a certain type.
+     */
+    private interface ValueCodec {
+        /**
+         * Writes a value.
+         *
+         * @param out is the stream on which the value is written.
+         * @param value is the value to write, it must be of the type of the codec.
+         * @throws IOException if the value can't be written.
+         */
+        void write(DataOutputStream out, Object value) throws IOException;
+
+        /**
+         * Reads a value.
+         *
+         * @param in is the stream from which the value is read.
+         * @return the read value.
+         * @throws IOException if the value can't be read.
+         */
+        Object read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * The concrete types of the events and of the wrappers, indexed by tag.
+     */
+    private static final List<Class<?>> TAGGED_TYPES = new ArrayList<>();
+
+    /**
+     * Maps every concrete type of the events and of the wrappers to its tag.
+     */
+    private static final Map<Class<?>, Integer> TAGS = new HashMap<>();
+
+    static {
+        Map<String, Type> types = new TreeMap<>(EventDataTypeAdapterFactory.EVENT_DATA_TYPES);
+        types.putAll(EventDataTypeAdapterFactory.WRAPPER_DATA_TYPES);
+
+        for (Type type : types.values()) {
+            TAGS.put((Class<?>) type, TAGGED_TYPES.size());
+            TAGGED_TYPES.add((Class<?>) type);
+        }
+    }
+
+    /**
+     * Fingerprint of the schema: a hash of the tagged types, in the order of their tags, and of the layout of the
+     * types they are made of. Adding, removing or renaming an event, a field or an enum constant changes it.
+     */
+    static final int SCHEMA = schemaFingerprint();
+
+    /**
+     * @return the fingerprint of the schema.
+     * @see BinaryEventCodec#SCHEMA
+     */
+    private static int schemaFingerprint() {
+        StringBuilder description = new StringBuilder();
+        Set<Class<?>> described = new HashSet<>();
+
+        for (Class<?> type : TAGGED_TYPES) {
+            describe(type, described, description);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(description.toString().getBytes(StandardCharsets.UTF_8));
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends the description of a type to the description of the schema: its name, followed by its constants if
+     * it is an enum, or by the name and the type of its fields, in the order in which they are encoded, if it is
+     * a class of the application described for the first time.
+     *
+     * @param type is the type to be described.
+     * @param described are the classes which have already been described.
+     * @param description is the description of the schema.
+     */
+    private static void describe(Type type, Set<Class<?>> described, StringBuilder description) {
+        description.append(type.getTypeName()).append(';');
+
+        if (type instanceof ParameterizedType parameterized) {
+            for (Type argument : parameterized.getActualTypeArguments()) {
+                describe(argument, described, description);
+            }
+        }
+
+        Class<?> raw = rawType(type);
+        while (raw.isArray()) {
+            raw = raw.getComponentType();
+        }
+
+        if (!raw.getName().startsWith("it.polimi.") || !described.add(raw)) {
+            return;
+        }
+
+        if (raw.isEnum()) {
+            for (Object constant : raw.getEnumConstants()) {
+                description.append(((Enum<?>) constant).name()).append(',');
+            }
+            description.append(';');
+            return;
+        }
+
+        for (Class<?> c = raw; c != null && c != Object.class; c = c.getSuperclass()) {
+            Field[] declared = c.getDeclaredFields();
+            Arrays.sort(declared, Comparator.comparing(Field::getName));
+
+            for (Field field : declared) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+                    || field.isSynthetic()) {
+                    continue;
+                }
+
+                description.append(field.getName()).append(':');
+                describe(field.getGenericType(), described, description);
+            }
+        }
+    }
+
+    /**
+     * The only instance of the codec.
+     */
+    private static final BinaryEventCodec INSTANCE = new BinaryEventCodec();
+
+    /**
+     * @return the only instance of the codec.
+     */
+    static BinaryEventCodec getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * {@link Gson} object used for the types which have dedicated JSON type adapters.
+     */
+    private final Gson gson = NetworkEventTransceiver.createGson();
+
+    /**
+     * Caches the codec of every type encountered so far.
+     */
+    private final Map<Type, ValueCodec> codecs = new ConcurrentHashMap<>();
+
+    /**
+     * Codec of the events: it writes the tag of the concrete type of the event and then the event itself.
+     */
+    private final ValueCodec eventCodec = new ValueCodec() {
+        @Override
+        public void write(DataOutputStream out, Object value) throws IOException {
+            if (value == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+
+            Integer tag = TAGS.get(value.getClass());
+            if (tag == null) {
+                throw new IOException("Unregistered event type " + value.getClass().getName());
+            }
+
+            writeVarInt(out, tag + 1);
+            codecFor(value.getClass()).write(out, value);
+        }
+
+        @Override
+        public Object read(DataInputStream in) throws IOException {
+            int tag = readVarInt(in) - 1;
+            if (tag < 0) {
+                return null;
+            }
+
+            if (tag >= TAGGED_TYPES.size()) {
+                throw new IOException("Unknown event tag " + tag);
+            }
+
+            return codecFor(TAGGED_TYPES.get(tag)).read(in);
+        }
+    };
+
+    /**
+     * BinaryEventCodec is a singleton, see {@link BinaryEventCodec#getInstance()}.
+     */
+    private BinaryEventCodec() { }
+
+    /**
+     * Encodes an event.
+     *
+     * @param event is the event to encode.
+     * @param out is the stream on which the encoded event is written, {@link BinaryEventCodec#MAGIC} included.
+     * @throws IOException if the event can't be encoded, for example because its type isn't registered.
+     */
+    void encode(EventData event, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+
+        data.writeByte(MAGIC);
+        eventCodec.write(data, event);
+        data.flush();
+    }
+
+    /**
+     * Decodes an event.
+     *
+     * @param message is the encoded event, {@link BinaryEventCodec#MAGIC} included.
+     * @return the decoded event.
+     * @throws IOException if the message isn't a valid encoding of an event.
+     */
+    EventData decode(byte[] message) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+
+        if (in.readByte() != MAGIC) {
+            throw new IOException("Not a binary event");
+        }
+
+        try {
+            return (EventData) eventCodec.read(in);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed binary event", e);
+        }
+    }
+
+    /**
+     * @param message is a received message.
+     * @return true iff the message is a binary event (rather than a JSON one).
+     */
+    static boolean isBinary(byte[] message) {
+        return message.length > 0 && message[0] == MAGIC;
+    }
+
+    /**
+     * Writes a non-negative integer using 7 bits per byte, the most significant bit of every byte tells if
+     * another byte follows.
+     *
+     * @param out is the stream on which the integer is written.
+     * @param value is the integer to write.
+     * @throws IOException if the integer can't be written.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an integer written through {@link BinaryEventCodec#writeVarInt(DataOutputStream, int)}.
+     *
+     * @param in is the stream from which the integer is read.
+     * @return the read integer.
+     * @throws IOException if the integer can't be read.
+     */
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed variable length integer");
+    }
+
+    /**
+     * Reads the length of a string, an array, a collection or a map, written as the length plus one so that 0
+     * stands for null. Every element takes at least one byte, hence a length greater than the number of bytes
+     * left in the message is rejected before anything is allocated for it.
+     *
+     * @param in is the stream from which the length is read, it must be backed by the whole message.
+     * @return the read length, -1 if the value is null.
+     * @throws IOException if the length can't be read or it exceeds the bytes left in the message.
+     */
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = readVarInt(in) - 1;
+
+        if (length < -1 || length > in.available()) {
+            throw new IOException("Invalid length " + length + " with " + in.available() + " bytes left");
+        }
+
+        return length;
+    }
+
+    /**
+     * Writes a string as its length followed by its UTF-8 bytes.
+     *
+     * @param out is the stream on which the string is written.
+     * @param value is the string to write, it can be null.
+     * @throws IOException if the string can't be written.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written through {@link BinaryEventCodec#writeString(DataOutputStream, String)}.
+     *
+     * @param in is the stream from which the string is read.
+     * @return the read string, it can be null.
+     * @throws IOException if the string can't be read.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readLength(in);
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Codecs which are being computed, it is accessed only while holding the lock on
+     * {@link BinaryEventCodec#codecs}.
+     */
+    private final Map<Type, LazyCodec> pending = new HashMap<>();
+
+    /**
+     * @param type is the type whose codec is requested.
+     * @return the codec of the given type, which is computed only the first time.
+     */
+    private ValueCodec codecFor(Type type) {
+        ValueCodec codec = codecs.get(type);
+        if (codec != null) {
+            return codec;
+        }
+
+        synchronized (codecs) {
+            codec = codecs.get(type);
+            if (codec == null) {
+                codec = pending.get(type);
+            }
+
+            if (codec != null) {
+                return codec;
+            }
+
+            // A type can refer to itself: a placeholder is used while computing its codec, and the codecs are
+            // published only once all the codecs they depend on have been computed
+            boolean outermost = pending.isEmpty();
+            LazyCodec lazy = new LazyCodec();
+
+            pending.put(type, lazy);
+            try {
+                lazy.delegate = createCodec(type);
+            } finally {
+                if (outermost) {
+                    pending.forEach((t, c) -> {
+                        if (c.delegate != null) {
+                            codecs.put(t, c.delegate);
+                        }
+                    });
+                    pending.clear();
+                }
+            }
+
+            return lazy.delegate;
+        }
+    }
+
+    /**
+     * Codec which forwards to another one, computed later. It allows recursive types.
+     */
+    private static final class LazyCodec implements ValueCodec {
+        /**
+         * The actual codec.
+         */
+        private ValueCodec delegate;
+
+        @Override
+        public void write(DataOutputStream out, Object value) throws IOException {
+            delegate.write(out, value);
+        }
+
+        @Override
+        public Object read(DataInputStream in) throws IOException {
+            return delegate.read(in);
+        }
+    }
+
+    /**
+     * Computes the codec of a type.
+     *
+     * @param type is the type whose codec is requested.
+     * @return the codec of the given type.
+     */
+    private ValueCodec createCodec(Type type) {
+        Class<?> raw = rawType(type);
+
+        if (raw == int.class || raw == Integer.class) {
+            return nullable(raw, new ValueCodec() {
+                @Override
+                public void write(DataOutputStream out, Object value) throws IOException {
+                    int v = (Integer) value;
+                    writeVarInt(out, (v << 1) ^ (v >> 31));
+                }
+
+                @Override
+                public Object read(DataInputStream in) throws IOException {
+                    int v = readVarInt(in);
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            });
+        }
+
+        if (raw == long.class || raw == Long.class) {
+            return nullable(raw, primitive(DataOutputStream::writeLong, DataInputStream::readLong));
+        }
+
+        if (raw == boolean.class || raw == Boolean.class) {
+            return nullable(raw, primitive(DataOutputStream::writeBoolean, DataInputStream::readBoolean));
+        }
+
+        if (raw == double.class || raw == Double.class) {
+            return nullable(raw, primitive(DataOutputStream::writeDouble, DataInputStream::readDouble));
+        }
+
+        if (raw == float.class || raw == Float.class) {
+            return nullable(raw, primitive(DataOutputStream::writeFloat, DataInputStream::readFloat));
+        }
+
+        if (raw == short.class || raw == Short.class) {
+            return nullable(raw, primitive((out, v) -> out.writeShort(v), DataInputStream::readShort));
+        }
+
+        if (raw == byte.class || raw == Byte.class) {
+            return nullable(raw, primitive((out, v) -> out.writeByte(v), DataInputStream::readByte));
+        }
+
+        if (raw == char.class || raw == Character.class) {
+            return nullable(raw, primitive((out, v) -> out.writeChar(v), DataInputStream::readChar));
+        }
+
+        if (raw == String.class) {
+            return new ValueCodec() {
+                @Override
+                public void write(DataOutputStream out, Object value) throws IOException {
+                    writeString(out, (String) value);
+                }
+
+                @Override
+                public Object read(DataInputStream in) throws IOException {
+                    return readString(in);
+                }
+            };
+        }
+
+        if (raw == Tile.class) {
+            return tileCodec();
+        }
+
+        if (raw.isEnum()) {
+            return enumCodec(raw);
+        }
+
+        if (EventData.class.isAssignableFrom(raw) && !TAGS.containsKey(raw)) {
+            return eventCodec;
+        }
+
+        if (CommonGoal.class.isAssignableFrom(raw) || PersonalGoal.class.isAssignableFrom(raw)
+            || raw == Object.class) {
+            return jsonCodec(type);
+        }
+
+        if (raw.isArray()) {
+            Type componentType = type instanceof GenericArrayType genericArray ?
+                genericArray.getGenericComponentType() : raw.getComponentType();
+
+            return arrayCodec(rawType(componentType), codecFor(componentType));
+        }
+
+        if (Collection.class.isAssignableFrom(raw)) {
+            return collectionCodec(raw, codecFor(typeArgument(type, 0)));
+        }
+
+        if (Map.class.isAssignableFrom(raw)) {
+            return mapCodec(raw, codecFor(typeArgument(type, 0)), codecFor(typeArgument(type, 1)));
+        }
+
+        if (raw.isInterface() || Modifier.isAbstract(raw.getModifiers())) {
+            return jsonCodec(type);
+        }
+
+        return objectCodec(type, raw);
+    }
+
+    /**
+     * Writes a primitive value.
+     *
+     * @param <T> is the boxed type of the primitive value.
+     */
+    private interface PrimitiveWriter<T> {
+        /**
+         * @param out is the stream on which the value is written.
+         * @param value is the value to write.
+         * @throws IOException if the value can't be written.
+         */
+        void write(DataOutputStream out, T value) throws IOException;
+    }
+
+    /**
+     * Reads a primitive value.
+     *
+     * @param <T> is the boxed type of the primitive value.
+     */
+    private interface PrimitiveReader<T> {
+        /**
+         * @param in is the stream from which the value is read.
+         * @return the read value.
+         * @throws IOException if the value can't be read.
+         */
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * @param writer writes the primitive value.
+     * @param reader reads the primitive value.
+     * @return the codec which writes and reads a primitive value through the given functions.
+     * @param <T> is the boxed type of the primitive value.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> ValueCodec primitive(PrimitiveWriter<T> writer, PrimitiveReader<T> reader) {
+        return new ValueCodec() {
+            @Override
+            public void write(DataOutputStream out, Object value) throws IOException {
+                writer.write(out, (T) value);
+            }
+
+            @Override
+            public Object read(DataInputStream in) throws IOException {
+                return reader.read(in);
+            }
+        };
+    }
+
+    /**
+     * @param raw is the type of the values.
+     * @param codec is the codec of the non-null values.
+     * @return codec itself if the type is primitive, otherwise a codec which precedes every value with a byte that
+     * tells if the value is null.
+     */
+    private static ValueCodec nullable(Class<?> raw, ValueCodec codec) {
+        if (raw.isPrimitive()) {
+            return codec;
+        }
+
+        return new ValueCodec() {
+            @Override
+            public void write(DataOutputStream out, Object value) throws IOException {
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    codec.write(out, value);
+                }
+            }
+
+            @Override
+            public Object read(DataInputStream in) throws IOException {
+                return in.readBoolean() ? codec.read(in) : null;
+            }
+        };
+    }
+
+    /**
+     * @return the codec of the tiles: every tile is written as a single number obtained from its color and
+     * version, 0 stands for null.
+     */
+    private static ValueCodec tileCodec() {
+        TileColor[] colors = TileColor.values();
+        TileVersion[] versions = TileVersion.values();
+
+        return new ValueCodec() {
+            @Override
+            public void write(DataOutputStream out, Object value) throws IOException {
+                if (value == null) {
+                    writeVarInt(out, 0);
+                    return;
+                }
+
+                Tile tile = (Tile) value;
+                writeVarInt(out, tile.getColor().ordinal() * versions.length + tile.getVersion().ordinal() + 1);
+            }
+
+            @Override
+            public Object read(DataInputStream in) throws IOException {
+                int code = readVarInt(in) - 1;
+                if (code < 0) {
+                    return null;
+                }
+
+                if (code >= colors.length * versions.length) {
+                    throw new IOException("Unknown tile " + code);
+                }
+
+                return Tile.getInstance(colors[code / versions.length], versions[code % versions.length]);
+            }
+        };
+    }
+
+    /**
+     * @param raw is the enum type.
+     * @return the codec of the enum, every constant is written as its ordinal, 0 stands for null.
+     */
+    private static ValueCodec enumCodec(Class<?> raw) {
+        Object[] constants = raw.getEnumConstants();
+
+        return new ValueCodec() {
+            @Override
+            public void write(DataOutputStream out, Object value) throws IOException {
+                writeVarInt(out, value == null ? 0 : ((Enum<?>) value).ordinal() + 1);
+            }
+
+            @Override
+            public Object read(DataInputStream in) throws IOException {
+                int ordinal = readVarInt(in) - 1;
+                if (ordinal < 0) {
+                    return null;
+                }
+
+                if (ordinal >= constants.length) {
+                    throw new IOException("Unknown constant " + ordinal + " of " + raw.getName());
+                }
+
+                return constants[ordinal];
+            }
+        };
+    }
+
+    /**
+     * @param type is the type of the values.
+     * @return the codec which embeds the values as JSON, used for the types which rely on dedicated JSON type
+     * adapters or whose concrete type can't be inferred from the declared one.
+     */
+    private ValueCodec jsonCodec(Type type) {
+        return new ValueCodec() {
+            @Override
+            public void write(DataOutputStream out, Object value) throws IOException {
+                writeString(out, value == null ? null : gson.toJson(value, type));
+            }
+
+            @Override
+            public Object read(DataInputStream in) throws IOException {
+                String json = readString(in);
+
+                try {
+                    return json == null ? null : gson.fromJson(json, type);
+                } catch (JsonParseException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param componentClass is the type of the elements of the array.
+     * @param componentCodec is the codec of the elements of the array.
+     * @return the codec of the arrays, every array is written as its length followed by its elements.
+     */
+    private static ValueCodec arrayCodec(Class<?> componentClass, ValueCodec componentCodec) {
+        return new ValueCodec() {
+            @Override
+            public void write(DataOutputStream out, Object value) throws IOException {
+                if (value == null) {
+                    writeVarInt(out, 0);
+                    return;
+                }
+
+                int length = Array.getLength(value);
+                writeVarInt(out, length + 1);
+                for (int i = 0; i < length; i++) {
+                    componentCodec.write(out, Array.get(value, i));
+                }
+            }
+
+            @Override
+            public Object read(DataInputStream in) throws IOException {
+                int length = readLength(in);
+                if (length < 0) {
+                    return null;
+                }
+
+                Object array = Array.newInstance(componentClass, length);
+                for (int i = 0; i < length; i++) {
+                    Array.set(array, i, componentCodec.read(in));
+                }
+
+                return array;
+            }
+        };
+    }
+
+    /**
+     * @param raw is the type of the collections.
+     * @param elementCodec is the codec of the elements.
+     * @return the codec of the collections, every collection is written as its size followed by its elements.
+     */
+    @SuppressWarnings("unchecked")
+    private static ValueCodec collectionCodec(Class<?> raw, ValueCodec elementCodec) {
+        return new ValueCodec() {
+            @Override
+            public void write(DataOutputStream out, Object value) throws IOException {
+                if (value == null) {
+                    writeVarInt(out, 0);
+                    return;
+                }
+
+                Collection<Object> collection = (Collection<Object>) value;
+                writeVarInt(out, collection.size() + 1);
+                for (Object element : collection) {
+                    elementCodec.write(out, element);
+                }
+            }
+
+            @Override
+            public Object read(DataInputStream in) throws IOException {
+                int size = readLength(in);
+                if (size < 0) {
+                    return null;
+                }
+
+                Collection<Object> collection = (Collection<Object>) newContainer(raw);
+                for (int i = 0; i < size; i++) {
+                    collection.add(elementCodec.read(in));
+                }
+
+                return collection;
+            }
+        };
+    }
+
+    /**
+     * @param raw is the type of the maps.
+     * @param keyCodec is the codec of the keys.
+     * @param valueCodec is the codec of the values.
+     * @return the codec of the maps, every map is written as its size followed by its entries.
+     */
+    @SuppressWarnings("unchecked")
+    private static ValueCodec mapCodec(Class<?> raw, ValueCodec keyCodec, ValueCodec valueCodec) {
+        return new ValueCodec() {
+            @Override
+            public void write(DataOutputStream out, Object value) throws IOException {
+                if (value == null) {
+                    writeVarInt(out, 0);
+                    return;
+                }
+
+                Map<Object, Object> map = (Map<Object, Object>) value;
+                writeVarInt(out, map.size() + 1);
+                for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                    keyCodec.write(out, entry.getKey());
+                    valueCodec.write(out, entry.getValue());
+                }
+            }
+
+            @Override
+            public Object read(DataInputStream in) throws IOException {
+                int size = readLength(in);
+                if (size < 0) {
+                    return null;
+                }
+
+                Map<Object, Object> map = (Map<Object, Object>) newContainer(raw);
+                for (int i = 0; i < size; i++) {
+                    Object key = keyCodec.read(in);
+                    map.put(key, valueCodec.read(in));
+                }
+
+                return map;
+            }
+        };
+    }
+
+    /**
+     * Instantiates an empty collection or map. Interfaces are mapped to the same implementations used by Gson.
+     *
+     * @param raw is the declared type of the collection or map.
+     * @return a new empty instance of the given type.
+     * @throws IOException if the type can't be instantiated.
+     */
+    private static Object newContainer(Class<?> raw) throws IOException {
+        if (raw.isInterface() || Modifier.isAbstract(raw.getModifiers())) {
+            if (SortedSet.class.isAssignableFrom(raw)) {
+                return new TreeSet<>();
+            }
+
+            if (Set.class.isAssignableFrom(raw)) {
+                return new LinkedHashSet<>();
+            }
+
+            if (Queue.class.isAssignableFrom(raw)) {
+                return new ArrayDeque<>();
+            }
+
+            if (SortedMap.class.isAssignableFrom(raw)) {
+                return new TreeMap<>();
+            }
+
+            if (Map.class.isAssignableFrom(raw)) {
+                return new LinkedHashMap<>();
+            }
+
+            return new ArrayList<>();
+        }
+
+        try {
+            return raw.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Can't instantiate " + raw.getName(), e);
+        }
+    }
+
+    /**
+     * Codec of the objects which don't have a dedicated codec: every object is written as a byte which tells
+     * if it is null, followed by its fields.
+     *
+     * @param type is the type of the objects.
+     * @param raw is the class of the objects.
+     * @return the codec of the objects.
+     */
+    private ValueCodec objectCodec(Type type, Class<?> raw) {
+        Map<TypeVariable<?>, Type> bindings = new HashMap<>();
+        List<Field> fields = new ArrayList<>();
+        List<ValueCodec> fieldCodecs = new ArrayList<>();
+
+        // The fields are sorted from the ones of the topmost superclass, and then by name
+        List<Class<?>> hierarchy = new ArrayList<>();
+        Type current = type;
+        while (current != null && rawType(current) != Object.class) {
+            Class<?> currentRaw = rawType(current);
+
+            if (current instanceof ParameterizedType parameterized) {
+                TypeVariable<?>[] variables = currentRaw.getTypeParameters();
+                for (int i = 0; i < variables.length; i++) {
+                    bindings.put(variables[i], resolve(parameterized.getActualTypeArguments()[i], bindings));
+                }
+            }
+
+            hierarchy.add(0, currentRaw);
+            current = currentRaw.getGenericSuperclass();
+        }
+
+        for (Class<?> c : hierarchy) {
+            Field[] declared = c.getDeclaredFields();
+            Arrays.sort(declared, Comparator.comparing(Field::getName));
+
+            for (Field field : declared) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+                    || field.isSynthetic()) {
+                    continue;
+                }
+
+                field.setAccessible(true);
+                fields.add(field);
+                fieldCodecs.add(codecFor(resolve(field.getGenericType(), bindings)));
+            }
+        }
+
+        Instantiator instantiator = instantiator(raw, fields);
+
+        return new ValueCodec() {
+            @Override
+            public void write(DataOutputStream out, Object value) throws IOException {
+                out.writeBoolean(value != null);
+                if (value == null) {
+                    return;
+                }
+
+                try {
+                    for (int i = 0; i < fields.size(); i++) {
+                        fieldCodecs.get(i).write(out, fields.get(i).get(value));
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public Object read(DataInputStream in) throws IOException {
+                if (!in.readBoolean()) {
+                    return null;
+                }
+
+                Object[] values = new Object[fields.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = fieldCodecs.get(i).read(in);
+                }
+
+                return instantiator.instantiate(values);
+            }
+        };
+    }
+
+    /**
+     * Builds an object from the values of its fields.
+     */
+    private interface Instantiator {
+        /**
+         * @param values are the values of the fields of the object, in the order of the schema.
+         * @return the built object.
+         * @throws IOException if the object can't be built.
+         */
+        Object instantiate(Object[] values) throws IOException;
+    }
+
+    /**
+     * @param raw is the class of the objects.
+     * @param fields are the fields of the objects, in the order of the schema.
+     * @return the {@link Instantiator} of the objects of the given class. Records are built through their
+     * canonical constructor; other classes through their constructor without parameters, if available, or otherwise
+     * without invoking any constructor (as Gson does), then their fields are set.
+     */
+    private static Instantiator instantiator(Class<?> raw, List<Field> fields) {
+        if (raw.isRecord()) {
+            RecordComponent[] components = raw.getRecordComponents();
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            int[] order = new int[components.length];
+
+            for (int i = 0; i < components.length; i++) {
+                parameterTypes[i] = components[i].getType();
+
+                for (int j = 0; j < fields.size(); j++) {
+                    if (fields.get(j).getName().equals(components[i].getName())) {
+                        order[i] = j;
+                    }
+                }
+            }
+
+            Constructor<?> constructor;
+            try {
+                constructor = raw.getDeclaredConstructor(parameterTypes);
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Record without canonical constructor " + raw.getName(), e);
+            }
+
+            return values -> {
+                Object[] arguments = new Object[order.length];
+                for (int i = 0; i < order.length; i++) {
+                    arguments[i] = values[order[i]];
+                }
+
+                try {
+                    return constructor.newInstance(arguments);
+                } catch (ReflectiveOperationException e) {
+                    throw new IOException("Can't instantiate " + raw.getName(), e);
+                }
+            };
+        }
+
+        Constructor<?> noArgs;
+        try {
+            noArgs = raw.getDeclaredConstructor();
+            noArgs.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            noArgs = null;
+        }
+
+        Constructor<?> constructor = noArgs;
+        return values -> {
+            try {
+                Object instance = constructor != null ? constructor.newInstance() : UnsafeAllocator.allocate(raw);
+
+                for (int i = 0; i < values.length; i++) {
+                    fields.get(i).set(instance, values[i]);
+                }
+
+                return instance;
+            } catch (ReflectiveOperationException e) {
+                throw new IOException("Can't instantiate " + raw.getName(), e);
+            }
+        };
+    }
+
+    /**
+     * Allocates objects without invoking any constructor, through {@code sun.misc.Unsafe}.
+     */
+    private static final class UnsafeAllocator {
+        /**
+         * The {@code sun.misc.Unsafe} instance.
+         */
+        private static final Object UNSAFE;
+
+        /**
+         * The {@code sun.misc.Unsafe.allocateInstance(Class)} method.
+         */
+        private static final Method ALLOCATE_INSTANCE;
+
+        static {
+            Object unsafe = null;
+            Method allocateInstance = null;
+
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+
+                unsafe = theUnsafe.get(null);
+                allocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+            } catch (ReflectiveOperationException e) {
+                // objects without a constructor without parameters can't be decoded
+                unsafe = null;
+                allocateInstance = null;
+            }
+
+            UNSAFE = unsafe;
+            ALLOCATE_INSTANCE = allocateInstance;
+        }
+
+        /**
+         * @param raw is the class of the object.
+         * @return a new instance of the class, whose fields have their default value.
+         * @throws ReflectiveOperationException if the object can't be allocated.
+         */
+        private static Object allocate(Class<?> raw) throws ReflectiveOperationException {
+            if (ALLOCATE_INSTANCE == null) {
+                throw new InstantiationException("Can't allocate " + raw.getName());
+            }
+
+            return ALLOCATE_INSTANCE.invoke(UNSAFE, raw);
+        }
+    }
+
+    /**
+     * @param type is a type.
+     * @return the class of the type, the upper bound for type variables and wildcards.
+     */
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class<?> c) {
+            return c;
+        }
+
+        if (type instanceof ParameterizedType parameterized) {
+            return (Class<?>) parameterized.getRawType();
+        }
+
+        if (type instanceof GenericArrayType genericArray) {
+            return Array.newInstance(rawType(genericArray.getGenericComponentType()), 0).getClass();
+        }
+
+        if (type instanceof TypeVariable<?> variable) {
+            return rawType(variable.getBounds()[0]);
+        }
+
+        if (type instanceof WildcardType wildcard) {
+            return rawType(wildcard.getUpperBounds()[0]);
+        }
+
+        return Object.class;
+    }
+
+    /**
+     * @param type is a parameterized type.
+     * @param index is the index of the requested type argument.
+     * @return the type argument at the given index, Object if the type isn't parameterized.
+     */
+    private static Type typeArgument(Type type, int index) {
+        if (type instanceof ParameterizedType parameterized) {
+            return parameterized.getActualTypeArguments()[index];
+        }
+
+        return Object.class;
+    }
+
+    /**
+     * Replaces the type variables inside a type with the types they are bound to.
+     *
+     * @param type is the type to resolve.
+     * @param bindings maps the type variables to the types they are bound to.
+     * @return the resolved type, variables without binding are left as they are.
+     */
+    private static Type resolve(Type type, Map<TypeVariable<?>, Type> bindings) {
+        if (type instanceof TypeVariable<?> variable) {
+            return bindings.getOrDefault(variable, variable);
+        }
+
+        if (type instanceof WildcardType wildcard) {
+            return resolve(wildcard.getUpperBounds()[0], bindings);
+        }
+
+        if (type instanceof GenericArrayType genericArray) {
+            Type component = resolve(genericArray.getGenericComponentType(), bindings);
+
+            return component instanceof Class<?> c ? Array.newInstance(c, 0).getClass() :
+                new ResolvedGenericArrayType(component);
+        }
+
+        if (type instanceof ParameterizedType parameterized) {
+            Type[] arguments = parameterized.getActualTypeArguments().clone();
+            boolean changed = false;
+
+            for (int i = 0; i < arguments.length; i++) {
+                Type resolved = resolve(arguments[i], bindings);
+                changed |= resolved != arguments[i];
+                arguments[i] = resolved;
+            }
+
+            return changed ? new ResolvedParameterizedType((Class<?>) parameterized.getRawType(), arguments) :
+                parameterized;
+        }
+
+        return type;
+    }
+
+    /**
+     * A {@link ParameterizedType} whose type arguments have been resolved.
+     *
+     * @param rawType is the class of the type.
+     * @param arguments are the resolved type arguments.
+     */
+    private record ResolvedParameterizedType(Class<?> rawType, Type[] arguments) implements ParameterizedType {
+        @Override
+        public Type[] getActualTypeArguments() {
+            return arguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return rawType;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ParameterizedType parameterized && rawType.equals(parameterized.getRawType())
+                && Arrays.equals(arguments, parameterized.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            return rawType.hashCode() ^ Arrays.hashCode(arguments);
+        }
+    }
+
+    /**
+     * A {@link GenericArrayType} whose component type has been resolved.
+     *
+     * @param component is the resolved component type.
+     */
+    private record ResolvedGenericArrayType(Type component) implements GenericArrayType {
+        @Override
+        public Type getGenericComponentType() {
+            return component;
+        }
+    }
+}
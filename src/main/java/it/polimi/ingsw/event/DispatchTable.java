@@ -0,0 +1,224 @@
+package it.polimi.ingsw.event;
+
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.receiver.EventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Listeners registered on a transceiver, indexed by the identifier of the events they listen for.
+ * Every event identifier is interned to an integer type code, which indexes the listeners registered for that
+ * identifier only. The listeners registered for every event are kept apart. Hence finding the listeners to
+ * notify of an event costs the same regardless of how many event types are being listened for.
+ * <p>
+ * Listeners are returned in order of registration, as if they were all in the same list.
+ * The listeners to notify of the events with a given identifier are kept in an immutable snapshot, which is built
+ * the first time it is requested after a registration or removal. Hence, as long as listeners don't change,
+ * finding the listeners to notify of an event allocates nothing.
+ * The table isn't thread safe: it is guarded by the lock of the transceiver which owns it.
+ */
+final class DispatchTable {
+    /**
+     * Maps every interned event identifier to its type code.
+     */
+    private static final Map<String, Integer> TYPE_CODES = new ConcurrentHashMap<>();
+
+    /**
+     * A listener together with the order in which it has been registered.
+     *
+     * @param sequence is the number of registrations performed on the table before this one.
+     * @param listener is the registered listener.
+     */
+    private record Registration(long sequence, EventListener<EventData> listener) { }
+
+    /**
+     * The listeners registered for every event, in order of registration.
+     */
+    private final List<Registration> generic = new ArrayList<>();
+
+    /**
+     * The listeners registered for the events with a given identifier, in order of registration.
+     * The list at index i holds the listeners for the identifier with type code i, it is null if no listener
+     * has been registered for that identifier yet.
+     */
+    private final List<List<Registration>> keyed = new ArrayList<>();
+
+    /**
+     * The number of registrations performed on the table.
+     */
+    private long nextSequence;
+
+    /**
+     * The snapshot of the listeners to notify of the events with an identifier for which no listener has been
+     * registered, null if it has to be rebuilt.
+     */
+    private EventListener<EventData>[] genericSnapshot;
+
+    /**
+     * The snapshots of the listeners to notify of the events with a given identifier. The snapshot at index i is
+     * the one of the identifier with type code i, it is null if it has to be rebuilt.
+     */
+    private final List<EventListener<EventData>[]> snapshots = new ArrayList<>();
+
+    /**
+     * Interns an event identifier, assigning it a type code the first time it is seen.
+     *
+     * @param eventId is the identifier of the event.
+     * @return the type code of the identifier.
+     */
+    static int typeCode(String eventId) {
+        Integer typeCode = TYPE_CODES.get(eventId);
+        if (typeCode != null) {
+            return typeCode;
+        }
+
+        synchronized (TYPE_CODES) {
+            return TYPE_CODES.computeIfAbsent(eventId, id -> TYPE_CODES.size());
+        }
+    }
+
+    /**
+     * Registers a listener for every event.
+     *
+     * @param listener is the listener which will be registered.
+     */
+    void add(EventListener<EventData> listener) {
+        generic.add(new Registration(nextSequence++, listener));
+        invalidateSnapshots();
+    }
+
+    /**
+     * Registers a listener for the events with the given identifier only.
+     *
+     * @param eventId is the identifier of the events the listener is registered for.
+     * @param listener is the listener which will be registered.
+     */
+    void add(String eventId, EventListener<EventData> listener) {
+        int typeCode = typeCode(eventId);
+
+        while (keyed.size() <= typeCode) {
+            keyed.add(null);
+        }
+
+        if (keyed.get(typeCode) == null) {
+            keyed.set(typeCode, new ArrayList<>());
+        }
+
+        keyed.get(typeCode).add(new Registration(nextSequence++, listener));
+        invalidateSnapshots();
+    }
+
+    /**
+     * Unregisters the first registration of a listener for every event.
+     *
+     * @param listener is the listener which will be unregistered.
+     */
+    void remove(EventListener<EventData> listener) {
+        remove(generic, listener);
+        invalidateSnapshots();
+    }
+
+    /**
+     * Unregisters the first registration of a listener for the events with the given identifier.
+     *
+     * @param eventId is the identifier with which the listener has been registered.
+     * @param listener is the listener which will be unregistered.
+     */
+    void remove(String eventId, EventListener<EventData> listener) {
+        Integer typeCode = TYPE_CODES.get(eventId);
+
+        if (typeCode != null && typeCode < keyed.size() && keyed.get(typeCode) != null) {
+            remove(keyed.get(typeCode), listener);
+            invalidateSnapshots();
+        }
+    }
+
+    /**
+     * Removes the first registration of a listener from a list of registrations.
+     *
+     * @param registrations is the list of registrations.
+     * @param listener is the listener whose registration will be removed.
+     */
+    private static void remove(List<Registration> registrations, EventListener<EventData> listener) {
+        for (int i = 0; i < registrations.size(); i++) {
+            if (Objects.equals(registrations.get(i).listener(), listener)) {
+                registrations.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Unregisters all the listeners.
+     */
+    void clear() {
+        generic.clear();
+        keyed.clear();
+        invalidateSnapshots();
+    }
+
+    /**
+     * Discards all the snapshots, since the registered listeners have changed.
+     */
+    private void invalidateSnapshots() {
+        genericSnapshot = null;
+        snapshots.clear();
+    }
+
+    /**
+     * @param eventId is the identifier of an event.
+     * @return the snapshot of the listeners to notify of the event, in order of registration. The snapshot is
+     * shared and must not be modified; it doesn't change when listeners are registered or removed afterwards.
+     */
+    EventListener<EventData>[] listenersFor(String eventId) {
+        Integer typeCode = TYPE_CODES.get(eventId);
+        if (typeCode == null || typeCode >= keyed.size() || keyed.get(typeCode) == null) {
+            if (genericSnapshot == null) {
+                genericSnapshot = merge(generic, List.of());
+            }
+
+            return genericSnapshot;
+        }
+
+        while (snapshots.size() <= typeCode) {
+            snapshots.add(null);
+        }
+
+        if (snapshots.get(typeCode) == null) {
+            snapshots.set(typeCode, merge(generic, keyed.get(typeCode)));
+        }
+
+        return snapshots.get(typeCode);
+    }
+
+    /**
+     * Merges two lists of registrations sorted by sequence, restoring the order of registration.
+     *
+     * @param generic are the registrations for every event.
+     * @param forEvent are the registrations for the events with a given identifier.
+     * @return the listeners of all the registrations, in order of registration.
+     */
+    private static EventListener<EventData>[] merge(List<Registration> generic, List<Registration> forEvent) {
+        // Arrays of a generic type can't be created, the array only ever holds listeners of EventData
+        @SuppressWarnings("unchecked")
+        EventListener<EventData>[] listeners =
+            (EventListener<EventData>[]) new EventListener<?>[generic.size() + forEvent.size()];
+
+        int i = 0;
+        int j = 0;
+        while (i < generic.size() || j < forEvent.size()) {
+            if (j == forEvent.size() || (i < generic.size()
+                && generic.get(i).sequence() < forEvent.get(j).sequence())) {
+                listeners[i + j] = generic.get(i++).listener();
+            } else {
+                listeners[i + j] = forEvent.get(j++).listener();
+            }
+        }
+
+        return listeners;
+    }
+}
@@ -9,6 +9,8 @@ import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import it.polimi.ingsw.controller.Response;
 import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.EncodingEventData;
+import it.polimi.ingsw.event.data.ResumeSessionEventData;
 import it.polimi.ingsw.event.data.VoidEventData;
 import it.polimi.ingsw.event.data.client.LoginEventData;
 import it.polimi.ingsw.event.data.client.*;
@@ -34,7 +36,7 @@ public class EventDataTypeAdapterFactory implements TypeAdapterFactory {
      * Maps a primitive {@link EventData} identifier with its concrete type. It is used to retrieve
      * the correct {@link TypeAdapter} during deserialization, given the event identifier in the event JSON.
      */
-    private static final Map<String, Type> EVENT_DATA_TYPES = Map.ofEntries(
+    static final Map<String, Type> EVENT_DATA_TYPES = Map.ofEntries(
             Map.entry(LoginEventData.ID, LoginEventData.class),
             Map.entry(CommonGoalCompletedEventData.ID, CommonGoalCompletedEventData.class),
             Map.entry(BoardChangedEventData.ID, BoardChangedEventData.class),
@@ -56,6 +58,9 @@ public class EventDataTypeAdapterFactory implements TypeAdapterFactory {
             Map.entry(JoinGameEventData.ID, JoinGameEventData.class),
             Map.entry(PlayerHasDeselectTile.ID, PlayerHasDeselectTile.class),
             Map.entry(BookshelfHasChangedEventData.ID, BookshelfHasChangedEventData.class),
+            Map.entry(BoardDeltaEventData.ID, BoardDeltaEventData.class),
+            Map.entry(BookshelfDeltaEventData.ID, BookshelfDeltaEventData.class),
+            Map.entry(StateResyncRequestEventData.ID, StateResyncRequestEventData.class),
             Map.entry(PersonalGoalSetEventData.ID, PersonalGoalSetEventData.class),
             Map.entry(PlayerExitGameEventData.ID, PlayerExitGameEventData.class),
             Map.entry(PauseGameEventData.ID, PauseGameEventData.class),
@@ -71,6 +76,8 @@ public class EventDataTypeAdapterFactory implements TypeAdapterFactory {
             Map.entry(GameOverInternalEventData.ID, GameOverInternalEventData.class),
             Map.entry(GameHasBeenStoppedInternalEventData.ID, GameHasBeenStoppedInternalEventData.class),
             Map.entry(VoidEventData.ID, VoidEventData.class),
+            Map.entry(EncodingEventData.ID, EncodingEventData.class),
+            Map.entry(ResumeSessionEventData.ID, ResumeSessionEventData.class),
             Map.entry(UsernameEventData.ID, UsernameEventData.class)
     );
 
@@ -80,7 +87,7 @@ public class EventDataTypeAdapterFactory implements TypeAdapterFactory {
      * retrieve the correct {@link TypeAdapter} during deserialization, given the whole wrapped event identifier
      * in the event JSON.
      */
-    private static final Map<String, Type> WRAPPER_DATA_TYPES = Map.of(
+    static final Map<String, Type> WRAPPER_DATA_TYPES = Map.of(
         SyncEventDataWrapper.WRAPPER_ID, SyncEventDataWrapper.class,
         Response.WRAPPER_ID, Response.class
     );
@@ -2,20 +2,22 @@ package it.polimi.ingsw.event;
 
 import it.polimi.ingsw.event.data.EventData;
 import it.polimi.ingsw.event.receiver.EventListener;
+import it.polimi.ingsw.event.receiver.KeyedEventReceiver;
 
 import java.util.*;
 
 /**
  * Is an {@link EventTransceiver} which allows broadcast and reception of events between components living in the same
  * machine.
+ * Listeners can be registered for the events with a given identifier only, see {@link KeyedEventReceiver}.
  *
  * @author Cristiano Migali
  */
-public class LocalEventTransceiver implements EventTransceiver {
+public class LocalEventTransceiver implements EventTransceiver, KeyedEventReceiver {
     /**
-     * Is the list of listeners registered on the transceiver.
+     * Is the table of the listeners registered on the transceiver.
      */
-    private final List<EventListener<EventData>> listeners = new ArrayList<>();
+    private final DispatchTable listeners = new DispatchTable();
 
     /**
      * Lock object used to synchronize listeners registrations, removal and broadcast.
@@ -29,6 +31,13 @@ public class LocalEventTransceiver implements EventTransceiver {
         }
     }
 
+    @Override
+    public void registerListener(String eventId, EventListener<EventData> listener) {
+        synchronized (lock) {
+            listeners.add(eventId, listener);
+        }
+    }
+
     @Override
     public void unregisterListener(EventListener<EventData> listener) {
         synchronized (lock) {
@@ -36,6 +45,13 @@ public class LocalEventTransceiver implements EventTransceiver {
         }
     }
 
+    @Override
+    public void unregisterListener(String eventId, EventListener<EventData> listener) {
+        synchronized (lock) {
+            listeners.remove(eventId, listener);
+        }
+    }
+
     @Override
     public void unregisterAllListeners() {
         synchronized (lock) {
@@ -46,9 +62,10 @@ public class LocalEventTransceiver implements EventTransceiver {
     @Override
     public void broadcast(EventData data) {
         synchronized (lock) {
-            List<EventListener<EventData>> listenersCopy = new ArrayList<>(listeners);
+            // The snapshot doesn't change if a listener registers or removes listeners while handling the event
+            EventListener<EventData>[] listenersSnapshot = listeners.listenersFor(data.getId());
 
-            for (EventListener<EventData> listener : listenersCopy) {
+            for (EventListener<EventData> listener : listenersSnapshot) {
                 listener.handle(data);
             }
         }
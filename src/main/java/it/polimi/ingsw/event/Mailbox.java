@@ -0,0 +1,189 @@
+package it.polimi.ingsw.event;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mailbox of the deliveries of a {@link NetworkEventTransceiver}, which decouples the thread reading the
+ * connection from the listeners. The reader posts a delivery for every received event and goes back to reading,
+ * while a single dispatcher thread takes the deliveries and runs them one at a time, in the order in which they
+ * have been posted. Hence a slow listener delays only the following deliveries, not the reads.
+ * <p>
+ * The mailbox is bounded: once the given number of deliveries are waiting, the reader waits for the dispatcher to
+ * take one before posting. Hence a peer which sends events faster than they are handled is slowed down by the
+ * flow control of the connection, instead of making the waiting deliveries grow without limit.
+ * <p>
+ * The mailbox keeps track of its depth, that is the number of deliveries waiting to be run, of the maximum depth
+ * it has reached and of the number of deliveries taken.
+ */
+final class Mailbox {
+    /**
+     * Default maximum number of deliveries waiting to be run.
+     */
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The deliveries waiting to be run, in order of posting.
+     */
+    private final Queue<Runnable> deliveries = new ArrayDeque<>();
+
+    /**
+     * Lock which protects the state of the mailbox.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * {@link Condition Condition} signalled when a delivery is posted or the mailbox gets closed.
+     */
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * {@link Condition Condition} signalled when a delivery is taken or the mailbox gets closed.
+     */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Maximum number of deliveries waiting to be run.
+     */
+    private final int capacity;
+
+    /**
+     * The maximum number of deliveries which have been waiting at the same time.
+     */
+    private int maxDepth;
+
+    /**
+     * The number of deliveries taken by the dispatcher.
+     */
+    private long taken;
+
+    /**
+     * It is true iff the mailbox has been closed, no more deliveries will be taken after the posted ones.
+     */
+    private boolean closed;
+
+    /**
+     * Constructor of the class. It creates a mailbox with the default capacity.
+     */
+    Mailbox() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor of the class.
+     *
+     * @param capacity is the maximum number of deliveries waiting to be run.
+     * @throws IllegalArgumentException if capacity is not positive.
+     */
+    Mailbox(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("mailbox capacity must be positive");
+        }
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Posts a delivery, which will be run after all the ones posted before it. If the mailbox is full, it waits
+     * until the dispatcher takes a delivery or the mailbox gets closed.
+     * Deliveries posted after the mailbox has been closed are discarded.
+     *
+     * @param delivery is the delivery to be run by the dispatcher.
+     */
+    void post(Runnable delivery) {
+        lock.lock();
+        try {
+            while (deliveries.size() >= capacity && !closed) {
+                notFull.awaitUninterruptibly();
+            }
+
+            if (closed) {
+                return;
+            }
+
+            deliveries.add(delivery);
+            maxDepth = Math.max(maxDepth, deliveries.size());
+
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next delivery, waiting until one is posted.
+     *
+     * @return the next delivery, null iff the mailbox has been closed and all the posted deliveries have already
+     * been taken.
+     */
+    Runnable take() {
+        lock.lock();
+        try {
+            while (deliveries.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+
+                changed.awaitUninterruptibly();
+            }
+
+            taken++;
+            notFull.signal();
+            return deliveries.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the mailbox: the dispatcher takes the deliveries which are still waiting and then it gets null.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of deliveries waiting to be run.
+     */
+    int depth() {
+        lock.lock();
+        try {
+            return deliveries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the maximum number of deliveries which have been waiting at the same time.
+     */
+    int maxDepth() {
+        lock.lock();
+        try {
+            return maxDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of deliveries taken by the dispatcher.
+     */
+    long taken() {
+        lock.lock();
+        try {
+            return taken;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -2,21 +2,35 @@ package it.polimi.ingsw.event;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonParseException;
 import it.polimi.ingsw.controller.db.CommonGoalTypeAdapter;
 import it.polimi.ingsw.controller.db.PersonalGoalTypeAdapter;
 import it.polimi.ingsw.controller.db.TileTypeAdapter;
+import it.polimi.ingsw.event.data.EncodingEventData;
 import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.ResumeSessionEventData;
+import it.polimi.ingsw.event.data.client.StateResyncRequestEventData;
 import it.polimi.ingsw.event.data.internal.PlayerDisconnectedInternalEventData;
+import it.polimi.ingsw.event.data.internal.StateResyncInternalEventData;
 import it.polimi.ingsw.event.receiver.EventListener;
+import it.polimi.ingsw.event.receiver.KeyedEventReceiver;
 import it.polimi.ingsw.model.goal.CommonGoal;
 import it.polimi.ingsw.model.goal.PersonalGoal;
 import it.polimi.ingsw.model.tile.Tile;
 import it.polimi.ingsw.networking.Connection;
+import it.polimi.ingsw.networking.ConnectionException;
 import it.polimi.ingsw.networking.DisconnectedException;
 import it.polimi.ingsw.utils.Logger;
+import it.polimi.ingsw.utils.Threads;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Is an {@link EventTransceiver} which allows broadcast and reception of events through a network. It relies on a
@@ -27,25 +41,156 @@ import java.util.*;
  * {@link Connection} represents one of the two ends of the communication channel between the hosts.
  * When we broadcast events from one NetworkEventTransceiver, the other will receive them and notify all its
  * registered listeners.
+ * Listeners can be registered for the events with a given identifier only, see {@link KeyedEventReceiver}.
+ * If resumption is enabled, a lost connection is replaced by a new one without the listeners noticing it and
+ * only the events which have been missed in the meantime are sent again, see {@link ResumeSessionEventData}.
  *
  * @author Cristiano Migali
  */
-public class NetworkEventTransceiver implements EventTransceiver {
+public class NetworkEventTransceiver implements EventTransceiver, KeyedEventReceiver {
+    /**
+     * Policy applied when an event is broadcast while the queue of the outgoing events is full, that is when
+     * the paired NetworkEventTransceiver can't keep up with the events sent to it.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The connection is closed, the slow consumer will have to reconnect.
+         */
+        DISCONNECT,
+
+        /**
+         * The event is dropped if it describes the state of the board or of a bookshelf, otherwise the connection
+         * is closed as with {@link #DISCONNECT}. Only the events which supersede a queued one (see {@link SendQueue})
+         * get through a full queue, hence the slow consumer keeps receiving the latest state of the board and
+         * bookshelves, while the other events, such as the replies to requests, are never lost.
+         */
+        DROP_SUPERSEDED
+    }
+
+    /**
+     * Encoding of the events sent over the connection.
+     */
+    public enum Encoding {
+        /**
+         * Events are sent as JSON, see {@link EventDataTypeAdapterFactory}.
+         */
+        JSON,
+
+        /**
+         * Events are sent in a compact binary format, see {@link BinaryEventCodec}. It is used only if both the
+         * transceivers have selected it and the connection can carry raw bytes, otherwise JSON is used.
+         */
+        BINARY
+    }
+
+    /**
+     * Opens a new connection to the endpoint of a lost one, in order to resume the session.
+     */
+    @FunctionalInterface
+    public interface Reconnector {
+        /**
+         * @return a new connection to the endpoint of the lost one.
+         * @throws ConnectionException if the endpoint can't be reached.
+         */
+        Connection reconnect() throws ConnectionException;
+    }
+
+    /**
+     * The maximum number of sent messages kept to be sent again when a session is resumed.
+     */
+    private static final int RESUME_BUFFER_CAPACITY = 1024;
+
+    /**
+     * The time in milliseconds waited between two attempts to reconnect.
+     */
+    private static final long RECONNECT_INTERVAL = 500;
+
+    /**
+     * The sessions which have been opened by the paired transceivers and can be resumed, indexed by their token.
+     */
+    private static final Map<String, NetworkEventTransceiver> SESSIONS = new ConcurrentHashMap<>();
+
+    /**
+     * The encoding selected by the transceivers created from now on.
+     */
+    private static volatile Encoding defaultEncoding = Encoding.JSON;
+
+    /**
+     * The time in milliseconds for which the sessions of the transceivers created from now on can be resumed,
+     * 0 if resumption is disabled.
+     */
+    private static volatile long defaultResumeTimeout = 0;
+
     /**
      * Lock object used to synchronize listeners registration, removal and event handling.
      */
     private final Object lock;
 
     /**
-     * Is the list of listeners registered on the transceiver.
+     * Is the table of the listeners registered on the transceiver.
      */
-    private final List<EventListener<EventData>> listeners = new ArrayList<>();
+    private final DispatchTable listeners = new DispatchTable();
 
     /**
      * Is the underlying {@link Connection} object which allows to communicate with the paired NetworkEventTransceiver
-     * on a different host.
+     * on a different host. It is replaced when the session is resumed.
+     */
+    private volatile Connection connection;
+
+    /**
+     * The time in milliseconds for which the session can be resumed after the connection has been lost,
+     * 0 if resumption is disabled.
+     */
+    private final long resumeTimeout;
+
+    /**
+     * Opens a new connection when the current one is lost, null if this transceiver doesn't reconnect but waits
+     * for the paired one to do so.
+     */
+    private final Reconnector reconnector;
+
+    /**
+     * Lock which protects the state of the session.
+     */
+    private final ReentrantLock sessionLock = new ReentrantLock();
+
+    /**
+     * {@link Condition Condition} signalled when the session gets opened, the connection is replaced,
+     * the "receiver Thread" waits for a new connection or the session gets closed.
+     */
+    private final Condition sessionChanged = sessionLock.newCondition();
+
+    /**
+     * The token which identifies the session, null if the session can't be resumed.
+     */
+    private String token;
+
+    /**
+     * The messages sent during the session, null if the session can't be resumed.
+     */
+    private ResumeBuffer resumeBuffer;
+
+    /**
+     * The number of messages received during the session. It is written only by the "receiver Thread" and read
+     * by other threads only while the "receiver Thread" waits for a new connection.
+     */
+    private long received;
+
+    /**
+     * It is true iff the session has been opened. A transceiver which waits for the paired one to reconnect
+     * doesn't send anything until it knows whether the connection opens a new session or resumes an old one.
+     */
+    private volatile boolean opened;
+
+    /**
+     * It is true iff the "receiver Thread" is waiting for a new connection.
      */
-    private final Connection connection;
+    private boolean receiverWaiting;
+
+    /**
+     * It is true iff the session has been closed: the connection won't be replaced anymore.
+     */
+    private volatile boolean closed;
 
     /**
      * {@link Gson} object which allows for serialization of {@link EventData}s before sending them through the
@@ -53,85 +198,695 @@ public class NetworkEventTransceiver implements EventTransceiver {
      */
     private final Gson gson;
 
+    /**
+     * Buffer in which the "sender Thread" encodes the outgoing events.
+     */
+    private final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+
+    /**
+     * The encoding selected by this transceiver.
+     */
+    private volatile Encoding encoding = defaultEncoding;
+
+    /**
+     * The encoding selected by the paired transceiver, as announced through {@link EncodingEventData}.
+     */
+    private volatile Encoding peerEncoding = Encoding.JSON;
+
+    /**
+     * It is true iff the binary encoding has been announced to the paired transceiver at least once: binary events
+     * are accepted only after that, since the paired transceiver can't send them before.
+     */
+    private volatile boolean binaryAnnounced;
+
     /**
      * Constructor of the class. Initializes the inner lock, the connection object, the {@link Gson} object
      * used for serialization and starts the "receiver Thread" which receives events from the coupled
-     * NetworkEventTransceiver and notifies all the listeners.
+     * NetworkEventTransceiver and the "dispatcher Thread" which notifies all the listeners.
+     * The receiver posts every received event in a {@link Mailbox}, from which the dispatcher takes them in order,
+     * so that slow listeners never stop the connection from being read.
+     * If the default encoding is {@link Encoding#BINARY}, it is announced to the paired transceiver.
+     * If resumption is enabled, the transceiver waits for the paired one to open or resume a session.
      *
      * @param connection is the connection on which broadcast events will be sent and from which events
      *                   dispatched by the coupled NetworkEventTransceiver will be received.
      * @param lock is the inner lock used for listeners registration, removal and events handling.
      */
     public NetworkEventTransceiver(Connection connection, Object lock) {
+        this(connection, lock, null);
+    }
+
+    /**
+     * Constructor of the class. It behaves like {@link NetworkEventTransceiver#NetworkEventTransceiver(Connection,
+     * Object)}, but if resumption is enabled the transceiver opens a session and, when the connection is lost,
+     * it reconnects and resumes the session.
+     *
+     * @param connection is the connection on which broadcast events will be sent and from which events
+     *                   dispatched by the coupled NetworkEventTransceiver will be received.
+     * @param lock is the inner lock used for listeners registration, removal and events handling.
+     * @param reconnector opens a new connection to the endpoint of the lost one, null if the transceiver has
+     *                    to wait for the paired one to reconnect.
+     *
+     * @see NetworkEventTransceiver#setDefaultResumeTimeout(long)
+     */
+    public NetworkEventTransceiver(Connection connection, Object lock, Reconnector reconnector) {
         this.lock = lock;
 
         this.connection = connection;
-        this.gson = new GsonBuilder()
-            .registerTypeAdapterFactory(new EventDataTypeAdapterFactory())
-            .registerTypeAdapter(CommonGoal.class, new CommonGoalTypeAdapter())
-            .registerTypeAdapter(PersonalGoal.class, new PersonalGoalTypeAdapter())
-            .registerTypeAdapter(Tile.class, new TileTypeAdapter())
-            .create();
+        this.gson = createGson();
+
+        this.resumeTimeout = defaultResumeTimeout;
+        this.reconnector = resumeTimeout > 0 ? reconnector : null;
+        this.opened = resumeTimeout == 0 || reconnector != null;
+
+        if (this.reconnector != null) {
+            token = UUID.randomUUID().toString();
+            resumeBuffer = new ResumeBuffer(RESUME_BUFFER_CAPACITY);
+
+            try {
+                connection.sendBytes(encodeHandshake(token, ResumeSessionEventData.NEW_SESSION));
+            } catch (DisconnectedException e) {
+                // The "receiver Thread" will notice the disconnection
+            }
+        }
+
+        if (encoding == Encoding.BINARY) {
+            announceEncoding();
+        }
+
+        Threads.start("event-receiver", () -> {
+            Connection current = connection;
 
-        new Thread(() -> {
             while (true) {
-                String eventJSON;
+                byte[] message;
                 try {
-                    eventJSON = connection.receive();
+                    message = current.receiveBytes();
                 } catch (DisconnectedException e) {
-                    this.notifyDisconnection();
-                    return;
+                    current = awaitResumption(current);
+
+                    if (current == null) {
+                        mailbox.post(this::notifyDisconnection);
+                        mailbox.close();
+                        return;
+                    }
+
+                    continue;
                 }
 
-                EventData eventData;
-                try {
-                    eventData = gson.fromJson(eventJSON, EventData.class);
-                } catch (JsonParseException e) {
-                    // We skip non-valid event JSONs
-                    Logger.writeCritical("Got exception while deserializing: " + e.getMessage());
+                EventData eventData = decode(message);
+
+                if (eventData instanceof ResumeSessionEventData handshake) {
+                    if (!handleHandshake(handshake, current)) {
+                        // The connection now belongs to the resumed session
+                        return;
+                    }
+
                     continue;
                 }
 
-                synchronized (this.lock) {
-                    List<EventListener<EventData>> listenersCopy = new ArrayList<>(listeners);
-                    /* Event handling is done inside the lock because of an optimization:
-                     * every TUI's component listener needs to synchronize on the drawing lock,
-                     * we take the lock one time and then handle the events.
-                     */
-                    for (EventListener<EventData> listener : listenersCopy) {
-                        listener.handle(eventData);
+                received++;
+                if (!opened) {
+                    // The paired transceiver doesn't support resumption
+                    openSession(null);
+                }
+
+                if (eventData == null) {
+                    continue;
+                }
+
+                if (eventData instanceof EncodingEventData encodingEventData) {
+                    peerEncoding = encodingEventData.encoding();
+
+                    // Tags and fields would be read with a different layout
+                    if (peerEncoding == Encoding.BINARY && encodingEventData.schema() != BinaryEventCodec.SCHEMA) {
+                        Logger.writeWarning("The paired transceiver has a different binary schema, using JSON");
+                        peerEncoding = Encoding.JSON;
                     }
+                    continue;
                 }
+
+                if (eventData instanceof StateResyncRequestEventData) {
+                    // The snapshots are produced by the sender thread, which owns the state of the encoder
+                    sendQueue.add(new StateResyncInternalEventData());
+                    continue;
+                }
+
+                EventData decoded = stateDeltaCodec.decode(eventData);
+                if (decoded == null) {
+                    continue;
+                }
+
+                mailbox.post(() -> notifyListeners(decoded));
             }
-        }).start();
+        });
 
-        new Thread(() -> {
-            EventData toSend;
+        Threads.start("event-dispatcher", () -> {
+            Runnable delivery;
+            while ((delivery = mailbox.take()) != null) {
+                // A listener which fails mustn't stop the delivery of the following events
+                try {
+                    delivery.run();
+                } catch (RuntimeException e) {
+                    Logger.writeCritical("Got exception while notifying a received event: " + e);
+                }
+            }
+        });
 
+        Threads.start("event-sender", () -> {
             while (true) {
-                synchronized (sendQueue) {
-                    while (sendQueue.isEmpty()) {
-                        if (!hasToSend) {
-                            return;
+                List<PreEncodedEvent> batch = sendQueue.takeBatch();
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                boolean binary = encoding == Encoding.BINARY && peerEncoding == Encoding.BINARY
+                    && this.connection.isBinarySafe();
+
+                // All the events in the batch are encoded and then handed to the connection at once,
+                // which flushes them together
+                List<byte[]> encodedBatch = new ArrayList<>(batch.size());
+                for (PreEncodedEvent event : batch) {
+                    for (EventData toSend : stateDeltaCodec.encode(event.getEventData())) {
+                        byte[] encoded = null;
+
+                        // The encoding is always announced as JSON, since the paired transceiver may not
+                        // accept binary events yet
+                        if (binary && !(toSend instanceof EncodingEventData)) {
+                            encoded = event.encode(toSend, Encoding.BINARY, this::encodeBinary);
                         }
 
-                        try {
-                            sendQueue.wait();
-                        } catch (InterruptedException e) {
+                        // If the binary encoding fails, the event is sent as JSON
+                        if (encoded == null) {
+                            encoded = event.encode(toSend, Encoding.JSON, this::encodeJson);
+                        }
 
+                        if (encoded != null) {
+                            encodedBatch.add(encoded);
                         }
                     }
+                }
+
+                if (!send(encodedBatch)) {
+                    return;
+                }
+            }
+        });
+    }
 
-                    toSend = sendQueue.poll();
+    /**
+     * Decodes a received message.
+     *
+     * @param message is the received message, either binary or JSON.
+     * @return the decoded event, null if the message isn't a valid event or it is binary while the binary
+     * encoding hasn't been announced to the paired transceiver.
+     */
+    private EventData decode(byte[] message) {
+        try {
+            if (BinaryEventCodec.isBinary(message)) {
+                if (!binaryAnnounced) {
+                    throw new IOException("Binary event received before negotiating the binary encoding");
                 }
 
+                return BinaryEventCodec.getInstance().decode(message);
+            }
+
+            // The JSON is parsed straight from the received bytes, without building an intermediate String
+            return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(message),
+                StandardCharsets.UTF_8), EventData.class);
+        } catch (JsonParseException | IOException e) {
+            // We skip non-valid events
+            Logger.writeCritical("Got exception while deserializing: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sends a batch of messages over the connection. It is called only by the "sender Thread".
+     * If the session can be resumed, the messages are kept in the resume buffer and, when the connection is lost,
+     * the "sender Thread" waits for the session to be resumed: the resumption itself sends again the messages
+     * which the paired transceiver has missed.
+     *
+     * @param messages are the messages to send.
+     * @return true iff the transceiver can still send messages.
+     */
+    private boolean send(List<byte[]> messages) {
+        sessionLock.lock();
+        try {
+            while (!opened && !closed) {
+                sessionChanged.awaitUninterruptibly();
+            }
+
+            if (closed) {
+                return false;
+            }
+
+            if (resumeBuffer != null) {
+                for (byte[] message : messages) {
+                    resumeBuffer.add(message);
+                }
+            }
+
+            Connection current = connection;
+            try {
+                current.sendAllBytes(messages);
+                return true;
+            } catch (DisconnectedException e) {
+                if (resumeBuffer == null) {
+                    return false;
+                }
+
+                while (connection == current && !closed) {
+                    sessionChanged.awaitUninterruptibly();
+                }
+
+                return !closed;
+            }
+        } finally {
+            sessionLock.unlock();
+        }
+    }
+
+    /**
+     * Encodes a message of the session handshake as JSON. These messages are sent directly on the connection,
+     * bypassing the queue of the outgoing events.
+     *
+     * @param token is the token of the session, null if the resumption has been refused.
+     * @param received is the number of messages received during the session.
+     * @return the UTF-8 bytes of the JSON message.
+     */
+    private byte[] encodeHandshake(String token, long received) {
+        return gson.toJson(new ResumeSessionEventData(token, received), EventData.class)
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Handles a message of the session handshake received on the connection. It is called only by the
+     * "receiver Thread".
+     *
+     * @param handshake is the received message.
+     * @param current is the connection on which the message has been received.
+     * @return false iff the connection has been handed to the session which it resumes, then this transceiver
+     * is discarded without notifying the listeners.
+     */
+    private boolean handleHandshake(ResumeSessionEventData handshake, Connection current) {
+        // Only the first message on the connection of a transceiver which waits for reconnections opens a session
+        if (opened || handshake.token() == null) {
+            if (handshake.token() != null && handshake.received() != ResumeSessionEventData.NEW_SESSION) {
+                refuseResumption(current);
+            }
+
+            return true;
+        }
+
+        if (handshake.received() == ResumeSessionEventData.NEW_SESSION) {
+            openSession(handshake.token());
+            return true;
+        }
+
+        NetworkEventTransceiver session = SESSIONS.get(handshake.token());
+        if (session != null && session.resume(current, handshake.received())) {
+            Logger.writeMessage("Resumed a session");
+
+            closeSession();
+            sendQueue.close();
+            mailbox.close();
+
+            return false;
+        }
+
+        refuseResumption(current);
+        openSession(null);
+        return true;
+    }
+
+    /**
+     * Tells the paired transceiver that its session can't be resumed.
+     *
+     * @param current is the connection on which the resumption has been requested.
+     */
+    private void refuseResumption(Connection current) {
+        try {
+            current.sendBytes(encodeHandshake(null, 0));
+        } catch (DisconnectedException e) {
+            // The "receiver Thread" will notice the disconnection
+        }
+    }
+
+    /**
+     * Opens the session, allowing the "sender Thread" to send the outgoing events.
+     *
+     * @param token is the token which identifies the session, null if the session can't be resumed.
+     */
+    private void openSession(String token) {
+        sessionLock.lock();
+        try {
+            if (token != null) {
+                this.token = token;
+                resumeBuffer = new ResumeBuffer(RESUME_BUFFER_CAPACITY);
+                SESSIONS.put(token, this);
+            }
+
+            opened = true;
+            sessionChanged.signalAll();
+        } finally {
+            sessionLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the session: the connection won't be replaced anymore.
+     */
+    private void closeSession() {
+        sessionLock.lock();
+        try {
+            closed = true;
+
+            if (token != null) {
+                SESSIONS.remove(token, this);
+            }
+
+            sessionChanged.signalAll();
+        } finally {
+            sessionLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the session to be resumed on a new connection, after the current one has been lost.
+     * It is called only by the "receiver Thread".
+     *
+     * @param lost is the lost connection.
+     * @return the new connection, null if the session can't be resumed.
+     */
+    private Connection awaitResumption(Connection lost) {
+        // The lost connection may still be sending heartbeats
+        lost.disconnect();
+
+        sessionLock.lock();
+        try {
+            if (resumeBuffer == null || closed) {
+                closed = true;
+                sessionChanged.signalAll();
+                return null;
+            }
+
+            receiverWaiting = true;
+            sessionChanged.signalAll();
+        } finally {
+            sessionLock.unlock();
+        }
+
+        Connection resumed = reconnector != null ? reconnect() : awaitReconnection(lost);
+
+        sessionLock.lock();
+        try {
+            receiverWaiting = false;
+        } finally {
+            sessionLock.unlock();
+        }
+
+        if (resumed == null) {
+            Logger.writeWarning("The session can't be resumed");
+            closeSession();
+            sendQueue.close();
+        }
+
+        return resumed;
+    }
+
+    /**
+     * Opens a new connection and resumes the session on it. The endpoint is tried again until the session
+     * can't be resumed anymore.
+     *
+     * @return the new connection, null if the session can't be resumed.
+     */
+    private Connection reconnect() {
+        long deadline = System.currentTimeMillis() + resumeTimeout;
+
+        while (!closed && System.currentTimeMillis() < deadline) {
+            Connection resumed = null;
+
+            try {
+                resumed = reconnector.reconnect();
+                resumed.sendBytes(encodeHandshake(token, received));
+
+                if (decode(resumed.receiveBytes()) instanceof ResumeSessionEventData handshake
+                    && handshake.token() != null && replay(resumed, handshake.received())) {
+                    return resumed;
+                }
+
+                // The paired transceiver has lost the session, or the messages it has missed
+                resumed.disconnect();
+                return null;
+            } catch (ConnectionException | DisconnectedException e) {
+                if (resumed != null) {
+                    resumed.disconnect();
+                }
+            }
+
+            try {
+                Thread.sleep(RECONNECT_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Waits for the paired transceiver to reconnect and resume the session.
+     *
+     * @param lost is the lost connection.
+     * @return the new connection, null if the session hasn't been resumed in time.
+     */
+    private Connection awaitReconnection(Connection lost) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(resumeTimeout);
+
+        sessionLock.lock();
+        try {
+            while (connection == lost && !closed && remaining > 0) {
                 try {
-                    connection.send(gson.toJson(toSend, EventData.class));
-                } catch (DisconnectedException e) {
-                    return;
+                    remaining = sessionChanged.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
                 }
             }
-        }).start();
+
+            return connection != lost && !closed ? connection : null;
+        } finally {
+            sessionLock.unlock();
+        }
+    }
+
+    /**
+     * Resumes the session on the connection of a reconnected paired transceiver. It is called by the
+     * "receiver Thread" of the transceiver which has received the request of resumption.
+     *
+     * @param resumed is the new connection.
+     * @param peerReceived is the number of messages received by the paired transceiver during the session.
+     * @return true iff the session has been resumed on the new connection.
+     */
+    private boolean resume(Connection resumed, long peerReceived) {
+        // The loss of the connection may not have been noticed yet
+        connection.disconnect();
+
+        sessionLock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(resumeTimeout);
+
+            // The number of received messages is final only once the "receiver Thread" waits
+            while (!receiverWaiting && !closed && remaining > 0) {
+                try {
+                    remaining = sessionChanged.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+
+            if (!receiverWaiting || closed) {
+                return false;
+            }
+
+            try {
+                resumed.sendBytes(encodeHandshake(token, received));
+            } catch (DisconnectedException e) {
+                return false;
+            }
+
+            if (!replay(resumed, peerReceived)) {
+                closeSession();
+                return false;
+            }
+
+            return true;
+        } finally {
+            sessionLock.unlock();
+        }
+    }
+
+    /**
+     * Sends again on the new connection the messages which the paired transceiver has missed, then replaces
+     * the lost connection with the new one.
+     *
+     * @param resumed is the new connection.
+     * @param peerReceived is the number of messages received by the paired transceiver during the session.
+     * @return true iff all the missed messages were still in the resume buffer and the connection has been
+     * replaced.
+     */
+    private boolean replay(Connection resumed, long peerReceived) {
+        sessionLock.lock();
+        try {
+            List<byte[]> missed = closed ? null : resumeBuffer.since(peerReceived);
+            if (missed == null) {
+                return false;
+            }
+
+            try {
+                resumed.sendAllBytes(missed);
+            } catch (DisconnectedException e) {
+                // The new connection has already been lost, it will be noticed by the "receiver Thread"
+            }
+
+            connection = resumed;
+            sessionChanged.signalAll();
+
+            return true;
+        } finally {
+            sessionLock.unlock();
+        }
+    }
+
+    /**
+     * Encodes an event as JSON. It is called only by the "sender Thread".
+     *
+     * @param event is the event to encode.
+     * @return the UTF-8 bytes of the JSON event, null if the event can't be serialized.
+     */
+    private byte[] encodeJson(EventData event) {
+        serialized.reset();
+
+        try (Writer writer = new OutputStreamWriter(serialized, StandardCharsets.UTF_8)) {
+            gson.toJson(event, EventData.class, writer);
+        } catch (IOException | JsonIOException e) {
+            Logger.writeCritical("Got exception while serializing: " + e.getMessage());
+            return null;
+        }
+
+        return serialized.toByteArray();
+    }
+
+    /**
+     * Encodes an event in the binary encoding. It is called only by the "sender Thread".
+     *
+     * @param event is the event to encode.
+     * @return the binary event, null if the event can't be encoded in binary.
+     */
+    private byte[] encodeBinary(EventData event) {
+        serialized.reset();
+
+        try {
+            BinaryEventCodec.getInstance().encode(event, serialized);
+        } catch (IOException e) {
+            return null;
+        }
+
+        return serialized.toByteArray();
+    }
+
+    /**
+     * @return a {@link Gson} object which allows for serialization of {@link EventData}s, as they are sent over
+     * the connection in the JSON encoding.
+     */
+    public static Gson createGson() {
+        return new GsonBuilder()
+            .registerTypeAdapterFactory(new EventDataTypeAdapterFactory())
+            .registerTypeAdapter(CommonGoal.class, new CommonGoalTypeAdapter())
+            .registerTypeAdapter(PersonalGoal.class, new PersonalGoalTypeAdapter())
+            .registerTypeAdapter(Tile.class, new TileTypeAdapter())
+            .create();
+    }
+
+    /**
+     * Selects the encoding of the transceivers created from now on. By default, it is {@link Encoding#JSON}.
+     *
+     * @param encoding is the encoding of the transceivers created from now on.
+     */
+    public static void setDefaultEncoding(Encoding encoding) {
+        NetworkEventTransceiver.defaultEncoding = Objects.requireNonNull(encoding);
+    }
+
+    /**
+     * Enables the resumption of the sessions of the transceivers created from now on. When the connection is lost,
+     * a transceiver created with a {@link Reconnector} keeps reconnecting for the given time, while the paired
+     * one waits for it for the same time; only if the session hasn't been resumed by then, the disconnection
+     * is notified to the listeners. By default, it is 0: resumption is disabled.
+     *
+     * @param resumeTimeout is the time in milliseconds for which a lost session can be resumed, 0 to disable
+     *                      resumption.
+     * @throws IllegalArgumentException if resumeTimeout is negative.
+     */
+    public static void setDefaultResumeTimeout(long resumeTimeout) {
+        if (resumeTimeout < 0) {
+            throw new IllegalArgumentException("The resume timeout can't be negative");
+        }
+
+        NetworkEventTransceiver.defaultResumeTimeout = resumeTimeout;
+    }
+
+    /**
+     * Selects the encoding of this transceiver and announces it to the paired transceiver. Events are sent in
+     * the binary encoding only once both the transceivers have selected it.
+     *
+     * @param encoding is the encoding of this transceiver.
+     */
+    public void setEncoding(Encoding encoding) {
+        this.encoding = Objects.requireNonNull(encoding);
+
+        announceEncoding();
+    }
+
+    /**
+     * Announces the encoding of this transceiver to the paired transceiver. Binary events are accepted from the
+     * moment the binary encoding is announced for the first time: events sent by the paired transceiver before
+     * it receives a later JSON announcement may still be binary.
+     */
+    private void announceEncoding() {
+        Encoding announced = announcedEncoding();
+        if (announced == Encoding.BINARY) {
+            binaryAnnounced = true;
+        }
+
+        sendQueue.add(new EncodingEventData(announced, BinaryEventCodec.SCHEMA));
+    }
+
+    /**
+     * @return the encoding announced to the paired transceiver: the selected one, unless the connection can't
+     * carry binary events.
+     */
+    private Encoding announcedEncoding() {
+        return encoding == Encoding.BINARY && connection.isBinarySafe() ? Encoding.BINARY : Encoding.JSON;
+    }
+
+    /**
+     * Notifies a received event to the registered listeners. It is called only by the "dispatcher Thread".
+     *
+     * @param eventData is the received event.
+     */
+    private void notifyListeners(EventData eventData) {
+        synchronized (this.lock) {
+            EventListener<EventData>[] listenersSnapshot = listeners.listenersFor(eventData.getId());
+            /* Event handling is done inside the lock because of an optimization:
+             * every TUI's component listener needs to synchronize on the drawing lock,
+             * we take the lock one time and then handle the events.
+             */
+            for (EventListener<EventData> listener : listenersSnapshot) {
+                listener.handle(eventData);
+            }
+        }
     }
 
     /**
@@ -141,12 +896,12 @@ public class NetworkEventTransceiver implements EventTransceiver {
      */
     private void notifyDisconnection () {
         synchronized (lock) {
-            List<EventListener<EventData>> listenersCopy = new ArrayList<>(listeners);
+            EventListener<EventData>[] listenersSnapshot =
+                listeners.listenersFor(PlayerDisconnectedInternalEventData.ID);
 
-            listenersCopy
-                    .forEach(l ->
-                            l.handle(new PlayerDisconnectedInternalEventData())
-                    );
+            for (EventListener<EventData> listener : listenersSnapshot) {
+                listener.handle(new PlayerDisconnectedInternalEventData());
+            }
         }
     }
 
@@ -157,6 +912,13 @@ public class NetworkEventTransceiver implements EventTransceiver {
         }
     }
 
+    @Override
+    public void registerListener(String eventId, EventListener<EventData> listener) {
+        synchronized (lock) {
+            listeners.add(eventId, listener);
+        }
+    }
+
     @Override
     public void unregisterListener(EventListener<EventData> listener) {
         synchronized (lock) {
@@ -164,6 +926,13 @@ public class NetworkEventTransceiver implements EventTransceiver {
         }
     }
 
+    @Override
+    public void unregisterListener(String eventId, EventListener<EventData> listener) {
+        synchronized (lock) {
+            this.listeners.remove(eventId, listener);
+        }
+    }
+
     @Override
     public void unregisterAllListeners() {
         synchronized (lock) {
@@ -173,36 +942,138 @@ public class NetworkEventTransceiver implements EventTransceiver {
 
     /**
      * It is a queue used to implement a producer/consumer pattern for outgoing events.
-     * {@link NetworkEventTransceiver#broadcast(EventData)} is the producer; the consumer thread sens
-     * the events over the connection.
+     * {@link NetworkEventTransceiver#broadcast(EventData)} is the producer; the consumer thread takes
+     * the events in batches and sends every batch over the connection with a single flush.
      */
-    private final Queue<EventData> sendQueue = new ArrayDeque<>();
+    private final SendQueue sendQueue = new SendQueue();
 
     /**
-     * It is true iff the consumer thread which sends events over the connection has to remain alive.
+     * Is the mailbox in which the "receiver Thread" posts the received events, to be notified to the listeners
+     * by the "dispatcher Thread". It is bounded: while it is full, the "receiver Thread" stops reading from the
+     * connection.
      */
-    private boolean hasToSend = true;
+    private final Mailbox mailbox = new Mailbox();
+
+    /**
+     * Encodes the outgoing board and bookshelf changes as deltas and decodes the incoming ones. Its resync
+     * requests are accepted by the {@link SendQueue} even when it is full, so they are never lost.
+     */
+    private final StateDeltaCodec stateDeltaCodec = new StateDeltaCodec(
+        () -> sendQueue.add(new StateResyncRequestEventData()));
+
+    /**
+     * Is the policy applied when the queue of the outgoing events is full.
+     */
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DISCONNECT;
 
     @Override
     public void broadcast(EventData data) {
-        synchronized (sendQueue) {
-            sendQueue.add(data);
-            sendQueue.notifyAll();
+        broadcast(new PreEncodedEvent(data));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The encoding of the event is shared with the other transceivers which send the same envelope.
+     */
+    @Override
+    public void broadcast(PreEncodedEvent event) {
+        if (sendQueue.add(event)) {
+            return;
         }
+
+        // Only the state events can be dropped, since a newer one will describe the same state
+        if (overflowPolicy == OverflowPolicy.DROP_SUPERSEDED && SendQueue.conflationKey(event.getEventData()) != null) {
+            Logger.writeWarning("The outgoing events queue is full, dropping " + event.getEventData().getId());
+        } else {
+            Logger.writeWarning("The outgoing events queue is full, disconnecting the slow consumer");
+            disconnect();
+        }
+    }
+
+    /**
+     * Sets the maximum number of outgoing events which can be queued while waiting to be sent.
+     *
+     * @param maxQueueSize is the maximum number of queued events.
+     * @throws IllegalArgumentException if maxQueueSize is not positive.
+     */
+    public void setMaxQueueSize(int maxQueueSize) {
+        sendQueue.setMaxSize(maxQueueSize);
+    }
+
+    /**
+     * Sets the policy applied when an event is broadcast while the queue of the outgoing events is full.
+     * By default, it is {@link OverflowPolicy#DISCONNECT}.
+     *
+     * @param overflowPolicy is the policy applied when the queue is full.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Sets the maximum number of outgoing events which are sent over the connection with a single flush.
+     *
+     * @param maxBatchSize is the maximum number of events in a batch.
+     * @throws IllegalArgumentException if maxBatchSize is not positive.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        sendQueue.setMaxBatchSize(maxBatchSize);
+    }
+
+    /**
+     * Sets the time the consumer thread waits for a batch of outgoing events to fill up before sending it.
+     * By default, it is 0: the consumer thread sends all the events queued while the previous batch was being sent.
+     *
+     * @param lingerTime is the time in milliseconds.
+     * @throws IllegalArgumentException if lingerTime is negative.
+     */
+    public void setLingerTime(long lingerTime) {
+        sendQueue.setLingerTime(lingerTime);
+    }
+
+    /**
+     * @return the number of received events waiting to be notified to the listeners.
+     */
+    public int getPendingDeliveries() {
+        return mailbox.depth();
+    }
+
+    /**
+     * @return the maximum number of received events which have been waiting at the same time to be notified to
+     * the listeners. It tells how far the listeners have fallen behind the connection.
+     */
+    public int getMaxPendingDeliveries() {
+        return mailbox.maxDepth();
+    }
+
+    /**
+     * @return the number of received events whose notification to the listeners has started.
+     */
+    public long getDeliveredEvents() {
+        return mailbox.taken();
+    }
+
+    /**
+     * @return the smoothed round trip time in milliseconds of the current connection, -1 if it hasn't been
+     * measured yet. It is measured again from scratch after a resumption, since the connection is new.
+     */
+    public double getRoundTripTime() {
+        return connection.getRoundTripTime();
     }
 
     /**
      * Disconnects the underlying connection.
-     * This causes the "receiver Thread" to stop.
+     * This causes the "receiver Thread" to stop, and the "dispatcher Thread" too once it has notified
+     * the events already received.
      * After having performed a disconnect the NetworkEventTransceiver is
-     * useless: it can't broadcast nor receive events.
+     * useless: it can't broadcast nor receive events, and its session can't be resumed.
      */
     public void disconnect() {
+        // The session is marked as closed before the connection, so that its loss isn't taken for a failure
+        closed = true;
         connection.disconnect();
 
-        synchronized (sendQueue) {
-            hasToSend = false;
-            sendQueue.notifyAll();
-        }
+        closeSession();
+        sendQueue.close();
     }
 }
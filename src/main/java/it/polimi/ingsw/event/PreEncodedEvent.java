@@ -0,0 +1,83 @@
+package it.polimi.ingsw.event;
+
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.transmitter.EventTransmitter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Envelope of an {@link EventData} which is broadcast to many {@link EventTransmitter}s, for example to all the
+ * clients in a game. The event is encoded once, the first time a {@link NetworkEventTransceiver} sends it, and the
+ * encoded bytes are shared by all the other transceivers which send it afterwards in the same encoding.
+ * Hence the cost of encoding an event doesn't grow with the number of its recipients.
+ * <p>
+ * A transceiver can send, in place of the event, an event derived from it, such as the delta of a board change.
+ * The encodings of the derived events are shared too, among the transceivers which derive equal events.
+ * <p>
+ * The encoded bytes are never modified after they have been produced.
+ */
+public final class PreEncodedEvent {
+    /**
+     * The event in the envelope.
+     */
+    private final EventData eventData;
+
+    /**
+     * Maps the encoding to the encoded event and the pair of encoding and derived event to the encoded derived
+     * event. It is null until the event gets encoded.
+     */
+    private Map<Object, byte[]> encoded;
+
+    /**
+     * Constructor of the class.
+     *
+     * @param eventData is the event in the envelope.
+     *
+     * @throws NullPointerException iff eventData is null.
+     */
+    public PreEncodedEvent(EventData eventData) {
+        this.eventData = Objects.requireNonNull(eventData);
+    }
+
+    /**
+     * @return the event in the envelope.
+     */
+    public EventData getEventData() {
+        return eventData;
+    }
+
+    /**
+     * Encodes the event in the envelope, or an event derived from it, unless the same event has already been
+     * encoded in the same encoding. Concurrent calls wait for each other, so that an event is never encoded twice.
+     *
+     * @param toSend is the event to encode: the one in the envelope or one derived from it.
+     * @param encoding is the encoding in which the event is encoded.
+     * @param encoder is the function which encodes an event in the given encoding, it returns null if the event
+     *                can't be encoded.
+     * @return the encoded event, null if the event can't be encoded.
+     */
+    synchronized byte[] encode(EventData toSend, NetworkEventTransceiver.Encoding encoding,
+                               Function<EventData, byte[]> encoder) {
+        if (encoded == null) {
+            encoded = new HashMap<>();
+        }
+
+        // The event in the envelope is looked up by the encoding alone, to avoid hashing its content
+        Object key = toSend == eventData ? encoding : List.of(encoding, toSend);
+
+        byte[] bytes = encoded.get(key);
+        if (bytes == null) {
+            bytes = encoder.apply(toSend);
+
+            if (bytes != null) {
+                encoded.put(key, bytes);
+            }
+        }
+
+        return bytes;
+    }
+}
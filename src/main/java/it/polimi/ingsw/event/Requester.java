@@ -8,11 +8,12 @@ import it.polimi.ingsw.event.receiver.EventListener;
 import it.polimi.ingsw.event.receiver.EventReceiver;
 import it.polimi.ingsw.event.transmitter.EventTransmitter;
 import it.polimi.ingsw.networking.DisconnectedException;
+import it.polimi.ingsw.utils.HashedWheelTimer;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Allows to perform synchronous requests through an {@link EventTransmitter} (used to send the requests)
@@ -23,6 +24,10 @@ import java.util.Set;
  * response it is waiting for to which the same integer of the request has been attached.
  * The attachment in the response is performed by a {@link Responder} which works in symbiosis with the Requester.
  * After having created a Requester, you MUST initialize it through {@link Requester#registerAllListeners()}.
+ * <p>
+ * Requests can also be performed asynchronously through {@link Requester#requestAsync(EventData, long)}, which
+ * returns a {@link CompletableFuture} completed directly by the listener which receives the response. Many
+ * asynchronous requests can be in flight at the same time, and no thread waits on the shared lock for them.
  *
  * @param <R> is the type of the response we want to receive.
  * @param <S> is the type of the request we want to send.
@@ -87,6 +92,12 @@ public class Requester<R extends EventData, S extends EventData> {
      */
     private final Map<Integer, R> responses = new HashMap<>();
 
+    /**
+     * Maps the integer attached to every asynchronous request for which we are waiting a response to the future
+     * which will be completed with the response.
+     */
+    private final Map<Integer, CompletableFuture<R>> pending = new HashMap<>();
+
     /**
      * Boolean attribute true iff the response receiver has been disconnected or all the listeners have been remove from
      * it.
@@ -114,13 +125,23 @@ public class Requester<R extends EventData, S extends EventData> {
         this.responsesLock = responsesLock;
 
         responsesListener = data -> {
+            CompletableFuture<R> future;
+
             synchronized (this.responsesLock) {
                 if (waitingFor.contains(data.getCount())) {
                     waitingFor.remove(data.getCount());
                     responses.put(data.getCount(), data.getWrappedData());
 
                     this.responsesLock.notifyAll();
+                    return;
                 }
+
+                future = pending.remove(data.getCount());
+            }
+
+            // Only the requester of this response is woken up, outside the lock
+            if (future != null) {
+                future.complete(data.getWrappedData());
             }
         };
 
@@ -130,6 +151,8 @@ public class Requester<R extends EventData, S extends EventData> {
 
                 this.responsesLock.notifyAll();
             }
+
+            failPending();
         };
 
         disconnectedReceiver = PlayerDisconnectedInternalEventData.castEventReceiver(receiver);
@@ -174,6 +197,94 @@ public class Requester<R extends EventData, S extends EventData> {
         }
     }
 
+    /**
+     * Performs an asynchronous request without any deadline.
+     *
+     * @param data is the event data of the request that we want to send.
+     * @return a future completed with the data of the corresponding received response, or completed exceptionally
+     * with a {@link DisconnectedException} if the underlying connection inside the receiver gets disconnected
+     * before the response is received.
+     *
+     * @see Requester#requestAsync(EventData, long)
+     */
+    public CompletableFuture<R> requestAsync(S data) {
+        return requestAsync(data, 0);
+    }
+
+    /**
+     * Performs an asynchronous request: the request is sent and the method returns immediately.
+     * Cancelling the returned future stops waiting for the response, which will be ignored.
+     *
+     * @param data is the event data of the request that we want to send.
+     * @param timeout is the time in milliseconds after which the request is abandoned, 0 means no deadline.
+     * @return a future completed with the data of the corresponding received response. It is completed
+     * exceptionally with a {@link DisconnectedException} if the underlying connection inside the receiver gets
+     * disconnected before the response is received, or with a {@link TimeoutException} if the response isn't
+     * received before the deadline, in which case it is completed by a thread of the
+     * {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @throws IllegalArgumentException if timeout is negative.
+     */
+    public CompletableFuture<R> requestAsync(S data, long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout can't be negative");
+        }
+
+        int count;
+
+        synchronized (nextRequestCountLock) {
+            count = nextRequestCount;
+            nextRequestCount++;
+        }
+
+        CompletableFuture<R> future = new CompletableFuture<>();
+
+        synchronized (responsesLock) {
+            if (disconnected) {
+                future.completeExceptionally(new DisconnectedException());
+                return future;
+            }
+
+            pending.put(count, future);
+        }
+
+        if (timeout > 0) {
+            // The future is completed on the common pool: its continuations must not run on the thread of the
+            // HashedWheelTimer, which is shared by all the timeouts of the process
+            HashedWheelTimer.Timeout deadline = HashedWheelTimer.getInstance().newTimeout(() ->
+                ForkJoinPool.commonPool().execute(() -> future.completeExceptionally(
+                    new TimeoutException("No response within " + timeout + " ms"))),
+                timeout);
+
+            future.whenComplete((response, throwable) -> deadline.cancel());
+        }
+
+        // A request which is completed in any other way (deadline, cancellation) isn't pending anymore
+        future.whenComplete((response, throwable) -> {
+            synchronized (responsesLock) {
+                pending.remove(count, future);
+            }
+        });
+
+        transmitter.broadcast(new SyncEventDataWrapper<S>(count, data));
+
+        return future;
+    }
+
+    /**
+     * Completes exceptionally all the pending asynchronous requests with a {@link DisconnectedException}.
+     */
+    private void failPending() {
+        List<CompletableFuture<R>> failed;
+
+        synchronized (responsesLock) {
+            failed = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+
+        failed.forEach(future -> future.completeExceptionally(new DisconnectedException()));
+    }
+
     /**
      * Registers the listener which receives responses and the one which handles disconnection events on the receiver.
      * You MUST invoke this method after construction to start using the requester.
@@ -200,5 +311,7 @@ public class Requester<R extends EventData, S extends EventData> {
 
             responsesLock.notifyAll();
         }
+
+        failPending();
     }
 }
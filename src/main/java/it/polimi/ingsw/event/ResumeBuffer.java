@@ -0,0 +1,93 @@
+package it.polimi.ingsw.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded ring buffer of the messages sent by a {@link NetworkEventTransceiver} during its session. Every message
+ * is numbered with its sequence number, that is the number of messages sent before it, plus one. When the
+ * connection is lost and then resumed, the paired transceiver tells how many messages it has received, and only
+ * the following ones are sent again. Once the buffer is full, every new message evicts the oldest one: a peer
+ * which has missed an evicted message can't resume the session.
+ * The buffer isn't thread safe: it is guarded by the lock of the transceiver which owns it.
+ */
+final class ResumeBuffer {
+    /**
+     * The messages in the buffer, stored circularly starting from the one at index {@link ResumeBuffer#head}.
+     */
+    private final byte[][] messages;
+
+    /**
+     * The index of the oldest message in the buffer.
+     */
+    private int head;
+
+    /**
+     * The number of messages in the buffer.
+     */
+    private int size;
+
+    /**
+     * The sequence number of the last message added to the buffer, 0 if no message has been added yet.
+     */
+    private long lastSequence;
+
+    /**
+     * Constructor of the class.
+     *
+     * @param capacity is the maximum number of messages kept in the buffer.
+     * @throws IllegalArgumentException if capacity is not positive.
+     */
+    ResumeBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the resume buffer must be positive");
+        }
+
+        messages = new byte[capacity][];
+    }
+
+    /**
+     * Adds a sent message to the buffer, evicting the oldest one if the buffer is full.
+     *
+     * @param message is the sent message.
+     * @return the sequence number of the message.
+     */
+    long add(byte[] message) {
+        if (size == messages.length) {
+            messages[head] = null;
+            head = (head + 1) % messages.length;
+            size--;
+        }
+
+        messages[(head + size) % messages.length] = message;
+        size++;
+
+        return ++lastSequence;
+    }
+
+    /**
+     * @param received is the number of messages received by the paired transceiver.
+     * @return the messages which follow the first received ones, in order of sending; null if some of them have
+     * already been evicted, or if received is greater than the number of sent messages.
+     */
+    List<byte[]> since(long received) {
+        long firstSequence = lastSequence - size + 1;
+        if (received < firstSequence - 1 || received > lastSequence) {
+            return null;
+        }
+
+        List<byte[]> missed = new ArrayList<>((int) (lastSequence - received));
+        for (long sequence = received + 1; sequence <= lastSequence; sequence++) {
+            missed.add(messages[(int) ((head + sequence - firstSequence) % messages.length)]);
+        }
+
+        return missed;
+    }
+
+    /**
+     * @return the sequence number of the last message added to the buffer, 0 if no message has been added yet.
+     */
+    long lastSequence() {
+        return lastSequence;
+    }
+}
@@ -0,0 +1,369 @@
+package it.polimi.ingsw.event;
+
+import it.polimi.ingsw.event.data.EncodingEventData;
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.client.StateResyncRequestEventData;
+import it.polimi.ingsw.event.data.game.BoardChangedEventData;
+import it.polimi.ingsw.event.data.game.BookshelfHasChangedEventData;
+import it.polimi.ingsw.event.data.wrapper.SyncEventDataWrapper;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue of the outgoing events of a {@link NetworkEventTransceiver}, each one in its {@link PreEncodedEvent}
+ * envelope. It implements a producer/consumer pattern:
+ * producers add events one at a time, while the consumer thread takes them in batches, so that all the events
+ * queued back to back (for example the ones broadcast after a single move) can be sent with a single flush.
+ * <p>
+ * The consumer can optionally wait a linger time for the batch to fill up before taking it.
+ * <p>
+ * The queue is bounded: once it holds the maximum number of events, new events are rejected and the owner
+ * of the queue decides how to handle the slow consumer. Events which describe the whole state of an object
+ * are conflated: a newer {@link BoardChangedEventData} or a newer {@link BookshelfHasChangedEventData} for the
+ * same player replaces the older one which hasn't been taken yet. A {@link StateResyncRequestEventData} is never
+ * rejected: the {@link StateDeltaCodec} sends at most one of them until the snapshots arrive, and it would wait for
+ * them forever if the request was lost. The newer event is queued after the events
+ * of the same priority added in the meantime, so that the consumer never sees a state before the events which
+ * preceded it.
+ * <p>
+ * Events are queued in lanes according to their {@link Priority}, and batches are filled with strict priority:
+ * the other events are taken only when no control event is waiting. Hence replies to requests overtake the game
+ * events queued before them, instead of waiting for them to be sent. Only the events whose order with respect to
+ * the game events doesn't matter are control events: the game events depend on each other (for example the
+ * personal goal and the joined players are shown on the view built from the initial game event), hence they keep
+ * the order in which they have been added.
+ */
+final class SendQueue {
+    /**
+     * Priority class of an outgoing event, in decreasing order of priority.
+     */
+    enum Priority {
+        /**
+         * Small events which someone is waiting for, such as the replies to requests, and which don't depend on
+         * the order of the other events.
+         */
+        CONTROL,
+
+        /**
+         * Every other event, in particular the game events, which are bulky and can be delayed.
+         */
+        BULK
+    }
+
+    /**
+     * Default maximum number of events in a batch.
+     */
+    static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * Default time in milliseconds waited for a batch to fill up: by default the consumer takes what is queued.
+     */
+    static final long DEFAULT_LINGER_TIME = 0;
+
+    /**
+     * Default maximum number of queued events.
+     */
+    static final int DEFAULT_MAX_SIZE = 1024;
+
+    /**
+     * Slot of the queue which holds an event. When the event is superseded by a newer one, the slot is emptied
+     * in place, which avoids to search and remove the event from the middle of the queue.
+     */
+    private static final class Slot {
+        /**
+         * The queued event, null if it has been superseded.
+         */
+        private PreEncodedEvent event;
+
+        /**
+         * Constructor of the class.
+         *
+         * @param event is the queued event.
+         */
+        private Slot(PreEncodedEvent event) {
+            this.event = event;
+        }
+    }
+
+    /**
+     * Maps every priority to the slots of the queued events with that priority, including the emptied ones.
+     */
+    private final Map<Priority, Queue<Slot>> lanes = new EnumMap<>(Priority.class);
+
+    /**
+     * Maps the conflation key of every queued event which can be superseded to its slot.
+     */
+    private final Map<Object, Slot> conflatable = new HashMap<>();
+
+    /**
+     * The number of queued events, the emptied slots are not counted.
+     */
+    private int size;
+
+    /**
+     * Lock which protects the state of the queue.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * {@link Condition Condition} signalled when an event is added or the queue gets closed.
+     */
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * Maximum number of events in a batch.
+     */
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    /**
+     * Time in nanoseconds waited for a batch to fill up, once the first event is available.
+     */
+    private long lingerTime = TimeUnit.MILLISECONDS.toNanos(DEFAULT_LINGER_TIME);
+
+    /**
+     * Maximum number of queued events.
+     */
+    private int maxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * It is true iff the queue has been closed, no more batches will be taken after the queued events.
+     */
+    private boolean closed;
+
+    /**
+     * Sets the maximum number of events in a batch.
+     *
+     * @param maxBatchSize is the maximum number of events in a batch.
+     * @throws IllegalArgumentException if maxBatchSize is not positive.
+     */
+    void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("max batch size must be positive");
+        }
+
+        lock.lock();
+        try {
+            this.maxBatchSize = maxBatchSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the time waited for a batch to fill up, once the first event is available.
+     *
+     * @param lingerTime is the time in milliseconds, 0 means that the consumer takes what is queued.
+     * @throws IllegalArgumentException if lingerTime is negative.
+     */
+    void setLingerTime(long lingerTime) {
+        if (lingerTime < 0) {
+            throw new IllegalArgumentException("linger time can't be negative");
+        }
+
+        lock.lock();
+        try {
+            this.lingerTime = TimeUnit.MILLISECONDS.toNanos(lingerTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the maximum number of queued events.
+     *
+     * @param maxSize is the maximum number of queued events.
+     * @throws IllegalArgumentException if maxSize is not positive.
+     */
+    void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("max queue size must be positive");
+        }
+
+        lock.lock();
+        try {
+            this.maxSize = maxSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param event is the event whose conflation key is requested.
+     * @return the key shared by the events which supersede each other, null if the event can't be superseded.
+     */
+    static Object conflationKey(EventData event) {
+        if (event instanceof BoardChangedEventData) {
+            return BoardChangedEventData.ID;
+        }
+
+        if (event instanceof BookshelfHasChangedEventData bookshelfHasChanged) {
+            return List.of(BookshelfHasChangedEventData.ID, bookshelfHasChanged.username());
+        }
+
+        return null;
+    }
+
+    /**
+     * Constructor of the class. It creates an empty lane for every priority.
+     */
+    SendQueue() {
+        for (Priority priority : Priority.values()) {
+            lanes.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * @param event is the event whose priority is requested.
+     * @return {@link Priority#CONTROL} for the requests and their replies, which are waited by a thread of their
+     * own rather than handled in order with the other events, and for the announcements of the encoding and the
+     * requests of snapshots, which don't depend on the events queued before them. {@link Priority#BULK} for
+     * every other event.
+     */
+    static Priority priority(EventData event) {
+        if (event instanceof SyncEventDataWrapper<?> || event instanceof EncodingEventData
+            || event instanceof StateResyncRequestEventData) {
+            return Priority.CONTROL;
+        }
+
+        return Priority.BULK;
+    }
+
+    /**
+     * Adds an event to the queue, in an envelope of its own.
+     *
+     * @param event is the event to be sent.
+     * @return false iff the queue is full and the event has been rejected.
+     *
+     * @see SendQueue#add(PreEncodedEvent)
+     */
+    boolean add(EventData event) {
+        return add(new PreEncodedEvent(event));
+    }
+
+    /**
+     * Adds an event to the queue. If the event supersedes a queued one, the older event is discarded.
+     * Events added after the queue has been closed are discarded.
+     *
+     * @param event is the envelope of the event to be sent.
+     * @return false iff the queue is full and the event has been rejected. A {@link StateResyncRequestEventData}
+     * is accepted even if the queue is full.
+     */
+    boolean add(PreEncodedEvent event) {
+        lock.lock();
+        try {
+            if (closed) {
+                return true;
+            }
+
+            Object key = conflationKey(event.getEventData());
+            Slot superseded = key == null ? null : conflatable.remove(key);
+            if (superseded != null) {
+                superseded.event = null;
+                size--;
+            } else if (size >= maxSize && !(event.getEventData() instanceof StateResyncRequestEventData)) {
+                return false;
+            }
+
+            Queue<Slot> slots = lanes.get(priority(event.getEventData()));
+            Slot slot = new Slot(event);
+            slots.add(slot);
+            size++;
+            if (key != null) {
+                conflatable.put(key, slot);
+            }
+
+            // The emptied slots are dropped once they outnumber the queued events, so that a consumer which
+            // doesn't take anything can't make them grow without limit
+            if (slots.size() > 2 * size) {
+                slots.removeIf(s -> s.event == null);
+            }
+
+            changed.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of queued events.
+     */
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next batch of events, waiting until at least one event is available. Then, if a linger time
+     * has been set, it waits at most the linger time for the batch to reach the maximum size.
+     *
+     * @return the next batch of events: the events with higher priority come first, the ones with the same
+     * priority are in the order in which they have been added. It is empty iff the queue has been closed and all
+     * the queued events have already been taken.
+     */
+    List<PreEncodedEvent> takeBatch() {
+        lock.lock();
+        try {
+            while (size == 0) {
+                if (closed) {
+                    return new ArrayList<>();
+                }
+
+                changed.awaitUninterruptibly();
+            }
+
+            long remaining = lingerTime;
+            while (remaining > 0 && size < maxBatchSize && !closed) {
+                try {
+                    remaining = changed.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+
+            List<PreEncodedEvent> batch = new ArrayList<>(Math.min(size, maxBatchSize));
+            for (Priority priority : Priority.values()) {
+                Queue<Slot> slots = lanes.get(priority);
+
+                while (batch.size() < maxBatchSize && !slots.isEmpty()) {
+                    PreEncodedEvent event = slots.poll().event;
+                    if (event == null) {
+                        continue;
+                    }
+
+                    Object key = conflationKey(event.getEventData());
+                    if (key != null) {
+                        conflatable.remove(key);
+                    }
+
+                    batch.add(event);
+                    size--;
+                }
+            }
+
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the queue: the consumer takes the events which are still queued and then it gets an empty batch.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
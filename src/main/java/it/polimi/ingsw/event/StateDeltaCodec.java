@@ -0,0 +1,198 @@
+package it.polimi.ingsw.event;
+
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.client.StateResyncRequestEventData;
+import it.polimi.ingsw.event.data.game.BoardChangedEventData;
+import it.polimi.ingsw.event.data.game.BoardDeltaEventData;
+import it.polimi.ingsw.event.data.game.BookshelfDeltaEventData;
+import it.polimi.ingsw.event.data.game.BookshelfHasChangedEventData;
+import it.polimi.ingsw.event.data.internal.StateResyncInternalEventData;
+import it.polimi.ingsw.model.board.BoardDelta;
+import it.polimi.ingsw.model.board.BoardView;
+import it.polimi.ingsw.model.bookshelf.BookshelfDelta;
+import it.polimi.ingsw.model.bookshelf.BookshelfView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the state events sent by a {@link NetworkEventTransceiver} as deltas and decodes the ones it receives.
+ * <p>
+ * A {@link BoardChangedEventData} is sent as a {@link BoardDeltaEventData} and a
+ * {@link BookshelfHasChangedEventData} as a {@link BookshelfDeltaEventData}, which carry only the cells changed
+ * with respect to the last board (or bookshelf of the same player) sent on the connection. The first time a board or
+ * a bookshelf is sent, the delta is a snapshot which describes it completely.
+ * Every encoded event has a sequence number: the decoder rebuilds the whole state event only if no encoded event
+ * is missing. Otherwise it discards the states it can't trust anymore and asks the paired transceiver,
+ * through a {@link StateResyncRequestEventData}, to send snapshots of the board and of every bookshelf.
+ * <p>
+ * The encoding half is used only by the sender thread and the decoding half only by the receiver thread of the
+ * transceiver, hence they don't need any synchronization.
+ */
+final class StateDeltaCodec {
+    /**
+     * Sequence number of the last encoded event.
+     */
+    private int sentSequence;
+
+    /**
+     * The last board sent, null if no board has been sent yet.
+     */
+    private BoardView sentBoard;
+
+    /**
+     * Maps the username of every player whose bookshelf has been sent to the last bookshelf sent.
+     */
+    private final Map<String, BookshelfView> sentBookshelves = new HashMap<>();
+
+    /**
+     * Sequence number of the last decoded event.
+     */
+    private int receivedSequence;
+
+    /**
+     * The last board received, null if there isn't a board to which a delta can be applied.
+     */
+    private BoardView receivedBoard;
+
+    /**
+     * Maps the username of every player to the last bookshelf received, if a delta can be applied to it.
+     */
+    private final Map<String, BookshelfView> receivedBookshelves = new HashMap<>();
+
+    /**
+     * It is true iff snapshots have been requested to the paired transceiver and no snapshot has arrived yet.
+     */
+    private boolean resyncRequested;
+
+    /**
+     * Is the function called to ask the paired transceiver for snapshots.
+     */
+    private final Runnable requestResync;
+
+    /**
+     * Constructor of the class.
+     *
+     * @param requestResync is the function called to ask the paired transceiver for snapshots, by sending it a
+     *                      {@link StateResyncRequestEventData}.
+     */
+    StateDeltaCodec(Runnable requestResync) {
+        this.requestResync = requestResync;
+    }
+
+    /**
+     * Encodes an outgoing event.
+     *
+     * @param event is the event taken from the queue of the outgoing events.
+     * @return the events which have to be sent in place of the given one. State events are replaced by their delta,
+     * a {@link StateResyncInternalEventData} is replaced by the snapshots of the board and of every bookshelf,
+     * every other event is sent as it is.
+     */
+    List<EventData> encode(EventData event) {
+        if (event instanceof BoardChangedEventData boardChanged) {
+            BoardDelta delta = BoardDelta.between(sentBoard, boardChanged.board());
+            boolean snapshot = sentBoard == null;
+
+            sentBoard = boardChanged.board();
+            return List.of(new BoardDeltaEventData(++sentSequence, snapshot, delta));
+        }
+
+        if (event instanceof BookshelfHasChangedEventData bookshelfHasChanged) {
+            // The bookshelf in the event could be the one of the player, which can still change
+            BookshelfView bookshelf = new BookshelfView(bookshelfHasChanged.bookshelf());
+            BookshelfView previous = sentBookshelves.put(bookshelfHasChanged.username(), bookshelf);
+
+            return List.of(new BookshelfDeltaEventData(++sentSequence, previous == null,
+                bookshelfHasChanged.username(), BookshelfDelta.between(previous, bookshelf)));
+        }
+
+        if (event instanceof StateResyncInternalEventData) {
+            List<EventData> snapshots = new ArrayList<>();
+
+            if (sentBoard != null) {
+                snapshots.add(new BoardDeltaEventData(++sentSequence, true, BoardDelta.between(null, sentBoard)));
+            }
+
+            for (Map.Entry<String, BookshelfView> entry : sentBookshelves.entrySet()) {
+                snapshots.add(new BookshelfDeltaEventData(++sentSequence, true, entry.getKey(),
+                    BookshelfDelta.between(null, entry.getValue())));
+            }
+
+            return snapshots;
+        }
+
+        return List.of(event);
+    }
+
+    /**
+     * Decodes an incoming event. If some encoded events are missing, snapshots are requested to the paired
+     * transceiver.
+     *
+     * @param event is the event received from the connection.
+     * @return the event which has to be notified to the listeners, null if the event has to be discarded because
+     * it is a delta which can't be applied.
+     */
+    EventData decode(EventData event) {
+        if (event instanceof BoardDeltaEventData boardDelta) {
+            checkSequence(boardDelta.sequence(), boardDelta.snapshot());
+
+            if (!boardDelta.snapshot() && receivedBoard == null) {
+                missingBase();
+                return null;
+            }
+
+            receivedBoard = boardDelta.delta().applyTo(boardDelta.snapshot() ? null : receivedBoard);
+            return new BoardChangedEventData(receivedBoard);
+        }
+
+        if (event instanceof BookshelfDeltaEventData bookshelfDelta) {
+            checkSequence(bookshelfDelta.sequence(), bookshelfDelta.snapshot());
+
+            BookshelfView base = receivedBookshelves.get(bookshelfDelta.username());
+            if (!bookshelfDelta.snapshot() && base == null) {
+                missingBase();
+                return null;
+            }
+
+            BookshelfView bookshelf = bookshelfDelta.delta().applyTo(bookshelfDelta.snapshot() ? null : base);
+            receivedBookshelves.put(bookshelfDelta.username(), bookshelf);
+            return new BookshelfHasChangedEventData(bookshelfDelta.username(), bookshelf);
+        }
+
+        return event;
+    }
+
+    /**
+     * Checks that the sequence number of a received delta follows the previous one. Otherwise, some deltas are
+     * missing: all the received states are discarded since they could be outdated and snapshots are requested.
+     *
+     * @param sequence is the sequence number of the received delta.
+     * @param snapshot is true iff the received delta is a snapshot.
+     */
+    private void checkSequence(int sequence, boolean snapshot) {
+        boolean gap = sequence != receivedSequence + 1;
+        receivedSequence = sequence;
+
+        if (snapshot) {
+            resyncRequested = false;
+        }
+
+        if (gap) {
+            receivedBoard = null;
+            receivedBookshelves.clear();
+            missingBase();
+        }
+    }
+
+    /**
+     * Requests snapshots to the paired transceiver, unless they have already been requested.
+     */
+    private void missingBase() {
+        if (!resyncRequested) {
+            resyncRequested = true;
+            requestResync.run();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package it.polimi.ingsw.event.data;
+
+import it.polimi.ingsw.event.NetworkEventTransceiver;
+import it.polimi.ingsw.event.Requester;
+import it.polimi.ingsw.event.Responder;
+import it.polimi.ingsw.event.receiver.CastEventReceiver;
+import it.polimi.ingsw.event.receiver.EventReceiver;
+import it.polimi.ingsw.event.transmitter.EventTransmitter;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * This event is sent, always as JSON, by a {@link NetworkEventTransceiver} when it starts and whenever its encoding
+ * changes, to announce the encoding it would like to receive. A transceiver sends events in the binary
+ * encoding only if both itself and the paired transceiver have announced it, with the same schema.
+ *
+ * @param encoding is the encoding the sender of the event would like to receive.
+ * @param schema is the fingerprint of the schema of the binary encoding of the sender, events are sent as JSON to a
+ *               transceiver whose schema differs.
+ *
+ * @see NetworkEventTransceiver#setEncoding(NetworkEventTransceiver.Encoding)
+ */
+public record EncodingEventData(NetworkEventTransceiver.Encoding encoding, int schema) implements EventData {
+    /**
+     * Unique identifier for the EventData, added for serialization purposes accordingly to {@link EventData}
+     * interface contract.
+     */
+    public static final String ID = "ENCODING";
+
+    /**
+     * Constructor of the class.
+     *
+     * @param encoding is the encoding the sender of the event would like to receive.
+     * @param schema is the fingerprint of the schema of the binary encoding of the sender.
+     * @throws NullPointerException iff encoding is null
+     */
+    public EncodingEventData {
+        Objects.requireNonNull(encoding);
+    }
+
+    /**
+     * {@link CastEventReceiver} factory method for the EventData, added accordingly to {@link EventData}
+     * interface contract.
+     *
+     * @param receiver is the {@link EventReceiver} which will receive instances of this EventData.
+     * @return a {@link CastEventReceiver} which filters the events received by receiver and provides those
+     * of this EventData type to an {@link it.polimi.ingsw.event.receiver.EventListener} after a cast.
+     */
+    public static CastEventReceiver<EncodingEventData> castEventReceiver(EventReceiver<EventData> receiver) {
+        return new CastEventReceiver<>(ID, receiver);
+    }
+
+    /**
+     * {@link Requester} factory method that performs requests which receive responses of this EventData, added
+     * accordingly to {@link EventData} interface contract.
+     *
+     * @param transmitter is the {@link EventTransmitter} on which the request is sent.
+     * @param receiver is the {@link EventReceiver} which receives the response to the request.
+     * @param responsesLock is the lock Object on which the {@link Requester} synchronizes to wait for the
+     *                      response.
+     * @return a {@link Requester} which is capable of performing requests which receive responses of this
+     * EventData.
+     * @param <T> is the type of the request EventData.
+     */
+    public static <T extends EventData> Requester<EncodingEventData, T> requester(EventTransmitter transmitter,
+                                                                                  EventReceiver<EventData> receiver,
+                                                                                  Object responsesLock) {
+        return new Requester<>(ID, transmitter, receiver, responsesLock);
+    }
+
+    /**
+     * {@link Responder} factory method which allows to respond to requests of this EventData, added accordingly
+     * to {@link EventData} interface contract.
+     *
+     * @param transmitter is the {@link EventTransmitter} on which the response is sent.
+     * @param receiver is the {@link EventReceiver} which receives the request.
+     * @param response is the function which allows to compute the appropriate response to the received request.
+     * @return a {@link Responder} which is capable of answering requests of this EventData.
+     * @param <T> is the type of the response EventData.
+     */
+    public static <T extends EventData> Responder<EncodingEventData, T> responder(EventTransmitter transmitter,
+                                                                                  EventReceiver<EventData> receiver,
+                                                                                  Function<EncodingEventData, T> response) {
+        return new Responder<>(ID, transmitter, receiver, response);
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+}
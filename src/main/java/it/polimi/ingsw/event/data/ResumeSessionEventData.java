@@ -0,0 +1,89 @@
+package it.polimi.ingsw.event.data;
+
+import it.polimi.ingsw.event.NetworkEventTransceiver;
+import it.polimi.ingsw.event.Requester;
+import it.polimi.ingsw.event.Responder;
+import it.polimi.ingsw.event.receiver.CastEventReceiver;
+import it.polimi.ingsw.event.receiver.EventReceiver;
+import it.polimi.ingsw.event.transmitter.EventTransmitter;
+
+import java.util.function.Function;
+
+/**
+ * This event is exchanged, always as JSON, by two {@link NetworkEventTransceiver}s to open or resume a session.
+ * A transceiver which is able to reconnect sends it as the first message on every connection: on the first one
+ * with {@link ResumeSessionEventData#NEW_SESSION} as number of received messages, on the following ones with the
+ * number of messages it has received during the session. The paired transceiver answers a resumption with the
+ * same token and the number of messages it has received, or with a null token if the session can't be resumed.
+ * Then both the transceivers send again only the messages which the other one has missed.
+ * These events aren't counted among the messages of the session and are never notified to the listeners.
+ *
+ * @param token is the token which identifies the session, null iff the resumption has been refused.
+ * @param received is the number of messages of the session received by the sender of the event,
+ *                 {@link ResumeSessionEventData#NEW_SESSION} if the session has just been opened.
+ *
+ * @see NetworkEventTransceiver#setDefaultResumeTimeout(long)
+ */
+public record ResumeSessionEventData(String token, long received) implements EventData {
+    /**
+     * Unique identifier for the EventData, added for serialization purposes accordingly to {@link EventData}
+     * interface contract.
+     */
+    public static final String ID = "RESUME_SESSION";
+
+    /**
+     * Number of received messages sent when a session is opened, rather than resumed.
+     */
+    public static final long NEW_SESSION = -1;
+
+    /**
+     * {@link CastEventReceiver} factory method for the EventData, added accordingly to {@link EventData}
+     * interface contract.
+     *
+     * @param receiver is the {@link EventReceiver} which will receive instances of this EventData.
+     * @return a {@link CastEventReceiver} which filters the events received by receiver and provides those
+     * of this EventData type to an {@link it.polimi.ingsw.event.receiver.EventListener} after a cast.
+     */
+    public static CastEventReceiver<ResumeSessionEventData> castEventReceiver(EventReceiver<EventData> receiver) {
+        return new CastEventReceiver<>(ID, receiver);
+    }
+
+    /**
+     * {@link Requester} factory method that performs requests which receive responses of this EventData, added
+     * accordingly to {@link EventData} interface contract.
+     *
+     * @param transmitter is the {@link EventTransmitter} on which the request is sent.
+     * @param receiver is the {@link EventReceiver} which receives the response to the request.
+     * @param responsesLock is the lock Object on which the {@link Requester} synchronizes to wait for the
+     *                      response.
+     * @return a {@link Requester} which is capable of performing requests which receive responses of this
+     * EventData.
+     * @param <T> is the type of the request EventData.
+     */
+    public static <T extends EventData> Requester<ResumeSessionEventData, T> requester(EventTransmitter transmitter,
+                                                                                       EventReceiver<EventData> receiver,
+                                                                                       Object responsesLock) {
+        return new Requester<>(ID, transmitter, receiver, responsesLock);
+    }
+
+    /**
+     * {@link Responder} factory method which allows to respond to requests of this EventData, added accordingly
+     * to {@link EventData} interface contract.
+     *
+     * @param transmitter is the {@link EventTransmitter} on which the response is sent.
+     * @param receiver is the {@link EventReceiver} which receives the request.
+     * @param response is the function which allows to compute the appropriate response to the received request.
+     * @return a {@link Responder} which is capable of answering requests of this EventData.
+     * @param <T> is the type of the response EventData.
+     */
+    public static <T extends EventData> Responder<ResumeSessionEventData, T> responder(EventTransmitter transmitter,
+                                                                                       EventReceiver<EventData> receiver,
+                                                                                       Function<ResumeSessionEventData, T> response) {
+        return new Responder<>(ID, transmitter, receiver, response);
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+}
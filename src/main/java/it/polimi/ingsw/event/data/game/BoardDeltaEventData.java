@@ -0,0 +1,96 @@
+package it.polimi.ingsw.event.data.game;
+
+import it.polimi.ingsw.event.Requester;
+import it.polimi.ingsw.event.Responder;
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.receiver.CastEventReceiver;
+import it.polimi.ingsw.event.receiver.EventReceiver;
+import it.polimi.ingsw.event.transmitter.EventTransmitter;
+import it.polimi.ingsw.model.board.BoardDelta;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Is the encoding of a {@link BoardChangedEventData} sent over the network: instead of the whole board,
+ * it carries only the {@link BoardDelta} with respect to the board previously sent on the same connection.
+ * The receiving {@link it.polimi.ingsw.event.NetworkEventTransceiver} rebuilds the board and notifies its
+ * listeners with a {@link BoardChangedEventData}.
+ *
+ * @param sequence is the sequence number of the event among the state events sent on the connection, it allows
+ *                 the receiver to detect missing events.
+ * @param snapshot is true iff the delta describes the whole board and hence doesn't depend on the previous one.
+ * @param delta is the difference between the previous board and the new one.
+ *
+ * @see it.polimi.ingsw.event.StateDeltaCodec
+ */
+public record BoardDeltaEventData(int sequence, boolean snapshot, BoardDelta delta) implements EventData {
+    /**
+     * Unique identifier for the EventData, added for serialization purposes accordingly to {@link EventData}
+     * interface contract.
+     */
+    public static final String ID = "BOARD_DELTA";
+
+    /**
+     * Constructor of the class.
+     *
+     * @param sequence is the sequence number of the event.
+     * @param snapshot is true iff the delta describes the whole board.
+     * @param delta is the difference between the previous board and the new one.
+     * @throws NullPointerException iff delta is null
+     */
+    public BoardDeltaEventData {
+        Objects.requireNonNull(delta);
+    }
+
+    /**
+     * {@link CastEventReceiver} factory method for the EventData, added accordingly to {@link EventData}
+     * interface contract.
+     *
+     * @param receiver is the {@link EventReceiver} which will receive instances of this EventData.
+     * @return a {@link CastEventReceiver} which filters the events received by receiver and provides those
+     * of this EventData type to an {@link it.polimi.ingsw.event.receiver.EventListener} after a cast.
+     */
+    public static CastEventReceiver<BoardDeltaEventData> castEventReceiver(EventReceiver<EventData> receiver) {
+        return new CastEventReceiver<>(ID, receiver);
+    }
+
+    /**
+     * {@link Requester} factory method that performs requests which receive responses of this EventData, added
+     * accordingly to {@link EventData} interface contract.
+     *
+     * @param transmitter is the {@link EventTransmitter} on which the request is sent.
+     * @param receiver is the {@link EventReceiver} which receives the response to the request.
+     * @param responsesLock is the lock Object on which the {@link Requester} synchronizes to wait for the
+     *                      response.
+     * @return a {@link Requester} which is capable of performing requests which receive responses of this
+     * EventData.
+     * @param <T> is the type of the request EventData.
+     */
+    public static <T extends EventData> Requester<BoardDeltaEventData, T> requester(EventTransmitter transmitter,
+                                                                                    EventReceiver<EventData> receiver,
+                                                                                    Object responsesLock) {
+        return new Requester<>(ID, transmitter, receiver, responsesLock);
+    }
+
+    /**
+     * {@link Responder} factory method which allows to respond to requests of this EventData, added accordingly
+     * to {@link EventData} interface contract.
+     *
+     * @param transmitter is the {@link EventTransmitter} on which the response is sent.
+     * @param receiver is the {@link EventReceiver} which receives the request.
+     * @param response is the function which allows to compute the appropriate response to the received request.
+     * @return a {@link Responder} which is capable of answering requests of this EventData.
+     * @param <T> is the type of the response EventData.
+     */
+    public static <T extends EventData> Responder<BoardDeltaEventData, T> responder(EventTransmitter transmitter,
+                                                                                    EventReceiver<EventData> receiver,
+                                                                                    Function<BoardDeltaEventData, T> response) {
+        return new Responder<>(ID, transmitter, receiver, response);
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+}
@@ -0,0 +1,100 @@
+package it.polimi.ingsw.event.data.game;
+
+import it.polimi.ingsw.event.Requester;
+import it.polimi.ingsw.event.Responder;
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.receiver.CastEventReceiver;
+import it.polimi.ingsw.event.receiver.EventReceiver;
+import it.polimi.ingsw.event.transmitter.EventTransmitter;
+import it.polimi.ingsw.model.bookshelf.BookshelfDelta;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Is the encoding of a {@link BookshelfHasChangedEventData} sent over the network: instead of the whole bookshelf,
+ * it carries only the {@link BookshelfDelta} with respect to the bookshelf of the same player previously sent on
+ * the same connection. The receiving {@link it.polimi.ingsw.event.NetworkEventTransceiver} rebuilds the bookshelf
+ * and notifies its listeners with a {@link BookshelfHasChangedEventData}.
+ *
+ * @param sequence is the sequence number of the event among the state events sent on the connection, it allows
+ *                 the receiver to detect missing events.
+ * @param snapshot is true iff the delta describes the whole bookshelf and hence doesn't depend on the previous one.
+ * @param username is the username of the player whose bookshelf has changed.
+ * @param delta is the difference between the previous bookshelf and the new one.
+ *
+ * @see it.polimi.ingsw.event.StateDeltaCodec
+ */
+public record BookshelfDeltaEventData(int sequence, boolean snapshot, String username, BookshelfDelta delta)
+    implements EventData {
+    /**
+     * Unique identifier for the EventData, added for serialization purposes accordingly to {@link EventData}
+     * interface contract.
+     */
+    public static final String ID = "BOOKSHELF_DELTA";
+
+    /**
+     * Constructor of the class.
+     *
+     * @param sequence is the sequence number of the event.
+     * @param snapshot is true iff the delta describes the whole bookshelf.
+     * @param username is the username of the player whose bookshelf has changed.
+     * @param delta is the difference between the previous bookshelf and the new one.
+     * @throws NullPointerException iff username or delta is null
+     */
+    public BookshelfDeltaEventData {
+        Objects.requireNonNull(username);
+        Objects.requireNonNull(delta);
+    }
+
+    /**
+     * {@link CastEventReceiver} factory method for the EventData, added accordingly to {@link EventData}
+     * interface contract.
+     *
+     * @param receiver is the {@link EventReceiver} which will receive instances of this EventData.
+     * @return a {@link CastEventReceiver} which filters the events received by receiver and provides those
+     * of this EventData type to an {@link it.polimi.ingsw.event.receiver.EventListener} after a cast.
+     */
+    public static CastEventReceiver<BookshelfDeltaEventData> castEventReceiver(EventReceiver<EventData> receiver) {
+        return new CastEventReceiver<>(ID, receiver);
+    }
+
+    /**
+     * {@link Requester} factory method that performs requests which receive responses of this EventData, added
+     * accordingly to {@link EventData} interface contract.
+     *
+     * @param transmitter is the {@link EventTransmitter} on which the request is sent.
+     * @param receiver is the {@link EventReceiver} which receives the response to the request.
+     * @param responsesLock is the lock Object on which the {@link Requester} synchronizes to wait for the
+     *                      response.
+     * @return a {@link Requester} which is capable of performing requests which receive responses of this
+     * EventData.
+     * @param <T> is the type of the request EventData.
+     */
+    public static <T extends EventData> Requester<BookshelfDeltaEventData, T> requester(EventTransmitter transmitter,
+                                                                                        EventReceiver<EventData> receiver,
+                                                                                        Object responsesLock) {
+        return new Requester<>(ID, transmitter, receiver, responsesLock);
+    }
+
+    /**
+     * {@link Responder} factory method which allows to respond to requests of this EventData, added accordingly
+     * to {@link EventData} interface contract.
+     *
+     * @param transmitter is the {@link EventTransmitter} on which the response is sent.
+     * @param receiver is the {@link EventReceiver} which receives the request.
+     * @param response is the function which allows to compute the appropriate response to the received request.
+     * @return a {@link Responder} which is capable of answering requests of this EventData.
+     * @param <T> is the type of the response EventData.
+     */
+    public static <T extends EventData> Responder<BookshelfDeltaEventData, T> responder(EventTransmitter transmitter,
+                                                                                        EventReceiver<EventData> receiver,
+                                                                                        Function<BookshelfDeltaEventData, T> response) {
+        return new Responder<>(ID, transmitter, receiver, response);
+    }
+
+    @Override
+    public String getId() {
+        return ID;
+    }
+}
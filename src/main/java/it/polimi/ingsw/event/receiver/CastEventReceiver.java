@@ -12,6 +12,8 @@ import java.util.Map;
  * In order to perform the filtering, the CastEventReceiver requires to know the identifier of the EventData
  * it will filter for; this is due to type erasure which denies access to type parameters at runtime.
  * It is crucial that the type parameter of the CastEventReceiver matches the given id.
+ * If the "source" receiver is a {@link KeyedEventReceiver}, listeners are registered on it for the given id only,
+ * so that they aren't evaluated on the events of other types.
  *
  * @param <T> is the type of the EventData we are filtering for.
  */
@@ -54,24 +56,36 @@ public class CastEventReceiver<T extends EventData> implements EventReceiver<T>
     @Override
     public void registerListener(EventListener<T> listener) {
         synchronized (lock) {
-            listeners.put(listener, data -> {
-                if (data.getId().equals(eventId)) {
-                    try {
-                        listener.handle((T) data);
-                    } catch (ClassCastException e) {
-                        throw new IllegalStateException("Event ID should always match event data concrete type");
-                    }
+            EventListener<EventData> castListener = data -> {
+                try {
+                    listener.handle((T) data);
+                } catch (ClassCastException e) {
+                    throw new IllegalStateException("Event ID should always match event data concrete type");
                 }
-            });
+            };
 
-            receiver.registerListener(listeners.get(listener));
+            if (receiver instanceof KeyedEventReceiver keyedReceiver) {
+                listeners.put(listener, castListener);
+                keyedReceiver.registerListener(eventId, castListener);
+            } else {
+                listeners.put(listener, data -> {
+                    if (data.getId().equals(eventId)) {
+                        castListener.handle(data);
+                    }
+                });
+                receiver.registerListener(listeners.get(listener));
+            }
         }
     }
 
     @Override
     public void unregisterListener(EventListener<T> listener) {
         synchronized (lock) {
-            receiver.unregisterListener(listeners.remove(listener));
+            if (receiver instanceof KeyedEventReceiver keyedReceiver) {
+                keyedReceiver.unregisterListener(eventId, listeners.remove(listener));
+            } else {
+                receiver.unregisterListener(listeners.remove(listener));
+            }
         }
     }
 
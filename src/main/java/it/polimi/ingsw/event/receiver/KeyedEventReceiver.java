@@ -0,0 +1,30 @@
+package it.polimi.ingsw.event.receiver;
+
+import it.polimi.ingsw.event.data.EventData;
+
+/**
+ * Is an {@link EventReceiver} which allows to register listeners for the events with a given identifier only.
+ * The receiver notifies these listeners without evaluating them on the events of other types, hence
+ * the cost of notifying an event doesn't depend on how many types of events are being listened for.
+ * Listeners registered in both ways are notified in order of registration.
+ *
+ * @see CastEventReceiver
+ */
+public interface KeyedEventReceiver extends EventReceiver<EventData> {
+    /**
+     * Registers a listener which will be notified only of the events with the given identifier.
+     *
+     * @param eventId is the identifier of the events of which the listener will be notified.
+     * @param listener is the listener which will be registered.
+     */
+    void registerListener(String eventId, EventListener<EventData> listener);
+
+    /**
+     * Unregisters a listener previously registered through
+     * {@link KeyedEventReceiver#registerListener(String, EventListener)}.
+     *
+     * @param eventId is the identifier with which the listener has been registered.
+     * @param listener is the listener which will be unregistered. Listeners are compared by address.
+     */
+    void unregisterListener(String eventId, EventListener<EventData> listener);
+}
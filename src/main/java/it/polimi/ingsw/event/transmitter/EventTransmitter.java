@@ -1,5 +1,6 @@
 package it.polimi.ingsw.event.transmitter;
 
+import it.polimi.ingsw.event.PreEncodedEvent;
 import it.polimi.ingsw.event.data.EventData;
 
 /**
@@ -17,4 +18,15 @@ public interface EventTransmitter {
      * @param data is the {@link EventData} which will be broadcast.
      */
     void broadcast(EventData data);
+
+    /**
+     * Broadcasts the {@link EventData} in the given {@link PreEncodedEvent} to the coupled
+     * {@link it.polimi.ingsw.event.receiver.EventReceiver}. Transmitters which encode events should reuse the
+     * encoding shared by all the recipients of the envelope, by default the event is broadcast as it is.
+     *
+     * @param event is the envelope of the {@link EventData} which will be broadcast.
+     */
+    default void broadcast(PreEncodedEvent event) {
+        broadcast(event.getEventData());
+    }
 }
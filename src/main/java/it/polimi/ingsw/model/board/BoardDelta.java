@@ -0,0 +1,128 @@
+package it.polimi.ingsw.model.board;
+
+import it.polimi.ingsw.model.tile.Tile;
+import it.polimi.ingsw.utils.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents the difference between two {@link BoardView}s: the cells whose tile has changed and the
+ * current selection. It allows to send only what has changed after a move, instead of the whole board.
+ * A delta computed from no board at all describes the whole board, hence it can be used as a snapshot.
+ *
+ * @see BoardView
+ */
+public class BoardDelta {
+    /**
+     * The {@link Coordinate}s of the cells whose tile has changed.
+     */
+    private final List<Coordinate> coordinates;
+
+    /**
+     * The new tiles of the changed cells, in the same order of {@link BoardDelta#coordinates}.
+     * A tile is null if the corresponding cell has become empty.
+     */
+    private final List<Tile> tiles;
+
+    /**
+     * The selected {@link Coordinate}s in the new board, in order of selection.
+     */
+    private final List<Coordinate> selected;
+
+    /**
+     * Constructor of the class.
+     *
+     * @param coordinates are the coordinates of the changed cells.
+     * @param tiles are the new tiles of the changed cells.
+     * @param selected are the selected coordinates in the new board.
+     */
+    private BoardDelta(List<Coordinate> coordinates, List<Tile> tiles, List<Coordinate> selected) {
+        this.coordinates = coordinates;
+        this.tiles = tiles;
+        this.selected = selected;
+    }
+
+    /**
+     * Computes the difference between two boards.
+     *
+     * @param from is the old board, null if the delta must describe the whole new board.
+     * @param to is the new board.
+     * @return the delta which turns from into to.
+     *
+     * @throws NullPointerException iff to is null.
+     */
+    public static BoardDelta between(BoardView from, BoardView to) {
+        Objects.requireNonNull(to);
+
+        List<Coordinate> coordinates = new ArrayList<>();
+        List<Tile> tiles = new ArrayList<>();
+
+        for (int row = 0; row < to.tiles.length; row++) {
+            for (int col = 0; col < to.tiles[row].length; col++) {
+                Tile old = from == null ? null : from.tiles[row][col];
+
+                if (old != to.tiles[row][col]) {
+                    coordinates.add(new Coordinate(row, col));
+                    tiles.add(to.tiles[row][col]);
+                }
+            }
+        }
+
+        return new BoardDelta(coordinates, tiles, to.getSelectedCoordinates());
+    }
+
+    /**
+     * Applies the delta to a board.
+     *
+     * @param base is the board to which the delta is applied, null if the delta describes the whole board.
+     * @return a new immutable {@link BoardView} obtained by applying the delta to base, base isn't modified.
+     */
+    public BoardView applyTo(BoardView base) {
+        BoardView result = base == null ? new Board().createView() : base.createView();
+
+        for (int i = 0; i < coordinates.size(); i++) {
+            result.tiles[coordinates.get(i).getRow()][coordinates.get(i).getCol()] = tiles.get(i);
+        }
+
+        int occupied = 0;
+        for (Tile[] row : result.tiles) {
+            for (Tile tile : row) {
+                if (tile != null) {
+                    occupied++;
+                }
+            }
+        }
+
+        result.occupied = occupied;
+        result.boardSelector = new BoardSelector();
+        result.boardSelector.selected.addAll(selected);
+
+        return result;
+    }
+
+    /**
+     * @return the number of changed cells.
+     */
+    public int size() {
+        return coordinates.size();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this)
+            return true;
+        if (other == null || other.getClass() != this.getClass())
+            return false;
+
+        return ((BoardDelta) other).coordinates.equals(this.coordinates) &&
+                ((BoardDelta) other).tiles.equals(this.tiles) &&
+                ((BoardDelta) other).selected.equals(this.selected);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(coordinates, tiles, selected);
+    }
+}
@@ -0,0 +1,116 @@
+package it.polimi.ingsw.model.bookshelf;
+
+import it.polimi.ingsw.model.tile.Tile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Represents the difference between two {@link BookshelfView}s: the shelves whose tile has changed.
+ * It allows to send only the tiles inserted with a move, instead of the whole bookshelf.
+ * A delta computed from no bookshelf at all describes the whole bookshelf with respect to an empty one,
+ * hence it can be used as a snapshot.
+ *
+ * @see BookshelfView
+ */
+public class BookshelfDelta {
+    /**
+     * The rows of the changed shelves.
+     */
+    private final List<Integer> rows;
+
+    /**
+     * The columns of the changed shelves, in the same order of {@link BookshelfDelta#rows}.
+     */
+    private final List<Integer> columns;
+
+    /**
+     * The new tiles of the changed shelves, in the same order of {@link BookshelfDelta#rows}.
+     */
+    private final List<Tile> tiles;
+
+    /**
+     * Constructor of the class.
+     *
+     * @param rows are the rows of the changed shelves.
+     * @param columns are the columns of the changed shelves.
+     * @param tiles are the new tiles of the changed shelves.
+     */
+    private BookshelfDelta(List<Integer> rows, List<Integer> columns, List<Tile> tiles) {
+        this.rows = rows;
+        this.columns = columns;
+        this.tiles = tiles;
+    }
+
+    /**
+     * Computes the difference between two bookshelves.
+     *
+     * @param from is the old bookshelf, null if the delta must describe the whole new bookshelf.
+     * @param to is the new bookshelf.
+     * @return the delta which turns from into to.
+     *
+     * @throws NullPointerException iff to is null.
+     */
+    public static BookshelfDelta between(BookshelfView from, BookshelfView to) {
+        Objects.requireNonNull(to);
+
+        BookshelfView base = from == null ? new BookshelfView() : from;
+
+        List<Integer> rows = new ArrayList<>();
+        List<Integer> columns = new ArrayList<>();
+        List<Tile> tiles = new ArrayList<>();
+
+        for (int row = 0; row < BookshelfView.ROWS; row++) {
+            for (int column = 0; column < BookshelfView.COLUMNS; column++) {
+                if (base.content[row][column] != to.content[row][column]) {
+                    rows.add(row);
+                    columns.add(column);
+                    tiles.add(to.content[row][column]);
+                }
+            }
+        }
+
+        return new BookshelfDelta(rows, columns, tiles);
+    }
+
+    /**
+     * Applies the delta to a bookshelf.
+     *
+     * @param base is the bookshelf to which the delta is applied, null if the delta describes the whole bookshelf.
+     * @return a new {@link BookshelfView} obtained by applying the delta to base, base isn't modified.
+     */
+    public BookshelfView applyTo(BookshelfView base) {
+        BookshelfView result = base == null ? new BookshelfView() : new BookshelfView(base);
+
+        for (int i = 0; i < tiles.size(); i++) {
+            result.content[rows.get(i)][columns.get(i)] = tiles.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of changed shelves.
+     */
+    public int size() {
+        return tiles.size();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this)
+            return true;
+        if (other == null || other.getClass() != this.getClass())
+            return false;
+
+        return ((BookshelfDelta) other).rows.equals(this.rows) &&
+                ((BookshelfDelta) other).columns.equals(this.columns) &&
+                ((BookshelfDelta) other).tiles.equals(this.tiles);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(rows, columns, tiles);
+    }
+}
@@ -19,6 +19,7 @@ import it.polimi.ingsw.event.data.client.StartGameEventData;
 import it.polimi.ingsw.model.board.Board;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * The class implements all the game mechanics of a match.
@@ -70,6 +71,16 @@ public class Game extends GameView {
     */
     private boolean hasRestarted = false;
 
+    /**
+     * Listener notified of every {@link GameMove} performed on the game, it can be null.
+     */
+    private transient Consumer<GameMove> moveListener;
+
+    /**
+     * Number of {@link GameMove moves} performed on the game, it is the sequence number of the last one.
+     */
+    private long moveCount;
+
     /**
      * Creates a new game with the given name.
      * @param name the name of the game
@@ -131,6 +142,87 @@ public class Game extends GameView {
         this.transceiver = transceiver;
     }
 
+    /**
+     * This method sets the listener notified of every {@link GameMove} performed on the game.
+     * Moves are notified while holding the lock on the game, before the events which describe them are broadcast.
+     *
+     * @param moveListener is the listener of the moves.
+     * @throws NullPointerException iff moveListener is null
+     */
+    public synchronized void setMoveListener(Consumer<GameMove> moveListener) {
+        this.moveListener = Objects.requireNonNull(moveListener);
+    }
+
+    /**
+     * @return the number of {@link GameMove moves} performed on the game, that is the sequence number of the
+     * last one.
+     */
+    public synchronized long getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Numbers a move and notifies it to the {@link Game#moveListener}.
+     *
+     * @param type is the type of the move.
+     * @param coordinate is the coordinate of the move, null if the type doesn't need it.
+     * @param value is the value of the move, 0 if the type doesn't need it.
+     */
+    private synchronized void logMove(GameMove.Type type, Coordinate coordinate, int value) {
+        moveCount++;
+
+        if (moveListener != null)
+            moveListener.accept(new GameMove(moveCount, type, coordinate, value));
+    }
+
+    /**
+     * Performs again a move logged while the game was running, without broadcasting any event.
+     * Moves which precede the current state of the game are skipped, since they have already been performed.
+     *
+     * @param move is the move to perform.
+     * @return true iff the game now reflects the move, false if the move can't be performed: it doesn't follow the
+     * last performed move, it is a {@link GameMove.Type#REFILL} or it is illegal in the current state. In that case
+     * the state of the game hasn't changed, and the following moves can't be performed either.
+     * @throws NullPointerException iff move is null
+     */
+    public synchronized boolean replay(GameMove move) {
+        Objects.requireNonNull(move);
+
+        if (move.sequence() <= moveCount)
+            return true;
+
+        if (move.sequence() != moveCount + 1 || !isStarted())
+            return false;
+
+        try {
+            switch (move.type()) {
+                case SELECT -> board.selectTile(move.coordinate());
+                case DESELECT -> board.forgetSelected(move.coordinate());
+                case INSERT -> {
+                    if (board.getSelectedTiles().isEmpty() || !board.canDraw())
+                        return false;
+
+                    insert(players.get(currentPlayerIndex), move.value());
+                }
+                case TURN -> {
+                    if (move.value() < 0 || move.value() >= players.size())
+                        return false;
+
+                    board.forgetSelection();
+                    currentPlayerIndex = move.value();
+                }
+                case REFILL -> {
+                    return false;
+                }
+            }
+        } catch (IllegalExtractionException | FullSelectionException | RuntimeException e) {
+            return false;
+        }
+
+        moveCount = move.sequence();
+        return true;
+    }
+
     /**
      * Use this method to add a player to the game
      *
@@ -355,6 +447,7 @@ public class Game extends GameView {
 
         hasRestarted = true;
         isStopped = false;
+        logMove(GameMove.Type.TURN, null, currentPlayerIndex);
         broadcast(new GameHasStartedEventData());
     }
 
@@ -503,6 +596,7 @@ public class Game extends GameView {
         if (!players.get(currentPlayerIndex).getUsername().equals(username)) throw new IllegalFlowException("It's not your turn");
 
         this.board.forgetSelected(coordinate);
+        logMove(GameMove.Type.DESELECT, coordinate, 0);
         this.transceiver.broadcast(new BoardChangedEventData(board.createView()));
         this.transceiver.broadcast(new PlayerHasDeselectTile(coordinate));
     }
@@ -530,6 +624,7 @@ public class Game extends GameView {
         }
 
         if (hasChanged) {
+            logMove(GameMove.Type.REFILL, null, 0);
             this.transceiver.broadcast(new BoardChangedEventData(this.board.createView()));
         }
     }
@@ -642,6 +737,7 @@ public class Game extends GameView {
             }
 
             this.currentPlayerIndex = index;
+            logMove(GameMove.Type.TURN, null, index);
 
             this.transceiver.broadcast(new CurrentPlayerChangedEventData(players.get(currentPlayerIndex)));
         }
@@ -683,11 +779,32 @@ public class Game extends GameView {
             throw new IllegalExtractionException("You can't draw this tiles");
         }
 
-        player.getBookshelf().insertTiles(selectedTiles, col);
+        List<EventData> events = insert(player, col);
+        logMove(GameMove.Type.INSERT, null, col);
+
+        events.forEach(this::broadcast);
+
+        this.calculateNextPlayer();
+    }
+
+    /**
+     * Inserts the selected tiles in a column of the bookshelf of the current player, awarding the points of the
+     * common goals and of the first full bookshelf.
+     * It is required that the selected tiles can be drawn.
+     *
+     * @param player is the current player.
+     * @param col is the index of the column in the player's bookshelf where the selected tiles are inserted.
+     * @return the events which describe the changes, in the order in which they have to be broadcast.
+     * @throws IllegalExtractionException iff the selected tiles can't be drawn.
+     */
+    private synchronized List<EventData> insert(Player player, int col) throws IllegalExtractionException {
+        List<EventData> events = new ArrayList<>();
+
+        player.getBookshelf().insertTiles(board.getSelectedTiles(), col);
         board.draw();
 
-        broadcast(new BoardChangedEventData(board.createView()));
-        broadcast(new BookshelfHasChangedEventData(username, player.getBookshelf()));
+        events.add(new BoardChangedEventData(board.createView()));
+        events.add(new BookshelfHasChangedEventData(player.getUsername(), player.getBookshelf()));
 
         for (int i = 0; i < commonGoals.length; i++){
             if (player.hasAchievedCommonGoal(i))
@@ -699,7 +816,7 @@ public class Game extends GameView {
                 player.addPoints(points);
                 player.setAchievedCommonGoals(i);
 
-                broadcast(
+                events.add(
                         new CommonGoalCompletedEventData(
                             player,
                             points,
@@ -717,10 +834,10 @@ public class Game extends GameView {
         if (player.getBookshelf().isFull() && firstPlayerCompleteBookshelf == -1) {
             firstPlayerCompleteBookshelf = currentPlayerIndex;
             player.addPoints(1);
-            broadcast(new FirstFullBookshelfEventData(player.getUsername()));
+            events.add(new FirstFullBookshelfEventData(player.getUsername()));
         }
 
-        this.calculateNextPlayer();
+        return events;
     }
 
     /**
@@ -768,6 +885,7 @@ public class Game extends GameView {
             throw new IllegalFlowException("It's not your turn");
 
         this.board.selectTile(coordinate);
+        logMove(GameMove.Type.SELECT, coordinate, 0);
         this.transceiver.broadcast(new BoardChangedEventData(board.createView()));
     }
 }
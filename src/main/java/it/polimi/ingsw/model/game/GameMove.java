@@ -0,0 +1,48 @@
+package it.polimi.ingsw.model.game;
+
+import it.polimi.ingsw.utils.Coordinate;
+
+/**
+ * Compact record of a change of the state of a started {@link Game}. Moves are numbered in the order in which they
+ * have been performed, hence they can be appended to a log and replayed on a copy of the game, with
+ * {@link Game#replay(GameMove)}, to bring it to the same state.
+ * Moves are always performed by the current player, hence they don't need to name them.
+ *
+ * @param sequence is the number of the move, the first move of a game is the number 1.
+ * @param type is the type of the move.
+ * @param coordinate is the coordinate of the selected or deselected tile, null for the other types.
+ * @param value is the column of the bookshelf for {@link Type#INSERT}, the index of the new current player for
+ *              {@link Type#TURN}, 0 for the other types.
+ */
+public record GameMove(long sequence, Type type, Coordinate coordinate, int value) {
+    /**
+     * Types of the moves.
+     */
+    public enum Type {
+        /**
+         * The current player has selected a tile on the board.
+         */
+        SELECT,
+
+        /**
+         * The current player has deselected the last selected tile.
+         */
+        DESELECT,
+
+        /**
+         * The current player has inserted the selected tiles in a column of their bookshelf.
+         */
+        INSERT,
+
+        /**
+         * The turn has passed to another player, forgetting the selection on the board.
+         */
+        TURN,
+
+        /**
+         * The board has been refilled with tiles drawn at random from the bag. It can't be replayed, hence
+         * whoever logs the moves has to take a snapshot of the game instead.
+         */
+        REFILL
+    }
+}
@@ -1,5 +1,8 @@
 package it.polimi.ingsw.networking;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
 /**
  * Type that can send a string to a specific target, and receive a string from the same target.
  * On construction, an {@link ConnectionAcceptor acceptor} is called, and a Connection pair is created and linked.
@@ -22,6 +25,56 @@ public interface Connection {
      */
     String receive() throws DisconnectedException;
 
+    /**
+     * Send the provided raw bytes to the target assigned by the acceptor.
+     * By default, they are sent as an UTF-8 string: connections with a binary transport should override it.
+     * @param bytes will be sent to the target provided by the acceptor.
+     * @throws DisconnectedException if the connection is broken.
+     */
+    default void sendBytes(byte[] bytes) throws DisconnectedException {
+        send(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This method will return the raw bytes that have been received from another connection.
+     * By default, they are obtained by encoding the received string in UTF-8: connections with a binary transport
+     * should override it.
+     * @return the bytes that have been received from another connection.
+     * @throws DisconnectedException if the connection is broken.
+     */
+    default byte[] receiveBytes() throws DisconnectedException {
+        return receive().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Send the provided messages, made of raw bytes, to the target assigned by the acceptor, in order.
+     * By default, they are sent one at a time: connections which can write many messages with a single flush
+     * should override it.
+     * @param messages will be sent to the target provided by the acceptor.
+     * @throws DisconnectedException if the connection is broken.
+     */
+    default void sendAllBytes(List<byte[]> messages) throws DisconnectedException {
+        for (byte[] message : messages) {
+            sendBytes(message);
+        }
+    }
+
+    /**
+     * @return true iff the connection carries raw bytes as they are, which is required to send messages which
+     * aren't valid UTF-8 strings. By default, it is false since bytes are sent as an UTF-8 string.
+     */
+    default boolean isBinarySafe() {
+        return false;
+    }
+
+    /**
+     * @return the smoothed round trip time of the connection in milliseconds, measured through heartbeats,
+     * -1 if it hasn't been measured yet or if the connection doesn't measure it.
+     */
+    default double getRoundTripTime() {
+        return -1;
+    }
+
     /**
      * This method stops all threads relating to the pair this connection is assigned to,
      * and shuts the connection down.
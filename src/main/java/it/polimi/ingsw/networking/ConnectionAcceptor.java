@@ -1,9 +1,14 @@
 package it.polimi.ingsw.networking;
 
+import it.polimi.ingsw.networking.MUX.Multiplexer;
+import it.polimi.ingsw.networking.NIO.EventLoopGroup;
+import it.polimi.ingsw.networking.NIO.NIOAcceptor;
 import it.polimi.ingsw.networking.RMI.RMIConnection;
 import it.polimi.ingsw.networking.RMI.RemoteLinkedList;
+import it.polimi.ingsw.networking.RMI.RemoteListener;
 import it.polimi.ingsw.networking.RMI.RemoteServer;
 import it.polimi.ingsw.networking.TCP.TCPConnection;
+import it.polimi.ingsw.utils.Threads;
 
 import java.io.IOException;
 import java.net.ServerSocket;
@@ -26,10 +31,41 @@ import java.util.Queue;
  */
 public class ConnectionAcceptor extends UnicastRemoteObject implements RemoteServer {
     /**
-     * Socket object used to implement TCP support.
+     * Allows to choose how TCP connections are accepted and served.
+     */
+    public enum TCPMode {
+        /**
+         * Every TCP connection is a {@link TCPConnection}, which owns a reader thread and a heartbeat timer.
+         */
+        BLOCKING,
+
+        /**
+         * Every TCP connection is a {@link it.polimi.ingsw.networking.NIO.NIOConnection NIOConnection}, served
+         * by a fixed pool of selector threads together with all the other connections.
+         */
+        SELECTOR
+    }
+
+    /**
+     * The mode in which TCP connections are accepted and served.
+     */
+    private final TCPMode tcpMode;
+
+    /**
+     * The mode in which server-side RMI connections move messages through the remote queues.
+     */
+    private final RMIConnection.Mode rmiMode;
+
+    /**
+     * Socket object used to implement TCP support. It is null in {@link TCPMode#SELECTOR} mode.
      */
     private final ServerSocket serverSocket;
 
+    /**
+     * Pool of event loops which serves TCP connections. It is null in {@link TCPMode#BLOCKING} mode.
+     */
+    private final EventLoopGroup eventLoopGroup;
+
     /**
      * Port used for RMI communication
      */
@@ -64,31 +100,129 @@ public class ConnectionAcceptor extends UnicastRemoteObject implements RemoteSer
     /**
      * This constructor needs both ports, because this particular object will be used
      * server-side, so both TCP and RMI must be supported.
+     * TCP connections are accepted in {@link TCPMode#BLOCKING} mode.
      *
      * @param TCPPort the port that TCP will listen through.
      * @param RMIPort the port that RMI will listen through.
      * @throws RemoteException will be thrown in case of network problems, or server communication issues.
      * @throws ConnectionException will be thrown if a failure occurs in the process of creating a new Connection.
      */
-
     public ConnectionAcceptor(int TCPPort, int RMIPort) throws RemoteException, ConnectionException {
+        this(TCPPort, RMIPort, TCPMode.BLOCKING);
+    }
+
+    /**
+     * This constructor needs both ports, because this particular object will be used
+     * server-side, so both TCP and RMI must be supported.
+     *
+     * @param TCPPort the port that TCP will listen through.
+     * @param RMIPort the port that RMI will listen through.
+     * @param tcpMode the mode in which TCP connections will be accepted and served.
+     * @throws RemoteException will be thrown in case of network problems, or server communication issues.
+     * @throws ConnectionException will be thrown if a failure occurs in the process of creating a new Connection.
+     */
+    public ConnectionAcceptor(int TCPPort, int RMIPort, TCPMode tcpMode) throws RemoteException, ConnectionException {
+        this(TCPPort, RMIPort, tcpMode, RMIConnection.Mode.THREAD_PER_CALL);
+    }
+
+    /**
+     * This constructor needs both ports, because this particular object will be used
+     * server-side, so both TCP and RMI must be supported.
+     *
+     * @param TCPPort the port that TCP will listen through.
+     * @param RMIPort the port that RMI will listen through.
+     * @param tcpMode the mode in which TCP connections will be accepted and served.
+     * @param rmiMode the mode in which server-side RMI connections will move messages.
+     * @throws RemoteException will be thrown in case of network problems, or server communication issues.
+     * @throws ConnectionException will be thrown if a failure occurs in the process of creating a new Connection.
+     */
+    public ConnectionAcceptor(int TCPPort, int RMIPort, TCPMode tcpMode, RMIConnection.Mode rmiMode)
+        throws RemoteException, ConnectionException {
         this.RMIPort = RMIPort;
+        this.tcpMode = tcpMode;
+        this.rmiMode = rmiMode;
 
         try {
             registry = LocateRegistry.createRegistry(RMIPort);
             registry.bind("SERVER", this);
-            serverSocket = new ServerSocket(TCPPort);
         } catch (Exception exception) {
             throw new ConnectionException();
         }
+
+        if (tcpMode == TCPMode.BLOCKING) {
+            eventLoopGroup = null;
+
+            try {
+                serverSocket = new ServerSocket(TCPPort);
+            } catch (IOException exception) {
+                throw new ConnectionException();
+            }
+        } else {
+            serverSocket = null;
+            eventLoopGroup = new EventLoopGroup();
+
+            // accepted connections are added to the queue directly by the event loop.
+            new NIOAcceptor(TCPPort, eventLoopGroup, this::enqueue);
+        }
     }
 
     /**
-     * Static method to initialize ConnectionAcceptor. Sets the RMI variable "hostname" to the provided string.
+     * Accepts, on the given port, TCP connections which carry many channels through a {@link Multiplexer}.
+     * Every channel opened by a client is returned by {@link ConnectionAcceptor#accept()} as a connection on its
+     * own, hence a single socket can serve many sessions.
+     * Multiplexed connections are served in the same {@link TCPMode} as the other TCP connections.
+     *
+     * @param port the port that multiplexed TCP connections will listen through.
+     * @throws ConnectionException will be thrown if the port can't be listened through.
+     */
+    public void acceptMultiplexed(int port) throws ConnectionException {
+        if (tcpMode == TCPMode.SELECTOR) {
+            new NIOAcceptor(port, eventLoopGroup, nioConnection -> new Multiplexer(nioConnection, this::enqueue));
+            return;
+        }
+
+        ServerSocket multiplexedSocket;
+        try {
+            multiplexedSocket = new ServerSocket(port);
+        } catch (IOException exception) {
+            throw new ConnectionException();
+        }
+
+        Threads.start("mux-acceptor", () -> {
+            while (true) {
+                try {
+                    new Multiplexer(new TCPConnection(multiplexedSocket.accept()), this::enqueue);
+                } catch (Exception exception) {
+                    exception.printStackTrace();
+
+                    if (multiplexedSocket.isClosed()) {
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds an accepted connection to the connection queue.
+     *
+     * @param connection is the accepted connection.
+     */
+    private void enqueue(Connection connection) {
+        synchronized (lock) {
+            connectionQueue.add(connection);
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Static method to initialize ConnectionAcceptor. Sets the RMI variable "hostname" to the provided string
+     * and bounds the time remote calls wait for a response.
      * @param hostName will be assigned to the "hostname" RMI variable.
      */
     public static void initialize(String hostName) {
         System.setProperty("java.rmi.server.hostname", hostName);
+        RMIConnection.limitResponseTime();
     }
 
     /**
@@ -98,8 +232,30 @@ public class ConnectionAcceptor extends UnicastRemoteObject implements RemoteSer
      * @return {@link Connection} object
      */
     public Connection accept() {
+        if (tcpMode == TCPMode.BLOCKING) {
+            acceptBlockingTCP();
+        }
+
+        synchronized (lock) {
+            while (connectionQueue.isEmpty()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException interruptedException) {
+                    interruptedException.printStackTrace();
+                }
+            }
+
+            return connectionQueue.poll();
+        }
+    }
+
+    /**
+     * Starts a thread which waits for a single TCP connection on {@link ConnectionAcceptor#serverSocket}
+     * and adds it to the connection queue.
+     */
+    private void acceptBlockingTCP() {
         // this thread will concur with the createRemoteConnection method.
-        Thread tcpThread = new Thread(() -> {
+        Threads.start("tcp-acceptor", () -> {
             try {
                 // create a tcpConnection and add it to the queue.
                 TCPConnection tcpConnection = new TCPConnection(serverSocket.accept());
@@ -112,20 +268,6 @@ public class ConnectionAcceptor extends UnicastRemoteObject implements RemoteSer
                 exception.printStackTrace();
             }
         });
-        // finally, start the thread.
-        tcpThread.start();
-
-        synchronized (lock) {
-            while (connectionQueue.isEmpty()) {
-                try {
-                    lock.wait();
-                } catch (InterruptedException interruptedException) {
-                    interruptedException.printStackTrace();
-                }
-            }
-
-            return connectionQueue.poll();
-        }
     }
 
     @Override
@@ -141,7 +283,7 @@ public class ConnectionAcceptor extends UnicastRemoteObject implements RemoteSer
             }
 
             try {
-                RMIConnection rmiConnection = new RMIConnection("localhost", RMIPort, boundName);
+                RMIConnection rmiConnection = new RMIConnection("localhost", RMIPort, boundName, rmiMode);
                 connectionQueue.add(rmiConnection);
                 lock.notifyAll();
             } catch (ServerNotFoundException serverNotFoundException) {
@@ -151,4 +293,24 @@ public class ConnectionAcceptor extends UnicastRemoteObject implements RemoteSer
             return boundName;
         }
     }
+
+    @Override
+    public String getBoundName(RemoteListener listener) throws RemoteException {
+        synchronized (lock) {
+            String boundName = "QUEUE" + nextBoundIndex++;
+
+            // the server-side connection reads the queue directly, only the client accesses it remotely
+            RemoteLinkedList addQueue = new RemoteLinkedList();
+            try {
+                registry.bind("ADD_" + boundName, addQueue);
+            } catch (AlreadyBoundException alreadyBoundException) {
+                throw new RuntimeException("queue already bound");
+            }
+
+            connectionQueue.add(new RMIConnection(addQueue, listener));
+            lock.notifyAll();
+
+            return boundName;
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package it.polimi.ingsw.networking;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Describes the binary framing used by stream based {@link Connection}s, that is
+ * {@link it.polimi.ingsw.networking.TCP.TCPConnection TCPConnection} and
+ * {@link it.polimi.ingsw.networking.NIO.NIOConnection NIOConnection}.
+ * Every frame is made of a header of {@link Frame#HEADER_SIZE} bytes followed by the payload:
+ * <ul>
+ *     <li>1 byte with the version of the protocol, {@link Frame#PROTOCOL_VERSION};</li>
+ *     <li>1 byte with the type of the frame, {@link Frame#DATA}, {@link Frame#HEARTBEAT} or
+ *     {@link Frame#HEARTBEAT_ECHO};</li>
+ *     <li>4 bytes (big endian) with the length of the payload;</li>
+ *     <li>the payload, which is made of raw bytes.</li>
+ * </ul>
+ * Unlike {@link java.io.DataOutputStream#writeUTF(String)}, the framing doesn't limit the payload to 64 KB and
+ * doesn't require to decode it into a {@link String}.
+ */
+public final class Frame {
+    /**
+     * Version of the protocol, frames with a different version are rejected.
+     */
+    public static final byte PROTOCOL_VERSION = 1;
+
+    /**
+     * Type of the frames which carry a message.
+     */
+    public static final byte DATA = 0;
+
+    /**
+     * Type of the frames used as heartbeats, their payload is a probe of {@link Frame#PROBE_SIZE} bytes.
+     */
+    public static final byte HEARTBEAT = 1;
+
+    /**
+     * Type of the frames which echo a heartbeat, their payload is the probe of the heartbeat.
+     */
+    public static final byte HEARTBEAT_ECHO = 2;
+
+    /**
+     * Size in bytes of the probe carried by heartbeats and their echoes, a long in big endian.
+     */
+    public static final int PROBE_SIZE = Long.BYTES;
+
+    /**
+     * Size in bytes of the header of every frame.
+     */
+    public static final int HEADER_SIZE = 6;
+
+    /**
+     * Maximum size in bytes of the payload of a frame. It prevents a corrupted header from making the receiver
+     * allocate an arbitrary amount of memory.
+     */
+    public static final int MAX_PAYLOAD_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Frame is a utility class, it can't be instantiated.
+     */
+    private Frame() { }
+
+    /**
+     * Checks that the fields of a received header are valid.
+     *
+     * @param version is the version of the protocol in the header.
+     * @param type is the type of the frame in the header.
+     * @param length is the length of the payload in the header.
+     * @throws ProtocolException if the version, the type or the length are not valid.
+     */
+    public static void checkHeader(byte version, byte type, int length) throws ProtocolException {
+        if (version != PROTOCOL_VERSION) {
+            throw new ProtocolException("unsupported protocol version: " + version);
+        }
+
+        if (type != DATA && type != HEARTBEAT && type != HEARTBEAT_ECHO) {
+            throw new ProtocolException("unknown frame type: " + type);
+        }
+
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            throw new ProtocolException("invalid payload length: " + length);
+        }
+    }
+
+    /**
+     * Encodes the probe carried by a heartbeat or by its echo.
+     *
+     * @param probe is the probe.
+     * @return the payload of the frame.
+     */
+    public static byte[] encodeProbe(long probe) {
+        return ByteBuffer.allocate(PROBE_SIZE).putLong(probe).array();
+    }
+
+    /**
+     * Encodes a frame into a single buffer.
+     *
+     * @param type is the type of the frame.
+     * @param payload is the payload of the frame.
+     * @return a buffer, ready to be read, which contains the header followed by the payload.
+     */
+    public static ByteBuffer encode(byte type, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+
+        frame.put(PROTOCOL_VERSION);
+        frame.put(type);
+        frame.putInt(payload.length);
+        frame.put(payload);
+
+        return frame.flip();
+    }
+}
@@ -0,0 +1,316 @@
+package it.polimi.ingsw.networking;
+
+import it.polimi.ingsw.utils.HashedWheelTimer;
+import it.polimi.ingsw.utils.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide service which owns heartbeat sending, idle detection and disconnection deadlines of every
+ * {@link Heartbeating} connection. Instead of a timer thread per connection, all the connections share the same
+ * {@link HashedWheelTimer}: every connection has a single pending timeout, scheduled at the earliest instant in
+ * which either a heartbeat must be sent or the connection must be considered broken.
+ * A heartbeat is sent only if nothing else has been sent in the last {@link HeartbeatService#HEARTBEAT_INTERVAL}
+ * milliseconds, since any message proves the liveness of the sender.
+ * <p>
+ * Every heartbeat carries a probe, the instant at which it has been sent, which the other side echoes back as it
+ * is: the difference between the instant at which the echo is received and the probe is a round trip time sample.
+ * Samples feed the {@link RttEstimator} of the connection, from which its receive timeout is derived: slow links
+ * and peers which are paused for a while get a longer timeout, up to {@link HeartbeatService#MAX_RECEIVE_TIMEOUT}
+ * milliseconds, instead of being disconnected.
+ * <p>
+ * Heartbeats and disconnections can block on the underlying transport, hence they are performed by a pool of
+ * senders rather than by the timer thread. The pool grows on demand, so that peers which stop reading can't pin
+ * all of its threads: every connection has at most one heartbeat and one echo being sent, connections skip a
+ * heartbeat instead of waiting for a write in progress, and a connection whose write has been blocked for longer
+ * than its receive timeout is disconnected, which unblocks the write.
+ *
+ * @see Heartbeating
+ * @see HashedWheelTimer
+ */
+public class HeartbeatService {
+    /**
+     * Interval in milliseconds after which a heartbeat is sent if nothing else has been sent.
+     */
+    public static final long HEARTBEAT_INTERVAL = 2500;
+
+    /**
+     * Time in milliseconds after which a connection is considered broken if nothing has been received, before
+     * any round trip time sample is available. It is also the minimum receive timeout of every connection.
+     */
+    public static final long RECEIVE_TIMEOUT = 5000;
+
+    /**
+     * Maximum time in milliseconds after which a connection is considered broken if nothing has been received,
+     * however high its round trip time is.
+     */
+    public static final long MAX_RECEIVE_TIMEOUT = 30000;
+
+    /**
+     * Interval in milliseconds after which a heartbeat is sent, to sample the round trip time, even if other
+     * messages have been sent.
+     */
+    public static final long PROBE_INTERVAL = 10000;
+
+    /**
+     * Time in milliseconds after which an idle sender thread terminates.
+     */
+    private static final long SENDER_KEEP_ALIVE = 60000;
+
+    /**
+     * Minimum delay in milliseconds between two consecutive checks of the same connection.
+     */
+    private static final long MIN_CHECK_DELAY = 50;
+
+    /**
+     * Instance shared by the whole process, used to implement a singleton pattern.
+     */
+    private static final HeartbeatService INSTANCE = new HeartbeatService(HashedWheelTimer.getInstance());
+
+    /**
+     * @return the instance of the HeartbeatService shared by the whole process.
+     */
+    public static HeartbeatService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Represents a connection registered on the service. It allows to stop the monitoring of the connection.
+     */
+    public final class Registration {
+        /**
+         * The monitored connection.
+         */
+        private final Heartbeating connection;
+
+        /**
+         * It is true iff a heartbeat has been submitted to the senders and hasn't been sent yet.
+         */
+        private final AtomicBoolean heartbeatInFlight = new AtomicBoolean(false);
+
+        /**
+         * It is true iff an echo has been submitted to the senders and hasn't been sent yet.
+         */
+        private final AtomicBoolean echoInFlight = new AtomicBoolean(false);
+
+        /**
+         * Estimator of the round trip time of the connection, fed by the echoes of the heartbeats.
+         */
+        private final RttEstimator rttEstimator = new RttEstimator();
+
+        /**
+         * Time in milliseconds at which a heartbeat has been sent for the last time, 0 if it has never been sent.
+         */
+        private volatile long lastProbeSent;
+
+        /**
+         * The pending check of the connection on the timer.
+         */
+        private HashedWheelTimer.Timeout timeout;
+
+        /**
+         * It is true iff the connection isn't monitored anymore.
+         */
+        private boolean cancelled;
+
+        /**
+         * Constructor of the class.
+         *
+         * @param connection is the monitored connection.
+         */
+        private Registration(Heartbeating connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * @return the estimator of the round trip time of the connection.
+         */
+        public RttEstimator getRttEstimator() {
+            return rttEstimator;
+        }
+
+        /**
+         * @return the time in milliseconds after which the connection is considered broken if nothing has been
+         * received: {@link HeartbeatService#RECEIVE_TIMEOUT} increased by the round trip timeout of the connection,
+         * capped to {@link HeartbeatService#MAX_RECEIVE_TIMEOUT}.
+         */
+        public long getReceiveTimeout() {
+            return Math.min(RECEIVE_TIMEOUT + rttEstimator.getTimeout(), MAX_RECEIVE_TIMEOUT);
+        }
+
+        /**
+         * Echoes the probe of a heartbeat received by the connection back to the other side. The echo is sent
+         * by the pool of senders, hence it can be invoked by the thread which reads the connection.
+         * The echo is skipped if the previous one hasn't been sent yet.
+         *
+         * @param probe is the probe carried by the heartbeat.
+         */
+        public void heartbeatReceived(long probe) {
+            if (isCancelled() || !echoInFlight.compareAndSet(false, true)) {
+                return;
+            }
+
+            senders.execute(() -> {
+                try {
+                    connection.sendHeartbeatEcho(probe);
+                } catch (DisconnectedException e) {
+                    cancel();
+                } finally {
+                    echoInFlight.set(false);
+                }
+            });
+        }
+
+        /**
+         * Adds the round trip time measured by an echo received by the connection to its estimator.
+         *
+         * @param probe is the probe carried by the echo, that is the value of {@link System#nanoTime()} when the
+         *              heartbeat has been sent.
+         */
+        public void echoReceived(long probe) {
+            long rtt = System.nanoTime() - probe;
+
+            // a probe which hasn't been sent by this process can't be trusted
+            if (rtt >= 0 && rtt <= TimeUnit.MILLISECONDS.toNanos(MAX_RECEIVE_TIMEOUT)) {
+                rttEstimator.addSample(rtt / 1e6);
+            }
+        }
+
+        /**
+         * Stops the monitoring of the connection: no more heartbeats will be sent and the connection won't be
+         * disconnected by the service.
+         */
+        public synchronized void cancel() {
+            cancelled = true;
+
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+        /**
+         * Schedules the next check of the connection after the given delay, unless the registration has been
+         * cancelled.
+         *
+         * @param delay is the delay in milliseconds.
+         */
+        private synchronized void schedule(long delay) {
+            if (!cancelled) {
+                timeout = timer.newTimeout(() -> check(this), delay);
+            }
+        }
+
+        /**
+         * @return true iff the connection isn't monitored anymore.
+         */
+        private synchronized boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * The timer on which the checks of the connections are scheduled.
+     */
+    private final HashedWheelTimer timer;
+
+    /**
+     * Pool of threads which send heartbeats and perform disconnections.
+     */
+    private final ExecutorService senders;
+
+    /**
+     * Constructor of the class.
+     *
+     * @param timer is the timer on which the checks of the connections are scheduled.
+     */
+    private HeartbeatService(HashedWheelTimer timer) {
+        this.timer = timer;
+
+        AtomicInteger senderCount = new AtomicInteger(0);
+        senders = new ThreadPoolExecutor(0, Integer.MAX_VALUE, SENDER_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "heartbeat-sender-" + senderCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Starts monitoring the given connection.
+     *
+     * @param connection is the connection to be monitored.
+     * @return the {@link Registration} which allows to stop the monitoring.
+     */
+    public Registration register(Heartbeating connection) {
+        Registration registration = new Registration(connection);
+        // the first heartbeat is sent immediately, to let the other side know that we are alive
+        registration.schedule(0);
+        return registration;
+    }
+
+    /**
+     * Checks the liveness of a registered connection: disconnects it if nothing has been received, or if a write
+     * has been blocked, for longer than its receive timeout, sends a heartbeat if nothing has been sent for too long or if the round trip time
+     * hasn't been sampled for too long, then schedules the next check.
+     * It is executed on the timer thread.
+     *
+     * @param registration is the registration of the connection to be checked.
+     */
+    private void check(Registration registration) {
+        if (registration.isCancelled()) {
+            return;
+        }
+
+        Heartbeating connection = registration.connection;
+        long now = System.currentTimeMillis();
+
+        long receiveTimeout = registration.getReceiveTimeout();
+        long receiveDeadline = connection.getLastReceivedTime() + receiveTimeout;
+        if (now >= receiveDeadline) {
+            Logger.writeWarning("Nothing received for " + receiveTimeout + " ms, smoothed round trip time was " +
+                registration.rttEstimator.getSmoothedRtt() + " ms");
+
+            registration.cancel();
+            senders.execute(connection::disconnect);
+            return;
+        }
+
+        long writeStart = connection.getWriteStartTime();
+        long writeDeadline = writeStart == 0 ? Long.MAX_VALUE : writeStart + receiveTimeout;
+        if (now >= writeDeadline) {
+            Logger.writeWarning("A write has been blocked for " + receiveTimeout + " ms, the peer isn't reading");
+
+            registration.cancel();
+            senders.execute(connection::disconnect);
+            return;
+        }
+
+        long nextHeartbeat = Math.min(connection.getLastSentTime() + HEARTBEAT_INTERVAL,
+            registration.lastProbeSent + PROBE_INTERVAL);
+        if (registration.heartbeatInFlight.get()) {
+            nextHeartbeat = now + HEARTBEAT_INTERVAL;
+        } else if (now >= nextHeartbeat) {
+            registration.heartbeatInFlight.set(true);
+            registration.lastProbeSent = now;
+            nextHeartbeat = now + HEARTBEAT_INTERVAL;
+
+            senders.execute(() -> {
+                try {
+                    connection.sendHeartbeat(System.nanoTime());
+                } catch (DisconnectedException e) {
+                    registration.cancel();
+                } finally {
+                    registration.heartbeatInFlight.set(false);
+                }
+            });
+        }
+
+        registration.schedule(Math.max(Math.min(Math.min(nextHeartbeat, receiveDeadline), writeDeadline) - now,
+            MIN_CHECK_DELAY));
+    }
+}
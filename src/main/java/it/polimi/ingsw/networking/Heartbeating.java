@@ -0,0 +1,54 @@
+package it.polimi.ingsw.networking;
+
+/**
+ * Represents a {@link Connection} whose liveness is monitored by the {@link HeartbeatService}.
+ * The connection keeps track of the last time it has sent and received something, and the service
+ * decides when a heartbeat must be sent and when the connection must be considered broken.
+ *
+ * @see HeartbeatService
+ */
+public interface Heartbeating {
+    /**
+     * @return the time in milliseconds at which something has been sent for the last time.
+     */
+    long getLastSentTime();
+
+    /**
+     * @return the time in milliseconds at which something has been received for the last time.
+     */
+    long getLastReceivedTime();
+
+    /**
+     * @return the time in milliseconds at which the write in progress on the connection has started, 0 if nothing
+     * is being written. Connections whose writes can't block return always 0.
+     */
+    default long getWriteStartTime() {
+        return 0;
+    }
+
+    /**
+     * Sends a heartbeat to the other side of the connection. The other side must hand the probe to
+     * {@link HeartbeatService.Registration#heartbeatReceived(long)}, which echoes it back.
+     * If something else is being written, the heartbeat can be skipped instead of waiting for it.
+     *
+     * @param probe is the probe carried by the heartbeat.
+     * @throws DisconnectedException if the connection is broken.
+     */
+    void sendHeartbeat(long probe) throws DisconnectedException;
+
+    /**
+     * Sends the echo of a heartbeat to the other side of the connection. The other side must hand the probe to
+     * {@link HeartbeatService.Registration#echoReceived(long)}, which samples the round trip time.
+     * If something else is being written, the echo can be skipped instead of waiting for it.
+     *
+     * @param probe is the probe carried by the received heartbeat, as it is.
+     * @throws DisconnectedException if the connection is broken.
+     */
+    void sendHeartbeatEcho(long probe) throws DisconnectedException;
+
+    /**
+     * Shuts the connection down. It is invoked by the {@link HeartbeatService} when nothing has been received
+     * for too long.
+     */
+    void disconnect();
+}
@@ -0,0 +1,282 @@
+package it.polimi.ingsw.networking.MUX;
+
+import it.polimi.ingsw.networking.Connection;
+import it.polimi.ingsw.networking.DisconnectedException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Connection Connection} carried, as a channel, by a {@link Multiplexer} together with other channels over
+ * the same physical connection. Messages are received by the "mux-reader" thread of the multiplexer, which
+ * appends them to the channel; sent messages are written directly on the physical connection.
+ * <p>
+ * Every channel buffers at most {@link Multiplexer#WINDOW} received messages: a sender can't send more messages
+ * than the credit granted by the receiver, which grants it back as its messages are taken through
+ * {@link ChannelConnection#receiveBytes()}. Hence a receiver which doesn't read blocks only the senders of its
+ * channel, while the "mux-reader" thread keeps serving the other channels.
+ *
+ * @see Multiplexer
+ */
+final class ChannelConnection implements Connection {
+    /**
+     * The {@link Multiplexer} which carries the channel.
+     */
+    private final Multiplexer multiplexer;
+
+    /**
+     * The identifier of the channel, assigned by the side which has opened it.
+     */
+    private final int id;
+
+    /**
+     * It is true iff the channel has been opened by this side.
+     */
+    private final boolean opener;
+
+    /**
+     * {@link ReentrantLock ReentrantLock} which protects the received messages.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * {@link Condition Condition} signalled when a message is received or the channel gets disconnected.
+     */
+    private final Condition messageReceived = lock.newCondition();
+
+    /**
+     * {@link Condition Condition} signalled when credit is granted by the other side or the channel gets
+     * disconnected.
+     */
+    private final Condition creditGranted = lock.newCondition();
+
+    /**
+     * Number of messages which can still be sent before the other side grants more credit.
+     */
+    private int credit = Multiplexer.WINDOW;
+
+    /**
+     * Number of received messages which have been taken from the channel, but not granted back to the other side
+     * as credit yet.
+     */
+    private int consumed;
+
+    /**
+     * {@link Deque Deque} that contains the payloads of all the messages received on the channel.
+     */
+    private final Deque<byte[]> receivedMessages = new ArrayDeque<>();
+
+    /**
+     * Boolean value that indicates if the channel is closed.
+     */
+    private boolean disconnected;
+
+    /**
+     * Constructor of the class.
+     *
+     * @param multiplexer is the {@link Multiplexer} which carries the channel.
+     * @param id is the identifier of the channel.
+     * @param opener is true iff the channel has been opened by this side.
+     */
+    ChannelConnection(Multiplexer multiplexer, int id, boolean opener) {
+        this.multiplexer = multiplexer;
+        this.id = id;
+        this.opener = opener;
+    }
+
+    /**
+     * @return the identifier of the channel.
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * @return true iff the channel has been opened by this side.
+     */
+    boolean isOpener() {
+        return opener;
+    }
+
+    /**
+     * Appends a received message to the channel. It is called by the "mux-reader" thread, hence it never blocks.
+     *
+     * @param payload is the received message.
+     * @return false iff the message has been refused, since the other side has sent it without credit and the
+     * channel already holds {@link Multiplexer#WINDOW} messages.
+     */
+    boolean deliver(byte[] payload) {
+        lock.lock();
+        try {
+            if (receivedMessages.size() >= Multiplexer.WINDOW) {
+                return false;
+            }
+
+            receivedMessages.add(payload);
+            messageReceived.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the credit granted by the other side, waking up the threads waiting to send. It is called by the
+     * "mux-reader" thread.
+     *
+     * @param granted is the number of messages which the other side has taken from the channel.
+     */
+    void grant(int granted) {
+        lock.lock();
+        try {
+            credit += granted;
+            creditGranted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the channel as disconnected, waking up the threads waiting for a message or for credit.
+     */
+    void markDisconnected() {
+        lock.lock();
+        try {
+            disconnected = true;
+            messageReceived.signalAll();
+            creditGranted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the credit to send some messages, waiting until the other side grants at least some of it.
+     *
+     * @param requested is the number of messages to send.
+     * @return the number of messages which can be sent, between 1 and requested.
+     * @throws DisconnectedException if the channel is closed, or it gets closed while waiting.
+     */
+    private int acquireCredit(int requested) throws DisconnectedException {
+        lock.lock();
+        try {
+            while (!disconnected && credit == 0) {
+                try {
+                    creditGranted.await();
+                } catch (InterruptedException e) {
+                    throw new DisconnectedException("interrupted while waiting for credit", e);
+                }
+            }
+
+            if (disconnected) {
+                throw new DisconnectedException("already disconnected");
+            }
+
+            int acquired = Math.min(credit, requested);
+            credit -= acquired;
+            return acquired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void send(String string) throws DisconnectedException {
+        sendBytes(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String receive() throws DisconnectedException {
+        return new String(receiveBytes(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void sendBytes(byte[] bytes) throws DisconnectedException {
+        sendAllBytes(List.of(bytes));
+    }
+
+    /**
+     * All the messages for which there is credit are handed to the physical connection at once, which flushes
+     * them together. If there isn't enough credit, it waits for the other side to take the messages already sent.
+     */
+    @Override
+    public void sendAllBytes(List<byte[]> messages) throws DisconnectedException {
+        int sent = 0;
+
+        do {
+            int count = acquireCredit(messages.size() - sent);
+
+            multiplexer.send(this, messages.subList(sent, sent + count));
+            sent += count;
+        } while (sent < messages.size());
+    }
+
+    /**
+     * Every {@link Multiplexer#WINDOW} / 2 messages taken, they are granted back as credit to the other side.
+     */
+    @Override
+    public byte[] receiveBytes() throws DisconnectedException {
+        byte[] message;
+        int granted = 0;
+
+        lock.lock();
+        try {
+            // messages received before the channel has been closed are still returned
+            while (receivedMessages.isEmpty()) {
+                if (disconnected) {
+                    throw new DisconnectedException("disconnected while waiting for a message");
+                }
+
+                try {
+                    messageReceived.await();
+                } catch (InterruptedException e) {
+                    throw new DisconnectedException("interrupted while waiting for a message", e);
+                }
+            }
+
+            message = receivedMessages.poll();
+
+            consumed++;
+            if (consumed >= Multiplexer.WINDOW / 2) {
+                granted = consumed;
+                consumed = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (granted > 0) {
+            try {
+                multiplexer.grant(this, granted);
+            } catch (DisconnectedException e) {
+                // The message has been received anyway, the next call will notice the disconnection
+            }
+        }
+
+        return message;
+    }
+
+    /**
+     * Channels don't send heartbeats: the round trip time is the one of the physical connection.
+     */
+    @Override
+    public double getRoundTripTime() {
+        return multiplexer.getRoundTripTime();
+    }
+
+    @Override
+    public boolean isBinarySafe() {
+        return true;
+    }
+
+    @Override
+    public void disconnect() {
+        markDisconnected();
+
+        multiplexer.close(this);
+    }
+}
@@ -0,0 +1,385 @@
+package it.polimi.ingsw.networking.MUX;
+
+import it.polimi.ingsw.networking.Connection;
+import it.polimi.ingsw.networking.DisconnectedException;
+import it.polimi.ingsw.utils.Logger;
+import it.polimi.ingsw.utils.Threads;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Carries many logical {@link Connection}s, called channels, over a single physical {@link Connection}.
+ * Every message of a channel is sent on the physical connection prefixed by a header of
+ * {@link Multiplexer#HEADER_SIZE} bytes:
+ * <ul>
+ *     <li>1 byte with the type of the message, {@link Multiplexer#OPEN}, {@link Multiplexer#DATA},
+ *     {@link Multiplexer#CLOSE} or {@link Multiplexer#CREDIT}, combined with {@link Multiplexer#FROM_OPENER} if the sender has opened
+ *     the channel;</li>
+ *     <li>4 bytes (big endian) with the identifier of the channel;</li>
+ *     <li>the payload, which is made of raw bytes.</li>
+ * </ul>
+ * Identifiers are assigned by the side which opens the channel, the {@link Multiplexer#FROM_OPENER} flag tells the
+ * receiver whether the identifier refers to one of its channels or to one opened by the other side. Hence both
+ * sides can open channels without agreeing on the identifiers.
+ * <p>
+ * A single "mux-reader" thread reads the physical connection and hands every message to its channel. Heartbeats
+ * are performed by the physical connection only: when it breaks, all the channels are disconnected.
+ * <p>
+ * Channels are flow controlled with credit: a side sends at most {@link Multiplexer#WINDOW} messages on a channel
+ * which the other side hasn't taken yet, and the receiver grants the credit back through {@link Multiplexer#CREDIT}
+ * messages. A channel which receives more messages than its credit allows is closed, hence the memory used by the
+ * messages buffered for a channel is bounded even if its receiver stops reading.
+ */
+public class Multiplexer {
+    /**
+     * Type of the messages which open a channel, they have an empty payload.
+     */
+    static final byte OPEN = 0;
+
+    /**
+     * Type of the messages which carry a message of a channel.
+     */
+    static final byte DATA = 1;
+
+    /**
+     * Type of the messages which close a channel, they have an empty payload.
+     */
+    static final byte CLOSE = 2;
+
+    /**
+     * Type of the messages which grant credit on a channel, their payload is the number of messages granted
+     * (4 bytes, big endian).
+     */
+    static final byte CREDIT = 3;
+
+    /**
+     * Maximum number of messages which can be sent on a channel before the other side grants more credit,
+     * hence also the maximum number of messages buffered by a channel.
+     */
+    static final int WINDOW = 256;
+
+    /**
+     * Flag added to the type of the messages sent by the side which has opened the channel.
+     */
+    static final byte FROM_OPENER = 0x10;
+
+    /**
+     * Size in bytes of the header of every message.
+     */
+    static final int HEADER_SIZE = 5;
+
+    /**
+     * The physical connection which carries the channels.
+     */
+    private final Connection connection;
+
+    /**
+     * Callback invoked with every channel opened by the other side, null if they are refused.
+     */
+    private final Consumer<Connection> onChannel;
+
+    /**
+     * Lock which protects the tables of the channels.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The channels opened by this side, indexed by their identifier.
+     */
+    private final Map<Integer, ChannelConnection> opened = new HashMap<>();
+
+    /**
+     * The channels opened by the other side, indexed by their identifier.
+     */
+    private final Map<Integer, ChannelConnection> accepted = new HashMap<>();
+
+    /**
+     * The identifier of the next channel opened by this side.
+     */
+    private int nextChannelId;
+
+    /**
+     * It is true iff the physical connection is broken.
+     */
+    private boolean disconnected;
+
+    /**
+     * Constructor of the class. It starts the "mux-reader" thread which reads the physical connection.
+     *
+     * @param connection is the physical connection which carries the channels, it must be binary safe.
+     * @param onChannel is the callback invoked with every channel opened by the other side, null if they have
+     *                  to be refused. It is invoked by the "mux-reader" thread, hence it must not block.
+     * @throws IllegalArgumentException if the connection isn't binary safe.
+     */
+    public Multiplexer(Connection connection, Consumer<Connection> onChannel) {
+        if (!connection.isBinarySafe()) {
+            throw new IllegalArgumentException("channels can be multiplexed only on a binary safe connection");
+        }
+
+        this.connection = connection;
+        this.onChannel = onChannel;
+
+        Threads.start("mux-reader", this::read);
+    }
+
+    /**
+     * Opens a new channel on the physical connection.
+     *
+     * @return the new channel.
+     * @throws DisconnectedException if the physical connection is broken.
+     */
+    public Connection openChannel() throws DisconnectedException {
+        ChannelConnection channel;
+
+        lock.lock();
+        try {
+            if (disconnected) {
+                throw new DisconnectedException("already disconnected");
+            }
+
+            channel = new ChannelConnection(this, nextChannelId++, true);
+            opened.put(channel.getId(), channel);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            connection.sendBytes(encode(OPEN, channel, new byte[0]));
+        } catch (DisconnectedException e) {
+            channel.markDisconnected();
+            throw e;
+        }
+
+        return channel;
+    }
+
+    /**
+     * @return the number of channels which are open.
+     */
+    public int getChannelCount() {
+        lock.lock();
+        try {
+            return opened.size() + accepted.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the smoothed round trip time of the physical connection in milliseconds, -1 if it hasn't been
+     * measured yet.
+     */
+    public double getRoundTripTime() {
+        return connection.getRoundTripTime();
+    }
+
+    /**
+     * Disconnects the physical connection, together with all the channels.
+     */
+    public void disconnect() {
+        connection.disconnect();
+        disconnectAll();
+    }
+
+    /**
+     * Sends some messages of a channel on the physical connection, flushing it only once.
+     *
+     * @param channel is the channel which sends the messages.
+     * @param payloads are the messages.
+     * @throws DisconnectedException if the physical connection is broken.
+     */
+    void send(ChannelConnection channel, List<byte[]> payloads) throws DisconnectedException {
+        List<byte[]> messages = new ArrayList<>(payloads.size());
+        for (byte[] payload : payloads) {
+            messages.add(encode(DATA, channel, payload));
+        }
+
+        connection.sendAllBytes(messages);
+    }
+
+    /**
+     * Grants credit on a channel to the other side.
+     *
+     * @param channel is the channel whose messages have been taken.
+     * @param granted is the number of messages which have been taken.
+     * @throws DisconnectedException if the physical connection is broken.
+     */
+    void grant(ChannelConnection channel, int granted) throws DisconnectedException {
+        connection.sendBytes(encode(CREDIT, channel, ByteBuffer.allocate(Integer.BYTES).putInt(granted).array()));
+    }
+
+    /**
+     * Closes a channel, telling the other side.
+     *
+     * @param channel is the channel to close.
+     */
+    void close(ChannelConnection channel) {
+        boolean removed;
+
+        lock.lock();
+        try {
+            removed = (channel.isOpener() ? opened : accepted).remove(channel.getId(), channel);
+        } finally {
+            lock.unlock();
+        }
+
+        if (removed) {
+            try {
+                connection.sendBytes(encode(CLOSE, channel, new byte[0]));
+            } catch (DisconnectedException e) {
+                // The other side will close all the channels anyway
+            }
+        }
+    }
+
+    /**
+     * Encodes a message of a channel, prefixing it with the header.
+     *
+     * @param type is the type of the message.
+     * @param channel is the channel of the message.
+     * @param payload is the payload of the message.
+     * @return the header followed by the payload.
+     */
+    private static byte[] encode(byte type, ChannelConnection channel, byte[] payload) {
+        return ByteBuffer.allocate(HEADER_SIZE + payload.length)
+            .put(channel.isOpener() ? (byte) (type | FROM_OPENER) : type)
+            .putInt(channel.getId())
+            .put(payload)
+            .array();
+    }
+
+    /**
+     * Reads the physical connection, handing every message to its channel, until the connection breaks.
+     * It is run by the "mux-reader" thread.
+     */
+    private void read() {
+        while (true) {
+            byte[] message;
+            try {
+                message = connection.receiveBytes();
+            } catch (DisconnectedException e) {
+                disconnectAll();
+                return;
+            }
+
+            if (message.length < HEADER_SIZE) {
+                Logger.writeCritical("Got a multiplexed message without header");
+                continue;
+            }
+
+            ByteBuffer header = ByteBuffer.wrap(message, 0, HEADER_SIZE);
+            byte type = header.get();
+            int channelId = header.getInt();
+
+            // A message sent by the opener of the channel refers to a channel opened by the other side
+            boolean fromOpener = (type & FROM_OPENER) != 0;
+            type &= ~FROM_OPENER;
+
+            switch (type) {
+                case OPEN -> accept(channelId);
+                case DATA -> {
+                    ChannelConnection channel = find(fromOpener, channelId);
+                    if (channel != null && !channel.deliver(Arrays.copyOfRange(message, HEADER_SIZE, message.length))) {
+                        Logger.writeCritical("Got more messages than the credit of channel " + channelId);
+                        channel.disconnect();
+                    }
+                }
+                case CREDIT -> {
+                    ChannelConnection channel = find(fromOpener, channelId);
+                    if (message.length != HEADER_SIZE + Integer.BYTES) {
+                        Logger.writeCritical("Got a multiplexed credit of invalid size");
+                    } else if (channel != null) {
+                        channel.grant(ByteBuffer.wrap(message, HEADER_SIZE, Integer.BYTES).getInt());
+                    }
+                }
+                case CLOSE -> {
+                    ChannelConnection channel;
+
+                    lock.lock();
+                    try {
+                        channel = (fromOpener ? accepted : opened).remove(channelId);
+                    } finally {
+                        lock.unlock();
+                    }
+
+                    if (channel != null) {
+                        channel.markDisconnected();
+                    }
+                }
+                default -> Logger.writeCritical("Got a multiplexed message of unknown type: " + type);
+            }
+        }
+    }
+
+    /**
+     * @param fromOpener tells if the message has been sent by the side which has opened the channel.
+     * @param channelId is the identifier of the channel.
+     * @return the channel with the given identifier, null if it isn't open.
+     */
+    private ChannelConnection find(boolean fromOpener, int channelId) {
+        lock.lock();
+        try {
+            return (fromOpener ? accepted : opened).get(channelId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Accepts a channel opened by the other side, or refuses it if no callback has been provided.
+     *
+     * @param channelId is the identifier of the channel.
+     */
+    private void accept(int channelId) {
+        ChannelConnection channel = new ChannelConnection(this, channelId, false);
+
+        if (onChannel == null) {
+            try {
+                connection.sendBytes(encode(CLOSE, channel, new byte[0]));
+            } catch (DisconnectedException e) {
+                // The other side will close all the channels anyway
+            }
+
+            return;
+        }
+
+        lock.lock();
+        try {
+            accepted.put(channelId, channel);
+        } finally {
+            lock.unlock();
+        }
+
+        onChannel.accept(channel);
+    }
+
+    /**
+     * Disconnects all the channels, since the physical connection is broken.
+     */
+    private void disconnectAll() {
+        List<ChannelConnection> channels;
+
+        lock.lock();
+        try {
+            disconnected = true;
+
+            channels = new ArrayList<>(opened.values());
+            channels.addAll(accepted.values());
+            opened.clear();
+            accepted.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        for (ChannelConnection channel : channels) {
+            channel.markDisconnected();
+        }
+    }
+}
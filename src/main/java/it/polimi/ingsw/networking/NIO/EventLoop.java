@@ -0,0 +1,184 @@
+package it.polimi.ingsw.networking.NIO;
+
+import it.polimi.ingsw.utils.Logger;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single threaded event loop built on a {@link Selector}. Every channel registered on the loop is served
+ * by the same thread, which never blocks except inside {@link Selector#select()}.
+ * Other threads interact with the loop only by submitting tasks through {@link EventLoop#execute(Runnable)}.
+ *
+ * @see EventLoopGroup
+ * @see NIOConnection
+ */
+final class EventLoop implements Runnable {
+    /**
+     * The {@link Selector} on which all the channels of this loop are registered.
+     */
+    private final Selector selector;
+
+    /**
+     * Tasks submitted by other threads that must be executed on the loop thread.
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The thread running the loop.
+     */
+    private final Thread thread;
+
+    /**
+     * It is true iff the loop has not been shut down.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Constructor of the class. It opens the {@link Selector} and starts the loop thread.
+     *
+     * @param name is the name given to the loop thread.
+     * @throws IOException if the selector can't be opened.
+     */
+    EventLoop(String name) throws IOException {
+        selector = Selector.open();
+
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Submits a task which will be executed on the loop thread as soon as possible.
+     * If the caller is already the loop thread the task is executed immediately.
+     *
+     * @param task is the task to be executed.
+     */
+    void execute(Runnable task) {
+        if (inEventLoop()) {
+            task.run();
+            return;
+        }
+
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * @return true iff the caller is the thread running this loop.
+     */
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Registers the given channel on the selector of this loop. The channel is switched to non-blocking mode.
+     * The registration is performed on the loop thread.
+     *
+     * @param channel is the channel to be registered.
+     * @param interestOps is the initial interest set of the channel.
+     * @param handler is the {@link SelectionHandler} which will be notified when the channel is ready.
+     */
+    void register(SelectableChannel channel, int interestOps, SelectionHandler handler) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                handler.registered(channel.register(selector, interestOps, handler));
+            } catch (IOException e) {
+                handler.close();
+            }
+        });
+    }
+
+    /**
+     * Cancels a key registered on this loop and closes its channel, then waits until the selector has deregistered
+     * the key: a registered channel is actually closed only at that point, e.g. a server channel releases its port.
+     * It returns immediately if invoked on the loop thread, or if the loop stops in the meantime, since it closes
+     * the selector.
+     *
+     * @param key is the key to be cancelled.
+     */
+    void closeAndWait(SelectionKey key) {
+        CountDownLatch deregistered = new CountDownLatch(1);
+
+        execute(() -> {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException ignored) { }
+
+            // The tasks submitted now run after the next selection, which deregisters the cancelled key
+            tasks.add(deregistered::countDown);
+            selector.wakeup();
+        });
+
+        if (inEventLoop()) {
+            return;
+        }
+
+        try {
+            while (!deregistered.await(10, TimeUnit.MILLISECONDS) && thread.isAlive()) { }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the loop and closes all the channels registered on it.
+     */
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                Logger.writeCritical("Got exception while selecting: " + e.getMessage());
+                break;
+            }
+
+            // Only the tasks submitted before the selection are run, the ones they submit wait for the next one
+            for (int pendingTasks = tasks.size(); pendingTasks > 0; pendingTasks--) {
+                tasks.poll().run();
+            }
+
+            Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+            while (selectedKeys.hasNext()) {
+                SelectionKey key = selectedKeys.next();
+                selectedKeys.remove();
+
+                SelectionHandler handler = (SelectionHandler) key.attachment();
+                try {
+                    if (key.isValid()) {
+                        handler.handle(key);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    key.cancel();
+                    handler.close();
+                }
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            key.cancel();
+            ((SelectionHandler) key.attachment()).close();
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            Logger.writeCritical("Got exception while closing the selector: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package it.polimi.ingsw.networking.NIO;
+
+import it.polimi.ingsw.networking.ConnectionException;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed size pool of {@link EventLoop}s. Channels are assigned to the loops in a round-robin fashion,
+ * hence the number of threads needed to serve any number of {@link NIOConnection}s is bounded by the size
+ * of the group.
+ *
+ * @see EventLoop
+ * @see NIOConnection
+ */
+public class EventLoopGroup {
+    /**
+     * The event loops of the group.
+     */
+    private final EventLoop[] loops;
+
+    /**
+     * Index used to assign channels to the loops in a round-robin fashion.
+     */
+    private final AtomicInteger nextLoop = new AtomicInteger(0);
+
+    /**
+     * Creates a group with as many loops as the number of available processors.
+     *
+     * @throws ConnectionException if one of the selectors can't be opened.
+     */
+    public EventLoopGroup() throws ConnectionException {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a group with the given number of loops.
+     *
+     * @param size is the number of event loops (and then of threads) of the group.
+     * @throws ConnectionException if one of the selectors can't be opened.
+     * @throws IllegalArgumentException if size is not positive.
+     */
+    public EventLoopGroup(int size) throws ConnectionException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("an event loop group needs at least one loop");
+        }
+
+        loops = new EventLoop[size];
+
+        for (int i = 0; i < size; i++) {
+            try {
+                loops[i] = new EventLoop("nio-event-loop-" + i);
+            } catch (IOException e) {
+                for (int j = 0; j < i; j++) {
+                    loops[j].shutdown();
+                }
+
+                throw new ConnectionException("error while opening the selector", e);
+            }
+        }
+    }
+
+    /**
+     * @return the next {@link EventLoop} to which a channel should be assigned.
+     */
+    EventLoop next() {
+        return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+    }
+
+    /**
+     * Registers the given channel on one of the loops of the group.
+     *
+     * @param channel is the channel to be registered.
+     * @param interestOps is the initial interest set of the channel.
+     * @param handler is the handler which will be notified when the channel is ready.
+     */
+    void register(SelectableChannel channel, int interestOps, SelectionHandler handler) {
+        next().register(channel, interestOps, handler);
+    }
+
+    /**
+     * Stops all the loops of the group, closing every channel registered on them.
+     */
+    public void shutdown() {
+        for (EventLoop loop : loops) {
+            loop.shutdown();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package it.polimi.ingsw.networking.NIO;
+
+import it.polimi.ingsw.networking.ConnectionException;
+import it.polimi.ingsw.networking.TCP.SocketCreationException;
+import it.polimi.ingsw.utils.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+
+/**
+ * Accepts incoming TCP connections on a {@link ServerSocketChannel} served by an {@link EventLoop}, and wraps
+ * every accepted channel in a {@link NIOConnection}. No thread is dedicated to the acceptance of connections.
+ *
+ * @see NIOConnection
+ * @see it.polimi.ingsw.networking.ConnectionAcceptor
+ */
+public class NIOAcceptor implements SelectionHandler {
+    /**
+     * The server channel listening for incoming connections.
+     */
+    private final ServerSocketChannel serverChannel;
+
+    /**
+     * The {@link EventLoopGroup} whose loops serve the accepted connections.
+     */
+    private final EventLoopGroup group;
+
+    /**
+     * Callback invoked (on a loop thread) with every newly accepted connection.
+     */
+    private final Consumer<NIOConnection> onAccept;
+
+    /**
+     * The {@link EventLoop} which serves the server channel.
+     */
+    private final EventLoop loop;
+
+    /**
+     * The {@link SelectionKey} of the server channel, null until it has been registered.
+     */
+    private volatile SelectionKey key;
+
+    /**
+     * Constructor of the class. It binds the server channel to the given port and registers it on one of the
+     * loops of the group.
+     *
+     * @param port is the port on which the acceptor listens.
+     * @param group is the {@link EventLoopGroup} which serves the acceptor and the accepted connections.
+     * @param onAccept is the callback invoked with every newly accepted connection. It must not block.
+     * @throws ConnectionException if the server channel can't be bound to the given port.
+     */
+    public NIOAcceptor(int port, EventLoopGroup group, Consumer<NIOConnection> onAccept) throws ConnectionException {
+        this.group = group;
+        this.onAccept = onAccept;
+
+        try {
+            serverChannel = ServerSocketChannel.open();
+            // A port released a moment ago can be bound again while its old connections are in TIME_WAIT
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            throw new ConnectionException("error while binding the server channel on port " + port, e);
+        }
+
+        loop = group.next();
+        loop.register(serverChannel, SelectionKey.OP_ACCEPT, this);
+    }
+
+    @Override
+    public void registered(SelectionKey key) {
+        this.key = key;
+    }
+
+    @Override
+    public void handle(SelectionKey key) throws IOException {
+        SocketChannel channel;
+
+        while ((channel = serverChannel.accept()) != null) {
+            try {
+                onAccept.accept(new NIOConnection(channel, group));
+            } catch (SocketCreationException e) {
+                Logger.writeWarning("Got exception while accepting a connection: " + e.getMessage());
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the server channel. When invoked outside of the loop thread, it waits until the port has been
+     * released, which happens only once the loop has deregistered the channel.
+     */
+    @Override
+    public void close() {
+        SelectionKey registeredKey = key;
+
+        if (registeredKey != null && !loop.inEventLoop()) {
+            loop.closeAndWait(registeredKey);
+            return;
+        }
+
+        try {
+            serverChannel.close();
+        } catch (IOException ignored) { }
+    }
+}
@@ -0,0 +1,489 @@
+package it.polimi.ingsw.networking.NIO;
+
+import it.polimi.ingsw.networking.*;
+import it.polimi.ingsw.networking.TCP.SocketCreationException;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * {@link Connection Connection} class that handles TCP communication through a non-blocking {@link SocketChannel}.
+ * Unlike {@link it.polimi.ingsw.networking.TCP.TCPConnection TCPConnection}, it doesn't own any thread:
+ * reads and writes are performed by one of the {@link EventLoop}s of an {@link EventLoopGroup},
+ * which is shared among all the connections created with it, while heartbeats and idle detection are
+ * performed by the {@link HeartbeatService}.
+ * <p>
+ * Messages are exchanged as length-prefixed binary {@link Frame Frames}, like
+ * {@link it.polimi.ingsw.networking.TCP.TCPConnection TCPConnection} does, hence the two can be used as the two ends
+ * of the same communication channel.
+ *
+ * @see Connection
+ * @see EventLoopGroup
+ * @see Frame
+ * @see HeartbeatService
+ */
+public class NIOConnection implements Connection, Heartbeating, SelectionHandler {
+    /**
+     * Initial capacity in bytes of the buffer used to read from the channel.
+     */
+    private static final int INITIAL_READ_BUFFER_CAPACITY = 8192;
+
+    /**
+     * {@link SocketChannel SocketChannel} used for communication.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * The {@link EventLoop} which serves this connection.
+     */
+    private final EventLoop loop;
+
+    /**
+     * The {@link SelectionKey} of the channel. It is set on the loop thread when the channel gets registered.
+     */
+    private SelectionKey key;
+
+    /**
+     * Buffer in which bytes are read from the channel. It is accessed only by the loop thread and it is reused
+     * for all the frames, growing only while a frame doesn't fit in it.
+     */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_CAPACITY);
+
+    /**
+     * Encoded frames waiting to be written on the channel.
+     */
+    private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+
+    /**
+     * It is true iff a flush of {@link NIOConnection#outbound} has already been submitted to the loop.
+     */
+    private boolean flushScheduled;
+
+    /**
+     * {@link Deque Deque} that contains the payloads of all the messages
+     * received from the other side of the connection.
+     */
+    private final Deque<byte[]> receivedMessages = new ArrayDeque<>();
+
+    /**
+     * Boolean value that indicates if the connection is broken.
+     */
+    private boolean disconnected;
+
+    /**
+     * {@link Object Object} used as a lock.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Time in milliseconds at which something has been received for the last time.
+     */
+    private volatile long lastReceived;
+
+    /**
+     * Time in milliseconds at which something has been sent for the last time.
+     */
+    private volatile long lastSent;
+
+    /**
+     * Registration of this connection on the {@link HeartbeatService}.
+     */
+    private final HeartbeatService.Registration heartbeatRegistration;
+
+    /**
+     * Creates a new {@link NIOConnection NIOConnection} object intended to be used server-side, with a channel
+     * obtained from a {@link java.nio.channels.ServerSocketChannel ServerSocketChannel}.
+     *
+     * @param channel is the connected channel to be used for communication.
+     * @param group is the {@link EventLoopGroup} whose loops will serve the connection.
+     * @throws SocketCreationException if an error occurs while configuring the channel.
+     */
+    public NIOConnection(SocketChannel channel, EventLoopGroup group) throws SocketCreationException {
+        this.channel = channel;
+
+        try {
+            channel.socket().setTcpNoDelay(true);
+        } catch (IOException e) {
+            throw new SocketCreationException("error while configuring the channel", e);
+        }
+
+        disconnected = false;
+        lastReceived = lastSent = System.currentTimeMillis();
+
+        loop = group.next();
+        heartbeatRegistration = HeartbeatService.getInstance().register(this);
+        loop.register(channel, SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Creates a new {@link NIOConnection NIOConnection} object intended to be used as a client.
+     * The connection is established in blocking mode, then the channel is handed to one of the loops of the
+     * given group.
+     *
+     * @param address address of the machine hosting the server socket
+     * @param port port of the server socket
+     * @param group is the {@link EventLoopGroup} whose loops will serve the connection.
+     * @throws SocketCreationException if an error occurs while creating the socket
+     * @throws ServerNotFoundException if the server ip is not found
+     */
+    public NIOConnection(String address, int port, EventLoopGroup group) throws SocketCreationException,
+        ServerNotFoundException {
+        this(connect(address, port), group);
+    }
+
+    /**
+     * Opens a {@link SocketChannel} connected to the given address and port.
+     *
+     * @param address address of the machine hosting the server socket
+     * @param port port of the server socket
+     * @return the connected channel.
+     * @throws SocketCreationException if an error occurs while creating the socket
+     * @throws ServerNotFoundException if the server ip is not found
+     */
+    private static SocketChannel connect(String address, int port) throws SocketCreationException,
+        ServerNotFoundException {
+        if(port < 1024 || port > 49151) {
+            throw new BadPortException("port " + port + " out of range [1024, 49151]");
+        }
+
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.socket().connect(new InetSocketAddress(address, port), 2000);
+            return channel;
+        } catch(IllegalArgumentException e) {
+            closeQuietly(channel);
+            throw new BadHostException("address is null", e);
+        } catch(UnknownHostException e) {
+            closeQuietly(channel);
+            throw new BadHostException("unknown host: " + address, e);
+        } catch(SocketTimeoutException e) {
+            closeQuietly(channel);
+            throw new BadHostException("server: " + address + " not found listening on port: " + port + " (timeout expired)", e);
+        } catch(ConnectException e) {
+            closeQuietly(channel);
+            throw new BadPortException("server: " + address + " not found listening on port: " + port, e);
+        } catch(IOException e) {
+            closeQuietly(channel);
+            throw new SocketCreationException("error while creating socket", e);
+        }
+    }
+
+    /**
+     * Closes the given channel ignoring any error.
+     *
+     * @param channel is the channel to be closed, it can be null.
+     */
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) { }
+        }
+    }
+
+    @Override
+    public void send(String string) throws DisconnectedException {
+        sendBytes(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean isBinarySafe() {
+        return true;
+    }
+
+    @Override
+    public void sendBytes(byte[] bytes) throws DisconnectedException {
+        if (bytes.length > Frame.MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("payload of " + bytes.length + " bytes exceeds the maximum size");
+        }
+
+        enqueue(List.of(Frame.encode(Frame.DATA, bytes)));
+    }
+
+    /**
+     * All the messages are queued at once, hence they are written on the channel by the same flush.
+     */
+    @Override
+    public void sendAllBytes(List<byte[]> messages) throws DisconnectedException {
+        List<ByteBuffer> frames = new ArrayList<>(messages.size());
+
+        for (byte[] message : messages) {
+            if (message.length > Frame.MAX_PAYLOAD_SIZE) {
+                throw new IllegalArgumentException("payload of " + message.length + " bytes exceeds the maximum size");
+            }
+
+            frames.add(Frame.encode(Frame.DATA, message));
+        }
+
+        enqueue(frames);
+    }
+
+    /**
+     * Adds some encoded frames to the outbound queue and schedules a flush on the loop if needed.
+     *
+     * @param frames are the encoded frames.
+     * @throws DisconnectedException if the connection is broken.
+     */
+    private void enqueue(List<ByteBuffer> frames) throws DisconnectedException {
+        synchronized (lock) {
+            // if the connection was already broken, throw a DisconnectedException
+            if (disconnected) {
+                throw new DisconnectedException("already disconnected");
+            }
+
+            outbound.addAll(frames);
+            lastSent = System.currentTimeMillis();
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                loop.execute(this::flush);
+            }
+        }
+    }
+
+    @Override
+    public String receive() throws DisconnectedException {
+        return new String(receiveBytes(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] receiveBytes() throws DisconnectedException {
+        synchronized (lock) {
+            // if the connection was already broken, throw a DisconnectedException
+            if (disconnected) {
+                throw new DisconnectedException("already disconnected");
+            }
+
+            // if there are no messages in the receivedMessages queue, wait for a message
+            while (receivedMessages.isEmpty()) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    throw new DisconnectedException("interrupted while waiting for a message", e);
+                }
+                // if the connection was broken while waiting, we are notified, throw a DisconnectedException
+                if (disconnected) {
+                    throw new DisconnectedException("disconnected while waiting for a message");
+                }
+            }
+
+            return receivedMessages.poll();
+        }
+    }
+
+    @Override
+    public void registered(SelectionKey key) {
+        this.key = key;
+
+        synchronized (lock) {
+            if (disconnected) {
+                close();
+                return;
+            }
+        }
+
+        // messages sent before the registration are still waiting in the outbound queue
+        flush();
+    }
+
+    @Override
+    public void handle(SelectionKey key) throws IOException {
+        if (key.isReadable()) {
+            read();
+        }
+
+        if (key.isValid() && key.isWritable()) {
+            flush();
+        }
+    }
+
+    /**
+     * Reads all the available bytes from the channel and decodes every complete frame.
+     * The payloads of non-heartbeat frames are added to {@link NIOConnection#receivedMessages}, while the probes
+     * of heartbeats and echoes are handed to the {@link HeartbeatService}.
+     *
+     * @throws IOException if the channel has been closed by the other side or an I/O error occurs.
+     */
+    private void read() throws IOException {
+        int read;
+        while ((read = channel.read(readBuffer)) > 0) {
+            lastReceived = System.currentTimeMillis();
+
+            decode();
+        }
+
+        if (read < 0) {
+            throw new EOFException("channel closed by the other side");
+        }
+    }
+
+    /**
+     * Decodes all the complete frames in {@link NIOConnection#readBuffer}, leaving any partial frame
+     * at the beginning of the buffer. The buffer grows if the partial frame doesn't fit in it, and it shrinks
+     * back to its initial capacity as soon as it is empty.
+     *
+     * @throws IOException if a frame is malformed.
+     */
+    private void decode() throws IOException {
+        readBuffer.flip();
+
+        while (readBuffer.remaining() >= Frame.HEADER_SIZE) {
+            int start = readBuffer.position();
+            byte type = readBuffer.get(start + 1);
+            int length = readBuffer.getInt(start + 2);
+            Frame.checkHeader(readBuffer.get(start), type, length);
+
+            if (readBuffer.remaining() < Frame.HEADER_SIZE + length) {
+                if (readBuffer.capacity() < Frame.HEADER_SIZE + length) {
+                    // the frame doesn't fit in the buffer
+                    ByteBuffer biggerBuffer = ByteBuffer.allocate(Frame.HEADER_SIZE + length);
+                    biggerBuffer.put(readBuffer);
+                    readBuffer = biggerBuffer;
+                    return;
+                }
+
+                break;
+            }
+
+            readBuffer.position(start + Frame.HEADER_SIZE);
+
+            if (type == Frame.DATA) {
+                byte[] payload = new byte[length];
+                readBuffer.get(payload);
+
+                synchronized (lock) {
+                    receivedMessages.add(payload);
+                    lock.notifyAll();
+                }
+            } else if (length == Frame.PROBE_SIZE) {
+                long probe = readBuffer.getLong();
+
+                if (type == Frame.HEARTBEAT) {
+                    heartbeatRegistration.heartbeatReceived(probe);
+                } else {
+                    heartbeatRegistration.echoReceived(probe);
+                }
+            } else {
+                readBuffer.position(readBuffer.position() + length);
+            }
+        }
+
+        if (!readBuffer.hasRemaining() && readBuffer.capacity() > INITIAL_READ_BUFFER_CAPACITY) {
+            readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_CAPACITY);
+            return;
+        }
+
+        readBuffer.compact();
+    }
+
+    /**
+     * Writes on the channel as many pending frames as possible without blocking, with a single gathering write
+     * for all the queued frames.
+     * If some bytes can't be written, the loop is asked to notify when the channel becomes writable again.
+     * It must be invoked on the loop thread.
+     */
+    private void flush() {
+        synchronized (lock) {
+            flushScheduled = false;
+
+            if (key == null || !key.isValid()) {
+                // the channel hasn't been registered yet: the flush will be performed on registration
+                return;
+            }
+
+            try {
+                if (!outbound.isEmpty()) {
+                    channel.write(outbound.toArray(new ByteBuffer[0]));
+
+                    while (!outbound.isEmpty() && !outbound.peek().hasRemaining()) {
+                        outbound.poll();
+                    }
+
+                    if (!outbound.isEmpty()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            } catch (IOException e) {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public long getLastSentTime() {
+        return lastSent;
+    }
+
+    @Override
+    public long getLastReceivedTime() {
+        return lastReceived;
+    }
+
+    @Override
+    public void sendHeartbeat(long probe) throws DisconnectedException {
+        enqueue(List.of(Frame.encode(Frame.HEARTBEAT, Frame.encodeProbe(probe))));
+    }
+
+    @Override
+    public void sendHeartbeatEcho(long probe) throws DisconnectedException {
+        enqueue(List.of(Frame.encode(Frame.HEARTBEAT_ECHO, Frame.encodeProbe(probe))));
+    }
+
+    /**
+     * @return the smoothed round trip time of the connection in milliseconds, sampled by heartbeats.
+     */
+    @Override
+    public double getRoundTripTime() {
+        return heartbeatRegistration.getRttEstimator().getSmoothedRtt();
+    }
+
+    /*
+     * Marks the connection as broken, notifying an eventual receive() method waiting for a message,
+     * and releases the channel. It is invoked on the loop thread.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            disconnected = true;
+            outbound.clear();
+            lock.notifyAll();
+        }
+
+        heartbeatRegistration.cancel();
+
+        if (key != null) {
+            key.cancel();
+        }
+
+        closeQuietly(channel);
+    }
+
+    /*
+     * Sets the disconnected field to true and notifies an eventual
+     * receive() method waiting for a message, then asks the loop to release the channel.
+     */
+    @Override
+    public void disconnect() {
+        synchronized (lock) {
+            disconnected = true;
+            lock.notifyAll();
+        }
+
+        loop.execute(this::close);
+    }
+}
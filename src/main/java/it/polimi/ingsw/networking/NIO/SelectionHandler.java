@@ -0,0 +1,32 @@
+package it.polimi.ingsw.networking.NIO;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+
+/**
+ * Callback attached to a {@link SelectionKey} registered on an {@link EventLoop}.
+ * It is invoked by the event loop thread every time the selector reports the key as ready.
+ */
+interface SelectionHandler {
+    /**
+     * Handles the readiness of the given key. It is always invoked on the thread of the {@link EventLoop}
+     * which owns the key, hence it must never block.
+     *
+     * @param key is the {@link SelectionKey} which has been selected.
+     * @throws IOException if an I/O error occurs on the channel associated with the key.
+     */
+    void handle(SelectionKey key) throws IOException;
+
+    /**
+     * Invoked by the event loop thread right after the channel has been registered on the selector.
+     *
+     * @param key is the {@link SelectionKey} obtained from the registration.
+     */
+    default void registered(SelectionKey key) { }
+
+    /**
+     * Invoked by the event loop thread when {@link SelectionHandler#handle(SelectionKey)} throws an exception,
+     * or when the event loop is shut down. After this call the key has been cancelled.
+     */
+    void close();
+}
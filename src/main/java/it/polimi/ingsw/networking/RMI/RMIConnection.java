@@ -1,30 +1,159 @@
 package it.polimi.ingsw.networking.RMI;
 
 import it.polimi.ingsw.networking.*;
+import it.polimi.ingsw.utils.HashedWheelTimer;
+import it.polimi.ingsw.utils.Threads;
 
+import java.rmi.NoSuchObjectException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
 import java.util.*;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * {@link Connection Connection} class that represents one side of an RMI pair of connections.
+ * Heartbeats are sent by the {@link HeartbeatService HeartbeatService}.
  *
  * @author Michele Miotti
  */
-public class RMIConnection implements Connection {
+public class RMIConnection implements Connection, Heartbeating {
+    /**
+     * Allows to choose how messages are moved through the remote queues.
+     */
+    public enum Mode {
+        /**
+         * Every message is sent and polled with its own remote call, performed by a brand-new thread in order
+         * to enforce a timeout.
+         */
+        THREAD_PER_CALL,
+
+        /**
+         * Messages sent while a remote call is in progress are accumulated and sent together with the next one,
+         * and the reader drains up to {@link RMIConnection#MAX_BATCH_SIZE} messages per remote call.
+         * Remote writes are performed by a pool of threads shared by all the connections, which grows on demand
+         * so that a client which doesn't answer only holds its own writer, and their timeouts are enforced through
+         * the {@link HashedWheelTimer}. Hence {@link RMIConnection#send(String)}
+         * doesn't wait for the message to be delivered: a failed delivery disconnects the connection.
+         */
+        BATCHED,
+
+        /**
+         * Like {@link Mode#BATCHED}, but the client exports a {@link RemoteListener} on which the server pushes
+         * the messages, instead of polling them. The server-side connection reads the messages of the client
+         * directly from its local queue, hence no server thread is blocked waiting for a remote poll.
+         * The client must be reachable by the server in order to receive the pushed messages.
+         */
+        PUSH
+    }
+
+    /**
+     * The mode used by connections created through {@link RMIConnection#RMIConnection(String, int)}.
+     */
+    private static volatile Mode clientMode = Mode.BATCHED;
+
+    /**
+     * Sets the mode used by connections created through {@link RMIConnection#RMIConnection(String, int)}.
+     *
+     * @param mode is the mode which will be used by the next client-side connections.
+     */
+    public static void setClientMode(Mode mode) {
+        clientMode = mode;
+    }
+
+    /**
+     * Maximum number of messages drained from the remote queue with a single remote call in
+     * {@link Mode#BATCHED} and {@link Mode#PUSH} modes.
+     */
+    private static final int MAX_BATCH_SIZE = 64;
+
+    /**
+     * Time in milliseconds after which an idle writer thread is terminated.
+     */
+    private static final long WRITER_KEEP_ALIVE = 30000;
+
+    /**
+     * Pool of threads, shared by all the connections in {@link Mode#BATCHED} and {@link Mode#PUSH} modes,
+     * which performs remote writes. A connection flushes with at most one writer at a time, and a new thread
+     * is started whenever all the writers are busy, hence a remote call blocked on a client which doesn't answer
+     * never delays the writes of the other connections. Idle threads are terminated.
+     */
+    private static final ThreadPoolExecutor writers;
+
+    /**
+     * Name of the system property which sets the time in milliseconds the RMI runtime waits for the response to
+     * a remote call, before failing it with a {@link RemoteException}.
+     */
+    private static final String RESPONSE_TIMEOUT_PROPERTY = "sun.rmi.transport.tcp.responseTimeout";
+
+    /**
+     * Time in milliseconds after which a remote call which hasn't been answered fails. It must be longer than
+     * {@link RMIConnection#TIMEOUT}, the time a remote read waits on the other side for a message.
+     */
+    private static final long RESPONSE_TIMEOUT = HeartbeatService.MAX_RECEIVE_TIMEOUT;
+
+    static {
+        limitResponseTime();
+
+        AtomicInteger writerCount = new AtomicInteger(0);
+
+        writers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, WRITER_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "rmi-writer-" + writerCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Bounds the time the RMI runtime waits for the response to a remote call, unless it has already been set,
+     * so that the threads blocked on a client which doesn't answer are eventually released, even if the
+     * {@link RMIConnection#disconnect()} of the connection can't interrupt them.
+     * The RMI runtime reads the limit only once, hence it must be called before the first remote call.
+     */
+    public static void limitResponseTime() {
+        if (System.getProperty(RESPONSE_TIMEOUT_PROPERTY) == null) {
+            System.setProperty(RESPONSE_TIMEOUT_PROPERTY, String.valueOf(RESPONSE_TIMEOUT));
+        }
+    }
+
+    /**
+     * The mode in which messages are moved through the remote queues.
+     */
+    private final Mode mode;
+
     /**
      * This queue is a remote object, bound to the server's registry.
      * A client will add strings to this queue, the server will poll them.
+     * It is null for a server-side connection in {@link Mode#PUSH} mode.
      */
     private final RemoteQueue addQueue;
 
     /**
      * This queue is a remote object, bound to the server's registry.
      * A client will poll string from this queue, the server will add them.
+     * In {@link Mode#PUSH} mode it is null for a client, while for the server it is the local queue to which
+     * the client adds strings.
      */
     private final RemoteQueue pollQueue;
 
+    /**
+     * The listener exported by the client, on which a server-side connection in {@link Mode#PUSH} mode
+     * delivers strings. It is null otherwise.
+     */
+    private final RemoteListener remoteListener;
+
+    /**
+     * The listener exported by a client-side connection in {@link Mode#PUSH} mode. It is null otherwise.
+     */
+    private final RemoteListener exportedListener;
+
     /**
      * Saved messages that are yet to be returned by the "receive" method.
      */
@@ -38,20 +167,69 @@ public class RMIConnection implements Connection {
 
     /**
      * Lock needed to protect portions of object state that need to be modified by threads, such as
-     * the "disconnected" boolean, and both remote queues.
+     * the "disconnected" boolean, and both remote queues. It is used instead of a monitor since a virtual thread
+     * which blocks while holding a monitor pins its carrier thread.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * {@link Condition Condition} signalled when a message is received or the connection gets broken.
+     */
+    private final Condition messageReceived = lock.newCondition();
+
+    /**
+     * Time in milliseconds at which something has been received for the last time.
+     */
+    private volatile long lastReceived;
+
+    /**
+     * Time in milliseconds at which something has been sent for the last time.
+     */
+    private volatile long lastSent;
+
+    /**
+     * Registration of this connection on the {@link HeartbeatService HeartbeatService}.
+     */
+    private final HeartbeatService.Registration heartbeatRegistration;
+
+    /**
+     * Messages sent in {@link Mode#BATCHED} or {@link Mode#PUSH} mode which haven't been handed to a remote
+     * write yet.
+     */
+    private final List<String> outbox = new ArrayList<>();
+
+    /**
+     * It is true iff a remote write of the messages in {@link RMIConnection#outbox} has been submitted
+     * and hasn't completed yet.
      */
-    private final Object lock = new Object();
+    private boolean flushing;
 
     /**
      * This constructor creates a connection with some {@link it.polimi.ingsw.networking.ConnectionAcceptor acceptor}.
      * This acceptor will then return the name of a newly created remote queue pair, through a remote method.
      * This constructor should be used client-side.
+     * Messages are moved in the mode set through {@link RMIConnection#setClientMode(Mode)},
+     * {@link Mode#BATCHED} by default.
      *
      * @param address is the address of the server's host.
      * @param port is the port used by {@link it.polimi.ingsw.networking.ConnectionAcceptor the server} for RMI communication.
      * @throws ServerNotFoundException will be thrown if a failure occurs in the process of connecting to the server.
      */
     public RMIConnection(String address, int port) throws ServerNotFoundException {
+        this(address, port, clientMode);
+    }
+
+    /**
+     * This constructor creates a connection with some {@link it.polimi.ingsw.networking.ConnectionAcceptor acceptor}.
+     * This acceptor will then return the name of a newly created remote queue pair, through a remote method.
+     * This constructor should be used client-side.
+     *
+     * @param address is the address of the server's host.
+     * @param port is the port used by {@link it.polimi.ingsw.networking.ConnectionAcceptor the server} for RMI communication.
+     * @param mode is the mode in which messages are moved through the remote queues.
+     * @throws ServerNotFoundException will be thrown if a failure occurs in the process of connecting to the server.
+     */
+    public RMIConnection(String address, int port, Mode mode) throws ServerNotFoundException {
         if (port < 1024 || port > 49151) {
             throw new BadPortException("port " + port + " out of range");
         }
@@ -60,22 +238,41 @@ public class RMIConnection implements Connection {
             throw new BadHostException("host address is null");
         }
 
+        this.mode = mode;
         pendingMessages = new LinkedList<>();
         disconnected = false;
 
+        remoteListener = null;
+        RemoteListener listener = mode == Mode.PUSH ? new PushedMessagesListener() : null;
+
         try {
             Registry registry = LocateRegistry.getRegistry(address, port);
             RemoteServer remoteServer = (RemoteServer) registry.lookup("SERVER");
 
-            String boundName = remoteServer.getBoundName();
+            String boundName;
+            if (listener != null) {
+                UnicastRemoteObject.exportObject(listener, 0);
+                boundName = remoteServer.getBoundName(listener);
+            } else {
+                boundName = remoteServer.getBoundName();
+            }
+
             addQueue = (RemoteQueue) registry.lookup("ADD_" + boundName);
-            pollQueue = (RemoteQueue) registry.lookup("POLL_" + boundName);
+            pollQueue = listener != null ? null : (RemoteQueue) registry.lookup("POLL_" + boundName);
         } catch (Exception exception) {
+            unexport(listener);
             throw new ServerNotFoundException();
         }
 
-        heartbeat();
-        reader();
+        exportedListener = listener;
+
+        lastReceived = lastSent = System.currentTimeMillis();
+        heartbeatRegistration = HeartbeatService.getInstance().register(this);
+        if (mode == Mode.THREAD_PER_CALL) {
+            reader();
+        } else if (mode == Mode.BATCHED) {
+            batchedReader();
+        }
     }
 
     /**
@@ -83,6 +280,7 @@ public class RMIConnection implements Connection {
      * and should only be constructed BY an acceptor to create a connection that is already looking for the right queue
      * on the registry. Of course, this constructor needs to know the undecorated queue name in order to work.
      * This method should be called server-side.
+     * Messages are moved in {@link Mode#THREAD_PER_CALL} mode.
      *
      * @param address is the address of the server's host.
      * @param port is the port used by {@link it.polimi.ingsw.networking.ConnectionAcceptor the server} for RMI communication.
@@ -90,9 +288,33 @@ public class RMIConnection implements Connection {
      * @throws ServerNotFoundException will be thrown if a failure occurs in the process of connecting to the server.
      */
     public RMIConnection(String address, int port, String boundName) throws ServerNotFoundException {
+        this(address, port, boundName, Mode.THREAD_PER_CALL);
+    }
+
+    /**
+     * This constructor does NOT request names to an {@link it.polimi.ingsw.networking.ConnectionAcceptor acceptor},
+     * and should only be constructed BY an acceptor to create a connection that is already looking for the right queue
+     * on the registry. Of course, this constructor needs to know the undecorated queue name in order to work.
+     * This method should be called server-side.
+     *
+     * @param address is the address of the server's host.
+     * @param port is the port used by {@link it.polimi.ingsw.networking.ConnectionAcceptor the server} for RMI communication.
+     * @param boundName is the name of the undecorated queue that should already be bound to the registry.
+     * @param mode is the mode in which messages are moved through the remote queues.
+     * @throws ServerNotFoundException will be thrown if a failure occurs in the process of connecting to the server.
+     */
+    public RMIConnection(String address, int port, String boundName, Mode mode) throws ServerNotFoundException {
+        this.mode = mode;
         pendingMessages = new LinkedList<>();
         disconnected = false;
 
+        if (mode == Mode.PUSH) {
+            throw new IllegalArgumentException("server-side connections in PUSH mode need the client's listener");
+        }
+
+        remoteListener = null;
+        exportedListener = null;
+
         try {
             Registry registry = LocateRegistry.getRegistry(address, port);
             addQueue = (RemoteQueue) registry.lookup("POLL_" + boundName);
@@ -101,41 +323,175 @@ public class RMIConnection implements Connection {
             throw new ServerNotFoundException(exception.getMessage());
         }
 
-        heartbeat();
-        reader();
+        lastReceived = lastSent = System.currentTimeMillis();
+        heartbeatRegistration = HeartbeatService.getInstance().register(this);
+        if (mode == Mode.BATCHED) {
+            batchedReader();
+        } else {
+            reader();
+        }
     }
 
     /**
-     * Should only be called once. This method starts a timer that repeatedly accesses the "send" method,
-     * to check for connectivity. The message's content is the string "heartbeat", which should not create
-     * consistency issues since the "send" method is conventionally used to communicate through json-formatted strings.
+     * This constructor creates the server-side connection in {@link Mode#PUSH} mode. It should only be constructed
+     * BY an {@link it.polimi.ingsw.networking.ConnectionAcceptor acceptor}, which owns the queue to which the client
+     * adds strings: the queue is read directly, without any remote call.
+     *
+     * @param localQueue is the queue to which the client adds strings, it is owned by the acceptor.
+     * @param listener is the listener exported by the client, on which strings will be delivered.
      */
-    private void heartbeat() {
-        Timer timer = new Timer();
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    send("heartbeat");
-                } catch (DisconnectedException e) {
-                    timer.cancel();
+    public RMIConnection(RemoteQueue localQueue, RemoteListener listener) {
+        mode = Mode.PUSH;
+        pendingMessages = new LinkedList<>();
+        disconnected = false;
+
+        addQueue = null;
+        pollQueue = localQueue;
+        remoteListener = listener;
+        exportedListener = null;
+
+        lastReceived = lastSent = System.currentTimeMillis();
+        heartbeatRegistration = HeartbeatService.getInstance().register(this);
+        batchedReader();
+    }
+
+    /**
+     * {@link RemoteListener} exported by a client-side connection in {@link Mode#PUSH} mode: the delivered
+     * messages are handed to the connection as if they had been read from a remote queue.
+     */
+    private class PushedMessagesListener implements RemoteListener {
+        @Override
+        public void deliver(List<String> messages) throws RemoteException {
+            lock.lock();
+            try {
+                if (disconnected) {
+                    throw new RemoteException("connection already disconnected");
+                }
+
+                lastReceived = System.currentTimeMillis();
+
+                for (String message : messages) {
+                    if (!isHeartbeat(message)) {
+                        pendingMessages.add(message);
+                    }
                 }
+                messageReceived.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Unexports the given listener ignoring any error.
+     *
+     * @param listener is the listener to be unexported, it can be null.
+     */
+    private static void unexport(RemoteListener listener) {
+        if (listener != null) {
+            try {
+                UnicastRemoteObject.unexportObject(listener, true);
+            } catch (NoSuchObjectException ignored) { }
+        }
+    }
+
+    @Override
+    public long getLastSentTime() {
+        return lastSent;
+    }
+
+    @Override
+    public long getLastReceivedTime() {
+        return lastReceived;
+    }
+
+    /**
+     * The message's content is the string "heartbeat:" followed by the probe, which should not create consistency
+     * issues since the "send" method is conventionally used to communicate through json-formatted strings.
+     */
+    @Override
+    public void sendHeartbeat(long probe) throws DisconnectedException {
+        send(HEARTBEAT_PREFIX + probe);
+    }
+
+    /**
+     * The message's content is the string "heartbeat-echo:" followed by the probe.
+     */
+    @Override
+    public void sendHeartbeatEcho(long probe) throws DisconnectedException {
+        send(HEARTBEAT_ECHO_PREFIX + probe);
+    }
+
+    /**
+     * @return the smoothed round trip time of the connection in milliseconds, sampled by heartbeats.
+     */
+    @Override
+    public double getRoundTripTime() {
+        return heartbeatRegistration.getRttEstimator().getSmoothedRtt();
+    }
+
+    /**
+     * Prefix of the messages used as heartbeats, it is followed by the probe.
+     */
+    private static final String HEARTBEAT_PREFIX = "heartbeat:";
+
+    /**
+     * Prefix of the messages which echo a heartbeat, it is followed by the probe of the heartbeat.
+     */
+    private static final String HEARTBEAT_ECHO_PREFIX = "heartbeat-echo:";
+
+    /**
+     * Tells if a received message is a heartbeat or its echo, handing its probe to the
+     * {@link HeartbeatService HeartbeatService}, which echoes the heartbeat or samples the round trip time.
+     *
+     * @param message is the received message.
+     * @return true iff the message is a heartbeat or its echo, hence it must not be delivered.
+     */
+    private boolean isHeartbeat(String message) {
+        boolean echo = message.startsWith(HEARTBEAT_ECHO_PREFIX);
+        if (!echo && !message.startsWith(HEARTBEAT_PREFIX)) {
+            // heartbeats without a probe are not echoed
+            return message.equals("heartbeat");
+        }
+
+        try {
+            long probe = Long.parseLong(message.substring((echo ? HEARTBEAT_ECHO_PREFIX : HEARTBEAT_PREFIX).length()));
+
+            if (echo) {
+                heartbeatRegistration.echoReceived(probe);
+            } else {
+                heartbeatRegistration.heartbeatReceived(probe);
             }
-        }, 0, 2500);
+        } catch (NumberFormatException ignored) { }
+
+        return true;
     }
 
     /**
-     * Timeout in milliseconds of send and read operations over RMI.
+     * Time in milliseconds a remote read in {@link Mode#BATCHED} mode waits for a message.
      */
     private static final long TIMEOUT = 5000;
 
+    /**
+     * @return the timeout in milliseconds of send and read operations over RMI, that is the receive timeout of
+     * the connection, which adapts to its round trip time.
+     */
+    private long getTimeout() {
+        return heartbeatRegistration.getReceiveTimeout();
+    }
+
     /**
      * Lock used to synchronize with the thread that executes RMI remote read operation.
      */
-    private final Object readWithTimeoutLock = new Object();
+    private final ReentrantLock readWithTimeoutLock = new ReentrantLock();
 
     /**
-     * It is the result of RMI remote read. It is null if the read operation took longer than {@link RMIConnection#TIMEOUT}.
+     * {@link Condition Condition} signalled when the RMI remote read operation completes.
+     */
+    private final Condition readCompleted = readWithTimeoutLock.newCondition();
+
+    /**
+     * It is the result of RMI remote read. It is null if the read operation took longer than the timeout.
      */
     private String read;
 
@@ -148,34 +504,50 @@ public class RMIConnection implements Connection {
     private Optional<String> readWithTimeout() {
         read = null;
 
-        new Thread(() -> {
+        Threads.start("rmi-read", () -> {
             try {
                 String remoteRead = pollQueue.poll();
 
-                synchronized (readWithTimeoutLock) {
+                readWithTimeoutLock.lock();
+                try {
                     read = remoteRead;
-                    readWithTimeoutLock.notifyAll();
+                    readCompleted.signalAll();
+                } finally {
+                    readWithTimeoutLock.unlock();
                 }
             } catch (RemoteException remoteException) {
 
             }
-        }).start();
+        });
 
-        synchronized (readWithTimeoutLock) {
-            try {
-                readWithTimeoutLock.wait(TIMEOUT);
-            } catch (InterruptedException e) {
+        readWithTimeoutLock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(getTimeout());
 
+            // the read may have completed before we started waiting
+            while (read == null && remaining > 0) {
+                try {
+                    remaining = readCompleted.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    break;
+                }
             }
 
             return Optional.ofNullable(read);
+        } finally {
+            readWithTimeoutLock.unlock();
         }
     }
 
     /**
      * Lock object used to synchronize with the thread that executes RMI remote write operation.
      */
-    private final Object sendWithTimeoutLock = new Object();
+    private final ReentrantLock sendWithTimeoutLock = new ReentrantLock();
+
+    /**
+     * {@link Condition Condition} signalled when the RMI remote write operation completes.
+     */
+    private final Condition sendCompleted = sendWithTimeoutLock.newCondition();
 
     /**
      * It is true iff the last remote write operation over RMI took less than the timeout.
@@ -192,27 +564,38 @@ public class RMIConnection implements Connection {
     private boolean sendWithTimeout(String toSend) {
         sent = false;
 
-        new Thread(() -> {
+        Threads.start("rmi-send", () -> {
             try {
                 addQueue.add(toSend);
 
-                synchronized (sendWithTimeoutLock) {
+                sendWithTimeoutLock.lock();
+                try {
                     sent = true;
-                    sendWithTimeoutLock.notifyAll();
+                    sendCompleted.signalAll();
+                } finally {
+                    sendWithTimeoutLock.unlock();
                 }
             } catch (RemoteException remoteException) {
 
             }
-        }).start();
+        });
 
-        synchronized (sendWithTimeoutLock) {
-            try {
-                sendWithTimeoutLock.wait(TIMEOUT);
-            } catch (InterruptedException e) {
+        sendWithTimeoutLock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(getTimeout());
 
+            // the write may have completed before we started waiting
+            while (!sent && remaining > 0) {
+                try {
+                    remaining = sendCompleted.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    break;
+                }
             }
 
             return sent;
+        } finally {
+            sendWithTimeoutLock.unlock();
         }
     }
 
@@ -222,12 +605,15 @@ public class RMIConnection implements Connection {
      * All non-heartbeat messages will be sent to the pendingMessages queue.
      */
     private void reader() {
-        Thread reader = new Thread(() -> {
+        Threads.start("rmi-reader", () -> {
             while(true) {
-                synchronized(lock) {
+                lock.lock();
+                try {
                     if (disconnected) {
                         return;
                     }
+                } finally {
+                    lock.unlock();
                 }
 
                 Optional<String> read = readWithTimeout();
@@ -237,41 +623,155 @@ public class RMIConnection implements Connection {
                     return;
                 }
 
-                if (!read.get().equals("heartbeat")) {
-                    synchronized(lock) {
+                lastReceived = System.currentTimeMillis();
+
+                if (!isHeartbeat(read.get())) {
+                    lock.lock();
+                    try {
                         pendingMessages.add(read.get());
-                        lock.notifyAll();
+                        messageReceived.signalAll();
+                    } finally {
+                        lock.unlock();
                     }
                 }
             }
         });
-        reader.start();
     }
 
+    /**
+     * Should only be called once, in {@link Mode#BATCHED} mode or by a server-side connection in
+     * {@link Mode#PUSH} mode.
+     * This method creates a thread that drains the remote queue in batches, with remote calls which wait at most
+     * {@link RMIConnection#TIMEOUT} milliseconds for a message. Idle connections are detected by the
+     * {@link HeartbeatService HeartbeatService}, hence an empty batch doesn't break the connection.
+     * All non-heartbeat messages will be sent to the pendingMessages queue.
+     */
+    private void batchedReader() {
+        Threads.start("rmi-reader", () -> {
+            while(true) {
+                lock.lock();
+                try {
+                    if (disconnected) {
+                        return;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                List<String> read;
+                try {
+                    read = pollQueue.pollAll(MAX_BATCH_SIZE, TIMEOUT);
+                } catch (RemoteException remoteException) {
+                    disconnect();
+                    return;
+                }
+
+                if (read.isEmpty()) {
+                    continue;
+                }
+
+                lastReceived = System.currentTimeMillis();
+
+                lock.lock();
+                try {
+                    for (String message : read) {
+                        if (!isHeartbeat(message)) {
+                            pendingMessages.add(message);
+                        }
+                    }
+                    messageReceived.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Hands all the messages in {@link RMIConnection#outbox} to remote writes, one batch per remote call,
+     * until the outbox is empty. It is executed by the shared pool of writers in {@link Mode#BATCHED} and
+     * {@link Mode#PUSH} modes.
+     * If a remote write doesn't complete in {@link RMIConnection#getTimeout()} milliseconds, the connection is
+     * disconnected by the {@link HashedWheelTimer}.
+     */
+    private void flush() {
+        while (true) {
+            List<String> batch;
+
+            lock.lock();
+            try {
+                if (disconnected || outbox.isEmpty()) {
+                    outbox.clear();
+                    flushing = false;
+                    return;
+                }
+
+                batch = new ArrayList<>(outbox);
+                outbox.clear();
+            } finally {
+                lock.unlock();
+            }
+
+            HashedWheelTimer.Timeout watchdog = HashedWheelTimer.getInstance().newTimeout(this::disconnect, getTimeout());
+            try {
+                if (remoteListener != null) {
+                    remoteListener.deliver(batch);
+                } else {
+                    addQueue.addAll(batch);
+                }
+            } catch (RemoteException remoteException) {
+                disconnect();
+            } finally {
+                watchdog.cancel();
+            }
+        }
+    }
+
+    /**
+     * In {@link Mode#BATCHED} and {@link Mode#PUSH} modes the string is only queued: it will be sent together with the other strings
+     * queued while the previous remote write was in progress.
+     */
     @Override
     public void send(String string) throws DisconnectedException {
-        synchronized (lock) {
+        lock.lock();
+        try {
             if (disconnected) {
                 throw new DisconnectedException();
             }
 
+            if (mode != Mode.THREAD_PER_CALL) {
+                outbox.add(string);
+                lastSent = System.currentTimeMillis();
+
+                if (!flushing) {
+                    flushing = true;
+                    writers.execute(this::flush);
+                }
+                return;
+            }
+
             if (!sendWithTimeout(string)) {
                 disconnect();
-                throw new DisconnectedException("Send required more than " + TIMEOUT + " milliseconds");
+                throw new DisconnectedException("Send required more than " + getTimeout() + " milliseconds");
             }
+
+            lastSent = System.currentTimeMillis();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public String receive() throws DisconnectedException {
-        synchronized (lock) {
+        lock.lock();
+        try {
             if (disconnected) {
                 throw new DisconnectedException();
             }
 
             while (pendingMessages.isEmpty()) {
                 try {
-                    lock.wait();
+                    messageReceived.await();
                 } catch(InterruptedException e) {
                     throw new DisconnectedException();
                 }
@@ -281,14 +781,22 @@ public class RMIConnection implements Connection {
             }
 
             return pendingMessages.poll();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void disconnect() {
-        synchronized (lock) {
+        lock.lock();
+        try {
             disconnected = true;
-            lock.notifyAll();
+            messageReceived.signalAll();
+        } finally {
+            lock.unlock();
         }
+
+        heartbeatRegistration.cancel();
+        unexport(exportedListener);
     }
 }
\ No newline at end of file
@@ -2,7 +2,9 @@ package it.polimi.ingsw.networking.RMI;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 
 /**
@@ -50,4 +52,39 @@ public class RemoteLinkedList extends UnicastRemoteObject implements RemoteQueue
             return stringQueue.poll();
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public void addAll(List<String> strings) throws RemoteException {
+        synchronized (lock) {
+            stringQueue.addAll(strings);
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public List<String> pollAll(int maxCount, long timeout) throws RemoteException {
+        synchronized (lock) {
+            long deadline = System.currentTimeMillis() + timeout;
+
+            while (stringQueue.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return new ArrayList<>();
+                }
+
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException interruptedException) {
+                    return new ArrayList<>();
+                }
+            }
+
+            List<String> polled = new ArrayList<>(Math.min(maxCount, stringQueue.size()));
+            while (polled.size() < maxCount && !stringQueue.isEmpty()) {
+                polled.add(stringQueue.poll());
+            }
+
+            return polled;
+        }
+    }
+}
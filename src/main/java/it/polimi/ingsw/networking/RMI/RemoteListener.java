@@ -0,0 +1,18 @@
+package it.polimi.ingsw.networking.RMI;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Remote interface exported by a client in {@link RMIConnection.Mode#PUSH} mode, through which the server
+ * pushes messages to the client instead of letting it poll a {@link RemoteQueue}.
+ */
+public interface RemoteListener extends Remote {
+    /**
+     * Delivers a batch of messages to the listener.
+     * @param messages are the delivered messages, in the order in which they have been sent.
+     * @throws RemoteException will be thrown in case of network problems, or if the listener has been disconnected.
+     */
+    void deliver(List<String> messages) throws RemoteException;
+}
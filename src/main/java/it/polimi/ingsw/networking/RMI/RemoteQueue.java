@@ -2,6 +2,7 @@ package it.polimi.ingsw.networking.RMI;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * Remote interface that supports queue addition and queue polling.
@@ -22,4 +23,21 @@ public interface RemoteQueue extends Remote {
      * @throws RemoteException will be thrown in case of network problems, or server communication issues.
      */
     String poll() throws RemoteException;
-}
\ No newline at end of file
+
+    /**
+     * Adds all the given strings to the queue, in order, with a single remote call.
+     * @param strings will be added to the queue.
+     * @throws RemoteException will be thrown in case of network problems, or server communication issues.
+     */
+    void addAll(List<String> strings) throws RemoteException;
+
+    /**
+     * Polls up to the given number of strings from the queue (the oldest added ones), removing them.
+     * If the queue is empty, it waits until a string is added or the given timeout expires.
+     * @param maxCount is the maximum number of strings which will be returned.
+     * @param timeout is the maximum time in milliseconds to wait for a string if the queue is empty.
+     * @return the oldest strings in the queue, in order. It is empty if the timeout expired.
+     * @throws RemoteException will be thrown in case of network problems, or server communication issues.
+     */
+    List<String> pollAll(int maxCount, long timeout) throws RemoteException;
+}
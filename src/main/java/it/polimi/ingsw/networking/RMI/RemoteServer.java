@@ -20,4 +20,15 @@ public interface RemoteServer extends Remote {
      * @throws RemoteException will be thrown in case of network problems, or server communication issues.
      */
     String getBoundName() throws RemoteException;
-}
\ No newline at end of file
+
+    /**
+     * This method will be called remotely by a connection in {@link RMIConnection.Mode#PUSH} mode that wants
+     * to be paired. Only the queue to which the connection adds strings is bound, prefixed with "ADD_": the
+     * strings for the connection will be pushed to the given listener.
+     *
+     * @param listener is the listener exported by the connection, on which strings will be delivered.
+     * @return a string which represents the name of the newly created connection pair.
+     * @throws RemoteException will be thrown in case of network problems, or server communication issues.
+     */
+    String getBoundName(RemoteListener listener) throws RemoteException;
+}
@@ -0,0 +1,94 @@
+package it.polimi.ingsw.networking;
+
+/**
+ * Estimates the round trip time of a connection from the samples obtained with heartbeat echoes, as done by
+ * TCP for its retransmission timeout (RFC 6298). It keeps an exponentially weighted moving average of the
+ * samples, the smoothed round trip time, and of their deviation from it, the round trip time variation.
+ * The timeout derived from them is exceeded only by a small fraction of the round trip times of the connection.
+ * <p>
+ * The estimator is thread safe: samples are added by the thread which receives the echoes, while the estimates
+ * are read by the {@link HeartbeatService} and by whoever exposes them.
+ */
+public class RttEstimator {
+    /**
+     * Weight of a new sample in the smoothed round trip time.
+     */
+    private static final double ALPHA = 1.0 / 8;
+
+    /**
+     * Weight of a new sample in the round trip time variation.
+     */
+    private static final double BETA = 1.0 / 4;
+
+    /**
+     * Number of round trip time variations added to the smoothed round trip time to obtain the timeout.
+     */
+    private static final int K = 4;
+
+    /**
+     * Smoothed round trip time in milliseconds.
+     */
+    private double smoothedRtt;
+
+    /**
+     * Round trip time variation in milliseconds.
+     */
+    private double rttVariation;
+
+    /**
+     * Number of samples added to the estimator.
+     */
+    private long sampleCount;
+
+    /**
+     * Adds a round trip time sample to the estimator.
+     *
+     * @param rtt is the measured round trip time in milliseconds.
+     * @throws IllegalArgumentException if the round trip time is negative.
+     */
+    public synchronized void addSample(double rtt) {
+        if (rtt < 0) {
+            throw new IllegalArgumentException("round trip time must be non negative, got: " + rtt);
+        }
+
+        if (sampleCount == 0) {
+            smoothedRtt = rtt;
+            rttVariation = rtt / 2;
+        } else {
+            // the variation must be updated with the previous smoothed round trip time
+            rttVariation = (1 - BETA) * rttVariation + BETA * Math.abs(smoothedRtt - rtt);
+            smoothedRtt = (1 - ALPHA) * smoothedRtt + ALPHA * rtt;
+        }
+
+        sampleCount++;
+    }
+
+    /**
+     * @return the smoothed round trip time in milliseconds, -1 if no sample has been added yet.
+     */
+    public synchronized double getSmoothedRtt() {
+        return sampleCount == 0 ? -1 : smoothedRtt;
+    }
+
+    /**
+     * @return the round trip time variation in milliseconds, -1 if no sample has been added yet.
+     */
+    public synchronized double getRttVariation() {
+        return sampleCount == 0 ? -1 : rttVariation;
+    }
+
+    /**
+     * @return the number of samples added to the estimator.
+     */
+    public synchronized long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return the time in milliseconds after which a reply is considered late, that is the smoothed round trip
+     * time plus {@link RttEstimator#K} times the round trip time variation, 0 if no sample has been added yet.
+     */
+    public synchronized long getTimeout() {
+        return sampleCount == 0 ? 0 : (long) Math.ceil(smoothedRtt + K * rttVariation);
+    }
+}
@@ -1,63 +1,118 @@
 package it.polimi.ingsw.networking.TCP;
 
 import it.polimi.ingsw.networking.*;
+import it.polimi.ingsw.utils.Threads;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.Deque;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * {@link Connection Connection} class that handles TCP communication via {@link Socket Socket}.
+ * Messages are exchanged as length-prefixed binary {@link Frame Frames}.
+ * Heartbeats and idle detection are performed by the {@link HeartbeatService HeartbeatService}.
  *
  * @see Connection
  * @see Socket
+ * @see Frame
+ * @see HeartbeatService
  *
  * @author Francesco Gemma
  */
-public class TCPConnection implements Connection {
+public class TCPConnection implements Connection, Heartbeating {
+    /**
+     * Size in bytes of the buffer in which frames are written before flushing them on the socket.
+     * It is large enough to hold a whole batch of events.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
     /**
      * {@link Socket Socket} used for communication.
      */
     private final Socket socket;
 
     /**
-     * {@link DataOutputStream DataOutputStream} used to write strings to the socket.
+     * {@link DataOutputStream DataOutputStream} used to write frames to the socket.
      */
     private final DataOutputStream  out;
 
     /**
-     * {@link DataInputStream DataInputStream} used to read strings from the socket.
+     * {@link DataInputStream DataInputStream} used to read frames from the socket.
      */
     private final DataInputStream in;
 
+    /**
+     * Buffer in which the header of every frame is read. It is accessed only by the reader thread and it is
+     * reused for all the frames.
+     */
+    private final ByteBuffer header = ByteBuffer.allocate(Frame.HEADER_SIZE);
+
     /**
      * Boolean value that indicates if the connection is broken.
      */
-    private boolean disconnected;
+    private volatile boolean disconnected;
+
+    /**
+     * {@link ReentrantLock ReentrantLock} used as a lock for the received messages. It is never held while
+     * performing I/O. It is used instead of a monitor since a virtual thread which blocks while holding a monitor
+     * pins its carrier thread.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * {@link ReentrantLock ReentrantLock} which serializes the writes on the socket. It is held while the socket
+     * is being written, hence while the other side isn't reading, for this reason
+     * {@link TCPConnection#disconnect()} never acquires it.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
 
     /**
-     * {@link Object Object} used as a lock.
+     * {@link Condition Condition} signalled when a message is received or the connection gets broken.
      */
-    private final Object lock = new Object();
+    private final Condition messageReceived = lock.newCondition();
 
     /**
-     * {@link Deque Deque} of {@link String Strings} that contains all the messages
+     * {@link Deque Deque} that contains the payloads of all the messages
      * received from the other side of the connection.
      */
-    private final Deque<String> receivedMessages;
+    private final Deque<byte[]> receivedMessages;
+
+    /**
+     * Time in milliseconds at which something has been received for the last time.
+     */
+    private volatile long lastReceived;
+
+    /**
+     * Time in milliseconds at which something has been sent for the last time.
+     */
+    private volatile long lastSent;
+
+    /**
+     * Time in milliseconds at which the write in progress has started, 0 if nothing is being written.
+     */
+    private volatile long writeStart;
+
+    /**
+     * Registration of this connection on the {@link HeartbeatService HeartbeatService}.
+     */
+    private final HeartbeatService.Registration heartbeatRegistration;
 
     /**
      * Creates a new {@link TCPConnection TCPConnection} object intended to be used as a client.
      * It creates a new {@link Socket}, and it sets it to NoDelay mode for better performance.
      * It sets also the {@link TCPConnection#out} and {@link TCPConnection#in} fields respectively
      * to {@link Socket#getOutputStream()} and {@link Socket#getInputStream()}
-     * wrapped in a {@link DataOutputStream DataOutputStream} for easier string writing and reading.
+     * wrapped in a {@link DataOutputStream DataOutputStream} for easier frame writing and reading.
      * <p>
-     * It also starts a {@link Timer Timer} that sends a heartbeat message every 2.5 seconds to the other side of the connection
-     * to check if the connection is still alive.
+     * It also registers the connection on the {@link HeartbeatService HeartbeatService}, which sends a heartbeat message
+     * every 2.5 seconds to the other side of the connection if nothing else has been sent, and which considers
+     * the connection broken if nothing has been received for 5 seconds, increased by its round trip timeout.
      *
      * @param address address of the machine hosting the server socket
      * @param port port of the server socket
@@ -77,10 +132,9 @@ public class TCPConnection implements Connection {
             socket.connect(new java.net.InetSocketAddress(address, port), 2000);
 
             socket.setTcpNoDelay(true);
-            socket.setSoTimeout(5000);
 
-            in = new DataInputStream(socket.getInputStream());
-            out = new DataOutputStream(socket.getOutputStream());
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), OUTPUT_BUFFER_SIZE));
         } catch(IllegalArgumentException e) {
             throw new BadHostException("address is null", e);
         } catch(UnknownHostException e) {
@@ -93,7 +147,8 @@ public class TCPConnection implements Connection {
             throw new SocketCreationException("error while creating socket", e);
         }
 
-        heartbeat();
+        lastReceived = lastSent = System.currentTimeMillis();
+        heartbeatRegistration = HeartbeatService.getInstance().register(this);
         reader();
     }
 
@@ -102,10 +157,11 @@ public class TCPConnection implements Connection {
      * It sets the {@link TCPConnection#socket} field to the given {@link Socket Socket}.
      * It sets also the {@link TCPConnection#out} and {@link TCPConnection#in} fields respectively
      * to {@link Socket#getOutputStream()} and {@link Socket#getInputStream()}
-     * wrapped in a {@link DataOutputStream DataOutputStream} for easier string writing and reading.
+     * wrapped in a {@link DataOutputStream DataOutputStream} for easier frame writing and reading.
      * <p>
-     * It also starts a {@link Timer Timer} that sends a heartbeat message every 2.5 seconds to the other side of the connection
-     * to check if the connection is still alive.
+     * It also registers the connection on the {@link HeartbeatService HeartbeatService}, which sends a heartbeat message
+     * every 2.5 seconds to the other side of the connection if nothing else has been sent, and which considers
+     * the connection broken if nothing has been received for 5 seconds, increased by its round trip timeout.
      *
      * @param socket socket to be used for communication
      * @throws SocketCreationException if an error occurs while setting the input/output streams of the socket
@@ -117,38 +173,126 @@ public class TCPConnection implements Connection {
         this.socket = socket;
 
         try {
-            in = new DataInputStream(this.socket.getInputStream());
-            out = new DataOutputStream(this.socket.getOutputStream());
-            socket.setSoTimeout(5000);
+            in = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream(), OUTPUT_BUFFER_SIZE));
         } catch(IOException e) {
             throw new SocketCreationException("error while setting input/output streams", e);
         }
 
-        heartbeat();
+        lastReceived = lastSent = System.currentTimeMillis();
+        heartbeatRegistration = HeartbeatService.getInstance().register(this);
         reader();
     }
 
     @Override
     public void send(String string) throws DisconnectedException {
-        synchronized(lock) {
+        sendBytes(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean isBinarySafe() {
+        return true;
+    }
+
+    @Override
+    public void sendBytes(byte[] bytes) throws DisconnectedException {
+        sendFrames(Frame.DATA, List.of(bytes));
+    }
+
+    /**
+     * All the messages are written in the output buffer and the socket is flushed only once.
+     */
+    @Override
+    public void sendAllBytes(List<byte[]> messages) throws DisconnectedException {
+        sendFrames(Frame.DATA, messages);
+    }
+
+    /**
+     * Writes some frames of the same type on the socket, flushing it only once.
+     *
+     * @param type is the type of the frames.
+     * @param payloads are the payloads of the frames.
+     * @throws DisconnectedException if the connection is broken.
+     */
+    private void sendFrames(byte type, List<byte[]> payloads) throws DisconnectedException {
+        for (byte[] payload : payloads) {
+            if(payload.length > Frame.MAX_PAYLOAD_SIZE) {
+                throw new IllegalArgumentException("payload of " + payload.length + " bytes exceeds the maximum size");
+            }
+        }
+
+        writeLock.lock();
+        try {
+            writeFrames(type, payloads);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes a heartbeat frame on the socket, unless something else is being written: in that case the frame is
+     * skipped, since waiting would pin the sender thread of the {@link HeartbeatService HeartbeatService} for as long
+     * as the other side doesn't read.
+     *
+     * @param type is the type of the frame.
+     * @param probe is the probe carried by the frame.
+     * @throws DisconnectedException if the connection is broken.
+     */
+    private void sendHeartbeatFrame(byte type, long probe) throws DisconnectedException {
+        if (!writeLock.tryLock()) {
+            return;
+        }
+
+        try {
+            writeFrames(type, List.of(Frame.encodeProbe(probe)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes some frames of the same type on the socket, flushing it only once. It must be invoked while holding
+     * the {@link TCPConnection#writeLock}.
+     *
+     * @param type is the type of the frames.
+     * @param payloads are the payloads of the frames.
+     * @throws DisconnectedException if the connection is broken.
+     */
+    private void writeFrames(byte type, List<byte[]> payloads) throws DisconnectedException {
+        writeStart = System.currentTimeMillis();
+        try {
             // if the connection was already broken, throw a DisconnectedException
             if(disconnected) {
                 throw new DisconnectedException("already disconnected");
             }
 
-            // send the string, if an IOException is thrown, throw a DisconnectedException
+            // send the frames, if an IOException is thrown, throw a DisconnectedException
             try {
-                out.writeUTF(string);
+                for (byte[] payload : payloads) {
+                    out.writeByte(Frame.PROTOCOL_VERSION);
+                    out.writeByte(type);
+                    out.writeInt(payload.length);
+                    out.write(payload);
+                }
                 out.flush();
+                lastSent = System.currentTimeMillis();
             } catch(IOException e) {
                 throw new DisconnectedException("sending while disconnected", e);
             }
+        } finally {
+            writeStart = 0;
         }
     }
 
     @Override
     public String receive() throws DisconnectedException {
-        synchronized(lock) {
+        return new String(receiveBytes(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] receiveBytes() throws DisconnectedException {
+        lock.lock();
+        try {
             // if the connection was already broken, throw a DisconnectedException
             if(disconnected) {
                 throw new DisconnectedException("already disconnected");
@@ -157,7 +301,7 @@ public class TCPConnection implements Connection {
             // if there are no messages in the receivedMessages stack, wait for a message
             while(receivedMessages.isEmpty()) {
                 try {
-                    lock.wait();
+                    messageReceived.await();
                 } catch(InterruptedException e) {
                     throw new DisconnectedException("interrupted while waiting for a message", e);
                 }
@@ -169,61 +313,100 @@ public class TCPConnection implements Connection {
 
             // return the first message in the receivedMessages stack
             return receivedMessages.poll();
+        } finally {
+            lock.unlock();
         }
     }
 
+    @Override
+    public long getLastSentTime() {
+        return lastSent;
+    }
+
+    @Override
+    public long getLastReceivedTime() {
+        return lastReceived;
+    }
+
+    @Override
+    public long getWriteStartTime() {
+        return writeStart;
+    }
+
+    @Override
+    public void sendHeartbeat(long probe) throws DisconnectedException {
+        sendHeartbeatFrame(Frame.HEARTBEAT, probe);
+    }
+
+    @Override
+    public void sendHeartbeatEcho(long probe) throws DisconnectedException {
+        sendHeartbeatFrame(Frame.HEARTBEAT_ECHO, probe);
+    }
+
     /**
-     * Crate a timer that sends a heartbeat message every 2.5 seconds to the other side of the connection
-     * to check if the connection is still alive.
+     * @return the smoothed round trip time of the connection in milliseconds, sampled by heartbeats.
      */
-    private void heartbeat() {
-        Timer timer = new Timer();
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    send("heartbeat");
-                } catch (DisconnectedException e) {
-                    timer.cancel();
-                }
-            }
-        }, 0, 2500);
+    @Override
+    public double getRoundTripTime() {
+        return heartbeatRegistration.getRttEstimator().getSmoothedRtt();
     }
 
     /**
-     * Creates a new thread that continuously reads messages from the socket.
-     * If the message received is not a heartbeat, it is added to the {@link TCPConnection#receivedMessages receivedMessages} stack
+     * Creates a new thread that continuously reads frames from the socket.
+     * If the frame received is not a heartbeat, its payload is added to the {@link TCPConnection#receivedMessages receivedMessages} stack
      * and the {@link TCPConnection#receive()} method will be able to read it.
      * <p>
-     * If the message received is a heartbeat, it is simply discarded,
-     * but if we don't receive any message for 5 seconds, the connection is considered broken.
+     * If the message received is a heartbeat or its echo, its probe is handed to the
+     * {@link HeartbeatService HeartbeatService}, which echoes the heartbeat or samples the round trip time.
+     * It also updates the time at which something has been received for the last time.
      * <p>
      * This method will also close the socket if a disconnection is detected.
      */
     private void reader() {
-        Thread reader = new Thread(() -> {
+        Threads.start("tcp-reader", () -> {
             while(true) {
-                synchronized(lock) {
+                lock.lock();
+                try {
                     if(disconnected) {
+                        heartbeatRegistration.cancel();
                         try {
                             socket.close();
                         } catch(IOException ignored) {}
                         return;
                     }
+                } finally {
+                    lock.unlock();
                 }
 
-                String read;
                 try {
-                    socket.setSoTimeout(5000);
-                    read = in.readUTF();
-                    if(!read.equals("heartbeat")) {
+                    in.readFully(header.array());
+                    byte type = header.get(1);
+                    int length = header.getInt(2);
+                    Frame.checkHeader(header.get(0), type, length);
+
+                    byte[] read = new byte[length];
+                    in.readFully(read);
+                    lastReceived = System.currentTimeMillis();
+
+                    if(type == Frame.DATA) {
                         /*
                          * the received message is not a heartbeat, add it to the receivedMessages stack to be able to read it.
                          * we notify the receive() method that it the stack is not empty anymore, and it can read the message
                          */
-                        synchronized(lock) {
+                        lock.lock();
+                        try {
                             receivedMessages.add(read);
-                            lock.notifyAll();
+                            messageReceived.signalAll();
+                        } finally {
+                            lock.unlock();
+                        }
+                    } else if(length == Frame.PROBE_SIZE) {
+                        long probe = ByteBuffer.wrap(read).getLong();
+
+                        if(type == Frame.HEARTBEAT) {
+                            heartbeatRegistration.heartbeatReceived(probe);
+                        } else {
+                            heartbeatRegistration.echoReceived(probe);
                         }
                     }
                 } catch(Exception e) {
@@ -231,26 +414,37 @@ public class TCPConnection implements Connection {
                      * if an exception is thrown, the connection is considered broken, we set the disconnected field to true,
                      * and we notify the receive() method that it can throw a DisconnectedException
                      */
-                    synchronized(lock) {
+                    lock.lock();
+                    try {
                         disconnected = true;
-                        lock.notifyAll();
+                        messageReceived.signalAll();
+                    } finally {
+                        lock.unlock();
                     }
                 }
             }
         });
-        reader.start();
     }
 
     /*
-     * Sets the disconnected field to true and notifies an eventual
-     * receive() method waiting for a message, that the connection will be closed, so it can throw a DisconnectedException.
-     * The reader() method will then close the socket.
+     * Sets the disconnected field to true and closes the socket, which unblocks the reader() thread, which will then
+     * terminate, and a sender blocked writing to a peer which doesn't read, without waiting for it.
+     * Then it notifies an eventual receive() method waiting for a message, so it can throw a DisconnectedException.
      */
     @Override
     public void disconnect() {
-        synchronized(lock) {
-            disconnected = true;
-            lock.notifyAll();
+        disconnected = true;
+
+        heartbeatRegistration.cancel();
+        try {
+            socket.close();
+        } catch(IOException ignored) {}
+
+        lock.lock();
+        try {
+            messageReceived.signalAll();
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Collection;
+import java.util.Objects;
 
 /**
  * The class represents a pair of row and column integers.
@@ -113,6 +114,11 @@ public class Coordinate {
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(row, col);
+    }
+
     @Override
     public String toString() {
         return "[" + this.row + " " + col + "]";
@@ -0,0 +1,239 @@
+package it.polimi.ingsw.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Timer which schedules a large number of short tasks with a single thread, using a hashed wheel of buckets.
+ * Time is divided into ticks of fixed duration; every bucket of the wheel holds the tasks which expire in the
+ * ticks congruent to its index. At every tick the worker thread visits only one bucket, hence the cost of
+ * the timer depends on the number of ticks and of expiring tasks, not on the number of scheduled tasks.
+ * <p>
+ * Tasks are executed on the worker thread: they must be short and must never block.
+ * The precision of the timer is the tick duration.
+ */
+public class HashedWheelTimer {
+    /**
+     * Represents a task scheduled on the timer, which can be cancelled before its expiration.
+     */
+    public static final class Timeout {
+        /**
+         * The task to be executed at the expiration.
+         */
+        private final Runnable task;
+
+        /**
+         * Expiration time in nanoseconds, relative to the start time of the timer.
+         */
+        private final long deadline;
+
+        /**
+         * Number of complete turns of the wheel still needed before the expiration.
+         * It is accessed only by the worker thread.
+         */
+        private long remainingRounds;
+
+        /**
+         * It is true iff the timeout has been cancelled.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Constructor of the class.
+         *
+         * @param task is the task to be executed at the expiration.
+         * @param deadline is the expiration time in nanoseconds, relative to the start time of the timer.
+         */
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout. If the task hasn't been executed yet, it won't be executed anymore.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * @return true iff the timeout has been cancelled.
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * Default duration of a tick in milliseconds.
+     */
+    private static final long DEFAULT_TICK_DURATION = 100;
+
+    /**
+     * Default number of buckets of the wheel.
+     */
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * Instance shared by the whole process, used to implement a singleton pattern.
+     */
+    private static final HashedWheelTimer INSTANCE = new HashedWheelTimer("wheel-timer", DEFAULT_TICK_DURATION,
+        DEFAULT_WHEEL_SIZE);
+
+    /**
+     * @return the timer shared by the whole process.
+     */
+    public static HashedWheelTimer getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Duration of a tick in nanoseconds.
+     */
+    private final long tickDuration;
+
+    /**
+     * The buckets of the wheel. They are accessed only by the worker thread.
+     */
+    private final List<List<Timeout>> wheel;
+
+    /**
+     * Mask used to compute the bucket index from a tick, the number of buckets is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * Timeouts scheduled by other threads which haven't been put in a bucket yet.
+     */
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Time in nanoseconds at which the timer has been started.
+     */
+    private final long startTime;
+
+    /**
+     * Constructor of the class. It starts the worker thread.
+     *
+     * @param name is the name of the worker thread.
+     * @param tickDuration is the duration of a tick in milliseconds.
+     * @param wheelSize is the number of buckets of the wheel. It is rounded up to a power of two.
+     * @throws IllegalArgumentException if tickDuration or wheelSize are not positive.
+     */
+    public HashedWheelTimer(String name, long tickDuration, int wheelSize) {
+        if (tickDuration <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tick duration and wheel size must be positive");
+        }
+
+        int buckets = Integer.highestOneBit(wheelSize);
+        if (buckets < wheelSize) {
+            buckets <<= 1;
+        }
+
+        this.tickDuration = tickDuration * 1_000_000;
+        this.mask = buckets - 1;
+        this.wheel = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            wheel.add(new ArrayList<>());
+        }
+
+        startTime = System.nanoTime();
+
+        Thread worker = new Thread(this::work, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules the given task to be executed on the worker thread after the given delay.
+     *
+     * @param task is the task to be executed. It must be short and must not block.
+     * @param delay is the delay in milliseconds after which the task is executed.
+     * @return the {@link Timeout} which allows to cancel the task.
+     */
+    public Timeout newTimeout(Runnable task, long delay) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + Math.max(0, delay) * 1_000_000);
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Body of the worker thread: it waits for the end of every tick and executes the expired tasks in
+     * the corresponding bucket.
+     */
+    private void work() {
+        long tick = 0;
+
+        while (true) {
+            long deadline = tickDuration * (tick + 1);
+            long sleepTime = deadline - (System.nanoTime() - startTime);
+
+            if (sleepTime > 0) {
+                try {
+                    Thread.sleep(sleepTime / 1_000_000, (int) (sleepTime % 1_000_000));
+                } catch (InterruptedException ignored) { }
+                continue;
+            }
+
+            transferPendingTimeouts(tick);
+            expireTimeouts(wheel.get((int) (tick & mask)));
+
+            tick++;
+        }
+    }
+
+    /**
+     * Puts every pending timeout in the bucket of the tick in which it expires.
+     *
+     * @param tick is the current tick.
+     */
+    private void transferPendingTimeouts(long tick) {
+        Timeout timeout;
+
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+
+            long expirationTick = timeout.deadline / tickDuration;
+            timeout.remainingRounds = (expirationTick - tick) / wheel.size();
+
+            // timeouts already expired are put in the current bucket
+            wheel.get((int) (Math.max(expirationTick, tick) & mask)).add(timeout);
+        }
+    }
+
+    /**
+     * Executes the tasks of the expired timeouts in the given bucket, removing them together with the cancelled
+     * ones. The other timeouts are left in the bucket with one less round to wait.
+     *
+     * @param bucket is the bucket of the current tick.
+     */
+    private void expireTimeouts(List<Timeout> bucket) {
+        int kept = 0;
+
+        for (int i = 0; i < bucket.size(); i++) {
+            Timeout timeout = bucket.get(i);
+
+            if (timeout.cancelled) {
+                continue;
+            }
+
+            if (timeout.remainingRounds <= 0) {
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    Logger.writeCritical("Got exception while running a timer task: " + e);
+                }
+                continue;
+            }
+
+            timeout.remainingRounds--;
+            bucket.set(kept++, timeout);
+        }
+
+        bucket.subList(kept, bucket.size()).clear();
+    }
+}
@@ -0,0 +1,127 @@
+package it.polimi.ingsw.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Factory of the threads which run the per-connection loops of the networking and event layers
+ * (readers, writers and blocking remote calls). According to the selected {@link Threads.Mode}, these loops
+ * run either on platform threads or on virtual threads.
+ * <p>
+ * Virtual threads are available only from Java 21, while the application targets Java 17: they are created
+ * through reflection, hence {@link Threads.Mode#VIRTUAL} can be selected only on a runtime which supports them.
+ */
+public final class Threads {
+    /**
+     * Kind of threads on which the per-connection loops run.
+     */
+    public enum Mode {
+        /**
+         * Every loop runs on its own platform thread.
+         */
+        PLATFORM,
+
+        /**
+         * Every loop runs on its own virtual thread, scheduled on a small pool of carrier threads.
+         */
+        VIRTUAL
+    }
+
+    /**
+     * The kind of threads created by {@link Threads#start(String, Runnable)}.
+     */
+    private static volatile Mode mode = Mode.PLATFORM;
+
+    /**
+     * It is the {@code Thread.ofVirtual()} method, null if the runtime doesn't support virtual threads.
+     */
+    private static final Method OF_VIRTUAL;
+
+    /**
+     * It is the {@code Thread.Builder.name(String)} method, null if the runtime doesn't support virtual threads.
+     */
+    private static final Method BUILDER_NAME;
+
+    /**
+     * It is the {@code Thread.Builder.start(Runnable)} method, null if the runtime doesn't support virtual threads.
+     */
+    private static final Method BUILDER_START;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderStart = null;
+
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builder.getMethod("name", String.class);
+            builderStart = builder.getMethod("start", Runnable.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            // the runtime doesn't support virtual threads
+            ofVirtual = null;
+            builderName = null;
+            builderStart = null;
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_START = builderStart;
+    }
+
+    /**
+     * Threads is a utility class, it can't be instantiated.
+     */
+    private Threads() { }
+
+    /**
+     * @return true iff the runtime supports virtual threads.
+     */
+    public static boolean isVirtualSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Selects the kind of threads which will be created from now on.
+     *
+     * @param mode is the kind of threads which will be created.
+     * @throws UnsupportedOperationException if virtual threads are selected but the runtime doesn't support them.
+     */
+    public static void setMode(Mode mode) {
+        if (mode == Mode.VIRTUAL && !isVirtualSupported()) {
+            throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+        }
+
+        Threads.mode = mode;
+    }
+
+    /**
+     * @return the kind of threads which are currently created.
+     */
+    public static Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Creates and starts a new thread, of the kind selected through {@link Threads#setMode(Mode)}, which
+     * executes the given task.
+     *
+     * @param name is the name of the thread.
+     * @param task is the task executed by the thread.
+     * @return the started thread.
+     */
+    public static Thread start(String name, Runnable task) {
+        if (mode == Mode.VIRTUAL) {
+            try {
+                return (Thread) BUILDER_START.invoke(BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name), task);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("unable to start a virtual thread", e);
+            }
+        }
+
+        Thread thread = new Thread(task, name);
+        thread.start();
+        return thread;
+    }
+}
@@ -141,12 +141,12 @@ public class ConnectionMenuController extends Controller {
                         @Override
                         protected Void call() {
                             Connection connection = null;
+                            // retrieve the connection type from the scene properties
+                            boolean tcp = getScene().getProperties().get("connection").equals("TCP");
 
                             try {
-                                /* retrieve the connection type from the scene properties
-                                 * and create the connection
-                                 */
-                                if (getScene().getProperties().get("connection").equals("TCP")) {
+                                // create the connection
+                                if (tcp) {
                                     connection = new TCPConnection(ipAddress, port);
                                 } else {
                                     connection = new RMIConnection(ipAddress, port);
@@ -173,7 +173,9 @@ public class ConnectionMenuController extends Controller {
                                 popUp.askToHide();
                                 if(connection != null) {
                                     // if a connection has been created, set it as the transceiver and switch layout
-                                    setProperty("transceiver", new NetworkEventTransceiver(connection, new Object()));
+                                    setProperty("transceiver", new NetworkEventTransceiver(connection, new Object(), tcp
+                                        ? () -> new TCPConnection(ipAddress, port)
+                                        : () -> new RMIConnection(ipAddress, port)));
                                     switchLayout(UserLoginMenuController.NAME);
                                 }
                             }
@@ -37,6 +37,7 @@ import it.polimi.ingsw.event.Requester;
 import it.polimi.ingsw.model.game.Player;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import it.polimi.ingsw.view.displayable.DisplayablePlayer;
 import it.polimi.ingsw.model.goal.CommonGoal;
@@ -1199,28 +1200,22 @@ public class GameController extends Controller {
                     Integer columnInBoard = column;
 
                     boardButtons[row][column].setOnAction(event -> {
-                        new Thread(new Task<Void>() {
-                            @Override
-                            protected Void call() {
-                                try {
-                                    Coordinate coordinateInBoard = new Coordinate(rowInBoard, columnInBoard);
-
-                                    if (board.getSelectedCoordinates().contains(coordinateInBoard)) {
-                                        showResponse(deselectTileRequester.request(new DeselectTileEventData(
-                                            coordinateInBoard
-                                        )));
-                                    } else {
-                                        showResponse(selectTileRequester.request(new SelectTileEventData(
-                                            coordinateInBoard
-                                        )));
-                                    }
-                                } catch (DisconnectedException e) {
-                                    showResponse(Response.failure("Disconnected!"));
-                                }
-
-                                return null;
-                            }
-                        }).start();
+                        Coordinate coordinateInBoard = new Coordinate(rowInBoard, columnInBoard);
+
+                        // Requests are pipelined: consecutive clicks don't wait for the previous responses
+                        CompletableFuture<Response<VoidEventData>> response;
+                        if (board.getSelectedCoordinates().contains(coordinateInBoard)) {
+                            response = deselectTileRequester.requestAsync(new DeselectTileEventData(
+                                coordinateInBoard
+                            ));
+                        } else {
+                            response = selectTileRequester.requestAsync(new SelectTileEventData(
+                                coordinateInBoard
+                            ));
+                        }
+
+                        response.whenComplete((result, throwable) -> showResponse(throwable == null
+                            ? result : Response.failure("Disconnected!")));
                     });
                 }
             }
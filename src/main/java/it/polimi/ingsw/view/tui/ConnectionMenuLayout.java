@@ -118,10 +118,10 @@ public class ConnectionMenuLayout extends AppLayout {
             popUpQueue.add("Trying to connect to the server...", "CONNECTING-..........",
                 popUp -> {
                     Connection connection = null;
+                    boolean tcp = appDataProvider.getString(App.START_NAME, "connection").equals("TCP");
 
                     try {
-                        if (appDataProvider.getString(App.START_NAME, "connection")
-                            .equals("TCP")) {
+                        if (tcp) {
                             connection = new TCPConnection(ipAddress, port);
                         } else {
                             connection = new RMIConnection(ipAddress, port);
@@ -140,7 +140,9 @@ public class ConnectionMenuLayout extends AppLayout {
 
                         if (connection != null) {
                             synchronized (getLock()) {
-                                transceiver = new NetworkEventTransceiver(connection, getLock());
+                                transceiver = new NetworkEventTransceiver(connection, getLock(), tcp
+                                    ? () -> new TCPConnection(ipAddress, port)
+                                    : () -> new RMIConnection(ipAddress, port));
                                 switchAppLayout(LoginMenuLayout.NAME);
                             }
                         }
@@ -0,0 +1,38 @@
+package it.polimi.ingsw.controller.db;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+/**
+ * Measures the saves per second of every durability mode. It is excluded from the default test run, use
+ * {@code mvn test -Dgroups=benchmark -DexcludedGroups= -Dtest=DBManagerBenchmark} to run it.
+ */
+@Tag("benchmark")
+@Execution(ExecutionMode.SAME_THREAD)
+class DBManagerBenchmark {
+    @BeforeEach
+    public void setUp() {
+        DBManagerTest.setPositionDebug();
+        DBManagerTest.removeCache();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DBManager.setDurability(DBManager.Durability.NO_SYNC);
+        DBManagerTest.removeCache();
+    }
+
+    @Test
+    @DisplayName("Measure the saves per second of every durability mode")
+    void saveUser_everyDurability_savesPerSecond() throws Exception {
+        for (DBManager.Durability durability : DBManager.Durability.values()) {
+            DBManager.setDurability(durability);
+
+            long saves = DBManagerTest.saveConcurrently(8, 500);
+
+            System.out.printf("%s: %d saves/s with 8 threads%n", durability, saves * 1000 / 500);
+            Assertions.assertTrue(saves > 0);
+        }
+    }
+}
@@ -16,7 +16,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 @Execution(ExecutionMode.SAME_THREAD)
 public class DBManagerTest {
@@ -49,6 +52,11 @@ public class DBManagerTest {
     }
 
     public static void removeCache () {
+        // games are written in background, they mustn't be written while the folder is being removed
+        GamePersister.getInstance().flush();
+        // the users store is opened again in the new folder on next use
+        UserStore.getInstance().close();
+
         Path rootFolderPath = Paths.get(TEST_ROOT_FOLDER_NAME);
         if (rootFolderPath.toFile().exists()) {
             if (!rootFolderPath.toFile().isDirectory()) {
@@ -61,9 +69,50 @@ public class DBManagerTest {
 
     @AfterEach
     public void tearDown() {
+        DBManager.setDurability(DBManager.Durability.NO_SYNC);
         removeCache();
     }
 
+    private static long countTemporaryFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(TEST_ROOT_FOLDER_NAME, "users"))) {
+            return files.filter(path -> path.toString().endsWith(".tmp")).count();
+        }
+    }
+
+    static long saveConcurrently(int threads, long durationMillis) throws InterruptedException {
+        // Users are created in advance, since hashing their password is slower than saving them
+        List<List<User>> users = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            users.add(new ArrayList<>());
+            for (int j = 0; j < 16; j++) {
+                users.get(i).add(new User("saver" + i + "_" + j, "password"));
+            }
+        }
+
+        AtomicLong saves = new AtomicLong();
+        long deadline = System.nanoTime() + durationMillis * 1_000_000;
+        List<Thread> savers = new ArrayList<>();
+
+        for (List<User> saved : users) {
+            Thread thread = new Thread(() -> {
+                int j = 0;
+                do {
+                    DBManager.getUsersDBManager().save(saved.get(j++ % saved.size()));
+                    saves.incrementAndGet();
+                } while (System.nanoTime() < deadline);
+            });
+
+            savers.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : savers) {
+            thread.join();
+        }
+
+        return saves.get();
+    }
+
     @Test
     @DisplayName("Save a user")
     void saveUser_newUser_userSavedOnDisk() {
@@ -149,6 +198,79 @@ public class DBManagerTest {
         Assertions.assertFalse(DBManager.getUsersDBManager().getIdentifiableFilePath("delete_me")
             .toFile().exists());
     }
+
+    @Test
+    @DisplayName("A user is saved while another one is locked")
+    void saveUser_otherUserLocked_userSaved() throws Exception {
+        String other = "other";
+        for (int i = 0; DBManager.getUsersDBManager().getStripe(other)
+            == DBManager.getUsersDBManager().getStripe("locked"); i++) {
+            other = "other" + i;
+        }
+
+        User user = new User(other, "password");
+        Thread saver = new Thread(() -> DBManager.getUsersDBManager().save(user));
+
+        synchronized (DBManager.getUsersDBManager().getStripe("locked")) {
+            saver.start();
+            saver.join(5000);
+
+            Assertions.assertFalse(saver.isAlive());
+        }
+
+        Assertions.assertTrue(DBManager.getUsersDBManager().nameAlreadyInUse(other));
+    }
+
+    @Test
+    @DisplayName("Save a user through a temporary file renamed over the saved one")
+    void saveUserAndLoadUser_atomicRename_noTemporaryFileLeft() throws Exception {
+        DBManager.setDurability(DBManager.Durability.ATOMIC_RENAME);
+
+        DBManager.getUsersDBManager().save(new User("atomic", "first"));
+        DBManager.getUsersDBManager().save(new User("atomic", "second"));
+
+        Assertions.assertTrue(DBManager.getUsersDBManager().load("atomic").passwordMatches("second"));
+        Assertions.assertEquals(0, countTemporaryFiles());
+    }
+
+    @Test
+    @DisplayName("Saves submitted together are committed in the same group")
+    void writeDeferred_groupCommit_savesShareGroups() throws Exception {
+        DBManager.setDurability(DBManager.Durability.GROUP_COMMIT);
+
+        long groupsBefore = GroupCommitter.getInstance().getCommittedGroups();
+        List<GroupCommitter.Commit> commits = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            User user = new User("grouped" + i, "password");
+            commits.add(DBManager.getUsersDBManager().writeDeferred(user.getName(),
+                DBManager.getUsersDBManager().toJson(user)));
+        }
+
+        for (int i = 0; i < 8; i++) {
+            DBManager.getUsersDBManager().awaitWrite("grouped" + i, commits.get(i));
+            Assertions.assertTrue(DBManager.getUsersDBManager().load("grouped" + i).passwordMatches("password"));
+        }
+
+        Assertions.assertTrue(GroupCommitter.getInstance().getCommittedGroups() - groupsBefore < 8);
+        Assertions.assertEquals(0, countTemporaryFiles());
+    }
+
+    @Test
+    @DisplayName("Saves performed concurrently in group commit mode are all durable, deletions included")
+    void saveUserAndDeleteUser_groupCommit_allSaved() throws Exception {
+        DBManager.setDurability(DBManager.Durability.GROUP_COMMIT);
+
+        saveConcurrently(8, 200);
+
+        for (int i = 0; i < 8; i++) {
+            Assertions.assertTrue(DBManager.getUsersDBManager().nameAlreadyInUse("saver" + i + "_0"));
+        }
+        Assertions.assertEquals(0, countTemporaryFiles());
+
+        DBManager.getUsersDBManager().delete(new User("saver0_0", "password"));
+        Assertions.assertFalse(DBManager.getUsersDBManager().nameAlreadyInUse("saver0_0"));
+    }
+
     public static class MenuControllerTest {
 
         @BeforeEach
@@ -0,0 +1,126 @@
+package it.polimi.ingsw.controller.db;
+
+import it.polimi.ingsw.event.LocalEventTransceiver;
+import it.polimi.ingsw.model.game.Game;
+import it.polimi.ingsw.model.game.GameMove;
+import it.polimi.ingsw.utils.Coordinate;
+import it.polimi.ingsw.utils.Logger;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.nio.file.Files;
+
+@Execution(ExecutionMode.SAME_THREAD)
+class GameLogTest {
+    private Game game;
+    private GameLog log;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        DBManagerTest.setPositionDebug();
+        DBManagerTest.removeCache();
+        Logger.setShouldPrint(false);
+
+        game = new Game("logged", "Giacomo");
+        game.setTransceiver(new LocalEventTransceiver());
+
+        log = new GameLog(game);
+        game.setMoveListener(log::append);
+
+        game.addPlayer("Giacomo");
+        game.addPlayer("Michele");
+        game.addPlayer("Cristiano");
+
+        game.startGame("Giacomo");
+
+        game.connectPlayer("Giacomo");
+        game.connectPlayer("Michele");
+        game.connectPlayer("Cristiano");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DBManagerTest.removeCache();
+    }
+
+    private Game recovered() throws IdentifiableNotFoundException {
+        GamePersister.getInstance().flush();
+        Game loaded = DBManager.getGamesDBManager().load(game.getName());
+        GameLog.recover(loaded);
+
+        return loaded;
+    }
+
+    @Test
+    @DisplayName("Replaying the log on the snapshot brings the game to its last state")
+    void recover_movesAfterSnapshot_sameState() throws Exception {
+        game.selectTile("Giacomo", new Coordinate(4, 0));
+        game.selectTile("Giacomo", new Coordinate(5, 0));
+        game.insertTile("Giacomo", 4);
+        GamePersister.getInstance().flush();
+
+        Assertions.assertTrue(DBManager.getGamesDBManager().getLogFilePath(game.getName()).toFile().exists());
+
+        Game loaded = recovered();
+
+        Assertions.assertEquals(game.getMoveCount(), loaded.getMoveCount());
+        Assertions.assertEquals(game.getBoard(), loaded.getBoard());
+        Assertions.assertEquals(game.getCurrentPlayer(), loaded.getCurrentPlayer());
+        Assertions.assertEquals(game.getPlayers().get(0).getBookshelf(), loaded.getPlayers().get(0).getBookshelf());
+        Assertions.assertEquals(game.getPlayers().get(0).getPoints(), loaded.getPlayers().get(0).getPoints());
+    }
+
+    @Test
+    @DisplayName("A snapshot is taken after enough moves, truncating the log")
+    void append_compactionThresholdReached_logTruncated() throws Exception {
+        for (int i = 0; i < GameLog.COMPACTION_THRESHOLD; i++) {
+            game.selectTile("Giacomo", new Coordinate(4, 0));
+            game.forgetLastSelection("Giacomo", new Coordinate(4, 0));
+        }
+        GamePersister.getInstance().flush();
+
+        Assertions.assertTrue(GameLog.COMPACTION_THRESHOLD >
+            Files.readAllLines(DBManager.getGamesDBManager().getLogFilePath(game.getName())).size());
+
+        Game loaded = recovered();
+
+        Assertions.assertEquals(game.getMoveCount(), loaded.getMoveCount());
+        Assertions.assertEquals(game.getBoard(), loaded.getBoard());
+    }
+
+    @Test
+    @DisplayName("Moves which precede the snapshot are skipped, a torn last line is ignored")
+    void recover_staleAndTornLines_ignored() throws Exception {
+        game.selectTile("Giacomo", new Coordinate(4, 0));
+        log.snapshot();
+        game.selectTile("Giacomo", new Coordinate(5, 0));
+
+        GamePersister.getInstance().flush();
+
+        long moveCount = game.getMoveCount();
+        String stale = GameLog.encode(new GameMove(moveCount - 1, GameMove.Type.SELECT, new Coordinate(4, 0), 0));
+        String logged = Files.readString(DBManager.getGamesDBManager().getLogFilePath(game.getName()));
+        Files.writeString(DBManager.getGamesDBManager().getLogFilePath(game.getName()),
+            stale + "\n" + logged + (moveCount + 1) + " INSERT 0");
+
+        Game loaded = recovered();
+
+        Assertions.assertEquals(moveCount, loaded.getMoveCount());
+        Assertions.assertEquals(game.getBoard(), loaded.getBoard());
+    }
+
+    @Test
+    @DisplayName("Moves are encoded in a line and decoded back")
+    void decode_encodedMove_sameMove() {
+        GameMove select = new GameMove(12, GameMove.Type.SELECT, new Coordinate(3, 4), 0);
+        GameMove turn = new GameMove(13, GameMove.Type.TURN, null, 2);
+
+        Assertions.assertEquals("12 SELECT 3 4", GameLog.encode(select));
+        Assertions.assertEquals(select, GameLog.decode(GameLog.encode(select)));
+        Assertions.assertEquals(turn, GameLog.decode(GameLog.encode(turn)));
+
+        Assertions.assertNull(GameLog.decode("12 SELECT 3"));
+        Assertions.assertNull(GameLog.decode("12 JUMP 3"));
+    }
+}
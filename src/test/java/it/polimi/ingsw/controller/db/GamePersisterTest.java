@@ -0,0 +1,98 @@
+package it.polimi.ingsw.controller.db;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.nio.file.Files;
+import java.util.List;
+
+@Execution(ExecutionMode.SAME_THREAD)
+class GamePersisterTest {
+    private final GamePersister persister = GamePersister.getInstance();
+
+    @BeforeEach
+    public void setUp() {
+        DBManagerTest.setPositionDebug();
+        DBManagerTest.removeCache();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        persister.flush();
+        DBManager.setDurability(DBManager.Durability.NO_SYNC);
+        DBManagerTest.removeCache();
+    }
+
+    @Test
+    @DisplayName("Only the last snapshot is kept, followed by the lines appended after it")
+    void flush_manySnapshots_lastSnapshotAndFollowingLines() throws Exception {
+        long writtenBefore = persister.getWrittenSnapshots();
+        long coalescedBefore = persister.getCoalescedSnapshots();
+
+        for (int i = 0; i < 100; i++) {
+            persister.append("Persisted", "before " + i);
+            persister.snapshot("Persisted", "{\"snapshot\": " + i + "}");
+        }
+        persister.append("Persisted", "after");
+        persister.flush();
+
+        Assertions.assertEquals(0, persister.getPendingGames());
+        Assertions.assertEquals(0, persister.getLag());
+        Assertions.assertEquals(100, persister.getWrittenSnapshots() - writtenBefore
+            + persister.getCoalescedSnapshots() - coalescedBefore);
+
+        Assertions.assertEquals("{\"snapshot\": 99}",
+            Files.readString(DBManager.getGamesDBManager().getIdentifiableFilePath("persisted")));
+        Assertions.assertEquals(List.of("after"),
+            Files.readAllLines(DBManager.getGamesDBManager().getLogFilePath("persisted")));
+    }
+
+    @Test
+    @DisplayName("A deletion discards the pending changes and removes the files")
+    void flush_deletedGame_filesRemoved() {
+        persister.snapshot("deleted", "{}");
+        persister.append("deleted", "line");
+        persister.flush();
+
+        persister.append("deleted", "discarded");
+        persister.delete("deleted");
+        persister.flush();
+
+        Assertions.assertFalse(DBManager.getGamesDBManager().getIdentifiableFilePath("deleted").toFile().exists());
+        Assertions.assertFalse(DBManager.getGamesDBManager().getLogFilePath("deleted").toFile().exists());
+    }
+
+    @Test
+    @DisplayName("In group commit mode the appended logs are synced by the group committer")
+    void flush_groupCommit_logsSyncedByGroupCommitter() throws Exception {
+        DBManager.setDurability(DBManager.Durability.GROUP_COMMIT);
+        long committedBefore = GroupCommitter.getInstance().getCommittedFiles();
+
+        for (int i = 0; i < 3; i++) {
+            persister.append("logged" + i, "line " + i);
+        }
+        persister.flush();
+
+        Assertions.assertTrue(GroupCommitter.getInstance().getCommittedFiles() - committedBefore >= 3);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(List.of("line " + i),
+                Files.readAllLines(DBManager.getGamesDBManager().getLogFilePath("logged" + i)));
+        }
+    }
+
+    @Test
+    @DisplayName("A game name which isn't a valid path doesn't stop the following games from being persisted")
+    void flush_invalidGameName_laterGamesPersisted() throws Exception {
+        persister.snapshot("invalid\u0000name", "{}");
+        persister.append("invalid\u0000name", "line");
+        persister.flush();
+
+        persister.snapshot("valid", "{\"valid\": true}");
+        persister.flush();
+
+        Assertions.assertEquals(0, persister.getPendingGames());
+        Assertions.assertEquals("{\"valid\": true}",
+            Files.readString(DBManager.getGamesDBManager().getIdentifiableFilePath("valid")));
+    }
+}
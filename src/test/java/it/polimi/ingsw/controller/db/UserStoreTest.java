@@ -0,0 +1,183 @@
+package it.polimi.ingsw.controller.db;
+
+import it.polimi.ingsw.controller.User;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+@Execution(ExecutionMode.SAME_THREAD)
+class UserStoreTest {
+    private final UserStore store = UserStore.getInstance();
+
+    @BeforeEach
+    public void setUp() {
+        DBManagerTest.setPositionDebug();
+        DBManagerTest.removeCache();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        DBManagerTest.removeCache();
+    }
+
+    @Test
+    @DisplayName("Save and load a user, ignoring the case of the name")
+    void saveAndLoad_differentCase_sameUser() throws Exception {
+        store.save(new User("Giacomo", "ciao"));
+
+        User loaded = store.load("giACOMO");
+
+        Assertions.assertEquals("Giacomo", loaded.getName());
+        Assertions.assertTrue(loaded.passwordMatches("ciao"));
+        Assertions.assertTrue(store.nameAlreadyInUse("GIACOMO"));
+        Assertions.assertFalse(store.nameAlreadyInUse("Michele"));
+        Assertions.assertThrows(IdentifiableNotFoundException.class, () -> store.load("Michele"));
+    }
+
+    @Test
+    @DisplayName("Saving a user again replaces it")
+    void save_userAlreadySaved_userReplaced() throws Exception {
+        store.save(new User("tizio", "caio"));
+        store.save(new User("Tizio", "sempronio"));
+
+        Assertions.assertEquals(1, store.size());
+        Assertions.assertTrue(store.load("tizio").passwordMatches("sempronio"));
+    }
+
+    @Test
+    @DisplayName("Many users grow both files and survive a reopening")
+    void save_manyUsers_allLoadedAfterReopening() throws Exception {
+        for (int i = 0; i < 5000; i++) {
+            store.save(new User("user" + i, "password" + i));
+        }
+
+        store.close();
+
+        Assertions.assertEquals(5000, store.size());
+        for (int i = 0; i < 5000; i += 499) {
+            Assertions.assertTrue(store.load("USER" + i).passwordMatches("password" + i));
+        }
+    }
+
+    @Test
+    @DisplayName("A missing index is rebuilt from the data file")
+    void load_indexDeleted_indexRebuilt() throws Exception {
+        store.save(new User("first", "one"));
+        store.save(new User("second", "two"));
+        store.save(new User("first", "three"));
+
+        store.close();
+        Files.delete(DBManager.getRootFolderPath().resolve("users.idx"));
+
+        Assertions.assertEquals(2, store.size());
+        Assertions.assertTrue(store.load("first").passwordMatches("three"));
+        Assertions.assertTrue(store.load("second").passwordMatches("two"));
+    }
+
+    private static FileChannel openData() throws IOException {
+        return FileChannel.open(DBManager.getRootFolderPath().resolve("users.dat"), StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    }
+
+    private static Path indexPath() {
+        return DBManager.getRootFolderPath().resolve("users.idx");
+    }
+
+    private static long dataEnd(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8);
+        channel.read(header, 8);
+
+        return header.getLong(0);
+    }
+
+    @Test
+    @DisplayName("A record which doesn't match its CRC is discarded")
+    void load_tornLastRecord_recordDiscarded() throws Exception {
+        store.save(new User("kept", "one"));
+        store.close();
+        byte[] indexBefore = Files.readAllBytes(indexPath());
+
+        store.save(new User("torn", "two"));
+        store.close();
+
+        // The index which accounts for the torn record hasn't reached the storage device
+        try (FileChannel channel = openData()) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x55 }), dataEnd(channel) - 1);
+        }
+        Files.write(indexPath(), indexBefore);
+
+        Assertions.assertEquals(1, store.size());
+        Assertions.assertTrue(store.load("kept").passwordMatches("one"));
+        Assertions.assertFalse(store.nameAlreadyInUse("torn"));
+
+        store.save(new User("torn", "three"));
+        store.close();
+
+        Assertions.assertEquals(2, store.size());
+        Assertions.assertTrue(store.load("torn").passwordMatches("three"));
+    }
+
+    @Test
+    @DisplayName("An index which doesn't account for the last records is completed")
+    void load_indexBehindData_lastRecordsIndexed() throws Exception {
+        store.save(new User("first", "one"));
+        store.close();
+        byte[] indexBefore = Files.readAllBytes(indexPath());
+
+        store.save(new User("second", "two"));
+        store.save(new User("first", "three"));
+        store.close();
+        Files.write(indexPath(), indexBefore);
+
+        Assertions.assertEquals(2, store.size());
+        Assertions.assertTrue(store.load("first").passwordMatches("three"));
+        Assertions.assertTrue(store.load("second").passwordMatches("two"));
+    }
+
+    @Test
+    @DisplayName("Records beyond the ones written, whose lengths are garbage, are discarded")
+    void load_garbageTail_tailDiscarded() throws Exception {
+        store.save(new User("first", "one"));
+        store.save(new User("second", "two"));
+        store.close();
+
+        // The header has reached the storage device, while the record it accounts for hasn't
+        try (FileChannel channel = openData()) {
+            long end = dataEnd(channel);
+
+            channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), end);
+            channel.write(ByteBuffer.allocate(8).putLong(0, end + 64), 8);
+        }
+
+        Assertions.assertEquals(2, store.size());
+        Assertions.assertTrue(store.load("second").passwordMatches("two"));
+
+        store.save(new User("third", "three"));
+        Assertions.assertTrue(store.load("third").passwordMatches("three"));
+    }
+
+    @Test
+    @DisplayName("Users saved as JSON files are imported once")
+    void importFolder_usersInFolder_usersImported() throws Exception {
+        DBManager.getUsersDBManager().save(new User("foo", "bar"));
+        DBManager.getUsersDBManager().save(new User("baz", "qux"));
+        store.save(new User("foo", "changed"));
+        Assertions.assertFalse(store.isFolderImported());
+
+        Assertions.assertEquals(1, store.importFolder());
+        Assertions.assertEquals(0, store.importFolder());
+
+        store.close();
+        Assertions.assertTrue(store.isFolderImported());
+
+        Assertions.assertTrue(store.load("foo").passwordMatches("changed"));
+        Assertions.assertTrue(store.load("baz").passwordMatches("qux"));
+    }
+}
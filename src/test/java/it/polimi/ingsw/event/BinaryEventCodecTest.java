@@ -0,0 +1,125 @@
+package it.polimi.ingsw.event;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import it.polimi.ingsw.controller.Response;
+import it.polimi.ingsw.event.data.EncodingEventData;
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.client.LoginEventData;
+import it.polimi.ingsw.event.data.client.SelectTileEventData;
+import it.polimi.ingsw.event.data.game.BoardChangedEventData;
+import it.polimi.ingsw.event.data.game.InitialGameEventData;
+import it.polimi.ingsw.event.data.wrapper.SyncEventDataWrapper;
+import it.polimi.ingsw.model.game.Game;
+import it.polimi.ingsw.utils.Coordinate;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class BinaryEventCodecTest {
+    private final Gson gson = NetworkEventTransceiver.createGson();
+
+    private final BinaryEventCodec codec = BinaryEventCodec.getInstance();
+
+    private byte[] encode(EventData event) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(event, out);
+        return out.toByteArray();
+    }
+
+    private void assertRoundTrip(EventData event) throws IOException {
+        byte[] encoded = encode(event);
+
+        Assertions.assertTrue(BinaryEventCodec.isBinary(encoded));
+        Assertions.assertEquals(gson.toJson(event, EventData.class),
+            gson.toJson(codec.decode(encoded), EventData.class));
+    }
+
+    @Test
+    @DisplayName("Events and wrapped events are decoded as they were encoded")
+    void decode_encodedEvents_sameEvents() throws IOException {
+        assertRoundTrip(new LoginEventData("user", "pàssword"));
+        assertRoundTrip(new SelectTileEventData(new Coordinate(4, 5)));
+        assertRoundTrip(new EncodingEventData(NetworkEventTransceiver.Encoding.BINARY, BinaryEventCodec.SCHEMA));
+        assertRoundTrip(new SyncEventDataWrapper<>(42, new LoginEventData("user", "password")));
+        assertRoundTrip(new SyncEventDataWrapper<>(-7, Response.failure("Not authenticated")));
+    }
+
+    @Test
+    @DisplayName("The events of a whole turn are decoded as they were encoded, in less bytes than JSON")
+    void decode_gameEvents_sameEventsAndSmaller() throws Exception {
+        Game game = new Game("binary", "first");
+        LocalEventTransceiver transceiver = new LocalEventTransceiver();
+        List<EventData> events = new ArrayList<>();
+
+        game.setTransceiver(transceiver);
+        transceiver.registerListener(events::add);
+
+        game.addPlayer("first");
+        game.addPlayer("second");
+        game.startGame("first");
+        game.connectPlayer("first");
+        game.connectPlayer("second");
+        events.add(new InitialGameEventData(game.createView()));
+
+        String current = game.getCurrentPlayer().getUsername();
+        game.selectTile(current, game.createView().getBoard().getSelectableCoordinate().get(0));
+        game.insertTile(current, 0);
+
+        Assertions.assertTrue(events.stream().anyMatch(event -> event instanceof BoardChangedEventData));
+
+        int binarySize = 0;
+        int jsonSize = 0;
+        for (EventData event : events) {
+            assertRoundTrip(event);
+
+            binarySize += encode(event).length;
+            jsonSize += gson.toJson(event, EventData.class).length();
+        }
+
+        Assertions.assertTrue(binarySize * 2 < jsonSize);
+    }
+
+    @Test
+    @DisplayName("Messages which aren't binary events are rejected")
+    void decode_json_throwsIOException() {
+        byte[] json = gson.toJson(new LoginEventData("user", "password"), EventData.class).getBytes();
+
+        Assertions.assertFalse(BinaryEventCodec.isBinary(json));
+        Assertions.assertThrows(IOException.class, () -> codec.decode(json));
+        Assertions.assertThrows(IOException.class, () -> codec.decode(new byte[] { BinaryEventCodec.MAGIC, 127 }));
+    }
+
+    @Test
+    @DisplayName("Lengths exceeding the rest of the message are rejected without allocating them")
+    void decode_hugeLength_throwsIOException() throws IOException {
+        byte[] encoded = encode(new LoginEventData("user", "password"));
+
+        // The length of the username, which follows the magic byte, the tag and the non-null flag, is replaced
+        // by the largest length allowed by a variable length integer
+        byte[] forged = Arrays.copyOf(encoded, encoded.length + 4);
+        System.arraycopy(new byte[] { -1, -1, -1, -1, 7 }, 0, forged, 3, 5);
+        System.arraycopy(encoded, 4, forged, 8, encoded.length - 4);
+
+        Assertions.assertThrows(IOException.class, () -> codec.decode(forged));
+    }
+
+    @Test
+    @DisplayName("An encoding announcement without the schema, as sent by an older version, doesn't match the schema")
+    void schema_announcementWithoutSchema_differentSchema() {
+        JsonObject announcement = gson.toJsonTree(new EncodingEventData(NetworkEventTransceiver.Encoding.BINARY,
+            BinaryEventCodec.SCHEMA), EventData.class).getAsJsonObject();
+        announcement.getAsJsonObject("data").remove("schema");
+
+        EncodingEventData older = (EncodingEventData) gson.fromJson(announcement, EventData.class);
+
+        Assertions.assertEquals(NetworkEventTransceiver.Encoding.BINARY, older.encoding());
+        Assertions.assertNotEquals(BinaryEventCodec.SCHEMA, older.schema());
+    }
+}
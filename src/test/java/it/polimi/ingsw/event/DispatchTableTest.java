@@ -0,0 +1,77 @@
+package it.polimi.ingsw.event;
+
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.client.LoginEventData;
+import it.polimi.ingsw.event.data.client.LogoutEventData;
+import it.polimi.ingsw.event.receiver.EventListener;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class DispatchTableTest {
+    private final DispatchTable table = new DispatchTable();
+
+    @Test
+    @DisplayName("Listeners for every event and for a single identifier are returned in order of registration")
+    void listenersFor_mixedRegistrations_registrationOrder() {
+        EventListener<EventData> first = event -> { };
+        EventListener<EventData> login = event -> { };
+        EventListener<EventData> second = event -> { };
+        EventListener<EventData> logout = event -> { };
+        EventListener<EventData> secondLogin = event -> { };
+
+        table.add(first);
+        table.add(LoginEventData.ID, login);
+        table.add(second);
+        table.add(LogoutEventData.ID, logout);
+        table.add(LoginEventData.ID, secondLogin);
+
+        Assertions.assertArrayEquals(new Object[] { first, login, second, secondLogin },
+            table.listenersFor(LoginEventData.ID));
+        Assertions.assertArrayEquals(new Object[] { first, second, logout }, table.listenersFor(LogoutEventData.ID));
+        Assertions.assertArrayEquals(new Object[] { first, second }, table.listenersFor("NEVER_REGISTERED"));
+    }
+
+    @Test
+    @DisplayName("Unregistered listeners aren't returned anymore")
+    void remove_registeredListeners_notReturned() {
+        EventListener<EventData> generic = event -> { };
+        EventListener<EventData> login = event -> { };
+
+        table.add(generic);
+        table.add(LoginEventData.ID, login);
+
+        table.remove(LogoutEventData.ID, login);
+        Assertions.assertArrayEquals(new Object[] { generic, login }, table.listenersFor(LoginEventData.ID));
+
+        table.remove(LoginEventData.ID, login);
+        table.remove(generic);
+        Assertions.assertEquals(0, table.listenersFor(LoginEventData.ID).length);
+
+        table.add(LoginEventData.ID, login);
+        table.clear();
+        Assertions.assertEquals(0, table.listenersFor(LoginEventData.ID).length);
+    }
+
+    @Test
+    @DisplayName("Cast receivers on a transceiver are notified only of their events")
+    void castEventReceiver_keyedTransceiver_onlyMatchingEvents() {
+        LocalEventTransceiver transceiver = new LocalEventTransceiver();
+        List<EventData> logins = new ArrayList<>();
+        List<EventData> all = new ArrayList<>();
+
+        LoginEventData.castEventReceiver(transceiver).registerListener(logins::add);
+        transceiver.registerListener(all::add);
+
+        EventData login = new LoginEventData("user", "password");
+        EventData logout = new LogoutEventData();
+        transceiver.broadcast(login);
+        transceiver.broadcast(logout);
+
+        Assertions.assertEquals(List.of(login), logins);
+        Assertions.assertEquals(List.of(login, logout), all);
+    }
+}
@@ -0,0 +1,72 @@
+package it.polimi.ingsw.event;
+
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.client.LoginEventData;
+import it.polimi.ingsw.event.data.client.LogoutEventData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+class LocalEventTransceiverTest {
+    private static final int BROADCASTS = 100000;
+
+    private int handled;
+
+    @Test
+    @DisplayName("Broadcasting an event to unchanged listeners allocates nothing")
+    void broadcast_unchangedListeners_noAllocation() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean()
+            instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        LocalEventTransceiver transceiver = new LocalEventTransceiver();
+        transceiver.registerListener(event -> handled++);
+        LoginEventData.castEventReceiver(transceiver).registerListener(event -> handled++);
+        LogoutEventData.castEventReceiver(transceiver).registerListener(event -> handled++);
+
+        EventData login = new LoginEventData("user", "password");
+
+        // The first broadcasts build the snapshot and let the JIT compile the delivery path
+        for (int i = 0; i < BROADCASTS; i++) {
+            transceiver.broadcast(login);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < BROADCASTS; i++) {
+            transceiver.broadcast(login);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        Assertions.assertEquals(4 * BROADCASTS, handled);
+        // Less than a byte per broadcast leaves room only for the measurement itself
+        Assertions.assertTrue(allocated < BROADCASTS, "Allocated " + allocated + " bytes");
+    }
+
+    @Test
+    @DisplayName("Listeners registered while an event is handled are notified from the next event")
+    void broadcast_registrationDuringHandling_notifiedFromNextEvent() {
+        LocalEventTransceiver transceiver = new LocalEventTransceiver();
+        List<EventData> lateEvents = new ArrayList<>();
+
+        transceiver.registerListener(event -> {
+            if (event instanceof LoginEventData) {
+                transceiver.registerListener(lateEvents::add);
+            }
+        });
+
+        EventData logout = new LogoutEventData();
+        transceiver.broadcast(new LoginEventData("user", "password"));
+        transceiver.broadcast(logout);
+
+        Assertions.assertEquals(List.of(logout), lateEvents);
+    }
+}
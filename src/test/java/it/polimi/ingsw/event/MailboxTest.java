@@ -0,0 +1,120 @@
+package it.polimi.ingsw.event;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class MailboxTest {
+    @Test
+    @DisplayName("Deliveries are taken in order of posting and the depth is tracked")
+    void take_postedDeliveries_inOrder() {
+        Mailbox mailbox = new Mailbox();
+        List<Integer> run = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            int delivery = i;
+            mailbox.post(() -> run.add(delivery));
+        }
+
+        Assertions.assertEquals(5, mailbox.depth());
+        mailbox.take().run();
+        mailbox.take().run();
+        mailbox.post(() -> run.add(5));
+
+        Assertions.assertEquals(4, mailbox.depth());
+        Assertions.assertEquals(5, mailbox.maxDepth());
+        Assertions.assertEquals(2, mailbox.taken());
+
+        for (int i = 0; i < 4; i++) {
+            mailbox.take().run();
+        }
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 5), run);
+        Assertions.assertEquals(0, mailbox.depth());
+    }
+
+    @Test
+    @DisplayName("A closed mailbox hands out the posted deliveries and then null")
+    void take_closed_remainingThenNull() {
+        Mailbox mailbox = new Mailbox();
+        List<String> run = new ArrayList<>();
+
+        mailbox.post(() -> run.add("before"));
+        mailbox.close();
+        mailbox.post(() -> run.add("after"));
+
+        mailbox.take().run();
+        Assertions.assertNull(mailbox.take());
+        Assertions.assertEquals(List.of("before"), run);
+    }
+
+    @Test
+    @DisplayName("The poster doesn't wait for a slow dispatcher until the mailbox is full")
+    void post_slowDispatcher_doesNotBlock() throws InterruptedException {
+        Mailbox mailbox = new Mailbox();
+        Object slowListener = new Object();
+
+        Thread dispatcher = new Thread(() -> {
+            Runnable delivery;
+            while ((delivery = mailbox.take()) != null) {
+                delivery.run();
+            }
+        });
+        dispatcher.start();
+
+        synchronized (slowListener) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                mailbox.post(() -> {
+                    synchronized (slowListener) { }
+                });
+            }
+
+            // The dispatcher is stuck on the first delivery while the poster goes on
+            Assertions.assertTrue(System.nanoTime() - start < 1_000_000_000L);
+            Assertions.assertTrue(mailbox.depth() >= 999);
+        }
+
+        mailbox.close();
+        dispatcher.join(5000);
+        Assertions.assertEquals(1000, mailbox.taken());
+    }
+
+    @Test
+    @DisplayName("The poster waits once the mailbox is full, until a delivery is taken or the mailbox is closed")
+    void post_fullMailbox_waitsForDispatcher() throws InterruptedException {
+        Mailbox mailbox = new Mailbox(2);
+        Thread poster = new Thread(() -> {
+            for (int i = 0; i < 4; i++) {
+                mailbox.post(() -> { });
+            }
+        });
+
+        poster.start();
+        poster.join(500);
+
+        Assertions.assertTrue(poster.isAlive());
+        Assertions.assertEquals(2, mailbox.depth());
+
+        mailbox.take();
+        poster.join(500);
+
+        Assertions.assertTrue(poster.isAlive());
+        Assertions.assertEquals(2, mailbox.depth());
+        Assertions.assertEquals(2, mailbox.maxDepth());
+
+        mailbox.close();
+        poster.join(5000);
+
+        Assertions.assertFalse(poster.isAlive());
+        Assertions.assertEquals(2, mailbox.depth());
+    }
+
+    @Test
+    @DisplayName("A mailbox without capacity is rejected")
+    void constructor_nonPositiveCapacity_throwsIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Mailbox(0));
+    }
+}
@@ -0,0 +1,71 @@
+package it.polimi.ingsw.event;
+
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.client.LoginEventData;
+import it.polimi.ingsw.event.data.game.BoardChangedEventData;
+import it.polimi.ingsw.model.board.Board;
+import it.polimi.ingsw.model.tile.Tile;
+import it.polimi.ingsw.model.tile.TileColor;
+import it.polimi.ingsw.model.tile.TileVersion;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+class PreEncodedEventTest {
+    private final List<EventData> encodedEvents = new ArrayList<>();
+
+    private final Function<EventData, byte[]> encoder = event -> {
+        encodedEvents.add(event);
+        return event.getId().getBytes();
+    };
+
+    @Test
+    @DisplayName("The event is encoded once for every encoding")
+    void encode_manyRecipients_encodedOncePerEncoding() {
+        EventData login = new LoginEventData("user", "password");
+        PreEncodedEvent event = new PreEncodedEvent(login);
+
+        byte[] first = event.encode(login, NetworkEventTransceiver.Encoding.JSON, encoder);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertSame(first, event.encode(login, NetworkEventTransceiver.Encoding.JSON, encoder));
+        }
+        event.encode(login, NetworkEventTransceiver.Encoding.BINARY, encoder);
+        event.encode(login, NetworkEventTransceiver.Encoding.BINARY, encoder);
+
+        Assertions.assertEquals(List.of(login, login), encodedEvents);
+    }
+
+    @Test
+    @DisplayName("Equal deltas derived from the event by different transceivers are encoded once")
+    void encode_equalDeltas_encodedOnce() {
+        Board board = new Board();
+        for (int i = 0; i < 20; i++) {
+            board.fillRandomly(Tile.getInstance(TileColor.values()[i % 6], TileVersion.FIRST), 2);
+        }
+        PreEncodedEvent event = new PreEncodedEvent(new BoardChangedEventData(board.createView()));
+
+        for (int i = 0; i < 4; i++) {
+            StateDeltaCodec codec = new StateDeltaCodec(() -> { });
+            EventData delta = codec.encode(event.getEventData()).get(0);
+
+            event.encode(delta, NetworkEventTransceiver.Encoding.JSON, encoder);
+        }
+
+        Assertions.assertEquals(1, encodedEvents.size());
+    }
+
+    @Test
+    @DisplayName("An event which can't be encoded is encoded again by the next recipient")
+    void encode_failedEncoding_notShared() {
+        EventData login = new LoginEventData("user", "password");
+        PreEncodedEvent event = new PreEncodedEvent(login);
+
+        Assertions.assertNull(event.encode(login, NetworkEventTransceiver.Encoding.BINARY, e -> null));
+        Assertions.assertNotNull(event.encode(login, NetworkEventTransceiver.Encoding.BINARY, encoder));
+        Assertions.assertEquals(List.of(login), encodedEvents);
+    }
+}
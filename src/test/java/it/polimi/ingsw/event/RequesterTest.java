@@ -0,0 +1,116 @@
+package it.polimi.ingsw.event;
+
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.client.LoginEventData;
+import it.polimi.ingsw.event.data.client.SelectTileEventData;
+import it.polimi.ingsw.event.data.internal.PlayerDisconnectedInternalEventData;
+import it.polimi.ingsw.event.data.wrapper.SyncEventDataWrapper;
+import it.polimi.ingsw.networking.DisconnectedException;
+import it.polimi.ingsw.utils.Coordinate;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+class RequesterTest {
+    private LocalEventTransceiver transceiver;
+
+    private Requester<LoginEventData, SelectTileEventData> requester;
+
+    private final List<Integer> sentCounts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        transceiver = new LocalEventTransceiver();
+        requester = LoginEventData.requester(transceiver, transceiver, new Object());
+        requester.registerAllListeners();
+
+        transceiver.registerListener(event -> {
+            if (event instanceof SyncEventDataWrapper<?> wrapper
+                && wrapper.getWrappedData() instanceof SelectTileEventData) {
+                sentCounts.add(wrapper.getCount());
+            }
+        });
+    }
+
+    private void respond(int count, String username) {
+        transceiver.broadcast(new SyncEventDataWrapper<>(count, new LoginEventData(username, "password")));
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) {
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+            () -> future.get(5, TimeUnit.SECONDS));
+
+        return exception.getCause();
+    }
+
+    @Test
+    @DisplayName("Many requests are in flight at once and every response completes its own request")
+    void requestAsync_responsesOutOfOrder_matchedToRequests() throws Exception {
+        List<CompletableFuture<LoginEventData>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(requester.requestAsync(new SelectTileEventData(new Coordinate(i, i))));
+        }
+
+        Assertions.assertEquals(3, sentCounts.size());
+        Assertions.assertTrue(futures.stream().noneMatch(CompletableFuture::isDone));
+
+        for (int i = 2; i >= 0; i--) {
+            respond(sentCounts.get(i), "user" + i);
+            Assertions.assertEquals(i, futures.stream().filter(future -> !future.isDone()).count());
+        }
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("user" + i, futures.get(i).get().getUsername());
+        }
+    }
+
+    @Test
+    @DisplayName("A request without a response before the deadline fails with a timeout")
+    void requestAsync_noResponse_timeout() {
+        CompletableFuture<LoginEventData> future = requester.requestAsync(
+            new SelectTileEventData(new Coordinate(0, 0)), 200);
+
+        Assertions.assertInstanceOf(TimeoutException.class, failure(future));
+
+        // A late response is ignored
+        respond(sentCounts.get(0), "late");
+        Assertions.assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    @DisplayName("Pending requests fail on disconnection, and so do the following ones")
+    void requestAsync_disconnection_disconnectedException() {
+        CompletableFuture<LoginEventData> pending = requester.requestAsync(
+            new SelectTileEventData(new Coordinate(0, 0)));
+
+        transceiver.broadcast(new PlayerDisconnectedInternalEventData());
+
+        Assertions.assertInstanceOf(DisconnectedException.class, failure(pending));
+        Assertions.assertInstanceOf(DisconnectedException.class, failure(requester.requestAsync(
+            new SelectTileEventData(new Coordinate(1, 1)))));
+    }
+
+    @Test
+    @DisplayName("A cancelled request ignores its response")
+    void requestAsync_cancelled_responseIgnored() throws Exception {
+        CompletableFuture<LoginEventData> cancelled = requester.requestAsync(
+            new SelectTileEventData(new Coordinate(0, 0)));
+        CompletableFuture<LoginEventData> other = requester.requestAsync(
+            new SelectTileEventData(new Coordinate(1, 1)));
+
+        cancelled.cancel(false);
+        respond(sentCounts.get(0), "cancelled");
+        respond(sentCounts.get(1), "other");
+
+        Assertions.assertTrue(cancelled.isCancelled());
+        Assertions.assertEquals("other", other.get().getUsername());
+    }
+}
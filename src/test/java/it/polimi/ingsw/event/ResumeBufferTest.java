@@ -0,0 +1,55 @@
+package it.polimi.ingsw.event;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class ResumeBufferTest {
+    private final ResumeBuffer buffer = new ResumeBuffer(3);
+
+    private static byte[] message(int i) {
+        return new byte[] { (byte) i };
+    }
+
+    @Test
+    @DisplayName("Only the messages which follow the received ones are returned, in order")
+    void since_partiallyReceived_missedMessagesInOrder() {
+        for (int i = 1; i <= 3; i++) {
+            Assertions.assertEquals(i, buffer.add(message(i)));
+        }
+
+        List<byte[]> missed = buffer.since(1);
+
+        Assertions.assertEquals(2, missed.size());
+        Assertions.assertArrayEquals(message(2), missed.get(0));
+        Assertions.assertArrayEquals(message(3), missed.get(1));
+        Assertions.assertTrue(buffer.since(3).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A peer which has missed an evicted message can't resume")
+    void since_evictedMessages_null() {
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(message(i));
+        }
+
+        Assertions.assertEquals(5, buffer.lastSequence());
+        Assertions.assertNull(buffer.since(1));
+
+        List<byte[]> missed = buffer.since(2);
+        Assertions.assertEquals(3, missed.size());
+        Assertions.assertArrayEquals(message(3), missed.get(0));
+        Assertions.assertArrayEquals(message(5), missed.get(2));
+    }
+
+    @Test
+    @DisplayName("A peer which claims more messages than the sent ones can't resume")
+    void since_moreThanSent_null() {
+        buffer.add(message(1));
+
+        Assertions.assertNull(buffer.since(2));
+        Assertions.assertTrue(new ResumeBuffer(1).since(0).isEmpty());
+    }
+}
@@ -0,0 +1,233 @@
+package it.polimi.ingsw.event;
+
+import it.polimi.ingsw.controller.Response;
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.client.LoginEventData;
+import it.polimi.ingsw.event.data.client.StateResyncRequestEventData;
+import it.polimi.ingsw.event.data.game.BoardChangedEventData;
+import it.polimi.ingsw.event.data.game.BookshelfHasChangedEventData;
+import it.polimi.ingsw.event.data.game.PersonalGoalSetEventData;
+import it.polimi.ingsw.event.data.wrapper.SyncEventDataWrapper;
+import it.polimi.ingsw.model.board.Board;
+import it.polimi.ingsw.model.bookshelf.BookshelfView;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class SendQueueTest {
+    private static List<EventData> logins(int count) {
+        List<EventData> events = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            events.add(new LoginEventData("user" + i, "password"));
+        }
+
+        return events;
+    }
+
+    private static List<EventData> takeEvents(SendQueue queue) {
+        return queue.takeBatch().stream().map(PreEncodedEvent::getEventData).toList();
+    }
+
+    @Test
+    @DisplayName("All the queued events are taken in a single batch, in order")
+    void takeBatch_queuedEvents_singleBatch() {
+        SendQueue queue = new SendQueue();
+        List<EventData> events = logins(5);
+
+        events.forEach(queue::add);
+
+        Assertions.assertEquals(events, takeEvents(queue));
+    }
+
+    @Test
+    @DisplayName("Batches don't exceed the maximum size")
+    void takeBatch_moreThanMaxBatchSize_splitInBatches() {
+        SendQueue queue = new SendQueue();
+        queue.setMaxBatchSize(3);
+        List<EventData> events = logins(7);
+
+        events.forEach(queue::add);
+
+        Assertions.assertEquals(events.subList(0, 3), takeEvents(queue));
+        Assertions.assertEquals(events.subList(3, 6), takeEvents(queue));
+        Assertions.assertEquals(events.subList(6, 7), takeEvents(queue));
+    }
+
+    @Test
+    @DisplayName("The consumer lingers for the batch to fill up")
+    void takeBatch_lingerTime_waitsForMoreEvents() {
+        SendQueue queue = new SendQueue();
+        queue.setMaxBatchSize(2);
+        queue.setLingerTime(2000);
+        List<EventData> events = logins(2);
+
+        queue.add(events.get(0));
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) { }
+
+            queue.add(events.get(1));
+        }).start();
+
+        long start = System.currentTimeMillis();
+        Assertions.assertEquals(events, takeEvents(queue));
+        // the batch is taken as soon as it is full, without waiting the whole linger time
+        Assertions.assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test
+    @DisplayName("A closed queue hands out the remaining events and then an empty batch")
+    void takeBatch_closed_remainingThenEmpty() {
+        SendQueue queue = new SendQueue();
+        List<EventData> events = logins(2);
+
+        events.forEach(queue::add);
+        queue.close();
+        queue.add(new LoginEventData("late", "password"));
+
+        Assertions.assertEquals(events, takeEvents(queue));
+        Assertions.assertTrue(takeEvents(queue).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Invalid configurations are rejected")
+    void setters_invalidValues_throwIllegalArgumentException() {
+        SendQueue queue = new SendQueue();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> queue.setMaxBatchSize(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> queue.setLingerTime(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> queue.setMaxSize(0));
+    }
+
+    @Test
+    @DisplayName("Events added to a full queue are rejected")
+    void add_fullQueue_rejected() {
+        SendQueue queue = new SendQueue();
+        queue.setMaxSize(3);
+        List<EventData> events = logins(4);
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(queue.add(events.get(i)));
+        }
+        Assertions.assertFalse(queue.add(events.get(3)));
+
+        Assertions.assertEquals(events.subList(0, 3), takeEvents(queue));
+        Assertions.assertTrue(queue.add(events.get(3)));
+    }
+
+    @Test
+    @DisplayName("A resync request added to a full queue is accepted")
+    void add_fullQueueResyncRequest_accepted() {
+        SendQueue queue = new SendQueue();
+        queue.setMaxSize(1);
+        EventData login = new LoginEventData("user", "password");
+        EventData resyncRequest = new StateResyncRequestEventData();
+
+        Assertions.assertTrue(queue.add(login));
+        Assertions.assertTrue(queue.add(resyncRequest));
+
+        Assertions.assertEquals(List.of(resyncRequest, login), takeEvents(queue));
+    }
+
+    @Test
+    @DisplayName("A reply added to a full queue is rejected and can't be dropped as a superseded event")
+    void add_fullQueueReply_rejectedNotConflatable() {
+        SendQueue queue = new SendQueue();
+        queue.setMaxSize(1);
+        EventData reply = new SyncEventDataWrapper<>(1, Response.success("ok"));
+
+        Assertions.assertTrue(queue.add(new BoardChangedEventData(new Board().createView())));
+        Assertions.assertFalse(queue.add(reply));
+
+        Assertions.assertNull(SendQueue.conflationKey(reply));
+        Assertions.assertNull(SendQueue.conflationKey(new PersonalGoalSetEventData(0)));
+        Assertions.assertNotNull(SendQueue.conflationKey(new BoardChangedEventData(new Board().createView())));
+    }
+
+    @Test
+    @DisplayName("A newer state event replaces the older one and is queued after the state events in between")
+    void add_supersedingEvents_conflated() {
+        SendQueue queue = new SendQueue();
+        EventData oldBoard = new BoardChangedEventData(new Board().createView());
+        EventData firstBookshelf = new BookshelfHasChangedEventData("first", new BookshelfView());
+        EventData secondBookshelf = new BookshelfHasChangedEventData("second", new BookshelfView());
+        EventData login = new LoginEventData("user", "password");
+        EventData newBoard = new BoardChangedEventData(new Board().createView());
+        EventData newFirstBookshelf = new BookshelfHasChangedEventData("first", new BookshelfView());
+
+        queue.add(oldBoard);
+        queue.add(firstBookshelf);
+        queue.add(secondBookshelf);
+        queue.add(login);
+        queue.add(newBoard);
+        queue.add(newFirstBookshelf);
+
+        Assertions.assertEquals(4, queue.size());
+        List<EventData> batch = takeEvents(queue);
+        Assertions.assertEquals(4, batch.size());
+        Assertions.assertSame(secondBookshelf, batch.get(0));
+        Assertions.assertSame(login, batch.get(1));
+        Assertions.assertSame(newBoard, batch.get(2));
+        Assertions.assertSame(newFirstBookshelf, batch.get(3));
+    }
+
+    @Test
+    @DisplayName("A superseding event gets through a full queue")
+    void add_fullQueueSupersedingEvent_accepted() {
+        SendQueue queue = new SendQueue();
+        queue.setMaxSize(2);
+        EventData oldBoard = new BoardChangedEventData(new Board().createView());
+        EventData newBoard = new BoardChangedEventData(new Board().createView());
+
+        queue.add(oldBoard);
+        queue.add(new LoginEventData("user", "password"));
+
+        Assertions.assertTrue(queue.add(newBoard));
+        Assertions.assertEquals(2, queue.size());
+        Assertions.assertSame(newBoard, takeEvents(queue).get(1));
+    }
+
+    @Test
+    @DisplayName("A taken state event isn't superseded by a newer one")
+    void add_afterTakingStateEvent_bothSent() {
+        SendQueue queue = new SendQueue();
+        EventData oldBoard = new BoardChangedEventData(new Board().createView());
+        EventData newBoard = new BoardChangedEventData(new Board().createView());
+
+        queue.add(oldBoard);
+        Assertions.assertEquals(List.of(oldBoard), takeEvents(queue));
+
+        queue.add(newBoard);
+        Assertions.assertEquals(List.of(newBoard), takeEvents(queue));
+    }
+
+    @Test
+    @DisplayName("Replies overtake the queued game events, which keep their order")
+    void takeBatch_mixedPriorities_repliesFirst() {
+        SendQueue queue = new SendQueue();
+        queue.setMaxBatchSize(3);
+        EventData board = new BoardChangedEventData(new Board().createView());
+        EventData personalGoal = new PersonalGoalSetEventData(0);
+        EventData bookshelf = new BookshelfHasChangedEventData("user", new BookshelfView());
+        EventData firstReply = new SyncEventDataWrapper<>(1, Response.success("ok"));
+        EventData secondReply = new SyncEventDataWrapper<>(2, Response.success("ok"));
+
+        queue.add(board);
+        queue.add(personalGoal);
+        queue.add(bookshelf);
+        queue.add(firstReply);
+
+        Assertions.assertEquals(SendQueue.Priority.BULK, SendQueue.priority(board));
+        Assertions.assertEquals(SendQueue.Priority.BULK, SendQueue.priority(personalGoal));
+        Assertions.assertEquals(SendQueue.Priority.CONTROL, SendQueue.priority(firstReply));
+        Assertions.assertEquals(List.of(firstReply, board, personalGoal), takeEvents(queue));
+
+        queue.add(secondReply);
+        Assertions.assertEquals(List.of(secondReply, bookshelf), takeEvents(queue));
+    }
+}
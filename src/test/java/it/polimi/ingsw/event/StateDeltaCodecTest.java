@@ -0,0 +1,135 @@
+package it.polimi.ingsw.event;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import it.polimi.ingsw.controller.db.TileTypeAdapter;
+import it.polimi.ingsw.event.data.EventData;
+import it.polimi.ingsw.event.data.client.LoginEventData;
+import it.polimi.ingsw.event.data.game.BoardChangedEventData;
+import it.polimi.ingsw.event.data.game.BoardDeltaEventData;
+import it.polimi.ingsw.event.data.game.BookshelfDeltaEventData;
+import it.polimi.ingsw.event.data.game.BookshelfHasChangedEventData;
+import it.polimi.ingsw.event.data.internal.StateResyncInternalEventData;
+import it.polimi.ingsw.model.board.Board;
+import it.polimi.ingsw.model.bookshelf.Bookshelf;
+import it.polimi.ingsw.model.tile.Tile;
+import it.polimi.ingsw.model.tile.TileColor;
+import it.polimi.ingsw.model.tile.TileVersion;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class StateDeltaCodecTest {
+    private Board board;
+
+    private int resyncRequests;
+
+    private StateDeltaCodec sender;
+
+    private StateDeltaCodec receiver;
+
+    @BeforeEach
+    void setUp() {
+        board = new Board();
+        for (int i = 0; i < 40; i++) {
+            board.fillRandomly(Tile.getInstance(TileColor.values()[i % 6], TileVersion.FIRST), 4);
+        }
+
+        resyncRequests = 0;
+        sender = new StateDeltaCodec(() -> { });
+        receiver = new StateDeltaCodec(() -> resyncRequests++);
+    }
+
+    private final Gson gson = new GsonBuilder()
+        .registerTypeAdapterFactory(new EventDataTypeAdapterFactory())
+        .registerTypeAdapter(Tile.class, new TileTypeAdapter())
+        .create();
+
+    private EventData transfer(EventData event) {
+        List<EventData> encoded = sender.encode(event);
+        Assertions.assertEquals(1, encoded.size());
+
+        // the delta goes through the same serialization used on the network
+        String json = gson.toJson(encoded.get(0), EventData.class);
+        return receiver.decode(gson.fromJson(json, EventData.class));
+    }
+
+    @Test
+    @DisplayName("Board changes are rebuilt from the deltas")
+    void decode_boardDeltas_sameBoard() throws Exception {
+        BoardChangedEventData first = new BoardChangedEventData(board.createView());
+        Assertions.assertEquals(first, transfer(first));
+
+        board.selectTile(board.getSelectableCoordinate().get(0));
+        BoardChangedEventData selected = new BoardChangedEventData(board.createView());
+        List<EventData> encoded = sender.encode(selected);
+
+        // only the selection has changed
+        Assertions.assertFalse(((BoardDeltaEventData) encoded.get(0)).snapshot());
+        Assertions.assertEquals(0, ((BoardDeltaEventData) encoded.get(0)).delta().size());
+        Assertions.assertEquals(selected, receiver.decode(encoded.get(0)));
+
+        board.draw();
+        BoardChangedEventData drawn = new BoardChangedEventData(board.createView());
+        Assertions.assertEquals(drawn, transfer(drawn));
+        Assertions.assertEquals(0, resyncRequests);
+    }
+
+    @Test
+    @DisplayName("Bookshelf changes are rebuilt from the deltas of the same player")
+    void decode_bookshelfDeltas_sameBookshelf() {
+        Bookshelf bookshelf = new Bookshelf();
+        Tile tile = Tile.getInstance(TileColor.GREEN, TileVersion.FIRST);
+
+        bookshelf.insertTiles(List.of(tile), 0);
+        Assertions.assertEquals(new BookshelfHasChangedEventData("user", bookshelf.createView()),
+            transfer(new BookshelfHasChangedEventData("user", bookshelf)));
+
+        bookshelf.insertTiles(List.of(tile, tile), 3);
+        List<EventData> encoded = sender.encode(new BookshelfHasChangedEventData("user", bookshelf));
+        Assertions.assertEquals(2, ((BookshelfDeltaEventData) encoded.get(0)).delta().size());
+        Assertions.assertEquals(new BookshelfHasChangedEventData("user", bookshelf.createView()),
+            receiver.decode(encoded.get(0)));
+    }
+
+    @Test
+    @DisplayName("Other events are neither encoded nor decoded")
+    void encode_otherEvent_unchanged() {
+        EventData login = new LoginEventData("user", "password");
+
+        Assertions.assertEquals(List.of(login), sender.encode(login));
+        Assertions.assertSame(login, receiver.decode(login));
+    }
+
+    @Test
+    @DisplayName("A missing delta causes a resync, which is completed by the snapshots")
+    void decode_missingDelta_resync() throws Exception {
+        Bookshelf bookshelf = new Bookshelf();
+        bookshelf.insertTiles(List.of(Tile.getInstance(TileColor.BLUE, TileVersion.FIRST)), 2);
+
+        transfer(new BoardChangedEventData(board.createView()));
+        transfer(new BookshelfHasChangedEventData("user", bookshelf));
+
+        // this delta gets lost
+        board.selectTile(board.getSelectableCoordinate().get(0));
+        sender.encode(new BoardChangedEventData(board.createView()));
+
+        board.draw();
+        Assertions.assertNull(transfer(new BoardChangedEventData(board.createView())));
+        Assertions.assertEquals(1, resyncRequests);
+
+        List<EventData> snapshots = sender.encode(new StateResyncInternalEventData());
+        Assertions.assertEquals(2, snapshots.size());
+        Assertions.assertEquals(new BoardChangedEventData(board.createView()), receiver.decode(snapshots.get(0)));
+        Assertions.assertEquals(new BookshelfHasChangedEventData("user", bookshelf.createView()),
+            receiver.decode(snapshots.get(1)));
+
+        board.forgetSelection();
+        Assertions.assertEquals(new BoardChangedEventData(board.createView()),
+            transfer(new BoardChangedEventData(board.createView())));
+        Assertions.assertEquals(1, resyncRequests);
+    }
+}
@@ -0,0 +1,138 @@
+package it.polimi.ingsw.networking.MUX;
+
+import it.polimi.ingsw.networking.Connection;
+import it.polimi.ingsw.networking.DisconnectedException;
+import it.polimi.ingsw.networking.TCP.TCPConnection;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@Execution(ExecutionMode.SAME_THREAD)
+class MultiplexerTest {
+    private final int PORT = 12349;
+    private final String HOST = "localhost";
+
+    private final BlockingQueue<Connection> acceptedChannels = new LinkedBlockingQueue<>();
+
+    private Multiplexer client;
+    private Multiplexer server;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(PORT)) {
+            TCPConnection clientConnection = new TCPConnection(HOST, PORT);
+
+            client = new Multiplexer(clientConnection, null);
+            server = new Multiplexer(new TCPConnection(serverSocket.accept()), acceptedChannels::add);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.disconnect();
+        server.disconnect();
+    }
+
+    private Connection accepted() throws InterruptedException {
+        Connection channel = acceptedChannels.poll(5, TimeUnit.SECONDS);
+        Assertions.assertNotNull(channel, "the channel hasn't been accepted");
+
+        return channel;
+    }
+
+    @Test
+    @DisplayName("Messages of interleaved channels reach only their channel, in order")
+    void send_interleavedChannels_deliveredToTheirChannel() throws Exception {
+        Connection first = client.openChannel();
+        Connection firstAccepted = accepted();
+        Connection second = client.openChannel();
+        Connection secondAccepted = accepted();
+
+        for (int i = 0; i < 100; i++) {
+            first.send("first" + i);
+            second.send("second" + i);
+        }
+        secondAccepted.send("reply");
+
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals("first" + i, firstAccepted.receive());
+            Assertions.assertEquals("second" + i, secondAccepted.receive());
+        }
+        Assertions.assertEquals("reply", second.receive());
+        Assertions.assertEquals(2, server.getChannelCount());
+    }
+
+    @Test
+    @DisplayName("Closing a channel disconnects only the channel on the other side")
+    void disconnect_channel_otherChannelsStillWork() throws Exception {
+        Connection closed = client.openChannel();
+        Connection closedAccepted = accepted();
+        Connection open = client.openChannel();
+        Connection openAccepted = accepted();
+
+        closed.disconnect();
+
+        Assertions.assertThrows(DisconnectedException.class, closedAccepted::receive);
+        Assertions.assertThrows(DisconnectedException.class, () -> closed.send("after close"));
+
+        open.send("still open");
+        Assertions.assertEquals("still open", openAccepted.receive());
+        Assertions.assertEquals(1, client.getChannelCount());
+    }
+
+    @Test
+    @DisplayName("Breaking the physical connection disconnects all the channels")
+    void disconnect_physicalConnection_allChannelsDisconnected() throws Exception {
+        client.openChannel();
+        Connection firstAccepted = accepted();
+        client.openChannel();
+        Connection secondAccepted = accepted();
+
+        client.disconnect();
+
+        Assertions.assertThrows(DisconnectedException.class, firstAccepted::receive);
+        Assertions.assertThrows(DisconnectedException.class, secondAccepted::receive);
+        Assertions.assertThrows(DisconnectedException.class, client::openChannel);
+        Assertions.assertEquals(0, server.getChannelCount());
+    }
+
+    @Test
+    @DisplayName("A channel which isn't read blocks only its sender, until its messages are taken")
+    void send_receiverNotReading_senderBlockedOtherChannelsWork() throws Exception {
+        Connection slow = client.openChannel();
+        Connection slowAccepted = accepted();
+        Connection fast = client.openChannel();
+        Connection fastAccepted = accepted();
+        int count = Multiplexer.WINDOW * 2;
+
+        Thread sender = new Thread(() -> {
+            try {
+                for (int i = 0; i < count; i++) {
+                    slow.send("slow" + i);
+                }
+            } catch (DisconnectedException e) {
+                // The assertions below fail if the messages aren't all sent
+            }
+        });
+        sender.start();
+
+        // The sender runs out of credit after WINDOW messages
+        sender.join(500);
+        Assertions.assertTrue(sender.isAlive());
+
+        fast.send("fast");
+        Assertions.assertEquals("fast", fastAccepted.receive());
+
+        for (int i = 0; i < count; i++) {
+            Assertions.assertEquals("slow" + i, slowAccepted.receive());
+        }
+
+        sender.join(5000);
+        Assertions.assertFalse(sender.isAlive());
+    }
+}
@@ -0,0 +1,153 @@
+package it.polimi.ingsw.networking.NIO;
+
+import it.polimi.ingsw.networking.Connection;
+import it.polimi.ingsw.networking.DisconnectedException;
+import it.polimi.ingsw.networking.TCP.TCPConnection;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+@Execution(ExecutionMode.SAME_THREAD)
+class NIOConnectionTest {
+    private static final int PORT = 12346;
+    private static final String HOST = "localhost";
+
+    private EventLoopGroup group;
+    private NIOAcceptor acceptor;
+
+    private final Queue<Connection> accepted = new ArrayDeque<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        group = new EventLoopGroup(2);
+        acceptor = new NIOAcceptor(PORT, group, connection -> {
+            synchronized (accepted) {
+                accepted.add(connection);
+                accepted.notifyAll();
+            }
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // It waits until the port is free, before the next test binds it
+        acceptor.close();
+        group.shutdown();
+    }
+
+    private Connection nextAccepted() throws InterruptedException {
+        synchronized (accepted) {
+            while (accepted.isEmpty()) {
+                accepted.wait();
+            }
+
+            return accepted.poll();
+        }
+    }
+
+    @Test
+    @DisplayName("TCPConnection client talks with NIOConnection server")
+    void connection_tcpClient_correctOutput() throws Exception {
+        Connection client = new TCPConnection(HOST, PORT);
+        Connection server = nextAccepted();
+
+        client.send("hello");
+        Assertions.assertEquals("hello", server.receive());
+
+        server.send("world");
+        Assertions.assertEquals("world", client.receive());
+
+        client.send("hello1");
+        client.send("hello2");
+        Assertions.assertEquals("hello1", server.receive());
+        Assertions.assertEquals("hello2", server.receive());
+
+        client.disconnect();
+        server.disconnect();
+    }
+
+    @Test
+    @DisplayName("Many NIOConnection clients share the same loops")
+    void connection_manyClients_correctOutput() throws Exception {
+        List<Connection> clients = new ArrayList<>();
+        List<Connection> servers = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+            clients.add(new NIOConnection(HOST, PORT, group));
+            servers.add(nextAccepted());
+        }
+
+        for (int i = 0; i < clients.size(); i++) {
+            clients.get(i).send("ping" + i);
+        }
+
+        // connections are accepted in order, every server side receives the message of its client
+        for (int i = 0; i < servers.size(); i++) {
+            Assertions.assertEquals("ping" + i, servers.get(i).receive());
+            servers.get(i).send("pong" + i);
+        }
+
+        for (int i = 0; i < clients.size(); i++) {
+            Assertions.assertEquals("pong" + i, clients.get(i).receive());
+        }
+
+        clients.forEach(Connection::disconnect);
+    }
+
+    @Test
+    @DisplayName("Large message is received correctly")
+    void connection_largeMessage_correctOutput() throws Exception {
+        Connection client = new NIOConnection(HOST, PORT, group);
+        Connection server = nextAccepted();
+
+        // larger than both the initial read buffer and the 64 KB limit of writeUTF
+        String message = "x".repeat(200000);
+
+        client.send(message);
+        Assertions.assertEquals(message, server.receive());
+
+        client.disconnect();
+    }
+
+    @Test
+    @DisplayName("Batches of messages sent with a single flush are received in order")
+    void sendAllBytes_batch_correctOutput() throws Exception {
+        Connection nioClient = new NIOConnection(HOST, PORT, group);
+        Connection nioServer = nextAccepted();
+        Connection tcpClient = new TCPConnection(HOST, PORT);
+        Connection tcpServer = nextAccepted();
+
+        List<byte[]> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(("message" + i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        nioClient.sendAllBytes(batch);
+        tcpClient.sendAllBytes(batch);
+
+        for (byte[] message : batch) {
+            Assertions.assertArrayEquals(message, nioServer.receiveBytes());
+            Assertions.assertArrayEquals(message, tcpServer.receiveBytes());
+        }
+
+        nioClient.disconnect();
+        tcpClient.disconnect();
+    }
+
+    @Test
+    @DisplayName("Receive after disconnection throws")
+    void receive_otherSideDisconnected_throwsDisconnectedException() throws Exception {
+        Connection client = new NIOConnection(HOST, PORT, group);
+        Connection server = nextAccepted();
+
+        client.disconnect();
+
+        Assertions.assertThrows(DisconnectedException.class, server::receive);
+    }
+}
@@ -0,0 +1,116 @@
+package it.polimi.ingsw.networking.RMI;
+
+import it.polimi.ingsw.networking.Connection;
+import it.polimi.ingsw.networking.ConnectionAcceptor;
+import it.polimi.ingsw.networking.DisconnectedException;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+@Execution(ExecutionMode.SAME_THREAD)
+class RMIConnectionTest {
+    private static final int TCP_PORT = 12348;
+    private static final int RMI_PORT = 12347;
+    private static final String HOST = "localhost";
+
+    private static ConnectionAcceptor acceptor;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        acceptor = new ConnectionAcceptor(TCP_PORT, RMI_PORT, ConnectionAcceptor.TCPMode.SELECTOR,
+            RMIConnection.Mode.BATCHED);
+    }
+
+    @Test
+    @DisplayName("Bursts of messages are received in order with batched mode on both sides")
+    void connection_batchedBurst_correctOutput() throws Exception {
+        Connection client = new RMIConnection(HOST, RMI_PORT, RMIConnection.Mode.BATCHED);
+        Connection server = acceptor.accept();
+
+        for (int i = 0; i < 500; i++) {
+            client.send("ping" + i);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            Assertions.assertEquals("ping" + i, server.receive());
+            server.send("pong" + i);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            Assertions.assertEquals("pong" + i, client.receive());
+        }
+
+        client.disconnect();
+        server.disconnect();
+    }
+
+    @Test
+    @DisplayName("A thread per call client talks with a batched server")
+    void connection_threadPerCallClient_correctOutput() throws Exception {
+        Connection client = new RMIConnection(HOST, RMI_PORT, RMIConnection.Mode.THREAD_PER_CALL);
+        Connection server = acceptor.accept();
+
+        client.send("hello");
+        Assertions.assertEquals("hello", server.receive());
+
+        server.send("world1");
+        server.send("world2");
+        Assertions.assertEquals("world1", client.receive());
+        Assertions.assertEquals("world2", client.receive());
+
+        client.disconnect();
+        server.disconnect();
+    }
+
+    @Test
+    @DisplayName("Bursts of messages are received in order with push mode")
+    void connection_pushBurst_correctOutput() throws Exception {
+        Connection client = new RMIConnection(HOST, RMI_PORT, RMIConnection.Mode.PUSH);
+        Connection server = acceptor.accept();
+
+        for (int i = 0; i < 500; i++) {
+            client.send("ping" + i);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            Assertions.assertEquals("ping" + i, server.receive());
+            server.send("pong" + i);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            Assertions.assertEquals("pong" + i, client.receive());
+        }
+
+        client.disconnect();
+        server.disconnect();
+    }
+
+    @Test
+    @DisplayName("Server-side connection in push mode is disconnected when the client leaves")
+    void receive_pushClientDisconnected_throwsDisconnectedException() throws Exception {
+        Connection client = new RMIConnection(HOST, RMI_PORT, RMIConnection.Mode.PUSH);
+        Connection server = acceptor.accept();
+
+        client.disconnect();
+
+        // the unexported listener makes the next push fail, a heartbeat may have already failed
+        try {
+            server.send("hello");
+        } catch (DisconnectedException ignored) { }
+
+        Assertions.assertThrows(DisconnectedException.class, server::receive);
+    }
+
+    @Test
+    @DisplayName("Send after disconnection throws")
+    void send_disconnected_throwsDisconnectedException() throws Exception {
+        Connection client = new RMIConnection(HOST, RMI_PORT, RMIConnection.Mode.BATCHED);
+        Connection server = acceptor.accept();
+
+        client.disconnect();
+
+        Assertions.assertThrows(DisconnectedException.class, () -> client.send("hello"));
+
+        server.disconnect();
+    }
+}
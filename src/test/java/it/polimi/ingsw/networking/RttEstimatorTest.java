@@ -0,0 +1,56 @@
+package it.polimi.ingsw.networking;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RttEstimatorTest {
+    private final RttEstimator estimator = new RttEstimator();
+
+    @Test
+    @DisplayName("Without samples the round trip time is unknown")
+    void getSmoothedRtt_noSamples_unknown() {
+        Assertions.assertEquals(-1, estimator.getSmoothedRtt());
+        Assertions.assertEquals(-1, estimator.getRttVariation());
+        Assertions.assertEquals(0, estimator.getTimeout());
+    }
+
+    @Test
+    @DisplayName("The first sample sets the round trip time and half of it as variation")
+    void addSample_firstSample_initializesEstimates() {
+        estimator.addSample(100);
+
+        Assertions.assertEquals(100, estimator.getSmoothedRtt());
+        Assertions.assertEquals(50, estimator.getRttVariation());
+        Assertions.assertEquals(300, estimator.getTimeout());
+    }
+
+    @Test
+    @DisplayName("Later samples are smoothed, as in RFC 6298")
+    void addSample_laterSamples_smoothed() {
+        estimator.addSample(100);
+        estimator.addSample(200);
+
+        Assertions.assertEquals(112.5, estimator.getSmoothedRtt(), 1e-9);
+        Assertions.assertEquals(62.5, estimator.getRttVariation(), 1e-9);
+        Assertions.assertEquals(363, estimator.getTimeout());
+        Assertions.assertEquals(2, estimator.getSampleCount());
+    }
+
+    @Test
+    @DisplayName("Stable samples shrink the variation, hence the timeout")
+    void addSample_stableSamples_timeoutConverges() {
+        for (int i = 0; i < 100; i++) {
+            estimator.addSample(40);
+        }
+
+        Assertions.assertEquals(40, estimator.getSmoothedRtt(), 1e-6);
+        Assertions.assertEquals(41, estimator.getTimeout());
+    }
+
+    @Test
+    @DisplayName("Negative samples are rejected")
+    void addSample_negative_throws() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> estimator.addSample(-1));
+    }
+}
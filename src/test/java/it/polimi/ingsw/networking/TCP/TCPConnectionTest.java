@@ -9,6 +9,7 @@ import org.junit.jupiter.api.parallel.Execution;
 import org.junit.jupiter.api.parallel.ExecutionMode;
 
 import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Execution(ExecutionMode.SAME_THREAD)
@@ -100,4 +101,79 @@ class TCPConnectionTest {
             Assertions.fail();
         }
     }
+
+    @Test
+    @DisplayName("Messages larger than 64 KB are received correctly")
+    void connection_largeMessage_correctOutput() throws Exception {
+        Connection client = new TCPConnection(HOST, PORT);
+        Connection server = new TCPConnection(serverSocket.accept());
+
+        // non-ASCII characters take more than one byte each in UTF-8
+        String message = "x".repeat(200000) + "\u00e8\u20ac";
+
+        client.send(message);
+        Assertions.assertEquals(message, server.receive());
+
+        byte[] bytes = new byte[100000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        server.sendBytes(bytes);
+        Assertions.assertArrayEquals(bytes, client.receiveBytes());
+
+        client.disconnect();
+        server.disconnect();
+    }
+
+    @Test
+    @DisplayName("The round trip time is sampled by the echo of the first heartbeat")
+    void connection_heartbeatEchoed_roundTripTimeMeasured() throws Exception {
+        Connection client = new TCPConnection(HOST, PORT);
+        Connection server = new TCPConnection(serverSocket.accept());
+
+        // the first heartbeat is sent as soon as the connection is registered
+        long deadline = System.currentTimeMillis() + 2000;
+        while ((client.getRoundTripTime() < 0 || server.getRoundTripTime() < 0)
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assertions.assertTrue(client.getRoundTripTime() >= 0);
+        Assertions.assertTrue(server.getRoundTripTime() >= 0);
+
+        client.send("after heartbeat");
+        Assertions.assertEquals("after heartbeat", server.receive());
+
+        client.disconnect();
+        server.disconnect();
+    }
+
+    @Test
+    @DisplayName("Disconnecting doesn't wait for a sender blocked by a peer which doesn't read")
+    void disconnect_senderBlocked_returnsImmediately() throws Exception {
+        Connection client = new TCPConnection(HOST, PORT);
+        // the peer never reads, hence the socket buffers fill up and the sender blocks
+        Socket peer = serverSocket.accept();
+
+        Thread sender = new Thread(() -> {
+            try {
+                while (true) {
+                    client.sendBytes(new byte[64 * 1024]);
+                }
+            } catch (Exception ignored) { }
+        });
+        sender.start();
+        sender.join(500);
+        Assertions.assertTrue(sender.isAlive());
+
+        long start = System.currentTimeMillis();
+        client.disconnect();
+        Assertions.assertTrue(System.currentTimeMillis() - start < 1000);
+
+        sender.join(1000);
+        Assertions.assertFalse(sender.isAlive());
+
+        peer.close();
+    }
 }
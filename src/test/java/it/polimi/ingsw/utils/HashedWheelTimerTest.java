@@ -0,0 +1,55 @@
+package it.polimi.ingsw.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedWheelTimerTest {
+    @Test
+    @DisplayName("Tasks are executed after their delay")
+    void newTimeout_delay_executedAfterDelay() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, 8);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        timer.newTimeout(latch::countDown, 200);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 190);
+    }
+
+    @Test
+    @DisplayName("Tasks longer than a turn of the wheel wait for the right round")
+    void newTimeout_delayLongerThanWheel_executedAfterDelay() throws InterruptedException {
+        // 8 buckets of 10ms: a turn of the wheel lasts 80ms
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, 8);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        long start = System.nanoTime();
+        timer.newTimeout(latch::countDown, 300);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 290);
+    }
+
+    @Test
+    @DisplayName("Cancelled tasks are not executed")
+    void cancel_pendingTimeout_notExecuted() throws InterruptedException {
+        HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, 8);
+        AtomicBoolean executed = new AtomicBoolean(false);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(() -> executed.set(true), 100);
+        timer.newTimeout(latch::countDown, 200);
+        timeout.cancel();
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(timeout.isCancelled());
+        assertFalse(executed.get());
+    }
+}
@@ -0,0 +1,45 @@
+package it.polimi.ingsw.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreadsTest {
+    @AfterEach
+    void tearDown() {
+        Threads.setMode(Threads.Mode.PLATFORM);
+    }
+
+    @Test
+    @DisplayName("Platform threads execute the task with the given name")
+    void start_platformMode_taskExecuted() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Thread thread = Threads.start("test-thread", latch::countDown);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals("test-thread", thread.getName());
+    }
+
+    @Test
+    @DisplayName("Virtual mode is selectable only if supported by the runtime")
+    void setMode_virtual_dependsOnRuntime() throws InterruptedException {
+        if (!Threads.isVirtualSupported()) {
+            assertThrows(UnsupportedOperationException.class, () -> Threads.setMode(Threads.Mode.VIRTUAL));
+            assertEquals(Threads.Mode.PLATFORM, Threads.getMode());
+            return;
+        }
+
+        Threads.setMode(Threads.Mode.VIRTUAL);
+        CountDownLatch latch = new CountDownLatch(1);
+
+        Threads.start("test-virtual-thread", latch::countDown);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+    }
+}